@@ -2,14 +2,16 @@ package pack.architecture;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Set;
 
 import pack.main.Simulation;
@@ -33,8 +35,7 @@ public class Architecture {
 	private ArrayList<Block> complexBlocks;
 	private int numConn;
 	private HashMap<Integer, HashMap<Integer, Conn>> connections;
-	private HashMap<String, HashMap<String, Boolean>> globalConnections;
-	private HashMap<String, HashMap<String,Integer>> delayMap;
+	private DelayMatrix delayMatrix;
 	
 	private int sizeX;
 	private int sizeY;
@@ -50,9 +51,6 @@ public class Architecture {
 		this.blifPins = new HashMap<String,ArrayList<Pin>>();
 		this.numConn = 0;
 		this.connections = new HashMap<Integer,HashMap<Integer,Conn>>();
-		this.globalConnections = new HashMap<String,HashMap<String, Boolean>>();
-		
-		this.delayMap = new HashMap<String, HashMap<String,Integer>>();
 	}
 	
 	//READ AND PARSE FILE
@@ -112,6 +110,7 @@ public class Architecture {
 		this.lines = this.read_file(this.simulation.getStringValue("result_folder") + "arch.light.xml");
 		this.get_models();
 		this.get_complex_blocks(true);
+		this.initialize_delay_matrix();
 		this.initializeDimensions();
 		Output.newLine();
 	}
@@ -674,6 +673,56 @@ public class Architecture {
 		}
 	}
 	
+	//Delay matrix
+	private void initialize_delay_matrix(){
+		Timing t = new Timing();
+		t.start();
+
+		String folder = this.simulation.getStringValue("delay_matrix_folder");
+		File file = null;
+		String key = null;
+		if(folder.length() > 0){
+			key = this.delay_matrix_key();
+			file = new File(folder, key + ".delay");
+			this.delayMatrix = DelayMatrix.load(file, key);
+		}
+
+		if(this.delayMatrix != null){
+			t.stop();
+			Output.println("\tDelay matrix of " + this.delayMatrix.num_sources() + " x " + this.delayMatrix.num_sinks() + " pins loaded from " + file.getPath() + " in " + t.toString());
+		}else{
+			this.delayMatrix = DelayMatrix.build(this.pins, this.blifPins, this.simulation.getIntValue("num_threads"));
+			t.stop();
+			Output.println("\tDelay matrix of " + this.delayMatrix.num_sources() + " x " + this.delayMatrix.num_sinks() + " pins took " + t.toString());
+
+			if(file != null){
+				try{
+					this.delayMatrix.store(file, key);
+				}catch(IOException e){
+					Output.println("\tUnable to store the delay matrix in " + file.getPath() + ": " + e.getMessage());
+				}
+			}
+		}
+	}
+	private String delay_matrix_key(){
+		//Hash of the parsed architecture lines, the matrix only depends on the architecture
+		MessageDigest digest = null;
+		try{
+			digest = MessageDigest.getInstance("SHA-256");
+		}catch(NoSuchAlgorithmException e){
+			ErrorLog.print("No SHA-256 digest available: " + e.getMessage());
+		}
+		for(String line:this.lines){
+			digest.update(line.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte)'\n');
+		}
+		StringBuilder key = new StringBuilder();
+		for(byte b:digest.digest()){
+			key.append(String.format("%02x", b));
+		}
+		return key.toString();
+	}
+
 	//Architecture dimensions
 	public void initializeDimensions(){
 		for(int i=0; i<this.lines.size();i++){
@@ -1076,138 +1125,19 @@ public class Architecture {
 	}
 	public int get_connection_delay(P sourcePin, P sinkPin){
 		//Setup time and Tcq delay are included in connection delay
-		String source = null, sourceLight = null;
-		String sink = null, sinkLight = null;
-		if(sourcePin.has_block() && sinkPin.has_block()){
-			sourceLight = sourcePin.get_light_architecture_name();
-			sinkLight = sinkPin.get_light_architecture_name();
-		}else if(sourcePin.has_block() && !sinkPin.has_block()){
-			sourceLight = sourcePin.get_light_architecture_name();
-			sinkLight = ".output" + "." + sinkPin.get_port_name();
-		}else if(!sourcePin.has_block() && sinkPin.has_block()){
-			sourceLight = ".input" + "." + sourcePin.get_port_name();
-			sinkLight = sinkPin.get_light_architecture_name();
-		}else if(!sourcePin.has_block() && !sinkPin.has_block()){
-			sourceLight =".input" + "." + sourcePin.get_port_name();
-			sinkLight = ".output" + "." + sinkPin.get_port_name();
-		}
-		
-		Integer connectionDelay = null;
-		HashMap<String,Integer> tempMap = this.delayMap.get(sourceLight);
-		if(tempMap != null){
-			connectionDelay = tempMap.get(sinkLight);
-			if(connectionDelay == null){
-				if(sourcePin.has_block() && sinkPin.has_block()){
-					source = sourcePin.get_detailed_architecture_name();
-					sink = sinkPin.get_detailed_architecture_name();
-				}else if(sourcePin.has_block() && !sinkPin.has_block()){
-					source = sourcePin.get_detailed_architecture_name();
-					sink = ".output" + "." + sinkPin.get_port_name() + "[" +  sinkPin.get_pin_num() + "]";
-				}else if(!sourcePin.has_block() && sinkPin.has_block()){
-					source = ".input" + "." + sourcePin.get_port_name() + "[" +  sourcePin.get_pin_num() + "]";
-					sink = sinkPin.get_detailed_architecture_name();
-				}else if(!sourcePin.has_block() && !sinkPin.has_block()){
-					source =".input" + "." + sourcePin.get_port_name() + "[" +  sourcePin.get_pin_num() + "]";
-					sink = ".output" + "." + sinkPin.get_port_name() + "[" +  sinkPin.get_pin_num() + "]";
-				}
-				connectionDelay = this.get_connection_delay(source, sink, sourceLight, sinkLight);
-				tempMap.put(sinkLight, connectionDelay);
-			}
+		String source = null;
+		String sink = null;
+		if(sourcePin.has_block()){
+			source = sourcePin.get_detailed_architecture_name();
 		}else{
-			tempMap = new HashMap<String,Integer>();
-			if(sourcePin.has_block() && sinkPin.has_block()){
-				source = sourcePin.get_detailed_architecture_name();
-				sink = sinkPin.get_detailed_architecture_name();
-			}else if(sourcePin.has_block() && !sinkPin.has_block()){
-				source = sourcePin.get_detailed_architecture_name();
-				sink = ".output" + "." + sinkPin.get_port_name() + "[" +  sinkPin.get_pin_num() + "]";
-			}else if(!sourcePin.has_block() && sinkPin.has_block()){
-				source = ".input" + "." + sourcePin.get_port_name() + "[" +  sourcePin.get_pin_num() + "]";
-				sink = sinkPin.get_detailed_architecture_name();
-			}else if(!sourcePin.has_block() && !sinkPin.has_block()){
-				source =".input" + "." + sourcePin.get_port_name() + "[" +  sourcePin.get_pin_num() + "]";
-				sink = ".output" + "." + sinkPin.get_port_name() + "[" +  sinkPin.get_pin_num() + "]";
-			}
-			connectionDelay = this.get_connection_delay(source, sink, sourceLight, sinkLight);
-			tempMap.put(sinkLight, connectionDelay);
-			this.delayMap.put(sourceLight, tempMap);
-		}
-		return connectionDelay;
-	}
-	private int get_connection_delay(String sourcePinName, String sinkPinName, String sourceLight, String sinkLight){
-		//Setup time and Tcq delay are included in connection delay
-		if(!this.blifPins.containsKey(sourcePinName)){
-			ErrorLog.print("Architecture does not contain source pin " + sourcePinName);
-			return Integer.MAX_VALUE;
-		}
-		if(!this.blifPins.containsKey(sinkPinName)){
-			ErrorLog.print("Architecture does not contain sink pin " + sinkPinName);
-			return Integer.MAX_VALUE;
-		}
-		
-		PriorityQueue<Pin> q = new PriorityQueue<Pin>();
-		for(Pin p:this.pins){
-			if(p.get_name().equals(sourcePinName)){
-				p.set_previous(p);
-				
-				//Clock to output delay is included in connection delay
-				Block block = p.get_parent();
-				if(block.has_clock_to_output_delay(p.get_port_name())){
-					p.set_delay(block.get_clock_to_output(p.get_port_name()));
-				}else{
-					p.set_delay(0);
-				}
-			}else{
-				p.set_previous(null);
-				p.set_delay(Integer.MAX_VALUE);
-			}
-			q.add(p);
+			source = ".input" + "." + sourcePin.get_port_name() + "[" +  sourcePin.get_pin_num() + "]";
 		}
-		Pin endPin = this.dijkstra(q, sinkPinName);
-		int minDelay = endPin.get_delay();
-		
-		//GLOBAL CONNECTIONS
-		boolean global = false;
-		Pin sink = endPin;
-		while(!sink.get_name().equals(sourcePinName)){
-			Pin source = sink.get_previous();
-			if(this.connections.get(source.get_number()).get(sink.get_number()).is_global()){
-				if(!global){
-					global = true;
-				}else{
-					ErrorLog.print("2 global connections between " + sourcePinName + " and " + sinkPinName);
-				}
-			}
-			sink = source;
-		}
-		if(!this.globalConnections.containsKey(sourceLight)){
-			this.globalConnections.put(sourceLight, new HashMap<String, Boolean>());
-		}
-		this.globalConnections.get(sourceLight).put(sinkLight, global);
-		
-		return minDelay;
-	}
-	private Pin dijkstra(PriorityQueue<Pin> q, String stopCondition){//, String sourceType, String sinkType){
-		Pin u,v;
-		while(!q.isEmpty()){
-			u = q.poll();
-			if(u.get_name().equals(stopCondition)) return u;
-			if(u.get_delay() == Integer.MAX_VALUE) break;
-			for(Map.Entry<Pin, Integer> a:u.get_neighbours().entrySet()){
-				//Output.println(u.get_neighbours().size());
-				v = a.getKey();
-					
-				final int alternateDelay = u.get_delay() + a.getValue();
-				if(alternateDelay < v.get_delay()){
-					q.remove(v);
-					v.set_delay(alternateDelay);
-					v.set_previous(u);
-					q.add(v);
-				}
-			}
+		if(sinkPin.has_block()){
+			sink = sinkPin.get_detailed_architecture_name();
+		}else{
+			sink = ".output" + "." + sinkPin.get_port_name() + "[" +  sinkPin.get_pin_num() + "]";
 		}
-		ErrorLog.print("Pin " + stopCondition + " not found in Dijkstra algorithm");
-		return null;
+		return this.delayMatrix.get_delay(this.delayMatrix.get_source_index(source), this.delayMatrix.get_sink_index(sink));
 	}
 	public int slack(P sourcePin, P sinkPin){
 		int arr = sourcePin.get_arrival_time();
@@ -1226,21 +1156,15 @@ public class Architecture {
 		sourcePinName = sourcePinName.replace("_M144K","");
 		sinkPinName = sinkPinName.replace("_M144K","");
 		
-		if(this.globalConnections.containsKey(sourcePinName)){
-			if(this.globalConnections.get(sourcePinName).containsKey(sinkPinName)){
-				return this.globalConnections.get(sourcePinName).get(sinkPinName);
-			}else{
-				ErrorLog.print(sinkPinName + " not found as sink of a connection");
-				return false;
-			}
-		}else{
-			Output.println("SourcePins:");
-			for(String sourcePin:this.globalConnections.keySet()){
-				Output.println("\t" + sourcePin);
-			}
+		if(!this.delayMatrix.has_source_port(sourcePinName)){
 			ErrorLog.print(sourcePinName + " not found as source of a connection");
 			return false;
 		}
+		if(!this.delayMatrix.has_sink_port(sinkPinName)){
+			ErrorLog.print(sinkPinName + " not found as sink of a connection");
+			return false;
+		}
+		return this.delayMatrix.is_global(sourcePinName, sinkPinName);
 	}
 	
 	//PACK PATTERN
@@ -1319,6 +1243,27 @@ public class Architecture {
 		halfDSP.set_pack_pattern(packPatterns);
 	}
 	
+	//COMPLEX BLOCKS
+	public ArrayList<Block> get_complex_block_types(){
+		return this.complexBlocks;
+	}
+	//Pins of the complex blocks that are used by a direct connection between neighbouring blocks, for example "LAB.cin"
+	public Set<String> get_direct_pins(){
+		Set<String> directPins = new HashSet<String>();
+		for(String line:this.lines){
+			if(line.contains("<direct") && line.contains("from_pin") && line.contains("to_pin")){
+				Line l = new Line(line);
+				for(String pin:new String[]{l.get_value("from_pin"), l.get_value("to_pin")}){
+					if(pin.contains("[")){
+						pin = pin.substring(0, pin.indexOf("["));
+					}
+					directPins.add(pin);
+				}
+			}
+		}
+		return directPins;
+	}
+
 	//SIZE
 	public int getSizeX(){
 		return this.sizeX;
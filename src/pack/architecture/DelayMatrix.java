@@ -0,0 +1,462 @@
+package pack.architecture;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import pack.util.ErrorLog;
+
+/**
+ * Delay between each pair of blif pins of the architecture. A row holds the
+ * minimal delay from all the architecture pins with the name of the source
+ * (an output pin of a blif block) to the pins with the name of each sink (an
+ * input or clock pin of a blif block), and the number of global connections
+ * on that path. The clock to output delay of the source and the setup time
+ * of the sink are included in the delay.
+ *
+ * The rows are computed with Dijkstra on an array representation of the pin
+ * graph with an index addressed heap, the rows are divided over a thread pool.
+ */
+class DelayMatrix {
+	static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private static final int MAGIC = 0x444c594d;
+	private static final int VERSION = 1;
+
+	private final String[] sourceNames;
+	private final String[] sinkNames;
+	private final Map<String,Integer> sourceIndex;
+	private final Map<String,Integer> sinkIndex;
+
+	//[source * sinkNames.length + sink]
+	private final int[] delay;
+	private final byte[] numGlobal;
+
+	//Global connection flag of the ports, -1 if no pin of the source port reaches the sink port
+	private final Map<String,Integer> sourcePortIndex;
+	private final Map<String,Integer> sinkPortIndex;
+	private final byte[] portGlobal;
+
+	private DelayMatrix(String[] sourceNames, String[] sinkNames, int[] delay, byte[] numGlobal){
+		this.sourceNames = sourceNames;
+		this.sinkNames = sinkNames;
+		this.sourceIndex = index(sourceNames);
+		this.sinkIndex = index(sinkNames);
+		this.delay = delay;
+		this.numGlobal = numGlobal;
+
+		this.sourcePortIndex = new HashMap<String,Integer>();
+		this.sinkPortIndex = new HashMap<String,Integer>();
+		int[] sourcePort = portIndex(sourceNames, this.sourcePortIndex);
+		int[] sinkPort = portIndex(sinkNames, this.sinkPortIndex);
+
+		//The flag of a port pair is the flag of its pin pair with the lowest delay
+		int numSinkPorts = this.sinkPortIndex.size();
+		this.portGlobal = new byte[this.sourcePortIndex.size() * numSinkPorts];
+		int[] portDelay = new int[this.portGlobal.length];
+		Arrays.fill(this.portGlobal, (byte)-1);
+		Arrays.fill(portDelay, UNREACHABLE);
+		for(int source=0;source<sourceNames.length;source++){
+			for(int sink=0;sink<sinkNames.length;sink++){
+				int d = delay[source * sinkNames.length + sink];
+				int port = sourcePort[source] * numSinkPorts + sinkPort[sink];
+				if(d < portDelay[port]){
+					portDelay[port] = d;
+					this.portGlobal[port] = (byte)Math.min(numGlobal[source * sinkNames.length + sink], 1);
+				}
+			}
+		}
+	}
+	private static Map<String,Integer> index(String[] names){
+		Map<String,Integer> index = new HashMap<String,Integer>();
+		for(int i=0;i<names.length;i++){
+			index.put(names[i], i);
+		}
+		return index;
+	}
+	private static int[] portIndex(String[] pinNames, Map<String,Integer> portIndex){
+		int[] result = new int[pinNames.length];
+		for(int i=0;i<pinNames.length;i++){
+			String portName = pinNames[i].substring(0, pinNames[i].lastIndexOf("["));
+			Integer port = portIndex.get(portName);
+			if(port == null){
+				port = portIndex.size();
+				portIndex.put(portName, port);
+			}
+			result[i] = port;
+		}
+		return result;
+	}
+
+	//LOOKUP
+	int get_source_index(String sourcePinName){
+		Integer source = this.sourceIndex.get(sourcePinName);
+		if(source == null){
+			ErrorLog.print("Architecture does not contain source pin " + sourcePinName);
+		}
+		return source;
+	}
+	int get_sink_index(String sinkPinName){
+		Integer sink = this.sinkIndex.get(sinkPinName);
+		if(sink == null){
+			ErrorLog.print("Architecture does not contain sink pin " + sinkPinName);
+		}
+		return sink;
+	}
+	int get_delay(int source, int sink){
+		int d = this.delay[source * this.sinkNames.length + sink];
+		if(d == UNREACHABLE){
+			ErrorLog.print("Pin " + this.sinkNames[sink] + " not reachable from pin " + this.sourceNames[source]);
+		}
+		if(this.numGlobal[source * this.sinkNames.length + sink] > 1){
+			ErrorLog.print("2 global connections between " + this.sourceNames[source] + " and " + this.sinkNames[sink]);
+		}
+		return d;
+	}
+	boolean has_source_port(String sourcePortName){
+		return this.sourcePortIndex.containsKey(sourcePortName);
+	}
+	boolean has_sink_port(String sinkPortName){
+		return this.sinkPortIndex.containsKey(sinkPortName);
+	}
+	boolean is_global(String sourcePortName, String sinkPortName){
+		int port = this.sourcePortIndex.get(sourcePortName) * this.sinkPortIndex.size() + this.sinkPortIndex.get(sinkPortName);
+		if(this.portGlobal[port] < 0){
+			ErrorLog.print(sinkPortName + " not reachable from " + sourcePortName);
+		}
+		return this.portGlobal[port] > 0;
+	}
+	int num_sources(){
+		return this.sourceNames.length;
+	}
+	int num_sinks(){
+		return this.sinkNames.length;
+	}
+
+	//BUILD
+	static DelayMatrix build(List<Pin> pins, Map<String,ArrayList<Pin>> blifPins, int numThreads){
+		final PinGraph graph = new PinGraph(pins);
+
+		List<String> sources = new ArrayList<String>();
+		List<String> sinks = new ArrayList<String>();
+		for(Map.Entry<String,ArrayList<Pin>> entry:blifPins.entrySet()){
+			if(entry.getValue().get(0).get_type().equals("output")){
+				sources.add(entry.getKey());
+			}else{
+				sinks.add(entry.getKey());
+			}
+		}
+		Collections.sort(sources);
+		Collections.sort(sinks);
+
+		//Pin indexes of each source and sink name
+		final int[][] sourcePins = new int[sources.size()][];
+		final int[][] sourceDelays = new int[sources.size()][];
+		for(int s=0;s<sources.size();s++){
+			ArrayList<Pin> namePins = blifPins.get(sources.get(s));
+			sourcePins[s] = new int[namePins.size()];
+			sourceDelays[s] = new int[namePins.size()];
+			for(int i=0;i<namePins.size();i++){
+				Pin p = namePins.get(i);
+				sourcePins[s][i] = graph.index(p);
+
+				//Clock to output delay is included in connection delay
+				Block block = p.get_parent();
+				if(block.has_clock_to_output_delay(p.get_port_name())){
+					sourceDelays[s][i] = block.get_clock_to_output(p.get_port_name());
+				}else{
+					sourceDelays[s][i] = 0;
+				}
+			}
+		}
+		final int[][] sinkPins = new int[sinks.size()][];
+		for(int s=0;s<sinks.size();s++){
+			ArrayList<Pin> namePins = blifPins.get(sinks.get(s));
+			sinkPins[s] = new int[namePins.size()];
+			for(int i=0;i<namePins.size();i++){
+				sinkPins[s][i] = graph.index(namePins.get(i));
+			}
+		}
+
+		final int numSinks = sinks.size();
+		final int[] delay = new int[sources.size() * numSinks];
+		final byte[] numGlobal = new byte[sources.size() * numSinks];
+
+		int numTasks = Math.max(1, Math.min(numThreads, sources.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(numTasks);
+		try{
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for(int t=0;t<numTasks;t++){
+				final int task = t;
+				final int stride = numTasks;
+				futures.add(executor.submit(new Callable<Void>(){
+					@Override
+					public Void call(){
+						ShortestPaths paths = new ShortestPaths(graph);
+						for(int source=task;source<sourcePins.length;source+=stride){
+							paths.run(sourcePins[source], sourceDelays[source]);
+							for(int sink=0;sink<numSinks;sink++){
+								int bestPin = -1;
+								for(int pin:sinkPins[sink]){
+									if(bestPin < 0 || paths.delay(pin) < paths.delay(bestPin)){
+										bestPin = pin;
+									}
+								}
+								delay[source * numSinks + sink] = paths.delay(bestPin);
+								numGlobal[source * numSinks + sink] = (byte)paths.num_global(bestPin);
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for(Future<Void> future:futures){
+				future.get();
+			}
+		}catch(InterruptedException e){
+			ErrorLog.print("Delay matrix generation is interrupted: " + e.getMessage());
+		}catch(ExecutionException e){
+			ErrorLog.print("Delay matrix generation failed: " + e.getCause());
+		}finally{
+			executor.shutdown();
+		}
+
+		return new DelayMatrix(sources.toArray(new String[sources.size()]), sinks.toArray(new String[sinks.size()]), delay, numGlobal);
+	}
+
+	//DISK
+	static DelayMatrix load(File file, String key){
+		if(!file.isFile()){
+			return null;
+		}
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+			if(in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(key)){
+				return null;
+			}
+			String[] sourceNames = new String[in.readInt()];
+			for(int i=0;i<sourceNames.length;i++){
+				sourceNames[i] = in.readUTF();
+			}
+			String[] sinkNames = new String[in.readInt()];
+			for(int i=0;i<sinkNames.length;i++){
+				sinkNames[i] = in.readUTF();
+			}
+			int[] delay = new int[sourceNames.length * sinkNames.length];
+			for(int i=0;i<delay.length;i++){
+				delay[i] = in.readInt();
+			}
+			byte[] numGlobal = new byte[delay.length];
+			in.readFully(numGlobal);
+			return new DelayMatrix(sourceNames, sinkNames, delay, numGlobal);
+		}catch(IOException e){
+			return null;
+		}
+	}
+	void store(File file, String key) throws IOException {
+		File folder = file.getAbsoluteFile().getParentFile();
+		Files.createDirectories(folder.toPath());
+
+		//Write to a temporary file first, a concurrent run never reads a partial file
+		File tmpFile = File.createTempFile(file.getName(), ".tmp", folder);
+		try{
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))){
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(key);
+				out.writeInt(this.sourceNames.length);
+				for(String name:this.sourceNames){
+					out.writeUTF(name);
+				}
+				out.writeInt(this.sinkNames.length);
+				for(String name:this.sinkNames){
+					out.writeUTF(name);
+				}
+				for(int d:this.delay){
+					out.writeInt(d);
+				}
+				out.write(this.numGlobal);
+			}
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}finally{
+			Files.deleteIfExists(tmpFile.toPath());
+		}
+	}
+
+	/*
+	 * The architecture pins and connections in compressed sparse row form
+	 */
+	private static class PinGraph {
+		private final Map<Pin,Integer> pinIndex;
+		private final int numPins;
+		private final int[] edgeStart;
+		private final int[] edgeSource;
+		private final int[] edgeSink;
+		private final int[] edgeDelay;
+		private final boolean[] edgeGlobal;
+
+		PinGraph(List<Pin> pins){
+			this.numPins = pins.size();
+			this.pinIndex = new HashMap<Pin,Integer>();
+			for(int i=0;i<this.numPins;i++){
+				this.pinIndex.put(pins.get(i), i);
+			}
+
+			int numEdges = 0;
+			for(Pin pin:pins){
+				numEdges += pin.get_output_connections().size();
+			}
+			this.edgeStart = new int[this.numPins + 1];
+			this.edgeSource = new int[numEdges];
+			this.edgeSink = new int[numEdges];
+			this.edgeDelay = new int[numEdges];
+			this.edgeGlobal = new boolean[numEdges];
+
+			int edge = 0;
+			for(int i=0;i<this.numPins;i++){
+				Pin pin = pins.get(i);
+				this.edgeStart[i] = edge;
+				for(Conn conn:pin.get_output_connections()){
+					this.edgeSource[edge] = i;
+					this.edgeSink[edge] = this.pinIndex.get(conn.get_sink());
+					//The neighbour delay includes the setup time of the sink
+					this.edgeDelay[edge] = pin.get_neighbours().get(conn.get_sink());
+					this.edgeGlobal[edge] = conn.is_global();
+					edge++;
+				}
+			}
+			this.edgeStart[this.numPins] = edge;
+		}
+		int index(Pin pin){
+			return this.pinIndex.get(pin);
+		}
+	}
+
+	/*
+	 * Dijkstra with a binary heap that is addressed by pin index,
+	 * the position of each pin in the heap is kept for decrease key
+	 */
+	private static class ShortestPaths {
+		private final PinGraph graph;
+		private final int[] delay;
+		private final int[] previousEdge;
+
+		private final int[] heap;
+		private final int[] heapPosition;
+		private int heapSize;
+
+		ShortestPaths(PinGraph graph){
+			this.graph = graph;
+			this.delay = new int[graph.numPins];
+			this.previousEdge = new int[graph.numPins];
+			this.heap = new int[graph.numPins];
+			this.heapPosition = new int[graph.numPins];
+		}
+
+		void run(int[] sources, int[] sourceDelays){
+			Arrays.fill(this.delay, UNREACHABLE);
+			Arrays.fill(this.previousEdge, -1);
+			Arrays.fill(this.heapPosition, -1);
+			this.heapSize = 0;
+
+			for(int i=0;i<sources.length;i++){
+				if(sourceDelays[i] < this.delay[sources[i]]){
+					this.update(sources[i], sourceDelays[i]);
+				}
+			}
+			while(this.heapSize > 0){
+				int u = this.poll();
+				int uDelay = this.delay[u];
+				for(int edge=this.graph.edgeStart[u];edge<this.graph.edgeStart[u+1];edge++){
+					int v = this.graph.edgeSink[edge];
+					int alternateDelay = uDelay + this.graph.edgeDelay[edge];
+					if(alternateDelay < this.delay[v]){
+						this.previousEdge[v] = edge;
+						this.update(v, alternateDelay);
+					}
+				}
+			}
+		}
+		int delay(int pin){
+			return this.delay[pin];
+		}
+		int num_global(int pin){
+			int numGlobal = 0;
+			int edge = this.previousEdge[pin];
+			while(edge >= 0 && numGlobal < 2){
+				if(this.graph.edgeGlobal[edge]){
+					numGlobal++;
+				}
+				edge = this.previousEdge[this.graph.edgeSource[edge]];
+			}
+			return numGlobal;
+		}
+
+		//HEAP
+		private void update(int pin, int newDelay){
+			this.delay[pin] = newDelay;
+			int position = this.heapPosition[pin];
+			if(position < 0){
+				position = this.heapSize++;
+			}
+			this.siftUp(pin, position);
+		}
+		private int poll(){
+			int top = this.heap[0];
+			this.heapPosition[top] = -1;
+			this.heapSize--;
+			if(this.heapSize > 0){
+				this.siftDown(this.heap[this.heapSize], 0);
+			}
+			return top;
+		}
+		private void siftUp(int pin, int position){
+			while(position > 0){
+				int parent = (position - 1) >>> 1;
+				int parentPin = this.heap[parent];
+				if(this.delay[parentPin] <= this.delay[pin]){
+					break;
+				}
+				this.place(parentPin, position);
+				position = parent;
+			}
+			this.place(pin, position);
+		}
+		private void siftDown(int pin, int position){
+			int half = this.heapSize >>> 1;
+			while(position < half){
+				int child = 2 * position + 1;
+				if(child + 1 < this.heapSize && this.delay[this.heap[child + 1]] < this.delay[this.heap[child]]){
+					child++;
+				}
+				if(this.delay[pin] <= this.delay[this.heap[child]]){
+					break;
+				}
+				this.place(this.heap[child], position);
+				position = child;
+			}
+			this.place(pin, position);
+		}
+		private void place(int pin, int position){
+			this.heap[position] = pin;
+			this.heapPosition[pin] = position;
+		}
+	}
+}
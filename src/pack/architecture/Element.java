@@ -201,6 +201,9 @@ public class Element {
 	public Element get_parent(){
 		return this.parent;
 	}
+	public boolean has_property(String property){
+		return this.properties.containsKey(property);
+	}
 	public String get_value(String property){
 		if(this.properties.containsKey(property)){
 			return this.properties.get(property);
@@ -291,6 +294,9 @@ public class Element {
 	public ArrayList<Element> get_children(){
 		return this.children;
 	}
+	public ArrayList<String> get_interconnect_lines(){
+		return this.interconnectLines;
+	}
 	public void remove_child(Element child){
 		if(this.children.contains(child)){
 			this.children.remove(child);
@@ -6,7 +6,7 @@ import java.util.Map;
 
 import pack.util.ErrorLog;
 
-public class Pin implements Comparable<Pin>{
+public class Pin {
 	private String pinType;
 	private String portName;
 	private int pinNum;
@@ -18,9 +18,7 @@ public class Pin implements Comparable<Pin>{
 	
 	private static int nextId = 0;
 	
-	//Dijkstra
-	private int delay = Integer.MAX_VALUE;//ps
-	private Pin previous = null;
+	//Delay to the neighbours
 	private final Map<Pin,Integer> neighbours = new HashMap<>();
 
 	public Pin(String pinType, String portName, int pinNum, Block parentBlock){
@@ -84,19 +82,7 @@ public class Pin implements Comparable<Pin>{
 		return this.outputConnections;
 	}
 	
-	//Dijkstra
-	public void set_delay(int delay){
-		this.delay = delay;
-	}
-	public int get_delay(){
-		return this.delay;
-	}
-	public void set_previous(Pin previous){
-		this.previous = previous;
-	}
-	public Pin get_previous(){
-		return this.previous;
-	}
+	//Delay to the neighbours
 	public void assign_neighbours(){
 		for(Conn conn:this.outputConnections){
 			Pin sink = conn.get_sink();
@@ -118,17 +104,4 @@ public class Pin implements Comparable<Pin>{
 	public Map<Pin, Integer> get_neighbours(){
 		return this.neighbours;
 	}
-	public String printPath(){
-		if(this == this.previous){
-			return this.get_name();
-		}else if(this.previous == null){
-			return this.get_name() + "(unreached)";
-		}else{
-			return this.previous.printPath() + " -> " + this.get_name() + "(" + this.delay + ")";
-		}
-	}
-	@Override
-	public int compareTo(Pin other) {
-		return Integer.compare(this.delay, other.get_delay());
-	}
 }
\ No newline at end of file
@@ -0,0 +1,874 @@
+package pack.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import pack.netlist.B;
+import pack.netlist.N;
+import pack.netlist.P;
+import pack.netlist.T;
+
+/**
+ * Seed based packer that fills the complex blocks of the architecture with
+ * the atoms of one leaf node, without writing the leaf node to a blif file
+ * and running VPR on it.
+ *
+ * A cluster is started with the unpacked atom with the most pins as seed and
+ * grows with the unpacked atoms that have the highest attraction to the
+ * cluster, the sum of the weights of the nets they share with the cluster.
+ * An atom is added to a cluster if there is a free primitive with the same
+ * blif model in a mode that is compatible with the modes already selected in
+ * the cluster, and if all nets of the cluster can be routed on the
+ * interconnect of the selected modes. Nets from outside the cluster enter on
+ * a pin of the complex block, nets with sinks outside the cluster leave on an
+ * output pin of the complex block. The pins used by direct connections
+ * between neighbouring complex blocks (carry chains) are not used.
+ *
+ * Each input and output terminal of the leaf node gets its own io block,
+ * terminals of cut nets have no io block. The result are the logic blocks
+ * of the leaf node, or null if an atom can not be packed. In that case the
+ * leaf node should be packed by VPR.
+ */
+class ClusterPacker {
+	private static final int MAX_ATTRACTION_FANOUT = 64;
+	private static final int MAX_FAILED_CANDIDATES = 8;
+	private static final int MAX_PRIMITIVE_ATTEMPTS = 8;
+
+	private final List<PbGraph> graphs;
+	private final boolean floating;
+
+	//Atoms
+	private String[] atomName;
+	private String[] atomModel;
+	private int[][] atomPins;
+	private boolean[] atomPad;
+	private int[] atomCluster;
+	private int numAtoms;
+
+	//Pins of the atoms
+	private int[] pinAtom;
+	private int[] pinNet;
+	private String[] pinPort;
+	private int[] pinPosition;
+	private boolean[] pinOutput;
+	private int numPins;
+
+	//Nets
+	private String[] netName;
+	private int[] netSource;
+	private int[][] netSinks;
+	private boolean[] netExternalSink;
+	private int[] netWeight;
+
+	private final List<PackedCluster> clusters = new ArrayList<PackedCluster>();
+
+	//Routing
+	private int[] visited, previous, queue;
+	private int visitStamp;
+
+	ClusterPacker(List<PbGraph> graphs, boolean floating){
+		this.graphs = graphs;
+		this.floating = floating;
+	}
+
+	/**
+	 * Packs the atoms, the result are the top level logic blocks or
+	 * null if the atoms can not be packed.
+	 */
+	List<LogicBlock> pack(Collection<B> blocks){
+		if(!this.addAtoms(blocks)){
+			return null;
+		}
+
+		this.atomCluster = new int[this.atomName.length];
+		for(int atom=0; atom<this.atomCluster.length; atom++){
+			this.atomCluster[atom] = -1;
+		}
+		int maxPins = 0;
+		for(PbGraph graph:this.graphs){
+			maxPins = Math.max(maxPins, graph.numPins());
+		}
+		this.visited = new int[maxPins];
+		this.previous = new int[maxPins];
+		this.queue = new int[maxPins];
+
+		for(int seed:this.seedOrder()){
+			if(this.atomCluster[seed] < 0){
+				PackedCluster cluster = this.startCluster(seed);
+				if(cluster == null){
+					return null;
+				}
+				if(!this.atomPad[seed]){
+					this.growCluster(cluster, seed);
+				}
+			}
+		}
+
+		List<LogicBlock> logicBlocks = new ArrayList<LogicBlock>();
+		for(PackedCluster cluster:this.clusters){
+			logicBlocks.add(this.toLogicBlock(cluster, 0, 1));
+		}
+		return logicBlocks;
+	}
+
+	//ATOMS AND NETS
+	private boolean addAtoms(Collection<B> blocks){
+		//Count the atoms, pins and nets to size the columns
+		Map<N,Integer> nets = new LinkedHashMap<N,Integer>();
+		int atoms = blocks.size();
+		int pins = 0;
+		for(B b:blocks){
+			for(String port:this.sorted(b.get_input_ports())){
+				for(P p:b.get_input_pins(port)){
+					this.addNet(p.get_net(), nets);
+					pins += 1;
+				}
+			}
+			for(String port:this.sorted(b.get_output_ports())){
+				for(P p:b.get_output_pins(port)){
+					this.addNet(p.get_net(), nets);
+					pins += 1;
+				}
+			}
+		}
+		for(N n:nets.keySet()){
+			for(P terminalPin:n.get_terminal_pins()){
+				T t = terminalPin.get_terminal();
+				if(t.is_input_type() || t.is_output_type()){
+					atoms += 1;
+					pins += 1;
+				}
+			}
+		}
+
+		this.atomName = new String[atoms];
+		this.atomModel = new String[atoms];
+		this.atomPins = new int[atoms][];
+		this.atomPad = new boolean[atoms];
+
+		this.pinAtom = new int[pins];
+		this.pinNet = new int[pins];
+		this.pinPort = new String[pins];
+		this.pinPosition = new int[pins];
+		this.pinOutput = new boolean[pins];
+
+		this.netName = new String[nets.size()];
+		this.netSource = new int[nets.size()];
+		this.netExternalSink = new boolean[nets.size()];
+		this.netWeight = new int[nets.size()];
+		for(Map.Entry<N,Integer> entry:nets.entrySet()){
+			this.netName[entry.getValue()] = entry.getKey().get_name();
+		}
+		Arrays.fill(this.netSource, -1);
+		Arrays.fill(this.netWeight, 1);
+
+		for(B b:blocks){
+			int atom = this.addAtom(b.get_name(), b.get_type(), false);
+			int firstPin = this.numPins;
+			for(String port:this.sorted(b.get_input_ports())){
+				ArrayList<P> portPins = b.get_input_pins(port);
+				for(int i=0; i<portPins.size(); i++){
+					P p = portPins.get(i);
+					int net = nets.get(p.get_net());
+					this.addPin(atom, net, port, i, false);
+					this.netWeight[net] = Math.max(this.netWeight[net], p.get_net_weight());
+				}
+			}
+			for(String port:this.sorted(b.get_output_ports())){
+				ArrayList<P> portPins = b.get_output_pins(port);
+				for(int i=0; i<portPins.size(); i++){
+					int net = nets.get(portPins.get(i).get_net());
+					if(this.netSource[net] >= 0){
+						return false;
+					}
+					this.addPin(atom, net, port, i, true);
+				}
+			}
+			this.atomPins[atom] = new int[this.numPins - firstPin];
+			for(int i=0; i<this.atomPins[atom].length; i++){
+				this.atomPins[atom][i] = firstPin + i;
+			}
+		}
+
+		//Io blocks for the terminals, cut terminals are connections with other leaf nodes
+		for(N n:nets.keySet()){
+			int net = nets.get(n);
+			for(P terminalPin:n.get_terminal_pins()){
+				T t = terminalPin.get_terminal();
+				if(t.is_input_type()){
+					if(!t.get_name().equals(n.get_name()) || this.netSource[net] >= 0){
+						return false;
+					}
+					int pad = this.addAtom(t.get_name(), ".input", true);
+					this.atomPins[pad] = new int[]{this.addPin(pad, net, "inpad", 0, true)};
+				}else if(t.is_output_type()){
+					if(!t.get_name().equals(n.get_name())){
+						return false;
+					}
+					int pad = this.addAtom("out:" + t.get_name(), ".output", true);
+					this.atomPins[pad] = new int[]{this.addPin(pad, net, "outpad", 0, false)};
+				}else if(t.is_cut_type()){
+					this.netExternalSink[net] = true;
+				}
+			}
+		}
+
+		this.addNetSinks();
+		return true;
+	}
+	private int addAtom(String name, String model, boolean pad){
+		int atom = this.numAtoms++;
+		this.atomName[atom] = name;
+		this.atomModel[atom] = model;
+		this.atomPad[atom] = pad;
+		return atom;
+	}
+	private int addPin(int atom, int net, String port, int position, boolean output){
+		int pin = this.numPins++;
+		this.pinAtom[pin] = atom;
+		this.pinNet[pin] = net;
+		this.pinPort[pin] = port;
+		this.pinPosition[pin] = position;
+		this.pinOutput[pin] = output;
+		if(output){
+			this.netSource[net] = pin;
+		}
+		return pin;
+	}
+	//The sink pins of each net in ascending order
+	private void addNetSinks(){
+		int[] numSinks = new int[this.netName.length];
+		for(int pin=0; pin<this.numPins; pin++){
+			if(!this.pinOutput[pin]){
+				numSinks[this.pinNet[pin]] += 1;
+			}
+		}
+		this.netSinks = new int[this.netName.length][];
+		for(int net=0; net<this.netSinks.length; net++){
+			this.netSinks[net] = new int[numSinks[net]];
+			numSinks[net] = 0;
+		}
+		for(int pin=0; pin<this.numPins; pin++){
+			if(!this.pinOutput[pin]){
+				int net = this.pinNet[pin];
+				this.netSinks[net][numSinks[net]++] = pin;
+			}
+		}
+	}
+	private void addNet(N n, Map<N,Integer> nets){
+		if(!nets.containsKey(n)){
+			nets.put(n, nets.size());
+		}
+	}
+	private List<String> sorted(Set<String> ports){
+		List<String> result = new ArrayList<String>(ports);
+		Collections.sort(result);
+		return result;
+	}
+	private int numNetPins(int net){
+		return this.netSinks[net].length + (this.netSource[net] >= 0 ? 1 : 0);
+	}
+
+	//CLUSTERING
+	private List<Integer> seedOrder(){
+		List<Integer> pads = new ArrayList<Integer>();
+		List<Integer> atoms = new ArrayList<Integer>();
+		for(int atom=0; atom<this.atomName.length; atom++){
+			if(this.atomPad[atom]){
+				pads.add(atom);
+			}else{
+				atoms.add(atom);
+			}
+		}
+		Collections.sort(atoms, new Comparator<Integer>(){
+			public int compare(Integer a1, Integer a2){
+				return Integer.compare(ClusterPacker.this.atomPins[a2].length, ClusterPacker.this.atomPins[a1].length);
+			}
+		});
+		pads.addAll(atoms);
+		return pads;
+	}
+	private PackedCluster startCluster(int seed){
+		for(PbGraph graph:this.graphs){
+			if(graph.hasPrimitives(this.atomModel[seed])){
+				PackedCluster cluster = new PackedCluster(graph, this.clusters.size());
+				if(this.tryAdd(cluster, seed)){
+					this.clusters.add(cluster);
+					return cluster;
+				}
+			}
+		}
+		return null;
+	}
+	private void growCluster(PackedCluster cluster, int seed){
+		Map<Integer,Integer> attraction = new HashMap<Integer,Integer>();
+		Set<Integer> tried = new HashSet<Integer>();
+		this.addAttraction(seed, attraction, tried);
+
+		int failures = 0;
+		while(failures < MAX_FAILED_CANDIDATES && !attraction.isEmpty()){
+			int candidate = -1;
+			int maxAttraction = -1;
+			for(Map.Entry<Integer,Integer> entry:attraction.entrySet()){
+				int atom = entry.getKey();
+				if(entry.getValue() > maxAttraction || (entry.getValue() == maxAttraction && atom < candidate)){
+					candidate = atom;
+					maxAttraction = entry.getValue();
+				}
+			}
+			attraction.remove(candidate);
+			tried.add(candidate);
+
+			if(this.atomCluster[candidate] < 0 && this.tryAdd(cluster, candidate)){
+				this.addAttraction(candidate, attraction, tried);
+				failures = 0;
+			}else{
+				failures += 1;
+			}
+		}
+	}
+	private void addAttraction(int atom, Map<Integer,Integer> attraction, Set<Integer> tried){
+		for(int pin:this.atomPins[atom]){
+			int net = this.pinNet[pin];
+			if(this.numNetPins(net) > MAX_ATTRACTION_FANOUT){
+				continue;
+			}
+			if(this.netSource[net] >= 0){
+				this.addAttraction(this.netSource[net], this.netWeight[net], attraction, tried);
+			}
+			for(int sink:this.netSinks[net]){
+				this.addAttraction(sink, this.netWeight[net], attraction, tried);
+			}
+		}
+	}
+	private void addAttraction(int netPin, int weight, Map<Integer,Integer> attraction, Set<Integer> tried){
+		int other = this.pinAtom[netPin];
+		if(this.atomCluster[other] < 0 && !this.atomPad[other] && !tried.contains(other)){
+			Integer value = attraction.get(other);
+			attraction.put(other, (value == null ? 0 : value) + weight);
+		}
+	}
+
+	/**
+	 * Adds the atom to a free compatible primitive of the cluster. The
+	 * cluster is only changed if the atom and all nets can be routed.
+	 */
+	private boolean tryAdd(PackedCluster cluster, int atom){
+		PbGraph graph = cluster.graph;
+		int[] primitives = graph.getPrimitives(this.atomModel[atom]);
+		if(primitives == null){
+			return false;
+		}
+
+		//Prefer primitives close to the atoms that are already in the cluster
+		List<Integer> candidates = new ArrayList<Integer>();
+		final Map<Integer,Integer> distance = new HashMap<Integer,Integer>();
+		for(int node:primitives){
+			if(cluster.compatible(node) && this.bindPins(graph, node, atom) != null){
+				candidates.add(node);
+				distance.put(node, cluster.distanceToUsedNode(node));
+			}
+		}
+		Collections.sort(candidates, new Comparator<Integer>(){
+			public int compare(Integer n1, Integer n2){
+				return Integer.compare(distance.get(n1), distance.get(n2));
+			}
+		});
+
+		this.atomCluster[atom] = cluster.id;
+		for(int attempt=0; attempt<candidates.size() && attempt<MAX_PRIMITIVE_ATTEMPTS; attempt++){
+			int node = candidates.get(attempt);
+			PackedCluster trial = cluster.copy();
+			trial.place(node, atom, this.bindPins(graph, node, atom));
+
+			boolean routed = this.routeNets(trial, this.atomNets(atom), false);
+			if(!routed && attempt == 0){
+				routed = this.routeNets(trial, trial.nets(), true);
+			}
+			if(routed){
+				cluster.copyFrom(trial);
+				return true;
+			}
+		}
+		this.atomCluster[atom] = -1;
+		return false;
+	}
+
+	/**
+	 * Returns the pin of the primitive for each pin of the atom, the input
+	 * pins of a lut are equivalent and are chosen during routing (-1).
+	 * Returns null if the atom does not fit on the primitive.
+	 */
+	private int[] bindPins(PbGraph graph, int node, int atom){
+		int[] atomPins = this.atomPins[atom];
+		int[] binding = new int[atomPins.length];
+		for(int i=0; i<atomPins.length; i++){
+			int pin = atomPins[i];
+			boolean output = this.pinOutput[pin];
+			int[] portPins = this.findPort(graph, node, this.pinPort[pin], output);
+			if(portPins == null || this.pinPosition[pin] >= portPins.length){
+				return null;
+			}
+			if(!output && graph.isLut(node)){
+				binding[i] = -1;
+			}else{
+				binding[i] = portPins[this.pinPosition[pin]];
+			}
+		}
+		return binding;
+	}
+	//The port with the same name, otherwise the only port of that type (.names, .latch and the io pads)
+	private int[] findPort(PbGraph graph, int node, String port, boolean output){
+		Map<String,int[]> ports = graph.getPorts(node);
+		if(ports.containsKey(port)){
+			int[] pins = ports.get(port);
+			boolean outputPort = graph.getPinType(pins[0]) == PbGraph.OUTPUT;
+			return outputPort == output ? pins : null;
+		}
+		int type = output ? PbGraph.OUTPUT : (port.equals("clk") ? PbGraph.CLOCK : PbGraph.INPUT);
+		int[] result = null;
+		for(int[] pins:ports.values()){
+			if(pins.length > 0 && graph.getPinType(pins[0]) == type){
+				if(result != null){
+					return null;
+				}
+				result = pins;
+			}
+		}
+		return result;
+	}
+	private List<Integer> atomNets(int atom){
+		Set<Integer> nets = new HashSet<Integer>();
+		for(int pin:this.atomPins[atom]){
+			nets.add(this.pinNet[pin]);
+		}
+		return new ArrayList<Integer>(nets);
+	}
+
+	//ROUTING
+	private boolean routeNets(PackedCluster cluster, List<Integer> nets, boolean all){
+		if(all){
+			cluster.ripUpAll();
+		}else{
+			for(int net:nets){
+				cluster.ripUp(net);
+			}
+		}
+
+		//Nets with more sinks in the cluster first
+		final Map<Integer,Integer> numSinks = new HashMap<Integer,Integer>();
+		for(int net:nets){
+			int sinks = 0;
+			for(int sink:this.netSinks[net]){
+				if(this.atomCluster[this.pinAtom[sink]] == cluster.id){
+					sinks += 1;
+				}
+			}
+			numSinks.put(net, sinks);
+		}
+		List<Integer> order = new ArrayList<Integer>(nets);
+		Collections.sort(order, new Comparator<Integer>(){
+			public int compare(Integer n1, Integer n2){
+				int compare = Integer.compare(numSinks.get(n2), numSinks.get(n1));
+				return compare != 0 ? compare : Integer.compare(n1, n2);
+			}
+		});
+
+		for(int net:order){
+			if(!this.routeNet(cluster, net)){
+				return false;
+			}
+		}
+		return true;
+	}
+	private boolean routeNet(PackedCluster cluster, int net){
+		PbGraph graph = cluster.graph;
+		List<Integer> tree = new ArrayList<Integer>();
+
+		int source = this.netSource[net];
+		boolean internalSource = source >= 0 && this.atomCluster[this.pinAtom[source]] == cluster.id;
+		if(internalSource){
+			int sourcePin = cluster.getBoundPin(this.pinAtom[source], source);
+			cluster.pinNet[sourcePin] = net;
+			cluster.pinDriver[sourcePin] = -1;
+			tree.add(sourcePin);
+		}
+
+		boolean needsExit = false;
+		if(internalSource && this.netExternalSink[net]){
+			needsExit = true;
+		}
+		for(int sink:this.netSinks[net]){
+			int sinkAtom = this.pinAtom[sink];
+			if(this.atomCluster[sinkAtom] != cluster.id){
+				if(internalSource){
+					needsExit = true;
+				}
+				continue;
+			}
+
+			//The target pins of the sink
+			int boundPin = cluster.getBoundPin(sinkAtom, sink);
+			int[] targets;
+			if(boundPin >= 0){
+				targets = new int[]{boundPin};
+			}else{
+				targets = graph.getPorts(cluster.getNode(sinkAtom)).get(this.findPortName(graph, cluster.getNode(sinkAtom), sink));
+			}
+			if(!this.connect(cluster, net, tree, targets, !internalSource)){
+				return false;
+			}
+		}
+
+		if(needsExit){
+			for(int pin:tree){
+				if(graph.isExitPin(pin)){
+					return true;
+				}
+			}
+			if(!this.connect(cluster, net, tree, null, false)){
+				return false;
+			}
+		}
+		return true;
+	}
+	private String findPortName(PbGraph graph, int node, int atomPin){
+		int[] pins = this.findPort(graph, node, this.pinPort[atomPin], this.pinOutput[atomPin]);
+		return graph.getPinPort(pins[0]);
+	}
+
+	/**
+	 * Breadth first search from the route tree of the net to a free target
+	 * pin, or to a free exit pin of the complex block if targets is null.
+	 * A net without a source in the cluster enters on a free entry pin of
+	 * the complex block, each net enters the cluster only once.
+	 */
+	private boolean connect(PackedCluster cluster, int net, List<Integer> tree, int[] targets, boolean externalSource){
+		PbGraph graph = cluster.graph;
+		this.visitStamp += 1;
+		int stamp = this.visitStamp;
+		int head = 0, tail = 0;
+
+		Set<Integer> targetSet = new HashSet<Integer>();
+		if(targets != null){
+			for(int target:targets){
+				if(cluster.pinNet[target] < 0){
+					targetSet.add(target);
+				}
+			}
+			if(targetSet.isEmpty()){
+				return false;
+			}
+		}
+
+		boolean entered = false;
+		for(int pin:tree){
+			this.visited[pin] = stamp;
+			this.previous[pin] = -1;
+			this.queue[tail++] = pin;
+			if(graph.isEntryPin(pin)){
+				entered = true;
+			}
+		}
+		if(externalSource && !entered){
+			for(int pin=0; pin<graph.numPins(); pin++){
+				if(graph.isEntryPin(pin) && cluster.pinNet[pin] < 0){
+					this.visited[pin] = stamp;
+					this.previous[pin] = -2;
+					this.queue[tail++] = pin;
+				}
+			}
+		}
+
+		int found = -1;
+		while(head < tail && found < 0){
+			int pin = this.queue[head++];
+			if(this.previous[pin] != -1 && (targets == null ? graph.isExitPin(pin) : targetSet.contains(pin))){
+				found = pin;
+				break;
+			}
+			for(int i=graph.outStart(pin); i<graph.outEnd(pin); i++){
+				int edge = graph.outEdge(i);
+				int sink = graph.getSink(edge);
+				if(this.visited[sink] == stamp || cluster.pinNet[sink] >= 0){
+					continue;
+				}
+				if(cluster.nodeMode[graph.getOwner(edge)] != graph.getMode(edge)){
+					continue;
+				}
+				this.visited[sink] = stamp;
+				this.previous[sink] = edge;
+				this.queue[tail++] = sink;
+			}
+		}
+		if(found < 0){
+			return false;
+		}
+
+		int pin = found;
+		while(this.previous[pin] != -1){
+			int edge = this.previous[pin];
+			cluster.pinNet[pin] = net;
+			tree.add(pin);
+			if(edge == -2){
+				cluster.pinDriver[pin] = -1;
+				break;
+			}
+			cluster.pinDriver[pin] = edge;
+			pin = graph.getSource(edge);
+		}
+		return true;
+	}
+
+	//LOGIC BLOCKS
+	private LogicBlock toLogicBlock(PackedCluster cluster, int node, int level){
+		PbGraph graph = cluster.graph;
+		String type = graph.getTypeName(node);
+		int index = graph.getIndex(node);
+		if(cluster.nodeCount[node] == 0){
+			return new LogicBlock(null, type, index, null, level, this.floating);
+		}
+
+		String name = cluster.nodeName[node];
+		if(cluster.nodeAtom[node] >= 0){
+			if(graph.isLut(node)){
+				return this.toLutBlock(cluster, node, level);
+			}
+			LogicBlock primitive = new LogicBlock(name, type, index, null, level, this.floating);
+			for(Map.Entry<String,int[]> port:graph.getPorts(node).entrySet()){
+				int[] pins = port.getValue();
+				String[] connections = new String[pins.length];
+				for(int p=0; p<pins.length; p++){
+					if(graph.getPinType(pins[p]) == PbGraph.OUTPUT){
+						connections[p] = this.netString(cluster, pins[p]);
+					}else{
+						connections[p] = this.pinString(cluster, pins[p]);
+					}
+				}
+				this.addPort(primitive, graph.getPinType(pins[0]), port.getKey(), connections);
+			}
+			return primitive;
+		}
+
+		LogicBlock block = new LogicBlock(name, type, index, graph.getModeName(node, cluster.nodeMode[node]), level, this.floating);
+		for(Map.Entry<String,int[]> port:graph.getPorts(node).entrySet()){
+			int[] pins = port.getValue();
+			String[] connections = new String[pins.length];
+			for(int p=0; p<pins.length; p++){
+				if(node == 0 && graph.getPinType(pins[p]) != PbGraph.OUTPUT){
+					connections[p] = this.netString(cluster, pins[p]);
+				}else{
+					connections[p] = this.pinString(cluster, pins[p]);
+				}
+			}
+			this.addPort(block, graph.getPinType(pins[0]), port.getKey(), connections);
+		}
+		for(int child:graph.getChildren(node, cluster.nodeMode[node])){
+			block.addChildBlock(this.toLogicBlock(cluster, child, level + 1));
+		}
+		return block;
+	}
+
+	/**
+	 * A block of class lut has an implicit mode with the name of the block,
+	 * with one child "lut" that has the same ports.
+	 */
+	private LogicBlock toLutBlock(PackedCluster cluster, int node, int level){
+		PbGraph graph = cluster.graph;
+		String type = graph.getTypeName(node);
+		String name = cluster.nodeName[node];
+
+		LogicBlock block = new LogicBlock(name, type, graph.getIndex(node), type, level, this.floating);
+		LogicBlock lut = new LogicBlock(name, "lut", 0, null, level + 1, this.floating);
+		for(Map.Entry<String,int[]> port:graph.getPorts(node).entrySet()){
+			int[] pins = port.getValue();
+			String[] blockConnections = new String[pins.length];
+			String[] lutConnections = new String[pins.length];
+			for(int p=0; p<pins.length; p++){
+				boolean used = cluster.pinNet[pins[p]] >= 0;
+				if(graph.getPinType(pins[p]) == PbGraph.OUTPUT){
+					blockConnections[p] = used ? "lut[0]." + port.getKey() + "[" + p + "]->direct:" + type : "open";
+					lutConnections[p] = this.netString(cluster, pins[p]);
+				}else{
+					blockConnections[p] = this.pinString(cluster, pins[p]);
+					lutConnections[p] = used ? type + "." + port.getKey() + "[" + p + "]->complete:" + type : "open";
+				}
+			}
+			this.addPort(block, graph.getPinType(pins[0]), port.getKey(), blockConnections);
+			this.addPort(lut, graph.getPinType(pins[0]), port.getKey(), lutConnections);
+		}
+		block.addChildBlock(lut);
+		return block;
+	}
+	private void addPort(LogicBlock block, int pinType, String port, String[] connections){
+		if(pinType == PbGraph.INPUT){
+			block.addInput(port, connections);
+		}else if(pinType == PbGraph.OUTPUT){
+			block.addOutput(port, connections);
+		}else{
+			block.addClock(port, connections);
+		}
+	}
+	private String netString(PackedCluster cluster, int pin){
+		int net = cluster.pinNet[pin];
+		return net >= 0 ? this.netName[net] : "open";
+	}
+	//The source pin of the connection that drives the pin, "block[index].port[pin]->interconnect"
+	private String pinString(PackedCluster cluster, int pin){
+		int edge = cluster.pinDriver[pin];
+		if(edge < 0){
+			return "open";
+		}
+		PbGraph graph = cluster.graph;
+		int source = graph.getSource(edge);
+		int sourceNode = graph.getPinNode(source);
+		String block;
+		if(sourceNode == graph.getOwner(edge)){
+			block = graph.getTypeName(sourceNode);
+		}else{
+			block = graph.getTypeName(sourceNode) + "[" + graph.getIndex(sourceNode) + "]";
+		}
+		return block + "." + graph.getPinPort(source) + "[" + graph.getPinNum(source) + "]->" + graph.getEdgeName(edge);
+	}
+
+	/**
+	 * The atoms, the selected modes and the routing of one complex block
+	 */
+	private class PackedCluster {
+		private final PbGraph graph;
+		private final int id;
+
+		private int[] nodeAtom;
+		private int[] nodeCount;
+		private int[] nodeMode;
+		private String[] nodeName;
+		private int[] pinNet;
+		private int[] pinDriver;
+		private Map<Integer,Integer> atomNode;
+		private Map<Integer,int[]> atomBinding;
+
+		PackedCluster(PbGraph graph, int id){
+			this.graph = graph;
+			this.id = id;
+
+			this.nodeAtom = new int[graph.numNodes()];
+			this.nodeCount = new int[graph.numNodes()];
+			this.nodeMode = new int[graph.numNodes()];
+			this.nodeName = new String[graph.numNodes()];
+			for(int node=0; node<graph.numNodes(); node++){
+				this.nodeAtom[node] = -1;
+				this.nodeMode[node] = -1;
+			}
+			this.pinNet = new int[graph.numPins()];
+			this.pinDriver = new int[graph.numPins()];
+			this.ripUpAll();
+			this.atomNode = new LinkedHashMap<Integer,Integer>();
+			this.atomBinding = new HashMap<Integer,int[]>();
+		}
+		PackedCluster copy(){
+			PackedCluster copy = new PackedCluster(this.graph, this.id);
+			copy.copyFrom(this);
+			return copy;
+		}
+		void copyFrom(PackedCluster other){
+			this.nodeAtom = other.nodeAtom.clone();
+			this.nodeCount = other.nodeCount.clone();
+			this.nodeMode = other.nodeMode.clone();
+			this.nodeName = other.nodeName.clone();
+			this.pinNet = other.pinNet.clone();
+			this.pinDriver = other.pinDriver.clone();
+			this.atomNode = new LinkedHashMap<Integer,Integer>(other.atomNode);
+			this.atomBinding = new HashMap<Integer,int[]>(other.atomBinding);
+		}
+
+		//A primitive is compatible if it is free and if the modes of its parents are not set to another mode
+		boolean compatible(int node){
+			if(this.nodeAtom[node] >= 0){
+				return false;
+			}
+			int child = node;
+			int parent = this.graph.getParent(child);
+			while(parent >= 0){
+				if(this.nodeMode[parent] >= 0 && this.nodeMode[parent] != this.graph.getParentMode(child)){
+					return false;
+				}
+				child = parent;
+				parent = this.graph.getParent(child);
+			}
+			return true;
+		}
+		int distanceToUsedNode(int node){
+			int distance = 0;
+			int parent = this.graph.getParent(node);
+			while(parent >= 0 && this.nodeCount[parent] == 0){
+				distance += 1;
+				parent = this.graph.getParent(parent);
+			}
+			return distance;
+		}
+		void place(int node, int atom, int[] binding){
+			String name = ClusterPacker.this.atomName[atom];
+			this.nodeAtom[node] = atom;
+			this.nodeCount[node] += 1;
+			this.nodeName[node] = name;
+			int child = node;
+			int parent = this.graph.getParent(child);
+			while(parent >= 0){
+				this.nodeMode[parent] = this.graph.getParentMode(child);
+				if(this.nodeCount[parent] == 0){
+					this.nodeName[parent] = name;
+				}
+				this.nodeCount[parent] += 1;
+				child = parent;
+				parent = this.graph.getParent(child);
+			}
+			this.atomNode.put(atom, node);
+			this.atomBinding.put(atom, binding);
+		}
+		int getNode(int atom){
+			return this.atomNode.get(atom);
+		}
+		int getBoundPin(int atom, int atomPin){
+			int[] atomPins = ClusterPacker.this.atomPins[atom];
+			int[] binding = this.atomBinding.get(atom);
+			for(int i=0; i<atomPins.length; i++){
+				if(atomPins[i] == atomPin){
+					return binding[i];
+				}
+			}
+			return -1;
+		}
+		List<Integer> nets(){
+			Set<Integer> nets = new HashSet<Integer>();
+			for(int atom:this.atomNode.keySet()){
+				for(int pin:ClusterPacker.this.atomPins[atom]){
+					nets.add(ClusterPacker.this.pinNet[pin]);
+				}
+			}
+			return new ArrayList<Integer>(nets);
+		}
+		void ripUp(int net){
+			for(int pin=0; pin<this.pinNet.length; pin++){
+				if(this.pinNet[pin] == net){
+					this.pinNet[pin] = -1;
+					this.pinDriver[pin] = -1;
+				}
+			}
+		}
+		void ripUpAll(){
+			for(int pin=0; pin<this.pinNet.length; pin++){
+				this.pinNet[pin] = -1;
+				this.pinDriver[pin] = -1;
+			}
+		}
+	}
+}
@@ -0,0 +1,492 @@
+package pack.cluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import pack.architecture.Architecture;
+import pack.architecture.Block;
+import pack.architecture.Element;
+import pack.architecture.Line;
+import pack.architecture.Port;
+
+/**
+ * Instance level graph of one complex block type of the architecture. The
+ * architecture model has one element per pb_type, this graph has a node for
+ * each instance of a pb_type (num_pb) and a pin for each pin of each node.
+ * The edges are the connections of the interconnect lines of the modes, each
+ * edge is only usable when its mode is selected on the node that owns it.
+ *
+ * The graph is built once per architecture and is read only during packing,
+ * so it can be shared by the packers of all leaf nodes.
+ */
+class PbGraph {
+	static final int INPUT = 0;
+	static final int OUTPUT = 1;
+	static final int CLOCK = 2;
+
+	private final String name;
+
+	//Nodes
+	private final List<Block> nodeType = new ArrayList<Block>();
+	private final List<Integer> nodeParent = new ArrayList<Integer>();
+	private final List<Integer> nodeIndex = new ArrayList<Integer>();
+	private final List<Integer> nodeParentMode = new ArrayList<Integer>();
+	private final List<String[]> nodeModes = new ArrayList<String[]>();
+	private final List<int[][]> nodeChildren = new ArrayList<int[][]>();
+	private final List<Map<String,int[]>> nodePorts = new ArrayList<Map<String,int[]>>();
+	private final Map<String,List<Integer>> primitives = new HashMap<String,List<Integer>>();
+	private final Set<Integer> lutPrimitives = new HashSet<Integer>();
+
+	//Pins
+	private final List<Integer> pinNode = new ArrayList<Integer>();
+	private final List<String> pinPort = new ArrayList<String>();
+	private final List<Integer> pinNum = new ArrayList<Integer>();
+	private final List<Integer> pinType = new ArrayList<Integer>();
+
+	//Edges
+	private final List<Integer> edgeSource = new ArrayList<Integer>();
+	private final List<Integer> edgeSink = new ArrayList<Integer>();
+	private final List<Integer> edgeNode = new ArrayList<Integer>();
+	private final List<Integer> edgeMode = new ArrayList<Integer>();
+	private final List<String> edgeName = new ArrayList<String>();
+	private final Set<Long> edgeSet = new HashSet<Long>();
+
+	//Compact versions of the graph, used during packing
+	private int[] parents, indexes, parentModes;
+	private boolean[] luts;
+	private Map<String,int[]> primitiveNodes;
+	private int[] pinNodes, pinNums, pinTypes;
+	private int[] outStart, outEdges;
+	private int[] sources, sinks, owners, modes;
+	private boolean[] entryPin, exitPin;
+
+	private PbGraph(Block complexBlock, Set<String> directPins){
+		this.name = complexBlock.get_name();
+		this.addNode(complexBlock, -1, -1, 0);
+		this.compact(directPins);
+	}
+
+	/**
+	 * Builds the graphs of all complex block types, the smallest type first.
+	 */
+	static List<PbGraph> build(Architecture architecture){
+		Set<String> directPins = architecture.get_direct_pins();
+		List<PbGraph> graphs = new ArrayList<PbGraph>();
+		for(Block complexBlock:architecture.get_complex_block_types()){
+			graphs.add(new PbGraph(complexBlock, directPins));
+		}
+		Collections.sort(graphs, new Comparator<PbGraph>(){
+			public int compare(PbGraph g1, PbGraph g2){
+				return Integer.compare(g1.numPins(), g2.numPins());
+			}
+		});
+		return graphs;
+	}
+
+	private int addNode(Block block, int parent, int parentMode, int index){
+		int node = this.nodeType.size();
+		this.nodeType.add(block);
+		this.nodeParent.add(parent);
+		this.nodeIndex.add(index);
+		this.nodeParentMode.add(parentMode);
+
+		Map<String,int[]> ports = new HashMap<String,int[]>();
+		this.addPorts(node, block.get_input_ports(), INPUT, ports);
+		this.addPorts(node, block.get_output_ports(), OUTPUT, ports);
+		if(block.has_clock()){
+			List<Port> clockPorts = new ArrayList<Port>();
+			clockPorts.add(block.get_clock_port());
+			this.addPorts(node, clockPorts, CLOCK, ports);
+		}
+		this.nodePorts.add(ports);
+
+		//Blocks with children in a mode
+		List<Element> modeElements = new ArrayList<Element>();
+		for(Element child:block.get_children()){
+			if(child.get_type().equals("mode")){
+				modeElements.add(child);
+			}
+		}
+		//Blocks with children without a mode have one implicit mode with the name of the block
+		if(modeElements.isEmpty() && block.has_children()){
+			modeElements.add(block);
+		}
+
+		String[] modeNames = new String[modeElements.size()];
+		int[][] children = new int[modeElements.size()][];
+		this.nodeModes.add(modeNames);
+		this.nodeChildren.add(children);
+
+		//Primitives, blocks of class memory have implicit memory slices and are not supported
+		if(modeElements.isEmpty()){
+			if(block.has_blif_model() && parent >= 0 && !this.hasClass(block, "memory")){
+				String model = block.get_blif_model();
+				if(!this.primitives.containsKey(model)){
+					this.primitives.put(model, new ArrayList<Integer>());
+				}
+				this.primitives.get(model).add(node);
+				if(this.hasClass(block, "lut")){
+					this.lutPrimitives.add(node);
+				}
+			}
+			return node;
+		}
+
+		for(int mode=0; mode<modeElements.size(); mode++){
+			Element modeElement = modeElements.get(mode);
+			modeNames[mode] = modeElement.get_name();
+
+			Map<String,List<Integer>> childInstances = new HashMap<String,List<Integer>>();
+			List<Integer> modeChildren = new ArrayList<Integer>();
+			for(Element child:modeElement.get_children()){
+				if(child.get_type().equals("pb_type")){
+					List<Integer> instances = new ArrayList<Integer>();
+					for(int i=0; i<this.numPb(child); i++){
+						int childNode = this.addNode((Block)child, node, mode, i);
+						instances.add(childNode);
+						modeChildren.add(childNode);
+					}
+					childInstances.put(child.get_name(), instances);
+				}
+			}
+			children[mode] = new int[modeChildren.size()];
+			for(int i=0; i<modeChildren.size(); i++){
+				children[mode][i] = modeChildren.get(i);
+			}
+
+			for(String line:modeElement.get_interconnect_lines()){
+				this.addInterconnect(line, node, mode, childInstances);
+			}
+		}
+		return node;
+	}
+	private void addPorts(int node, Collection<Port> ports, int type, Map<String,int[]> result){
+		for(Port port:ports){
+			int[] pins = new int[port.get_num_pins()];
+			for(int p=0; p<pins.length; p++){
+				pins[p] = this.pinNode.size();
+				this.pinNode.add(node);
+				this.pinPort.add(port.get_name());
+				this.pinNum.add(p);
+				this.pinType.add(type);
+			}
+			result.put(port.get_name(), pins);
+		}
+	}
+	private boolean hasClass(Element block, String blockClass){
+		return block.has_property("class") && block.get_value("class").equals(blockClass);
+	}
+	private int numPb(Element block){
+		if(block.has_property("num_pb")){
+			return Integer.parseInt(block.get_value("num_pb"));
+		}else{
+			return 1;
+		}
+	}
+
+	//INTERCONNECT
+	private void addInterconnect(String interconnectLine, int node, int mode, Map<String,List<Integer>> childInstances){
+		String line = interconnectLine.trim();
+		boolean complete = line.startsWith("<complete");
+		boolean direct = line.startsWith("<direct");
+		boolean mux = line.startsWith("<mux");
+		if(!complete && !direct && !mux){
+			return;
+		}
+
+		Line l = new Line(line);
+		if(!l.has_property("name") || !l.has_property("input") || !l.has_property("output")){
+			return;
+		}
+		String name = l.get_value("name");
+		List<List<Integer>> inputs = new ArrayList<List<Integer>>();
+		for(String input:l.get_value("input").split(" ")){
+			if(!input.isEmpty()){
+				inputs.add(this.getPins(input, node, childInstances));
+			}
+		}
+		List<Integer> outputs = new ArrayList<Integer>();
+		for(String output:l.get_value("output").split(" ")){
+			if(!output.isEmpty()){
+				outputs.addAll(this.getPins(output, node, childInstances));
+			}
+		}
+
+		if(complete){
+			for(List<Integer> input:inputs){
+				for(int source:input){
+					for(int sink:outputs){
+						this.addEdge(source, sink, node, mode, name);
+					}
+				}
+			}
+		}else if(direct){
+			List<Integer> sources = new ArrayList<Integer>();
+			for(List<Integer> input:inputs){
+				sources.addAll(input);
+			}
+			if(sources.size() == outputs.size()){
+				for(int i=0; i<sources.size(); i++){
+					this.addEdge(sources.get(i), outputs.get(i), node, mode, name);
+				}
+			}
+		}else if(mux){
+			for(List<Integer> input:inputs){
+				if(input.size() == outputs.size()){
+					for(int i=0; i<input.size(); i++){
+						this.addEdge(input.get(i), outputs.get(i), node, mode, name);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the pins of a port string of an interconnect line, for example
+	 * "ble[9:0].out", "clb.I[3]" or "lut.in". The instances and the pins are
+	 * in ascending order. Unknown blocks and ports result in an empty list.
+	 */
+	private List<Integer> getPins(String portString, int node, Map<String,List<Integer>> childInstances){
+		List<Integer> pins = new ArrayList<Integer>();
+		int dot = portString.indexOf(".");
+		if(dot < 0){
+			return pins;
+		}
+		String blockString = portString.substring(0, dot);
+		String pinString = portString.substring(dot + 1);
+
+		String blockName = this.stripRange(blockString);
+		List<Integer> instances = new ArrayList<Integer>();
+		if(blockName.equals(this.nodeType.get(node).get_name())){
+			instances.add(node);
+		}else if(childInstances.containsKey(blockName)){
+			List<Integer> all = childInstances.get(blockName);
+			int[] range = this.getRange(blockString, all.size());
+			for(int i=range[0]; i<=range[1] && i<all.size(); i++){
+				instances.add(all.get(i));
+			}
+		}
+
+		String portName = this.stripRange(pinString);
+		for(int instance:instances){
+			int[] portPins = this.nodePorts.get(instance).get(portName);
+			if(portPins != null){
+				int[] range = this.getRange(pinString, portPins.length);
+				for(int p=range[0]; p<=range[1] && p<portPins.length; p++){
+					pins.add(portPins[p]);
+				}
+			}
+		}
+		return pins;
+	}
+	private String stripRange(String string){
+		if(string.contains("[")){
+			return string.substring(0, string.indexOf("["));
+		}else{
+			return string;
+		}
+	}
+	private int[] getRange(String string, int size){
+		if(!string.contains("[")){
+			return new int[]{0, size - 1};
+		}
+		String range = string.substring(string.indexOf("[") + 1, string.indexOf("]"));
+		if(range.contains(":")){
+			int start = Integer.parseInt(range.substring(0, range.indexOf(":")));
+			int end = Integer.parseInt(range.substring(range.indexOf(":") + 1));
+			return new int[]{Math.min(start, end), Math.max(start, end)};
+		}else{
+			int pin = Integer.parseInt(range);
+			return new int[]{pin, pin};
+		}
+	}
+	private void addEdge(int source, int sink, int node, int mode, String name){
+		long key = ((long)source << 32) | sink;
+		if(this.edgeSet.add(key)){
+			this.edgeSource.add(source);
+			this.edgeSink.add(sink);
+			this.edgeNode.add(node);
+			this.edgeMode.add(mode);
+			this.edgeName.add(name);
+		}
+	}
+	private void compact(Set<String> directPins){
+		int numNodes = this.numNodes();
+		int numPins = this.pinNode.size();
+		int numEdges = this.edgeSource.size();
+
+		this.parents = new int[numNodes];
+		this.indexes = new int[numNodes];
+		this.parentModes = new int[numNodes];
+		this.luts = new boolean[numNodes];
+		for(int n=0; n<numNodes; n++){
+			this.parents[n] = this.nodeParent.get(n);
+			this.indexes[n] = this.nodeIndex.get(n);
+			this.parentModes[n] = this.nodeParentMode.get(n);
+			this.luts[n] = this.lutPrimitives.contains(n);
+		}
+		this.primitiveNodes = new HashMap<String,int[]>();
+		for(Map.Entry<String,List<Integer>> entry:this.primitives.entrySet()){
+			List<Integer> nodes = entry.getValue();
+			int[] array = new int[nodes.size()];
+			for(int i=0; i<array.length; i++){
+				array[i] = nodes.get(i);
+			}
+			this.primitiveNodes.put(entry.getKey(), array);
+		}
+		this.nodeParent.clear();
+		this.nodeIndex.clear();
+		this.nodeParentMode.clear();
+		this.primitives.clear();
+		this.lutPrimitives.clear();
+
+		this.pinNodes = new int[numPins];
+		this.pinNums = new int[numPins];
+		this.pinTypes = new int[numPins];
+		for(int p=0; p<numPins; p++){
+			this.pinNodes[p] = this.pinNode.get(p);
+			this.pinNums[p] = this.pinNum.get(p);
+			this.pinTypes[p] = this.pinType.get(p);
+		}
+		this.pinNode.clear();
+		this.pinNum.clear();
+		this.pinType.clear();
+
+		this.sources = new int[numEdges];
+		this.sinks = new int[numEdges];
+		this.owners = new int[numEdges];
+		this.modes = new int[numEdges];
+		this.outStart = new int[numPins + 1];
+		for(int e=0; e<numEdges; e++){
+			this.sources[e] = this.edgeSource.get(e);
+			this.sinks[e] = this.edgeSink.get(e);
+			this.owners[e] = this.edgeNode.get(e);
+			this.modes[e] = this.edgeMode.get(e);
+			this.outStart[this.sources[e] + 1]++;
+		}
+		for(int p=0; p<numPins; p++){
+			this.outStart[p + 1] += this.outStart[p];
+		}
+		this.outEdges = new int[numEdges];
+		int[] position = new int[numPins];
+		for(int e=0; e<numEdges; e++){
+			int source = this.sources[e];
+			this.outEdges[this.outStart[source] + position[source]++] = e;
+		}
+		this.edgeSource.clear();
+		this.edgeSink.clear();
+		this.edgeNode.clear();
+		this.edgeMode.clear();
+		this.edgeSet.clear();
+
+		//Nets enter and leave the complex block on the pins of the top level node that are not used by direct connections
+		this.entryPin = new boolean[numPins];
+		this.exitPin = new boolean[numPins];
+		for(int p=0; p<numPins; p++){
+			if(this.pinNodes[p] == 0 && !directPins.contains(this.name + "." + this.pinPort.get(p))){
+				if(this.pinTypes[p] == OUTPUT){
+					this.exitPin[p] = true;
+				}else{
+					this.entryPin[p] = true;
+				}
+			}
+		}
+	}
+
+	//NODES
+	String getName(){
+		return this.name;
+	}
+	int numNodes(){
+		return this.nodeType.size();
+	}
+	Block getType(int node){
+		return this.nodeType.get(node);
+	}
+	String getTypeName(int node){
+		return this.nodeType.get(node).get_name();
+	}
+	int getParent(int node){
+		return this.parents[node];
+	}
+	int getIndex(int node){
+		return this.indexes[node];
+	}
+	int getParentMode(int node){
+		return this.parentModes[node];
+	}
+	String getModeName(int node, int mode){
+		return this.nodeModes.get(node)[mode];
+	}
+	int[] getChildren(int node, int mode){
+		return this.nodeChildren.get(node)[mode];
+	}
+	Map<String,int[]> getPorts(int node){
+		return this.nodePorts.get(node);
+	}
+	boolean isLut(int node){
+		return this.luts[node];
+	}
+	int[] getPrimitives(String model){
+		return this.primitiveNodes.get(model);
+	}
+	boolean hasPrimitives(String model){
+		return this.primitiveNodes.containsKey(model);
+	}
+
+	//PINS
+	int numPins(){
+		return this.pinNodes.length;
+	}
+	int getPinNode(int pin){
+		return this.pinNodes[pin];
+	}
+	String getPinPort(int pin){
+		return this.pinPort.get(pin);
+	}
+	int getPinNum(int pin){
+		return this.pinNums[pin];
+	}
+	int getPinType(int pin){
+		return this.pinTypes[pin];
+	}
+	boolean isEntryPin(int pin){
+		return this.entryPin[pin];
+	}
+	boolean isExitPin(int pin){
+		return this.exitPin[pin];
+	}
+
+	//EDGES
+	int outStart(int pin){
+		return this.outStart[pin];
+	}
+	int outEnd(int pin){
+		return this.outStart[pin + 1];
+	}
+	int outEdge(int i){
+		return this.outEdges[i];
+	}
+	int getSource(int edge){
+		return this.sources[edge];
+	}
+	int getSink(int edge){
+		return this.sinks[edge];
+	}
+	int getOwner(int edge){
+		return this.owners[edge];
+	}
+	int getMode(int edge){
+		return this.modes[edge];
+	}
+	String getEdgeName(int edge){
+		return this.edgeName.get(edge);
+	}
+}
@@ -5,9 +5,17 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import pack.architecture.Architecture;
 import pack.main.Simulation;
@@ -20,12 +28,13 @@ import pack.partition.Partition;
 import pack.util.ErrorLog;
 import pack.util.Output;
 import pack.util.ThreadPool;
+import pack.util.Timing;
 import pack.util.Util;
 
 public class TPack {
 	private Netlist root;
 	private Partition partition;
-	//private Architecture architecture;
+	private Architecture architecture;
 	private Simulation simulation;
 
 	private String vpr_folder;
@@ -39,10 +48,12 @@ public class TPack {
 	private ThreadPool threadPool;
 	private List<VPRThread> packPool;
 
+	private boolean floatingBlocksPacked;
+
 	public TPack(Netlist root, Partition partition, Architecture architecture, Simulation simulation){
 		this.root = root;
 		this.partition = partition;
-		//this.architecture = architecture;
+		this.architecture = architecture;
 		this.simulation = simulation;
 
 		this.vpr_folder = simulation.getStringValue("vpr_folder");
@@ -142,7 +153,12 @@ public class TPack {
 		Output.println("\tPool size: " + poolSize);
 		Output.newLine();
 
-		if(this.root.has_floating_blocks()){
+		this.floatingBlocksPacked = false;
+		if(this.simulation.getBooleanValue("native_packer")){
+			this.nativePacking(poolSize);
+		}
+
+		if(this.root.has_floating_blocks() && !this.floatingBlocksPacked){
 			this.startTPack(this.root.get_floating_blocks());
 		}
 
@@ -175,6 +191,83 @@ public class TPack {
 		return this.logicBlocks;
 	}
 
+	//Pack the leaf nodes in the jvm, the leaf nodes that can not be packed remain in the subcircuits list and are packed by VPR
+	private void nativePacking(int poolSize){
+		Timing t = new Timing();
+		t.start();
+
+		List<PbGraph> graphs = PbGraph.build(this.architecture);
+
+		List<Netlist> leafNodes = this.subcircuits;
+		this.subcircuits = new ArrayList<>();
+		int numLogicBlocks = 0;
+
+		ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+		try{
+			Future<List<LogicBlock>> floatingResult = null;
+			if(this.root.has_floating_blocks()){
+				ArrayList<B> floatingBlocks = new ArrayList<>(this.root.get_floating_blocks());
+				Collections.sort(floatingBlocks, new Comparator<B>(){
+					public int compare(B b1, B b2){
+						return Integer.compare(b1.get_number(), b2.get_number());
+					}
+				});
+				floatingResult = executor.submit(this.nativePackTask(graphs, floatingBlocks, true));
+			}
+			List<Future<List<LogicBlock>>> results = new ArrayList<>();
+			for(Netlist leafNode:leafNodes){
+				results.add(executor.submit(this.nativePackTask(graphs, leafNode.get_ordered_block_array(), false)));
+			}
+
+			if(floatingResult != null){
+				List<LogicBlock> result = this.getNativeResult(floatingResult, "the floating blocks");
+				if(result != null){
+					this.logicBlocks.addAll(result);
+					numLogicBlocks += result.size();
+					this.floatingBlocksPacked = true;
+				}
+			}
+			for(int i=0; i<leafNodes.size(); i++){
+				Netlist leafNode = leafNodes.get(i);
+				List<LogicBlock> result = this.getNativeResult(results.get(i), "leaf node " + leafNode.getHierarchyIdentifier());
+				if(result != null){
+					for(LogicBlock lb:result){
+						leafNode.addLogicBlock(lb);
+						this.logicBlocks.add(lb);
+					}
+					numLogicBlocks += result.size();
+				}else{
+					this.subcircuits.add(leafNode);
+				}
+			}
+		}catch(InterruptedException e){
+			ErrorLog.print("Native packing is interrupted: " + e.getMessage());
+		}finally{
+			executor.shutdown();
+		}
+		t.stop();
+
+		Output.println("\tNative packing: " + (leafNodes.size() - this.subcircuits.size()) + " of " + leafNodes.size() + " leaf nodes packed in " + numLogicBlocks + " logic blocks");
+		Output.println("\tNative packing took " + t.toString());
+		Output.newLine();
+	}
+	//A failed task has no result, the blocks of the task are packed by VPR
+	private List<LogicBlock> getNativeResult(Future<List<LogicBlock>> result, String name) throws InterruptedException{
+		try{
+			return result.get();
+		}catch(ExecutionException e){
+			Output.println("\tNative packing of " + name + " failed: " + e.getCause());
+			return null;
+		}
+	}
+	private Callable<List<LogicBlock>> nativePackTask(final List<PbGraph> graphs, final Collection<B> blocks, final boolean floating){
+		return new Callable<List<LogicBlock>>(){
+			public List<LogicBlock> call(){
+				return new ClusterPacker(graphs, floating).pack(blocks);
+			}
+		};
+	}
+
 	private void startTPack(Set<B> floatingBlocks){
 		int thread = this.threadPool.getThread();
 		Netlist.write_blif(this.vpr_folder + "vpr/files/", thread, floatingBlocks, this.root.get_blif(), this.root.get_models(), this.simulation.getSimulationID());
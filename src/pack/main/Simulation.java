@@ -18,14 +18,17 @@ public class Simulation{
 		
 		this.addOption(new Option("circuit","name of the design", String.class));
 		this.addOption(new Option("architecture","name of the architecture", String.class));
+		this.addOption(new Option("delay_matrix_folder","folder in which the pin to pin delay matrix of the architecture is stored for later runs, not stored if empty", ""));
 		
 		this.addOption(new Option("vpr_folder","folder with VPR (required for seed based packing phase) ", String.class));
 		
-		this.addOption(new Option("hmetis_folder","folder with hMetis (required for partitioning phase)", String.class));
+		this.addOption(new Option("hmetis_folder","folder with hMetis (required for partitioning phase without internal partitioner)", String.class));
 		this.addOption(new Option("hmetis_quality","quality setting for hMetis paritioning", 2));
 		this.addOption(new Option("unbalance_factor","unbalance factor of hMetis paritioning", 25));
+		this.addOption(new Option("internal_partitioner","partition with the multilevel bipartitioner in the jvm instead of the hMetis executable", false));
 		this.addOption(new Option("max_pack_size","the maxmimum number of blocks in the independent subcircuits for seed based packing", 2500));
 		this.addOption(new Option("max_fanout","the maximum fanout of the added nets during partitioning", 100));
+		this.addOption(new Option("native_packer","pack the leaf nodes in the jvm, leaf nodes that can not be packed are packed by VPR", false));
 		
 		this.addOption(new Option("num_threads","the number of available threads", 20));
 		
@@ -2,7 +2,6 @@ package pack.netlist;
 
 import java.util.Comparator;
 
-import pack.architecture.Architecture;
 import pack.util.ErrorLog;
 import pack.util.Output;
 import pack.util.Util;
@@ -35,8 +34,6 @@ public class P implements Comparable<P>{
 	
 	private int netWeight;
 	
-	static final boolean DEBUG = true;
-	
 	private boolean upstream;
 	private boolean downstream;
 	
@@ -262,62 +259,6 @@ public class P implements Comparable<P>{
 	public boolean has_arrival_time(){
 		return this.hasArrivalTime;
 	}
-	public int recursive_arrival_time(Architecture arch, DelayMap connectionDelay){
-		if(this.has_arrival_time()){
-			return this.get_arrival_time();
-		}
-		if(this.get_net().has_source()){
-			P sourcePin = this.get_net().get_source_pin();
-			if(sourcePin.is_start_pin()){
-				sourcePin.set_arrival_time(0);
-				this.set_arrival_time(sourcePin.get_arrival_time() + connectionDelay.getDelay(sourcePin, this));
-				return this.get_arrival_time();
-			}else{
-				B sourceBlock = sourcePin.get_block();
-				if(sourceBlock.has_inputs()){
-					int maxArrivalTime = 0;
-					for(String inputPort:sourceBlock.get_input_ports()){
-						for(P inputPin:sourceBlock.get_input_pins(inputPort)){
-							if(arch.valid_connection(sourceBlock.get_type(), inputPin.get_port_name(),sourcePin.get_port_name())){
-								int localArrivalTime = inputPin.recursive_arrival_time(arch, connectionDelay) + arch.get_block_delay(sourceBlock.get_type(),inputPin.get_port_name(), sourcePin.get_port_name());
-								if(localArrivalTime > maxArrivalTime) maxArrivalTime = localArrivalTime;
-							}
-						}
-					}
-					sourcePin.set_arrival_time(maxArrivalTime);
-					this.set_arrival_time(sourcePin.get_arrival_time() + connectionDelay.getDelay(sourcePin, this));
-					return this.get_arrival_time();
-				}else{
-					//Constant generator
-					sourcePin.set_arrival_time(0);
-					this.set_arrival_time(sourcePin.get_arrival_time() + connectionDelay.getDelay(sourcePin, this));
-					return this.get_arrival_time();
-				}
-			}
-		}else{
-			P sourcePin = null;
-			for(P terminalPin:this.get_net().get_terminal_pins()){
-				if(terminalPin.get_terminal().is_input_type()){
-					if(sourcePin == null){
-						sourcePin = terminalPin;
-					}else{
-						ErrorLog.print("Multiple intput terminal found while 1 expexted");
-					}
-				}
-			}
-			if(sourcePin == null){
-				ErrorLog.print("No input terminal found while 1 expexted");
-			}
-			if(DEBUG){
-				if(!sourcePin.is_start_pin()){
-					Output.println("This source pin of the pad should be a start pin");
-				}
-			}
-			sourcePin.set_arrival_time(0);
-			this.set_arrival_time(sourcePin.get_arrival_time() + connectionDelay.getDelay(sourcePin, this));
-			return this.get_arrival_time();
-		}
-	}
 	
 	//REQUIRED TIME
 	public boolean has_required_time(){
@@ -349,50 +290,6 @@ public class P implements Comparable<P>{
 			return 0;
 		}
 	}
-	public int recursive_required_time(Architecture arch, DelayMap connectionDelay){
-		if(this.has_required_time()){
-			return this.get_required_time();
-		}
-		if(this.is_source_pin()){
-			int minRequiredTime = Integer.MAX_VALUE;
-			for(P sinkPin:this.get_net().get_sink_pins()){
-				int localRequiredTime = sinkPin.recursive_required_time(arch, connectionDelay) - connectionDelay.getDelay(this, sinkPin);
-
-				if(localRequiredTime < minRequiredTime){
-					minRequiredTime = localRequiredTime;
-				}
-			}
-			for(P terminalPin:this.get_net().get_terminal_pins()){
-				if(terminalPin.is_end_pin()){
-					int localRequiredTime = terminalPin.recursive_required_time(arch, connectionDelay) - connectionDelay.getDelay(this, terminalPin);
-					
-					if(localRequiredTime < minRequiredTime){
-						minRequiredTime = localRequiredTime;
-					}
-				}
-			}
-			this.set_required_time(minRequiredTime);
-			return this.get_required_time();
-		}else if(this.is_sink_pin()){
-			B sinkBlock = this.get_block();
-			int minRequiredTime = Integer.MAX_VALUE;
-			for(String outputPort:sinkBlock.get_output_ports()){
-				for(P outputPin:sinkBlock.get_output_pins(outputPort)){
-					if(arch.valid_connection(sinkBlock.get_type(), this.get_port_name(), outputPin.get_port_name())){
-						int localRequiredTime = outputPin.recursive_required_time(arch, connectionDelay) - arch.get_block_delay(sinkBlock.get_type(), this.get_port_name(), outputPin.get_port_name());
-						if(localRequiredTime < minRequiredTime){
-							minRequiredTime = localRequiredTime;
-						}
-					}
-				}
-			}
-			this.set_required_time(minRequiredTime);
-			return this.get_required_time();
-		}else{
-			ErrorLog.print("Unexpected situation, a pin should be a start pin or an end pin");
-			return 0;
-		}
-	}
 	
 	//NET WEIGHT
 	public void set_net_weight(int netWeight){
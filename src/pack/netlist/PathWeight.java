@@ -3,6 +3,8 @@ package pack.netlist;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import pack.architecture.Architecture;
 import pack.main.Simulation;
@@ -24,10 +26,6 @@ public class PathWeight {
 	private int numEdges;
 	private int timingEdges;
 
-	private DelayMap delayMap;
-
-	private ArrayList<CombLoop> tempCut;
-
 	public PathWeight(Netlist netlist, Architecture architecture, Simulation simulation){
 		this.root = netlist;
 		this.arch = architecture;
@@ -35,8 +33,6 @@ public class PathWeight {
 
 		this.numEdges = 0;
 		this.timingEdges = 0;
-
-		this.tempCut = new ArrayList<CombLoop>();
 	}
 	public int get_max_arr_time(){
 		return this.maxArrivalTime;
@@ -47,12 +43,16 @@ public class PathWeight {
 		Timing pathTimer = new Timing();
 		pathTimer.start();
 
-		this.initializeConnectionDelayMap();
-
 		this.set_pins();
-		this.cut_combinational_loops();
-		this.initialise_timing_information();
-		this.reconnect_combinational_loops();
+		int numThreads = this.simulation.getIntValue("num_threads");
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numThreads));
+		try{
+			TimingGraph timingGraph = new TimingGraph(this.root, this.arch, executor, numThreads);
+			this.cut_combinational_loops(timingGraph);
+			this.initialise_timing_information(timingGraph);
+		}finally{
+			executor.shutdown();
+		}
 		this.set_pins();
 
 		Output.newLine();
@@ -65,41 +65,17 @@ public class PathWeight {
 		Output.println("\tPath took " + pathTimer.toString());
 		Output.newLine();
 	}
-	private void initializeConnectionDelayMap(){
-		this.delayMap = new DelayMap();
-		for(N n:this.root.get_nets()){
-			P sourcePin = null;
-			if(n.has_source()){
-				sourcePin = n.get_source_pin();
-			}else{
-				for(P p:n.get_terminal_pins()){
-					if(p.is_start_pin()){
-						sourcePin = p;
-					}
-				}
-			}
-			if(sourcePin == null){
-				ErrorLog.print("Problem on net " + n.get_name());
-			}
-			for(P sinkPin:n.get_sink_pins()){
-				int delay = this.arch.get_connection_delay(sourcePin, sinkPin);
-				this.delayMap.addDelay(sourcePin, sinkPin, delay);
-			}
-			for(P terminalPin:n.get_terminal_pins()){
-				if(terminalPin.is_end_pin()){
-					int delay = this.arch.get_connection_delay(sourcePin, terminalPin);
-					this.delayMap.addDelay(sourcePin, terminalPin, delay);
-				}
-			}
-		}
-	}
-	private void initialise_timing_information(){
+	private void initialise_timing_information(TimingGraph timingGraph){
 		boolean printDistribution = false;
-		this.assign_arrival_time();
+		timingGraph.levelize();
+		Output.println("\tThe timing graph has " + timingGraph.num_levels() + " levels");
+		Output.newLine();
+
+		timingGraph.assign_arrival_time();
 		this.max_arrival_time();
 		if(printDistribution)this.arr_dist();
 
-		this.assign_required_time();
+		timingGraph.assign_required_time(this.endPins, this.maxArrivalTime);
 		if(printDistribution)this.req_dist();
 	}
 	public void set_pins(){
@@ -135,27 +111,11 @@ public class PathWeight {
 			}
 		}
 	}
-	private void cut_combinational_loops(){
-		this.tempCut = new ArrayList<CombLoop>();
-
+	private void cut_combinational_loops(TimingGraph timingGraph){
 		Timing t = new Timing();
 		t.start();
 
-		HashSet<P> analyzed = new HashSet<P>();
-		HashSet<P> visited = new HashSet<P>();
-		int comb = 0;
-		for(P startPin:this.startPins){
-			comb = this.analyze_pin(startPin, comb, visited, analyzed);
-		}
-		for(B b:this.root.get_blocks()){
-			if(!b.has_inputs()){
-				for(String outputPort:b.get_output_ports()){
-					for(P startPin:b.get_output_pins(outputPort)){
-						comb = this.analyze_pin(startPin, comb, visited, analyzed);
-					}
-				}
-			}
-		}
+		int comb = timingGraph.cut_combinational_loops();
 
 		t.stop();
 		Output.println("\tFind combinational loops took " + t.toString());
@@ -163,101 +123,10 @@ public class PathWeight {
 		Output.newLine();
 
 		//Add the cut sink pins to the end pins
-		for(CombLoop combLoop:this.tempCut){
-			this.endPins.add(combLoop.getPin());
-		}
-	}
-	private void reconnect_combinational_loops(){
-		for(CombLoop combLoop:this.tempCut){
-			combLoop.reconnect(this.arch, this.delayMap);
-		}
-	}
-	public int analyze_pin(P startPin, int comb, HashSet<P> visited, HashSet<P> analyzed){
-		visited.add(startPin);
-		for(P sinkPin:new HashSet<P>(startPin.get_net().get_sink_pins())){
-			if(sinkPin.has_block()){
-				B b = sinkPin.get_block();
-				if(b.is_sequential()){
-					//END OF PATH
-				}else{
-					for(String outputPort:b.get_output_ports()){
-						for(P sourcePin:b.get_output_pins(outputPort)){
-							if(!visited.contains(sourcePin)){
-								comb = this.analyze_pin(sourcePin, comb, visited, analyzed);
-							}
-						}
-					}
-				}
-			}
-		}
-		if(startPin.has_block()){
-			B b = startPin.get_block();
-			if(b.is_sequential()){
-				//DO NOTHING
-			}else if(!b.has_inputs()){
-				//DO NOTHING
-			}else{
-				HashSet<P> combPins = new HashSet<P>(b.get_input_pins());
-				comb = this.analyze_pin_for_comb_loop(startPin, combPins, new HashSet<P>(), analyzed, comb);
-				analyzed.add(startPin);
-			}
-		}
-		return comb;
-	}
-	public int analyze_pin_for_comb_loop(P p, HashSet<P> combPins, HashSet<P> visited, HashSet<P> analyzed, int comb){
-		if(analyzed.contains(p)){
-			//ALREADY CHECKED
-		}else if(visited.contains(p)){
-			//ALREADY VISITED
-		}else{
-			visited.add(p);
-			if(combPins.contains(p)){
-				this.tempCut.add(new CombLoop(p));
-				comb += 1;
-			//SOURCE PIN
-			}else if(p.is_source_pin()){
-				for(P sinkPin:new HashSet<P>(p.get_net().get_sink_pins())){
-				//for(P sinkPin:p.get_net().get_sink_pins()){
-					comb = this.analyze_pin_for_comb_loop(sinkPin, combPins, visited, analyzed, comb);
-				}
-			//SINK PIN
-			}else if(p.is_sink_pin()){
-				if(p.has_block()){
-					B b = p.get_block();
-					if(b.is_sequential()){
-						//END OF PATH
-					}else{
-						for(String outputPort:b.get_output_ports()){
-							for(P sourcePin:b.get_output_pins(outputPort)){
-								comb = this.analyze_pin_for_comb_loop(sourcePin, combPins, visited, analyzed, comb);
-							}
-						}
-					}
-				}else{
-					//END OF PATH
-				}
-			}else{
-				Output.println("A pin should be a source pin or a sink pin");
-			}
-		}
-		return comb;
+		this.endPins.addAll(timingGraph.get_cut_pins());
 	}
 
 	//DEPTH AND REQ
-	private void assign_arrival_time(){
-		for(P endPin:this.endPins){
-			endPin.recursive_arrival_time(this.arch, this.delayMap);
-		}
-		for(B b:this.root.get_blocks()){
-			if(!b.has_outputs()){
-				for(String inputPort:b.get_input_ports()){
-					for(P inputPin:b.get_input_pins(inputPort)){
-						inputPin.recursive_arrival_time(this.arch, this.delayMap);
-					}
-				}
-			}
-		}
-	}
 	private void max_arrival_time(){
 		this.maxArrivalTime = 0;
 		for(P endPin:this.endPins){
@@ -266,23 +135,6 @@ public class PathWeight {
 			}
 		}
 	}
-	private void assign_required_time(){
-		for(P endPin:this.endPins){
-			endPin.set_required_time(this.maxArrivalTime);
-		}
-		for(P startPin:this.startPins){
-			startPin.recursive_required_time(this.arch, this.delayMap);
-		}
-		for(B b:this.root.get_blocks()){
-			if(!b.has_inputs()){
-				for(String outputPort:b.get_output_ports()){
-					for(P outputPin:b.get_output_pins(outputPort)){
-						outputPin.recursive_required_time(this.arch, this.delayMap);
-					}
-				}
-			}
-		}
-	}
 
 	//PRINT DISTRIBUTION
 	private void arr_dist(){
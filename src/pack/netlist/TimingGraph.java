@@ -0,0 +1,415 @@
+package pack.netlist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import pack.architecture.Architecture;
+import pack.util.ErrorLog;
+
+/**
+ * Timing graph of a netlist over integer pin indexes. The edges are the
+ * connections from the source of a net to its sinks and the connections
+ * from the inputs to the outputs of a combinational block. Combinational
+ * loops are cut at a block input pin, which becomes an end pin. The pins
+ * are levelized once, the arrival and required times are assigned by a
+ * forward and a backward sweep over the levels. The pins of a large level
+ * are divided over the thread pool of the caller.
+ */
+class TimingGraph {
+	private static final int MIN_PARALLEL_LEVEL_SIZE = 2048;
+
+	private final int numThreads;
+	private final ExecutorService executor;
+
+	private final List<P> pins;
+	private final Map<P,Integer> pinIndex;
+
+	//Edges
+	private final int[] edgeSource;
+	private final int[] edgeSink;
+	private final int[] edgeDelay;
+
+	//Edges of each pin in compressed sparse row form
+	private final int[] faninStart;
+	private final int[] fanin;
+	private final int[] fanoutStart;
+	private final int[] fanout;
+
+	//Block input pins at which a combinational loop is cut
+	private final boolean[] cut;
+	private final List<P> cutPins;
+
+	//Pins in topological order, level l is [levelStart[l], levelStart[l+1])
+	private int[] order;
+	private int[] levelStart;
+
+	private final int[] arrivalTime;
+	private final int[] requiredTime;
+
+	TimingGraph(Netlist netlist, final Architecture arch, ExecutorService executor, int numThreads){
+		this.numThreads = numThreads;
+		this.executor = executor;
+
+		this.pins = new ArrayList<P>();
+		this.pinIndex = new HashMap<P,Integer>();
+		for(B b:netlist.get_blocks()){
+			for(P p:b.get_input_pins()){
+				this.add_pin(p);
+			}
+			for(P p:b.get_output_pins()){
+				this.add_pin(p);
+			}
+		}
+		for(T t:netlist.get_terminals()){
+			this.add_pin(t.get_pin());
+		}
+
+		List<int[]> netEdges = new ArrayList<int[]>();
+		List<int[]> blockEdges = new ArrayList<int[]>();
+
+		//Net edges
+		for(N net:netlist.get_nets()){
+			P sourcePin = null;
+			if(net.has_source()){
+				sourcePin = net.get_source_pin();
+			}
+			for(P terminalPin:net.get_terminal_pins()){
+				if(terminalPin.is_source_pin()){
+					if(sourcePin == null){
+						sourcePin = terminalPin;
+					}else{
+						ErrorLog.print("Already a source pin found for this net: " + net.toString());
+					}
+				}
+			}
+			List<P> sinkPins = new ArrayList<P>(net.get_sink_pins());
+			for(P terminalPin:net.get_terminal_pins()){
+				if(terminalPin.is_end_pin()){
+					sinkPins.add(terminalPin);
+				}
+			}
+			if(sinkPins.isEmpty()){
+				continue;
+			}
+			if(sourcePin == null){
+				ErrorLog.print("No source pin found for this net: " + net.toString());
+			}
+			int source = this.add_pin(sourcePin);
+			for(P sinkPin:sinkPins){
+				netEdges.add(new int[]{source, this.add_pin(sinkPin)});
+			}
+		}
+
+		//Block edges, the delay of each block type and port pair is only looked up once
+		Map<String,Integer> blockDelays = new HashMap<String,Integer>();
+		for(B b:netlist.get_blocks()){
+			if(b.is_sequential()){
+				continue;
+			}
+			for(P inputPin:b.get_input_pins()){
+				for(P outputPin:b.get_output_pins()){
+					if(outputPin.is_start_pin()){
+						continue;
+					}
+					String key = b.get_type() + "." + inputPin.get_port_name() + "." + outputPin.get_port_name();
+					Integer delay = blockDelays.get(key);
+					if(delay == null){
+						if(arch.valid_connection(b.get_type(), inputPin.get_port_name(), outputPin.get_port_name())){
+							delay = arch.get_block_delay(b.get_type(), inputPin.get_port_name(), outputPin.get_port_name());
+						}else{
+							delay = -1;
+						}
+						blockDelays.put(key, delay);
+					}
+					if(delay >= 0){
+						blockEdges.add(new int[]{this.pinIndex.get(inputPin), this.pinIndex.get(outputPin), delay});
+					}
+				}
+			}
+		}
+
+		int numEdges = netEdges.size() + blockEdges.size();
+		this.edgeSource = new int[numEdges];
+		this.edgeSink = new int[numEdges];
+		this.edgeDelay = new int[numEdges];
+		int edge = 0;
+		for(int[] netEdge:netEdges){
+			this.edgeSource[edge] = netEdge[0];
+			this.edgeSink[edge] = netEdge[1];
+			edge++;
+		}
+		for(int[] blockEdge:blockEdges){
+			this.edgeSource[edge] = blockEdge[0];
+			this.edgeSink[edge] = blockEdge[1];
+			this.edgeDelay[edge] = blockEdge[2];
+			edge++;
+		}
+
+		//Connection delays of the net edges
+		final int numNetEdges = netEdges.size();
+		this.parallel(numNetEdges, new Range(){
+			@Override
+			public void run(int start, int end){
+				for(int e=start;e<end;e++){
+					TimingGraph.this.edgeDelay[e] = arch.get_connection_delay(TimingGraph.this.pins.get(TimingGraph.this.edgeSource[e]), TimingGraph.this.pins.get(TimingGraph.this.edgeSink[e]));
+				}
+			}
+		});
+
+		int numPins = this.pins.size();
+		this.faninStart = new int[numPins + 1];
+		this.fanin = new int[numEdges];
+		this.fanoutStart = new int[numPins + 1];
+		this.fanout = new int[numEdges];
+		compress(this.edgeSink, this.faninStart, this.fanin);
+		compress(this.edgeSource, this.fanoutStart, this.fanout);
+
+		this.cut = new boolean[numPins];
+		this.cutPins = new ArrayList<P>();
+
+		this.arrivalTime = new int[numPins];
+		this.requiredTime = new int[numPins];
+	}
+	private int add_pin(P p){
+		Integer index = this.pinIndex.get(p);
+		if(index == null){
+			index = this.pins.size();
+			this.pins.add(p);
+			this.pinIndex.put(p, index);
+		}
+		return index;
+	}
+	private static void compress(int[] edgePin, int[] start, int[] edges){
+		for(int pin:edgePin){
+			start[pin + 1]++;
+		}
+		for(int i=0;i<start.length-1;i++){
+			start[i + 1] += start[i];
+		}
+		int[] position = Arrays.copyOf(start, start.length - 1);
+		for(int e=0;e<edgePin.length;e++){
+			edges[position[edgePin[e]]++] = e;
+		}
+	}
+
+	//An edge out of a cut pin is removed, the net edge into a cut pin only exists in the forward direction
+	private boolean forward(int edge){
+		return !this.cut[this.edgeSource[edge]];
+	}
+	private boolean backward(int edge){
+		return !this.cut[this.edgeSource[edge]] && !this.cut[this.edgeSink[edge]];
+	}
+
+	//COMBINATIONAL LOOPS
+	/*
+	 * Depth first search with an explicit stack. A back edge closes a loop, the
+	 * loop is cut at the block input pin of the back edge. A block input pin
+	 * has a single driver, so the cut removes every loop through this edge.
+	 */
+	int cut_combinational_loops(){
+		int numPins = this.pins.size();
+		byte[] state = new byte[numPins];//0: unvisited, 1: on stack, 2: finished
+		int[] stack = new int[numPins];
+		int[] next = new int[numPins];
+
+		for(int root=0;root<numPins;root++){
+			if(state[root] != 0){
+				continue;
+			}
+			int top = 0;
+			stack[top] = root;
+			next[root] = this.fanoutStart[root];
+			state[root] = 1;
+			while(top >= 0){
+				int u = stack[top];
+				if(this.cut[u] || next[u] == this.fanoutStart[u + 1]){
+					state[u] = 2;
+					top--;
+					continue;
+				}
+				int edge = this.fanout[next[u]++];
+				int v = this.edgeSink[edge];
+				if(state[v] == 0){
+					state[v] = 1;
+					next[v] = this.fanoutStart[v];
+					stack[++top] = v;
+				}else if(state[v] == 1){
+					P vPin = this.pins.get(v);
+					if(vPin.is_sink_pin() && vPin.has_block()){
+						this.cut_pin(v);
+					}else{
+						this.cut_pin(u);
+					}
+				}
+			}
+		}
+		return this.cutPins.size();
+	}
+	private void cut_pin(int pin){
+		if(!this.cut[pin]){
+			this.cut[pin] = true;
+			this.cutPins.add(this.pins.get(pin));
+		}
+	}
+	List<P> get_cut_pins(){
+		return this.cutPins;
+	}
+
+	//LEVELS
+	void levelize(){
+		int numPins = this.pins.size();
+		int[] numFanin = new int[numPins];
+		for(int e=0;e<this.edgeSink.length;e++){
+			if(this.forward(e)){
+				numFanin[this.edgeSink[e]]++;
+			}
+		}
+
+		this.order = new int[numPins];
+		List<Integer> levelStarts = new ArrayList<Integer>();
+		int size = 0;
+		for(int pin=0;pin<numPins;pin++){
+			if(numFanin[pin] == 0){
+				this.order[size++] = pin;
+			}
+		}
+		int levelBegin = 0;
+		while(levelBegin < size){
+			levelStarts.add(levelBegin);
+			int levelEnd = size;
+			for(int i=levelBegin;i<levelEnd;i++){
+				int u = this.order[i];
+				for(int j=this.fanoutStart[u];j<this.fanoutStart[u + 1];j++){
+					int edge = this.fanout[j];
+					if(this.forward(edge) && --numFanin[this.edgeSink[edge]] == 0){
+						this.order[size++] = this.edgeSink[edge];
+					}
+				}
+			}
+			levelBegin = levelEnd;
+		}
+		if(size != numPins){
+			ErrorLog.print("The timing graph has " + (numPins - size) + " pins on a combinational loop that is not cut");
+		}
+		levelStarts.add(size);
+
+		this.levelStart = new int[levelStarts.size()];
+		for(int l=0;l<this.levelStart.length;l++){
+			this.levelStart[l] = levelStarts.get(l);
+		}
+	}
+	int num_levels(){
+		return this.levelStart.length - 1;
+	}
+
+	//ARRIVAL TIME
+	void assign_arrival_time(){
+		for(int l=0;l<this.num_levels();l++){
+			final int levelBegin = this.levelStart[l];
+			this.parallel(this.levelStart[l + 1] - levelBegin, new Range(){
+				@Override
+				public void run(int start, int end){
+					for(int i=levelBegin+start;i<levelBegin+end;i++){
+						TimingGraph.this.arrival_time(TimingGraph.this.order[i]);
+					}
+				}
+			});
+		}
+		for(int pin=0;pin<this.pins.size();pin++){
+			this.pins.get(pin).set_arrival_time(this.arrivalTime[pin]);
+		}
+	}
+	private void arrival_time(int pin){
+		int maxArrivalTime = 0;
+		for(int j=this.faninStart[pin];j<this.faninStart[pin + 1];j++){
+			int edge = this.fanin[j];
+			if(this.forward(edge)){
+				int localArrivalTime = this.arrivalTime[this.edgeSource[edge]] + this.edgeDelay[edge];
+				if(localArrivalTime > maxArrivalTime) maxArrivalTime = localArrivalTime;
+			}
+		}
+		this.arrivalTime[pin] = maxArrivalTime;
+	}
+
+	//REQUIRED TIME
+	void assign_required_time(List<P> endPins, int maxArrivalTime){
+		final boolean[] isEndPin = new boolean[this.pins.size()];
+		for(P endPin:endPins){
+			int pin = this.pinIndex.get(endPin);
+			isEndPin[pin] = true;
+			this.requiredTime[pin] = maxArrivalTime;
+		}
+		for(int l=this.num_levels()-1;l>=0;l--){
+			final int levelBegin = this.levelStart[l];
+			this.parallel(this.levelStart[l + 1] - levelBegin, new Range(){
+				@Override
+				public void run(int start, int end){
+					for(int i=levelBegin+start;i<levelBegin+end;i++){
+						int pin = TimingGraph.this.order[i];
+						if(!isEndPin[pin]){
+							TimingGraph.this.required_time(pin);
+						}
+					}
+				}
+			});
+		}
+		for(int pin=0;pin<this.pins.size();pin++){
+			this.pins.get(pin).set_required_time(this.requiredTime[pin]);
+		}
+	}
+	private void required_time(int pin){
+		int minRequiredTime = Integer.MAX_VALUE;
+		for(int j=this.fanoutStart[pin];j<this.fanoutStart[pin + 1];j++){
+			int edge = this.fanout[j];
+			if(this.backward(edge)){
+				int localRequiredTime = this.requiredTime[this.edgeSink[edge]] - this.edgeDelay[edge];
+				if(localRequiredTime < minRequiredTime) minRequiredTime = localRequiredTime;
+			}
+		}
+		this.requiredTime[pin] = minRequiredTime;
+	}
+
+	//PARALLEL
+	private interface Range {
+		void run(int start, int end);
+	}
+	/*
+	 * Runs the range [0, size) in chunks on the thread pool,
+	 * small ranges are run on the calling thread
+	 */
+	private void parallel(int size, final Range range){
+		int numChunks = Math.min(this.numThreads, size / MIN_PARALLEL_LEVEL_SIZE);
+		if(numChunks <= 1){
+			range.run(0, size);
+			return;
+		}
+		try{
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for(int c=0;c<numChunks;c++){
+				final int start = (int)((long)size * c / numChunks);
+				final int end = (int)((long)size * (c + 1) / numChunks);
+				futures.add(this.executor.submit(new Callable<Void>(){
+					@Override
+					public Void call(){
+						range.run(start, end);
+						return null;
+					}
+				}));
+			}
+			for(Future<Void> future:futures){
+				future.get();
+			}
+		}catch(InterruptedException e){
+			ErrorLog.print("Timing analysis is interrupted: " + e.getMessage());
+		}catch(ExecutionException e){
+			ErrorLog.print("Timing analysis failed: " + e.getCause());
+		}
+	}
+}
@@ -0,0 +1,593 @@
+package pack.partition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Multilevel hypergraph bipartitioner, used instead of the hMetis executable.
+ *
+ * Coarsening: vertices are matched with the neighbour that has the heaviest
+ * connection, the weight of a hyperedge is divided over its pins (hMetis
+ * edge coarsening). Coarsening stops at COARSEST_SIZE vertices or when a
+ * level doesn't reduce the number of vertices anymore.
+ * Initial bisection: region growing from random vertices on the coarsest
+ * level, the best of NUM_INITIAL_TRIES refined bisections is used.
+ * Uncoarsening: the bisection is projected on the finer levels and refined
+ * with Fiduccia-Mattheyses passes.
+ *
+ * The balance constraint is the hMetis unbalance factor b: the weight of
+ * each part is at most (50 + b)% of the total weight. The best of nruns
+ * multilevel runs is returned.
+ */
+public class Bipartitioner {
+	private static final int COARSEST_SIZE = 100;
+	private static final double MIN_COARSENING = 0.9;
+	private static final int MAX_COARSENING_PINS = 50;//Larger hyperedges are ignored during matching
+	private static final int NUM_INITIAL_TRIES = 10;
+	private static final int MAX_REFINEMENT_PASSES = 10;
+
+	private final int ubfactor;
+	private final int nruns;
+	private final Random random;
+
+	private int cut;
+
+	public Bipartitioner(int ubfactor, int nruns, long seed){
+		this.ubfactor = ubfactor;
+		this.nruns = Math.max(nruns, 1);
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Returns the part (0 or 1) of each vertex. The pins of hyperedge e are
+	 * edgePins[edgeStarts[e]] to edgePins[edgeStarts[e + 1] - 1]. A vertex may
+	 * appear more than once in a hyperedge.
+	 */
+	public int[] bipartition(int[] vertexWeights, int[] edgeStarts, int[] edgePins, int[] edgeWeights){
+		int numVertices = vertexWeights.length;
+		int[] identity = new int[numVertices];
+		for(int v = 0; v < numVertices; v++){
+			identity[v] = v;
+		}
+		Level finest = contract(new Level(vertexWeights, edgeStarts, edgePins, edgeWeights), identity, numVertices);
+
+		int maxPartWeight = this.maxPartWeight(finest);
+
+		int[] bestPart = null;
+		int bestViolation = 0;
+		for(int run = 0; run < this.nruns; run++){
+			int[] part = this.multilevelRun(finest);
+			int violation = finest.violation(part, maxPartWeight);
+			int cut = finest.cut(part);
+			if(bestPart == null || violation < bestViolation || (violation == bestViolation && cut < this.cut)){
+				bestPart = part;
+				bestViolation = violation;
+				this.cut = cut;
+			}
+		}
+		return bestPart;
+	}
+
+	/**
+	 * The weighted number of cut hyperedges of the last bipartition
+	 */
+	public int getCut(){
+		return this.cut;
+	}
+
+	private int[] multilevelRun(Level finest){
+		//Coarsening
+		ArrayList<Level> levels = new ArrayList<Level>();
+		levels.add(finest);
+		Level level = finest;
+		while(level.numVertices > COARSEST_SIZE){
+			Level coarse = this.coarsen(level);
+			if(coarse == null){
+				break;
+			}
+			levels.add(coarse);
+			level = coarse;
+		}
+
+		//Initial bisection
+		int[] part = this.initialBisection(level);
+
+		//Uncoarsening
+		for(int l = levels.size() - 2; l >= 0; l--){
+			Level fine = levels.get(l);
+			int[] finePart = new int[fine.numVertices];
+			for(int v = 0; v < fine.numVertices; v++){
+				finePart[v] = part[fine.coarseMap[v]];
+			}
+			part = finePart;
+			this.refine(fine, part);
+		}
+		return part;
+	}
+	private int maxPartWeight(Level level){
+		int maxWeight = (int)Math.floor(level.totalWeight * (50.0 + this.ubfactor) / 100.0);
+		return Math.max(maxWeight, (level.totalWeight + 1) / 2);
+	}
+
+	//COARSENING
+	private Level coarsen(Level level){
+		int n = level.numVertices;
+		int maxVertexWeight = Math.max(1, (int)Math.ceil(1.5 * level.totalWeight / COARSEST_SIZE));
+
+		int[] match = new int[n];
+		Arrays.fill(match, -1);
+
+		double[] score = new double[n];
+		int[] touched = new int[n];
+
+		for(int v:this.randomOrder(n)){
+			if(match[v] != -1) continue;
+
+			int numTouched = 0;
+			for(int i = level.vertexStarts[v]; i < level.vertexStarts[v + 1]; i++){
+				int e = level.vertexEdges[i];
+				int size = level.edgeStarts[e + 1] - level.edgeStarts[e];
+				if(size > MAX_COARSENING_PINS) continue;
+
+				double edgeScore = (double)level.edgeWeights[e] / (size - 1);
+				for(int j = level.edgeStarts[e]; j < level.edgeStarts[e + 1]; j++){
+					int u = level.edgePins[j];
+					if(u == v || match[u] != -1) continue;
+					if(level.vertexWeights[u] + level.vertexWeights[v] > maxVertexWeight) continue;
+
+					if(score[u] == 0){
+						touched[numTouched++] = u;
+					}
+					score[u] += edgeScore;
+				}
+			}
+
+			int best = -1;
+			for(int i = 0; i < numTouched; i++){
+				int u = touched[i];
+				if(best == -1 || score[u] > score[best]){
+					best = u;
+				}
+			}
+			for(int i = 0; i < numTouched; i++){
+				score[touched[i]] = 0;
+			}
+
+			if(best != -1){
+				match[v] = best;
+				match[best] = v;
+			}else{
+				match[v] = v;
+			}
+		}
+
+		int[] coarseMap = new int[n];
+		Arrays.fill(coarseMap, -1);
+		int numCoarse = 0;
+		for(int v = 0; v < n; v++){
+			if(coarseMap[v] == -1){
+				coarseMap[v] = numCoarse;
+				coarseMap[match[v]] = numCoarse;
+				numCoarse += 1;
+			}
+		}
+
+		if(numCoarse > MIN_COARSENING * n){
+			return null;
+		}
+
+		level.coarseMap = coarseMap;
+		return contract(level, coarseMap, numCoarse);
+	}
+
+	/**
+	 * Builds the level with the given vertex map. Duplicate pins are removed
+	 * and hyperedges with less than two pins are dropped.
+	 */
+	private static Level contract(Level level, int[] map, int numVertices){
+		int[] vertexWeights = new int[numVertices];
+		for(int v = 0; v < level.numVertices; v++){
+			vertexWeights[map[v]] += level.vertexWeights[v];
+		}
+
+		int numEdges = level.edgeWeights.length;
+		int[] edgeStarts = new int[numEdges + 1];
+		int[] edgePins = new int[level.edgePins.length];
+		int[] edgeWeights = new int[numEdges];
+		int[] mark = new int[numVertices];
+
+		int numCoarseEdges = 0;
+		int numPins = 0;
+		for(int e = 0; e < numEdges; e++){
+			int start = numPins;
+			for(int i = level.edgeStarts[e]; i < level.edgeStarts[e + 1]; i++){
+				int v = map[level.edgePins[i]];
+				if(mark[v] != e + 1){
+					mark[v] = e + 1;
+					edgePins[numPins++] = v;
+				}
+			}
+			if(numPins - start >= 2){
+				edgeStarts[numCoarseEdges] = start;
+				edgeWeights[numCoarseEdges] = level.edgeWeights[e];
+				numCoarseEdges += 1;
+			}else{
+				numPins = start;
+			}
+		}
+		edgeStarts[numCoarseEdges] = numPins;
+
+		return new Level(
+				vertexWeights,
+				Arrays.copyOf(edgeStarts, numCoarseEdges + 1),
+				Arrays.copyOf(edgePins, numPins),
+				Arrays.copyOf(edgeWeights, numCoarseEdges));
+	}
+
+	//INITIAL BISECTION
+	private int[] initialBisection(Level level){
+		int maxPartWeight = this.maxPartWeight(level);
+
+		int[] bestPart = null;
+		int bestViolation = 0, bestCut = 0;
+		for(int tri = 0; tri < NUM_INITIAL_TRIES; tri++){
+			int[] part = this.growRegion(level);
+			this.refine(level, part);
+
+			int violation = level.violation(part, maxPartWeight);
+			int cut = level.cut(part);
+			if(bestPart == null || violation < bestViolation || (violation == bestViolation && cut < bestCut)){
+				bestPart = part;
+				bestViolation = violation;
+				bestCut = cut;
+			}
+		}
+		return bestPart;
+	}
+
+	/**
+	 * Breadth first search from a random vertex, the visited vertices
+	 * are in part 1 until it has half of the total weight
+	 */
+	private int[] growRegion(Level level){
+		int n = level.numVertices;
+		int[] part = new int[n];
+		boolean[] visited = new boolean[n];
+		int[] queue = new int[n];
+		int head = 0, tail = 0;
+
+		int[] order = this.randomOrder(n);
+		int nextSeed = 0;
+
+		int weight = 0;
+		int target = level.totalWeight / 2;
+		while(weight < target){
+			if(head == tail){
+				//Start a new region if the previous one is exhausted
+				while(visited[order[nextSeed]]) nextSeed++;
+				int seed = order[nextSeed];
+				visited[seed] = true;
+				queue[tail++] = seed;
+			}
+
+			int v = queue[head++];
+			part[v] = 1;
+			weight += level.vertexWeights[v];
+
+			for(int i = level.vertexStarts[v]; i < level.vertexStarts[v + 1]; i++){
+				int e = level.vertexEdges[i];
+				for(int j = level.edgeStarts[e]; j < level.edgeStarts[e + 1]; j++){
+					int u = level.edgePins[j];
+					if(!visited[u]){
+						visited[u] = true;
+						queue[tail++] = u;
+					}
+				}
+			}
+		}
+		return part;
+	}
+
+	//REFINEMENT
+	/**
+	 * Fiduccia-Mattheyses passes. Each pass moves every vertex at most once,
+	 * the moves after the best intermediate bisection are undone.
+	 */
+	private void refine(Level level, int[] part){
+		int n = level.numVertices;
+		int numEdges = level.edgeWeights.length;
+		int maxPartWeight = this.maxPartWeight(level);
+		int maxMovesWithoutGain = Math.max(50, n / 20);
+
+		int[] pinCount = new int[2 * numEdges];
+		int[] gain = new int[n];
+		boolean[] locked = new boolean[n];
+		int[] moves = new int[n];
+		GainHeap[] heaps = {new GainHeap(n, gain), new GainHeap(n, gain)};
+
+		for(int pass = 0; pass < MAX_REFINEMENT_PASSES; pass++){
+			Arrays.fill(pinCount, 0);
+			for(int e = 0; e < numEdges; e++){
+				for(int j = level.edgeStarts[e]; j < level.edgeStarts[e + 1]; j++){
+					pinCount[2 * e + part[level.edgePins[j]]]++;
+				}
+			}
+			int[] partWeight = new int[2];
+			for(int v = 0; v < n; v++){
+				partWeight[part[v]] += level.vertexWeights[v];
+
+				int from = part[v];
+				int g = 0;
+				for(int i = level.vertexStarts[v]; i < level.vertexStarts[v + 1]; i++){
+					int e = level.vertexEdges[i];
+					if(pinCount[2 * e + from] == 1) g += level.edgeWeights[e];
+					if(pinCount[2 * e + 1 - from] == 0) g -= level.edgeWeights[e];
+				}
+				gain[v] = g;
+			}
+
+			Arrays.fill(locked, false);
+			heaps[0].clear();
+			heaps[1].clear();
+			for(int v = 0; v < n; v++){
+				heaps[part[v]].insert(v);
+			}
+
+			int cut = level.cut(part);
+			int startCut = cut;
+			int startViolation = violation(partWeight, maxPartWeight);
+			int bestCut = cut, bestViolation = startViolation;
+			int numMoves = 0, bestMoves = 0;
+
+			while(numMoves - bestMoves < maxMovesWithoutGain){
+				int v = this.selectMove(level, heaps, partWeight, maxPartWeight);
+				if(v == -1) break;
+
+				int from = part[v], to = 1 - from;
+				heaps[from].remove(v);
+				locked[v] = true;
+				cut -= gain[v];
+
+				for(int i = level.vertexStarts[v]; i < level.vertexStarts[v + 1]; i++){
+					int e = level.vertexEdges[i];
+					int w = level.edgeWeights[e];
+
+					if(pinCount[2 * e + to] == 0){
+						this.updateGains(level, e, -1, w, part, locked, heaps);
+					}else if(pinCount[2 * e + to] == 1){
+						this.updateGains(level, e, to, -w, part, locked, heaps);
+					}
+
+					pinCount[2 * e + from]--;
+					pinCount[2 * e + to]++;
+
+					if(pinCount[2 * e + from] == 0){
+						this.updateGains(level, e, -1, -w, part, locked, heaps);
+					}else if(pinCount[2 * e + from] == 1){
+						this.updateGains(level, e, from, w, part, locked, heaps);
+					}
+				}
+
+				part[v] = to;
+				partWeight[from] -= level.vertexWeights[v];
+				partWeight[to] += level.vertexWeights[v];
+				moves[numMoves++] = v;
+
+				int violation = violation(partWeight, maxPartWeight);
+				if(violation < bestViolation || (violation == bestViolation && cut < bestCut)){
+					bestCut = cut;
+					bestViolation = violation;
+					bestMoves = numMoves;
+				}
+			}
+
+			//Undo the moves after the best bisection
+			for(int m = numMoves - 1; m >= bestMoves; m--){
+				part[moves[m]] = 1 - part[moves[m]];
+			}
+
+			if(bestViolation == startViolation && bestCut >= startCut){
+				break;
+			}
+		}
+	}
+
+	/**
+	 * The free vertex with the highest gain of which the move satisfies the
+	 * balance constraint, or reduces the violation of the constraint.
+	 */
+	private int selectMove(Level level, GainHeap[] heaps, int[] partWeight, int maxPartWeight){
+		int best = -1;
+		for(int from = 0; from < 2; from++){
+			if(heaps[from].isEmpty()) continue;
+
+			int v = heaps[from].top();
+			int to = 1 - from;
+			boolean feasible = partWeight[to] + level.vertexWeights[v] <= maxPartWeight || partWeight[from] > maxPartWeight;
+			if(feasible && (best == -1 || heaps[from].gain(v) > heaps[1 - from].gain(best))){
+				best = v;
+			}
+		}
+		return best;
+	}
+	private void updateGains(Level level, int e, int side, int delta, int[] part, boolean[] locked, GainHeap[] heaps){
+		for(int j = level.edgeStarts[e]; j < level.edgeStarts[e + 1]; j++){
+			int u = level.edgePins[j];
+			if(!locked[u] && (side == -1 || part[u] == side)){
+				heaps[part[u]].change(u, delta);
+			}
+		}
+	}
+	private static int violation(int[] partWeight, int maxPartWeight){
+		return Math.max(0, partWeight[0] - maxPartWeight) + Math.max(0, partWeight[1] - maxPartWeight);
+	}
+
+	private int[] randomOrder(int n){
+		int[] order = new int[n];
+		for(int i = 0; i < n; i++){
+			order[i] = i;
+		}
+		for(int i = n - 1; i > 0; i--){
+			int j = this.random.nextInt(i + 1);
+			int temp = order[i];
+			order[i] = order[j];
+			order[j] = temp;
+		}
+		return order;
+	}
+
+	/**
+	 * Hypergraph of one level, the hyperedges of each vertex are
+	 * vertexEdges[vertexStarts[v]] to vertexEdges[vertexStarts[v + 1] - 1]
+	 */
+	private static class Level {
+		final int numVertices;
+		final int totalWeight;
+		final int[] vertexWeights;
+		final int[] edgeStarts, edgePins, edgeWeights;
+		final int[] vertexStarts, vertexEdges;
+
+		//The vertex of the next coarser level
+		int[] coarseMap;
+
+		Level(int[] vertexWeights, int[] edgeStarts, int[] edgePins, int[] edgeWeights){
+			this.numVertices = vertexWeights.length;
+			this.vertexWeights = vertexWeights;
+			this.edgeStarts = edgeStarts;
+			this.edgePins = edgePins;
+			this.edgeWeights = edgeWeights;
+
+			int totalWeight = 0;
+			for(int weight:vertexWeights){
+				totalWeight += weight;
+			}
+			this.totalWeight = totalWeight;
+
+			this.vertexStarts = new int[this.numVertices + 1];
+			for(int pin:edgePins){
+				this.vertexStarts[pin + 1]++;
+			}
+			for(int v = 0; v < this.numVertices; v++){
+				this.vertexStarts[v + 1] += this.vertexStarts[v];
+			}
+			this.vertexEdges = new int[edgePins.length];
+			int[] fill = Arrays.copyOf(this.vertexStarts, this.numVertices);
+			for(int e = 0; e < edgeWeights.length; e++){
+				for(int j = edgeStarts[e]; j < edgeStarts[e + 1]; j++){
+					this.vertexEdges[fill[edgePins[j]]++] = e;
+				}
+			}
+		}
+
+		int cut(int[] part){
+			int cut = 0;
+			for(int e = 0; e < this.edgeWeights.length; e++){
+				int firstPart = part[this.edgePins[this.edgeStarts[e]]];
+				for(int j = this.edgeStarts[e] + 1; j < this.edgeStarts[e + 1]; j++){
+					if(part[this.edgePins[j]] != firstPart){
+						cut += this.edgeWeights[e];
+						break;
+					}
+				}
+			}
+			return cut;
+		}
+		int violation(int[] part, int maxPartWeight){
+			int[] partWeight = new int[2];
+			for(int v = 0; v < this.numVertices; v++){
+				partWeight[part[v]] += this.vertexWeights[v];
+			}
+			return Bipartitioner.violation(partWeight, maxPartWeight);
+		}
+	}
+
+	/**
+	 * Indexed max heap of vertices on their gain
+	 */
+	private static class GainHeap {
+		private final int[] heap;
+		private final int[] position;
+		private final int[] gain;
+		private int size;
+
+		GainHeap(int n, int[] gain){
+			this.heap = new int[n];
+			this.position = new int[n];
+			Arrays.fill(this.position, -1);
+			this.gain = gain;
+			this.size = 0;
+		}
+
+		void clear(){
+			for(int i = 0; i < this.size; i++){
+				this.position[this.heap[i]] = -1;
+			}
+			this.size = 0;
+		}
+		boolean isEmpty(){
+			return this.size == 0;
+		}
+		int top(){
+			return this.heap[0];
+		}
+		int gain(int v){
+			return this.gain[v];
+		}
+
+		void insert(int v){
+			this.heap[this.size] = v;
+			this.position[v] = this.size;
+			this.size += 1;
+			this.siftUp(this.size - 1);
+		}
+		void remove(int v){
+			int i = this.position[v];
+			this.position[v] = -1;
+			this.size -= 1;
+			if(i != this.size){
+				int last = this.heap[this.size];
+				this.heap[i] = last;
+				this.position[last] = i;
+				this.siftUp(i);
+				this.siftDown(this.position[last]);
+			}
+		}
+		void change(int v, int delta){
+			this.gain[v] += delta;
+			int i = this.position[v];
+			if(delta > 0){
+				this.siftUp(i);
+			}else{
+				this.siftDown(i);
+			}
+		}
+
+		private void siftUp(int i){
+			int v = this.heap[i];
+			while(i > 0){
+				int parent = (i - 1) / 2;
+				if(this.gain[this.heap[parent]] >= this.gain[v]) break;
+				this.heap[i] = this.heap[parent];
+				this.position[this.heap[i]] = i;
+				i = parent;
+			}
+			this.heap[i] = v;
+			this.position[v] = i;
+		}
+		private void siftDown(int i){
+			int v = this.heap[i];
+			while(true){
+				int child = 2 * i + 1;
+				if(child >= this.size) break;
+				if(child + 1 < this.size && this.gain[this.heap[child + 1]] > this.gain[this.heap[child]]) child += 1;
+				if(this.gain[this.heap[child]] <= this.gain[v]) break;
+				this.heap[i] = this.heap[child];
+				this.position[this.heap[i]] = i;
+				i = child;
+			}
+			this.heap[i] = v;
+			this.position[v] = i;
+		}
+	}
+}
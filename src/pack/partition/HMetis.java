@@ -8,6 +8,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import pack.architecture.Architecture;
@@ -21,7 +22,7 @@ import pack.util.Output;
 import pack.util.Timing;
 import pack.util.Util;
 
-public class HMetis {
+public class HMetis implements Runnable {
 	private Netlist netlist;
 	private int size;
 	private Param param;
@@ -36,12 +37,16 @@ public class HMetis {
 	
 	private int metisIt;
 
+	private ArrayList<int[]> hyperedges;
+	private ArrayList<Integer> hyperedgeWeights;
+	
+	private int[] partitionResult;
+
 	private ArrayList<Edge> edges;
 	private ArrayList<Edge> criticalEdges;
 	private Integer numberOfEdges;
 	private Integer numberOfCriticalEdges;
 	
-	private boolean isRunning;
 	private boolean isFinished;
 	
 	private double partitioningRuntime;
@@ -83,32 +88,39 @@ public class HMetis {
 		return this.result;
 	}
 
-	public boolean isRunning(){
-		if(this.isRunning == true){
-			try {
-		        this.proc.exitValue();
-		        this.isRunning = false;
-		        return false;
-		    }catch (IllegalThreadStateException e) {
-		    	this.isRunning = true;
-		        return true;
-		    }
-		}else{
-			return this.isRunning;
-		}
-	}
 	public boolean isFinished(){
 		return this.isFinished;
 	}
+    /**
+     * Builds the hypergraph, the netlist should not change between
+     * startRun and finishRun. The partitioning itself is done in run.
+     */
     public void startRun(){
     	this.blockMap = new HashMap<Integer,Integer>();
 		this.makeBlockMap();
-    	this.writeToFile();
-    	this.run_hMetis();
+		this.makeHypergraph();
+		if(!this.param.internalPartitioner()){
+			this.writeToFile();
+		}
+		Output.println(this.param.getInfoLine(this.netlist, this.numberOfEdges, this.numberOfCriticalEdges, this.metisIt, this.thread));
     }
-    public void finishRun(){	
-    	this.readHMetisTerminalOutput();
-    	this.readHMetisResultsFromFile();
+    /**
+     * Partitions the hypergraph, blocks until the partitioning is finished
+     */
+    @Override
+    public void run(){
+		if(this.param.internalPartitioner()){
+			this.run_bipartitioner();
+		}else{
+			this.run_hMetis();
+		}
+    }
+    public void finishRun(){
+    	if(this.param.internalPartitioner()){
+    		this.readBipartitionerResult();
+    	}else{
+    		this.readHMetisResultsFromFile();
+    	}
     	this.isFinished = true;
     }
     private void makeBlockMap(){
@@ -145,35 +157,87 @@ public class HMetis {
 			e.printStackTrace();
 		}
     }
+	/**
+	 * Builds the hyperedges of the netlist. The hyperedge of a net has
+	 * weight 1 if it has terminals and 2 otherwise. Each critical connection
+	 * gets an extra hyperedge between source and sink with its net weight.
+	 */
+	private void makeHypergraph(){
+		this.hyperedges = new ArrayList<int[]>();
+		this.hyperedgeWeights = new ArrayList<Integer>();
+		for(N n:this.netlist.get_nets()){
+			if(n.add_net_to_hmetis_partitioning(this.param.maxFanout())){
+				this.addConnections(n);
+			}
+		}
+	}
+	private void addConnections(N parentNet){
+		if(parentNet.get_sink_pins().size() > this.param.maxFanout()){
+			ErrorLog.print("Max fanout is equal to " + this.param.maxFanout() + " => " + parentNet.get_sink_pins().size());
+		}
+		if(parentNet.has_source()){
+			P sourcePin = parentNet.get_source_pin();
+			B sourceBlock = sourcePin.get_block();
+			
+			int[] pins = new int[parentNet.get_sink_pins().size() + 1];
+			int pin = 0;
+			pins[pin++] = this.blockMap.get(sourceBlock.get_number());
+			for(P sinkPin:parentNet.get_sink_pins()){
+				B sinkBlock = sinkPin.get_block();
+				pins[pin++] = this.blockMap.get(sinkBlock.get_number());
+			}
+			this.hyperedges.add(pins);
+			if(parentNet.has_terminals()){
+				this.hyperedgeWeights.add(1);
+			}else{
+				this.hyperedgeWeights.add(2);
+			}
+			
+			for(P sinkPin:parentNet.get_sink_pins()){
+				Edge edge = new Edge(sourcePin, sinkPin, sinkPin.get_net_weight(), parentNet.get_name());
+				this.edges.add(edge);
+				this.numberOfEdges += 1;
+				if(sinkPin.get_net_weight() > 1){
+					B sinkBlock = sinkPin.get_block();
+					
+					//CRITICAL CONNECTION
+					this.hyperedges.add(new int[]{this.blockMap.get(sourceBlock.get_number()), this.blockMap.get(sinkBlock.get_number())});
+					this.hyperedgeWeights.add(sinkPin.get_net_weight());
+					
+					this.criticalEdges.add(edge);
+					this.numberOfCriticalEdges += 1;
+				}
+			}
+		}else{
+			if(!parentNet.has_terminals()){
+				ErrorLog.print("Unexpected situation, this net has no source so should have a terminal");
+			}
+			int[] pins = new int[parentNet.get_sink_pins().size()];
+			int pin = 0;
+			for(P sinkPin:parentNet.get_sink_pins()){
+				B sinkBlock = sinkPin.get_block();
+				pins[pin++] = this.blockMap.get(sinkBlock.get_number());
+			}
+			this.hyperedges.add(pins);
+			this.hyperedgeWeights.add(1);
+		}
+	}
 	private void writeToFile(){
 		try {
 			BufferedWriter bw = new BufferedWriter(new FileWriter(this.param.getHMetisFolder() + "files/" + this.netlist.get_blif() + "_" + this.param.getSimulationID() + "_" + this.thread));
-			int numberOfInternalNets = 0;
-			for(N n:this.netlist.get_nets()){
-				if(n.add_net_to_hmetis_partitioning(this.param.maxFanout())){
-					numberOfInternalNets += 1;
-					if(n.has_source()){
-						for(P sinkPin:n.get_sink_pins()){
-							this.numberOfEdges += 1;
-							if(sinkPin.get_net_weight()>1){
-								numberOfInternalNets += 1;
-								this.numberOfCriticalEdges += 1;
-							}
-						}
-					}
-				}
-			}
 			
 			//HEADER LINE
 			int numberOfBlocks = this.netlist.block_count();
-			bw.write(numberOfInternalNets + " " + numberOfBlocks + " " + "11");
+			bw.write(this.hyperedges.size() + " " + numberOfBlocks + " " + "11");
 			bw.newLine();
 			
 			//NETS
-			for(N n:this.netlist.get_nets()){
-				if(n.add_net_to_hmetis_partitioning(this.param.maxFanout())){
-					this.writeConnections(n, bw);
+			for(int i=0; i<this.hyperedges.size(); i++){
+				bw.write(this.hyperedgeWeights.get(i) + "");
+				for(int pin:this.hyperedges.get(i)){
+					bw.write(" " + pin);
 				}
+				bw.newLine();
 			}
 			
 			//BLOCKS
@@ -195,72 +259,66 @@ public class HMetis {
 			e.printStackTrace();
 		}
 	}
-	private void writeConnections(N parentNet, BufferedWriter writer){
-		try {
-			if(parentNet.has_source()){
-				P sourcePin = parentNet.get_source_pin();
-				B sourceBlock = sourcePin.get_block();
-				if(parentNet.has_terminals()){
-					writer.write("1");
-				}else{
-					writer.write("2");
-				}
-				writer.write(" " + this.blockMap.get(sourceBlock.get_number()));
-				
-				for(P sinkPin:parentNet.get_sink_pins()){
-					B sinkBlock = sinkPin.get_block();
-					writer.write(" " + this.blockMap.get(sinkBlock.get_number()));
-				}
-				if(parentNet.get_sink_pins().size() > this.param.maxFanout()){
-					ErrorLog.print("Max fanout is equal to " + this.param.maxFanout() + " => " + parentNet.get_sink_pins().size());
-				}
-				writer.newLine();
-				for(P sinkPin:parentNet.get_sink_pins()){
-					Edge edge = new Edge(sourcePin, sinkPin, sinkPin.get_net_weight(), parentNet.get_name());
-					this.edges.add(edge);
-					if(sinkPin.get_net_weight() > 1){
-						B sinkBlock = sinkPin.get_block();
-						
-						//PRINT CONNECTION
-						writer.write(sinkPin.get_net_weight() + " " + this.blockMap.get(sourceBlock.get_number()) + " " + this.blockMap.get(sinkBlock.get_number()));
-						writer.newLine();
-						
-						this.criticalEdges.add(edge);
-					}
-				}
-			}else{
-				if(parentNet.has_terminals()){
-					writer.write("1");
-				}else{
-					ErrorLog.print("Unexpected situation, this net has no source so should have a terminal");
-				}
-				for(P sinkPin:parentNet.get_sink_pins()){
-					B sinkBlock = sinkPin.get_block();
-					writer.write(" " + this.blockMap.get(sinkBlock.get_number()));
-				}
-				if(parentNet.get_sink_pins().size() > this.param.maxFanout()){
-					ErrorLog.print("Max fanout is equal to " + this.param.maxFanout() + " => " + parentNet.get_sink_pins().size());
-				}
-				writer.newLine();
+	
+	//INTERNAL PARTITIONER
+	private void run_bipartitioner(){
+		//The hMetis block numbers start at 1
+		int[] vertexWeights = new int[this.blocks.size()];
+		Arrays.fill(vertexWeights, 1);
+		int numPins = 0;
+		for(int[] pins:this.hyperedges){
+			numPins += pins.length;
+		}
+		int[] edgeStarts = new int[this.hyperedges.size() + 1];
+		int[] edgePins = new int[numPins];
+		int[] edgeWeights = new int[this.hyperedges.size()];
+		int pin = 0;
+		for(int i=0; i<this.hyperedges.size(); i++){
+			edgeStarts[i] = pin;
+			for(int blockNumber:this.hyperedges.get(i)){
+				edgePins[pin++] = blockNumber - 1;
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
+			edgeWeights[i] = this.hyperedgeWeights.get(i);
+		}
+		edgeStarts[this.hyperedges.size()] = pin;
+		
+		Bipartitioner bipartitioner = new Bipartitioner(this.param.ubfactor(), this.param.nruns(), this.param.getSimulationID() + this.metisIt);
+		long start = System.nanoTime();
+		this.partitionResult = bipartitioner.bipartition(vertexWeights, edgeStarts, edgePins, edgeWeights);
+		this.numberOfcutEdges = bipartitioner.getCut();
+		this.partitioningRuntime = (System.nanoTime() - start) * 1e-9;
+	}
+	private void readBipartitionerResult(){
+		this.printPartitioningInfo();
+		
+		if(this.partitionResult == null){
+			ErrorLog.print("Problem with the internal partitioner, no result for " + this.netlist.get_blif());
+		}
+		for(int blockNumber=0; blockNumber<this.blocks.size(); blockNumber++){
+			B b = this.blocks.get(blockNumber);
+			this.result[this.partitionResult[blockNumber]].add(b);
 		}
 	}
+	
 	private void run_hMetis(){
 		try{
         	ProcessBuilder pb = new ProcessBuilder(this.param.getHMetisLine(this.thread));	
         	this.proc = pb.start();
-        	Output.println(this.param.getInfoLine(this.netlist, this.numberOfEdges, this.numberOfCriticalEdges, this.metisIt, this.thread));
+        	this.readHMetisTerminalOutput();
+        	this.proc.waitFor();
         } catch (IOException e) {
 			e.printStackTrace();
+		} catch (InterruptedException e) {
+			// The callback of the partitioning task reports the failure
+			this.proc.destroy();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("hMetis run is interrupted", e);
 		}
-		this.isRunning = true;
 	}
 	public int numberOfCutEdges(){
 		return this.numberOfcutEdges;
 	}
-	private void readHMetisResultsFromFile(){
+	private void printPartitioningInfo(){
 		boolean printCutInformation = true;
 		if(printCutInformation){
 			Info.add("cut", "atom_count" + "\t" + this.netlist.atom_count() + "\t" + "cut_edges" + "\t" + this.numberOfcutEdges);	
@@ -270,6 +328,9 @@ public class HMetis {
 		if(printPartitioningRuntime){
 			Info.add("hmetis", "atom_count" + "\t" + this.netlist.atom_count() + "\t" + "runtime" + "\t" + Util.str(this.partitioningRuntime).replace(".",","));	
 		}
+	}
+	private void readHMetisResultsFromFile(){
+		this.printPartitioningInfo();
 		
 		String resultFile = this.param.getHMetisFolder() + "files/" + this.netlist.get_blif() + "_" + this.param.getSimulationID() + "_" + this.thread + ".part." + this.param.nparts();
 		
@@ -17,6 +17,7 @@ public class Param{
 	private int dbglvl;
 	
 	private int maxFanout;
+	private boolean internalPartitioner;
 	
 	private String hmetis_folder;
 	private String circuitName;
@@ -31,6 +32,7 @@ public class Param{
 		int quality = simulation.getIntValue("hmetis_quality");
 		this.ubfactor =  simulation.getIntValue("unbalance_factor");
 		this.maxFanout = simulation.getIntValue("max_fanout");
+		this.internalPartitioner = simulation.getBooleanValue("internal_partitioner");
 		
 		if(quality == 1){
 			this.cType = 1;
@@ -114,7 +116,9 @@ public class Param{
 			ErrorLog.print("Unknown hmetis quality parameter => " + quality);
 		}
 		
-		this.hmetis_folder = simulation.getStringValue("hmetis_folder");
+		if(!this.internalPartitioner){
+			this.hmetis_folder = simulation.getStringValue("hmetis_folder");
+		}
 		this.circuitName = simulation.getStringValue("circuit");
 		this.simulationID = simulation.getSimulationID();
 	}
@@ -131,6 +135,7 @@ public class Param{
 		s += tabs + Util.fill("Reconsts:", length) + this.reconst + "\n";
 		s += tabs + Util.fill("dbglvl:", length) + this.dbglvl + "\n";
 		s += tabs + Util.fill("max fanout:", length) + this.maxFanout + "\n";
+		s += tabs + Util.fill("internal:", length) + this.internalPartitioner + "\n";
 		s += tabs + "#########################" + "\n";
 		return s;
 	}
@@ -141,6 +146,15 @@ public class Param{
 	public int maxFanout(){
 		return this.maxFanout;
 	}
+	public int ubfactor(){
+		return this.ubfactor;
+	}
+	public int nruns(){
+		return this.nruns;
+	}
+	public boolean internalPartitioner(){
+		return this.internalPartitioner;
+	}
 	public String getGraphFile(int thread){
 		return this.hmetis_folder + "files/" + this.circuitName + "_" + this.simulationID + "_" + thread;
 	}
@@ -2,8 +2,12 @@ package pack.partition;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 import pack.architecture.Architecture;
 import pack.main.Simulation;
@@ -24,13 +28,15 @@ public class Partition{
 	private int maxNetlistSize;
 	private Param param;
 	private ThreadPool threadPool;
+	private ExecutorService executor;
+	private PriorityBlockingQueue<FinishedTask> finishedTasks;
+	private AtomicLong finishedTaskCount;
+	private int numRunningTasks;
 	
 	private long startTime;
 	private ArrayList<String> timeSteps;
 	
 	private Stack stack;
-	private ArrayList<HMetis> hMetisPool;
-	private HashMap<Thread, NetGen> netGenThreadPool;
 	
 	private int metisIt;
 	private CutEdges cutEdges;
@@ -67,14 +73,13 @@ public class Partition{
 		int poolSize = this.simulation.getIntValue("num_threads");
 		Output.println("\t\tPartition pool size: " + poolSize);
 		this.threadPool = new ThreadPool(poolSize);
-				
-		this.hMetisPool = new ArrayList<HMetis>();
-		this.netGenThreadPool = new HashMap<Thread, NetGen>();
 		Output.newLine();
 		
 		this.numberOfCutEdges = 0;
 		
-		this.deleteExistingFiles();
+		if(!this.param.internalPartitioner()){
+			this.deleteExistingFiles();
+		}
 	}
 	public void partitionate(){
 		this.startTime = System.nanoTime();
@@ -85,11 +90,20 @@ public class Partition{
 		
 		//Partition
 		Output.println("\tPartitionate netlist:");
-		this.processChildNetlist(this.root);
-		while(!this.stack.isEmpty() || !this.hMetisPool.isEmpty() || !this.netGenThreadPool.isEmpty()){
-			this.startHMetis();
-			this.finishHMetis();
-			this.finishNetGen();
+		this.executor = Executors.newWorkStealingPool(this.threadPool.size());
+		this.finishedTasks = new PriorityBlockingQueue<FinishedTask>();
+		this.finishedTaskCount = new AtomicLong();
+		this.numRunningTasks = 0;
+		try{
+			this.processChildNetlist(this.root);
+			while(this.numRunningTasks > 0){
+				this.finishedTasks.take().callback.run();
+			}
+		}catch(InterruptedException e){
+			ErrorLog.print("Partitioning is interrupted: " + e.getMessage());
+		}finally{
+			this.executor.shutdown();
+			this.executor = null;
 		}
 		Output.newLine();
 		
@@ -120,67 +134,99 @@ public class Partition{
 		while(!this.threadPool.isEmpty() && !this.stack.isEmpty()){
 			Netlist parent = this.stack.pullNetlist();
 			int thread = this.threadPool.getThread();
-			HMetis hMetis = new HMetis(parent, thread, this.metisIt, this.param);
+			final HMetis hMetis = new HMetis(parent, thread, this.metisIt, this.param);
 			this.metisIt += 1;
 			hMetis.startRun();
-			this.hMetisPool.add(hMetis);
+			this.submit(hMetis, hMetis.size(), new Runnable(){
+				@Override
+				public void run(){
+					Partition.this.finishHMetis(hMetis);
+				}
+			});
 		}
 	}
-	public void finishHMetis(){
-		HMetis hMetisMax = null;
-		for(HMetis hMetis:this.hMetisPool){
-			if(!hMetis.isRunning()){
-				if(!hMetis.isFinished()){
-					this.threadPool.addThread(hMetis.getThreadNumber());
-					hMetis.finishRun();
-				}		
-				if(hMetisMax == null){
-					hMetisMax = hMetis;
-				}else if(hMetis.size() > hMetisMax.size()){
-					hMetisMax = hMetis;
-				}
+	public void finishHMetis(HMetis hMetis){
+		this.threadPool.addThread(hMetis.getThreadNumber());
+		hMetis.finishRun();
+		
+		Netlist parent = hMetis.getNetlist();
+		Part[] result = hMetis.getResult();
+		
+		this.numberOfCutEdges += hMetis.numberOfCutEdges();
+	
+		if(debug)this.analyzeParts(result);
+		this.hardBlockSwap(result);
+		
+		//FINISH BIPARTITION
+		this.finishPartition(parent, result, hMetis);
+		
+		if(parent.get_children().size() == 2){
+			if(parent.get_level() != 0){
+				parent.clean_up();
 			}
 		}
-		if(hMetisMax != null){
-			this.hMetisPool.remove(hMetisMax);
-			
-			Netlist parent = hMetisMax.getNetlist();
-			Part[] result = hMetisMax.getResult();
-			
-			this.numberOfCutEdges += hMetisMax.numberOfCutEdges();
 		
-			if(debug)this.analyzeParts(result);
-			this.hardBlockSwap(result);
-			
-			//FINISH BIPARTITION
-			this.finishPartition(parent, result, hMetisMax);
-			
-			if(parent.get_children().size() == 2){
-				if(parent.get_level() != 0){
-					parent.clean_up();
-				}
+		this.startHMetis();
+	}
+	public void finishNetGen(NetGen ng){
+		Netlist result = ng.result();
+		Netlist parent = ng.parent();
+		result.updateFamily(parent);
+		
+		this.threadPool.addThread(ng.thread());
+		
+		this.processChildNetlist(result);
+		
+		if(parent.get_children().size() == 2){
+			if(parent.get_level() != 0){
+				parent.clean_up();
 			}
 		}
 	}
-	public void finishNetGen(){
-		for(Thread thread:new HashSet<Thread>(this.netGenThreadPool.keySet())){
-			if(!thread.isAlive()){
-				NetGen ng = this.netGenThreadPool.remove(thread);
-				
-				Netlist result = ng.result();
-				Netlist parent = ng.parent();
-				result.updateFamily(parent);
-				
-				this.threadPool.addThread(ng.thread());
-				
-				this.processChildNetlist(result);
-				
-				if(parent.get_children().size() == 2){
-					if(parent.get_level() != 0){
-						parent.clean_up();
+	
+	/**
+	 * Runs the task on the executor. When the task is finished, the callback
+	 * is queued to run on the partitioning thread, so the netlist hierarchy
+	 * is only changed by one thread. The finished task with the largest size
+	 * is processed first, as the largest finished hMetis run was processed
+	 * first by the polling loop. Child netlist generation has size 0.
+	 */
+	private void submit(Runnable task, final int size, final Runnable callback){
+		this.numRunningTasks += 1;
+		CompletableFuture.runAsync(task, this.executor).whenComplete(new BiConsumer<Void, Throwable>(){
+			@Override
+			public void accept(Void result, final Throwable error){
+				Partition.this.finishedTasks.add(new FinishedTask(size, Partition.this.finishedTaskCount.getAndIncrement(), new Runnable(){
+					@Override
+					public void run(){
+						Partition.this.numRunningTasks -= 1;
+						if(error != null){
+							error.printStackTrace();
+							ErrorLog.print("Partitioning task failed: " + error.getMessage());
+						}
+						callback.run();
 					}
-				}
+				}));
 			}
+		});
+	}
+	private static class FinishedTask implements Comparable<FinishedTask>{
+		private final int size;
+		private final long order;
+		private final Runnable callback;
+		
+		FinishedTask(int size, long order, Runnable callback){
+			this.size = size;
+			this.order = order;
+			this.callback = callback;
+		}
+		@Override
+		public int compareTo(FinishedTask other){
+			//Largest size first, tasks of equal size in the order they finished
+			if(this.size != other.size){
+				return Integer.compare(other.size, this.size);
+			}
+			return Long.compare(this.order, other.order);
 		}
 	}
 	public void finishPartition(Netlist parent, Part[] result, HMetis hMetis){
@@ -205,26 +251,26 @@ public class Partition{
 		}
 		
 		if(!this.threadPool.isEmpty() && this.threadPool.size() > 1){
-			NetGen ngx = new NetGen(X, parent, this.threadPool.getThread());
-			Thread tx = new Thread(ngx);
-			tx.start();
-			if(this.netGenThreadPool.containsKey(tx)){
-				ErrorLog.print("Duplicate thread!");
-			}
-			this.netGenThreadPool.put(tx, ngx);
+			final NetGen ngx = new NetGen(X, parent, this.threadPool.getThread());
+			this.submit(ngx, 0, new Runnable(){
+				@Override
+				public void run(){
+					Partition.this.finishNetGen(ngx);
+				}
+			});
 		}else{
 			Netlist childX = new Netlist(X, parent);
 			childX.updateFamily(parent);
 			this.processChildNetlist(childX);
 		}
 		if(!this.threadPool.isEmpty() && this.threadPool.size() > 1){
-			NetGen ngy = new NetGen(Y, parent, this.threadPool.getThread());
-			Thread ty = new Thread(ngy);
-			ty.start();
-			if(this.netGenThreadPool.containsKey(ty)){
-				ErrorLog.print("Duplicate thread!");
-			}
-			this.netGenThreadPool.put(ty, ngy);
+			final NetGen ngy = new NetGen(Y, parent, this.threadPool.getThread());
+			this.submit(ngy, 0, new Runnable(){
+				@Override
+				public void run(){
+					Partition.this.finishNetGen(ngy);
+				}
+			});
 		}else{
 			Netlist childY = new Netlist(Y, parent);
 			childY.updateFamily(parent);
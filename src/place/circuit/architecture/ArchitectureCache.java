@@ -0,0 +1,116 @@
+package place.circuit.architecture;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stores a parsed architecture, including the delay tables and the
+ * block and port type data, in a folder on disk. The cache file is
+ * named after a hash of the contents of the key files (the architecture
+ * file, the circuit files, ...) and a description of the way the delay
+ * tables were obtained. A run on the same files can load the architecture
+ * instead of parsing the XML file and running vpr.
+ *
+ * Loading an architecture replaces the block and port type data, so
+ * only one architecture can be in use at a time.
+ */
+public class ArchitectureCache {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File cacheFile;
+
+    public ArchitectureCache(File cacheFolder, String description, File... keyFiles) throws IOException {
+        this.cacheFile = new File(cacheFolder, hash(description, keyFiles) + ".arch");
+    }
+
+    public File getFile() {
+        return this.cacheFile;
+    }
+
+    /**
+     * Returns null if the architecture is not in the cache, or if the
+     * cache file was written by an incompatible version
+     */
+    public Architecture load() {
+        if(!this.cacheFile.isFile()) {
+            return null;
+        }
+
+        try(ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(this.cacheFile), BUFFER_SIZE))) {
+            return (Architecture) in.readObject();
+
+        } catch(IOException | ClassNotFoundException | ClassCastException error) {
+            return null;
+        }
+    }
+
+    public void store(Architecture architecture) throws IOException {
+        File folder = this.cacheFile.getParentFile();
+        if(folder != null) {
+            Files.createDirectories(folder.toPath());
+        }
+
+        // Write to a temporary file first, so a concurrent run never reads a partial file
+        File tmpFile = File.createTempFile(this.cacheFile.getName(), ".tmp", folder);
+        try {
+            try(ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), BUFFER_SIZE))) {
+                out.writeObject(architecture);
+            }
+
+            Files.move(tmpFile.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+
+    private static String hash(String description, File... keyFiles) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException error) {
+            throw new IOException(error);
+        }
+
+        digest.update(description.getBytes(StandardCharsets.UTF_8));
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for(File keyFile : keyFiles) {
+            // Prefix the length, so the contents of two files can't be shifted
+            long length = keyFile == null ? -1 : keyFile.length();
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(length).array());
+
+            if(keyFile == null) {
+                continue;
+            }
+
+            try(InputStream in = new FileInputStream(keyFile)) {
+                int numRead;
+                while((numRead = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, numRead);
+                }
+            }
+        }
+
+        StringBuilder hash = new StringBuilder();
+        for(byte b : digest.digest()) {
+            hash.append(String.format("%02x", b));
+        }
+        return hash.toString();
+    }
+}
@@ -1,6 +1,5 @@
 package place.circuit.io;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
@@ -28,18 +27,21 @@ public class NetParser {
     //private Circuit circuit;
     private Architecture architecture;
     private String circuitName;
-    private BufferedReader reader;
+    private NetTokenizer tokenizer;
 
     private Map<BlockType, List<AbstractBlock>> blocks;
 
     // blockStack is a LinkedList because we want to be able to peekLast()
     private LinkedList<AbstractBlock> blockStack;
     private Stack<TupleBlockMap> inputsStack;
-    private Stack<Map<String, String>> outputsStack;
-    private Stack<Map<String, String>> clocksStack;
+    private Stack<Map<String, String[]>> outputsStack;
+    private Stack<Map<String, String[]>> clocksStack;
 
     private Map<String, AbstractPin> sourcePins;
 
+    // The nets between blocks inside a global block, parsed once per net name
+    private Map<String, LocalNet> localNets;
+
     private enum PortDirection {INPUT, OUTPUT, CLOCK};
     private PortDirection currentPortType;
 
@@ -47,7 +49,7 @@ public class NetParser {
     public NetParser(Architecture architecture, String circuitName, File file) throws FileNotFoundException {
         this.architecture = architecture;
         this.circuitName = circuitName;
-        this.reader = new BufferedReader(new FileReader(file));
+        this.tokenizer = new NetTokenizer(new FileReader(file));
     }
 
 
@@ -62,8 +64,8 @@ public class NetParser {
         // processed.
         this.blockStack = new LinkedList<AbstractBlock>();
         this.inputsStack = new Stack<TupleBlockMap>();
-        this.outputsStack = new Stack<Map<String, String>>();
-        this.clocksStack = new Stack<Map<String, String>>();
+        this.outputsStack = new Stack<Map<String, String[]>>();
+        this.clocksStack = new Stack<Map<String, String[]>>();
 
 
         // sourcePins contains the names of the outputs of leaf blocks and
@@ -71,60 +73,50 @@ public class NetParser {
         // global nets: at the time: only the name of the bottom-level source
         // block is given for these nets.
         this.sourcePins = new HashMap<String, AbstractPin>();
+        this.localNets = new HashMap<String, LocalNet>();
 
 
-        String line, multiLine = "";
-
-        while ((line = this.reader.readLine()) != null) {
-            String trimmedLine = line.trim();
-
-            // Add the current line to the multiLine
-            if(multiLine.length() > 0) {
-                multiLine += " ";
-            }
-            multiLine += trimmedLine;
-
-            if(!this.isCompleteLine(multiLine)) {
-                continue;
-            }
-
-
-
-            String lineStart = multiLine.substring(0, 5);
+        try {
+            NetTokenizer.Tag tag;
+            while((tag = this.tokenizer.next()) != null) {
+                switch(tag) {
+                case INPUTS:
+                    this.currentPortType = PortDirection.INPUT;
+                    break;
 
-            switch(lineStart) {
-            case "<inpu":
-                this.processInputLine(multiLine);
-                break;
+                case OUTPUTS:
+                    this.currentPortType = PortDirection.OUTPUT;
+                    break;
 
+                case CLOCKS:
+                    this.currentPortType = PortDirection.CLOCK;
+                    break;
 
-            case "<outp":
-                this.processOutputLine(multiLine);
-                break;
 
-            case "<cloc":
-                this.processClockLine(multiLine);
-                break;
+                case PORT:
+                    this.processPort(this.tokenizer.getName(), this.tokenizer.getNets());
+                    break;
 
 
-            case "<port":
-                this.processPortLine(multiLine);
-                break;
+                case BLOCK:
+                    if(!this.tokenizer.isSelfClosing()) {
+                        this.processBlock(
+                                this.tokenizer.getName(),
+                                this.tokenizer.getInstanceType(),
+                                this.tokenizer.getInstanceIndex(),
+                                this.tokenizer.getMode());
+                    }
+                    break;
 
 
-            case "<bloc":
-                if(!multiLine.substring(multiLine.length() - 2).equals("/>")) {
-                    this.processBlockLine(multiLine);
+                case BLOCK_END:
+                    this.processBlockEnd();
+                    break;
                 }
-                break;
-
-
-            case "</blo":
-                this.processBlockEndLine();
-                break;
             }
 
-            multiLine = "";
+        } finally {
+            this.tokenizer.close();
         }
 
 
@@ -135,88 +127,31 @@ public class NetParser {
     }
 
 
-    private boolean isCompleteLine(String line) {
-        int lineLength = line.length();
-
-        // The line is empty
-        if(lineLength == 0) {
-            return false;
-        }
-
-
-        // The line doesn't end with a ">" character
-        if(!line.substring(lineLength - 1).equals(">")) {
-            return false;
-        }
-
-        // The line is a port line, but not all ports are on this line
-        if(lineLength >= 7
-                && line.substring(0, 5).equals("<port")
-                && !line.substring(lineLength - 7).equals("</port>")) {
-            return false;
-        }
-
-        return true;
-    }
-
-
 
-    @SuppressWarnings("unused")
-    private void processInputLine(String line) {
-        this.currentPortType = PortDirection.INPUT;
-    }
-
-    @SuppressWarnings("unused")
-    private void processOutputLine(String line) {
-        this.currentPortType = PortDirection.OUTPUT;
-    }
-
-    @SuppressWarnings("unused")
-    private void processClockLine(String line) {
-        this.currentPortType = PortDirection.CLOCK;
-    }
-
-
-    private void processPortLine(String line) {
+    private void processPort(String name, String[] nets) {
 
         // This is a clock port
         if(this.currentPortType == null) {
             return;
         }
 
-        int nameStart = 12;
-        int nameEnd = line.indexOf("\"", 12);
-        String name = line.substring(nameStart, nameEnd);
-
-        int portsStart = nameEnd + 2;
-        int portsEnd = line.length() - 7;
-        String ports = line.substring(portsStart, portsEnd);
-
         switch(this.currentPortType) {
             case INPUT:
-                this.inputsStack.peek().getMap().put(name, ports);
+                this.inputsStack.peek().getMap().put(name, nets);
                 break;
 
             case OUTPUT:
-                this.outputsStack.peek().put(name, ports);
+                this.outputsStack.peek().put(name, nets);
                 break;
 
             case CLOCK:
-                this.clocksStack.peek().put(name, ports);
+                this.clocksStack.peek().put(name, nets);
                 break;
         }
     }
 
 
-    private void processBlockLine(String line) {
-
-        int nameStart = 13;
-        int nameEnd = line.indexOf("\"", nameStart);
-        String name = line.substring(nameStart, nameEnd);
-
-        int typeStart = nameEnd + 12;
-        int typeEnd = line.indexOf("[", typeStart);
-        String type = line.substring(typeStart, typeEnd);
+    private void processBlock(String name, String type, int index, String mode) {
 
         // Ignore the top-level block
         if(type.equals("FPGA_packed_netlist")) {
@@ -224,16 +159,6 @@ public class NetParser {
         }
 
 
-        int indexStart = typeEnd + 1;
-        int indexEnd = line.indexOf("]", indexStart);
-        int index = Integer.parseInt(line.substring(indexStart, indexEnd));
-
-
-        int modeStart = indexEnd + 9;
-        int modeEnd = line.length() - 2;
-        String mode = modeStart < modeEnd ? line.substring(modeStart, modeEnd) : null;
-
-
         BlockType parentBlockType = this.blockStack.isEmpty() ? null : this.blockStack.peek().getType();
         BlockType blockType = new BlockType(parentBlockType, type, mode);
 
@@ -257,8 +182,8 @@ public class NetParser {
 
         this.blockStack.push(newBlock);
         this.inputsStack.push(new TupleBlockMap(newBlock));
-        this.outputsStack.push(new HashMap<String, String>());
-        this.clocksStack.push(new HashMap<String, String>());
+        this.outputsStack.push(new HashMap<String, String[]>());
+        this.clocksStack.push(new HashMap<String, String[]>());
 
 
         if(!this.blocks.containsKey(blockType)) {
@@ -268,7 +193,7 @@ public class NetParser {
         this.blocks.get(blockType).add(newBlock);
     }
 
-    private void processBlockEndLine() {
+    private void processBlockEnd() {
         // If the stack is empty: this is the top-level block
         // All that is left to do is process all the inputs of
         // the global blocks
@@ -277,10 +202,10 @@ public class NetParser {
                 TupleBlockMap globalTuple = this.inputsStack.pop();
                 AbstractBlock globalBlock = globalTuple.getBlock();
 
-                Map<String, String> inputs = globalTuple.getMap();
+                Map<String, String[]> inputs = globalTuple.getMap();
                 processPortsHashMap(globalBlock, inputs);
 
-                Map<String, String> clocks = this.clocksStack.pop();
+                Map<String, String[]> clocks = this.clocksStack.pop();
                 processPortsHashMap(globalBlock, clocks);
             }
 
@@ -289,7 +214,7 @@ public class NetParser {
             // Remove this block and its outputs from the stacks
             AbstractBlock block = this.blockStack.pop();
 
-            Map<String, String> outputs = this.outputsStack.pop();
+            Map<String, String[]> outputs = this.outputsStack.pop();
             processPortsHashMap(block, outputs);
 
             // Process the inputs of all the children of this block, but
@@ -299,32 +224,29 @@ public class NetParser {
                 TupleBlockMap childTuple = this.inputsStack.pop();
                 AbstractBlock childBlock = childTuple.getBlock();
 
-                Map<String, String> inputs = childTuple.getMap();
+                Map<String, String[]> inputs = childTuple.getMap();
                 processPortsHashMap(childBlock, inputs);
 
-                Map<String, String> clocks = this.clocksStack.pop();
+                Map<String, String[]> clocks = this.clocksStack.pop();
                 processPortsHashMap(childBlock, clocks);
             }
         }
     }
 
-    private void processPortsHashMap(AbstractBlock block, Map<String, String> ports) {
-        for(Map.Entry<String, String> portEntry : ports.entrySet()) {
+    private void processPortsHashMap(AbstractBlock block, Map<String, String[]> ports) {
+        for(Map.Entry<String, String[]> portEntry : ports.entrySet()) {
             String portName = portEntry.getKey();
             PortType portType = new PortType(block.getType(), portName);
             List<AbstractPin> pins = block.getPins(portType);
 
-            String nets = portEntry.getValue();
+            String[] nets = portEntry.getValue();
 
             this.addNets(pins, nets);
         }
     }
 
 
-    private void addNets(List<AbstractPin> sinkPins, String netsString) {
-        //TODO: no regex?
-        String[] nets = netsString.trim().split("\\s+");
-
+    private void addNets(List<AbstractPin> sinkPins, String[] nets) {
         for(int sinkPinIndex = 0; sinkPinIndex < nets.length; sinkPinIndex++) {
             AbstractPin sinkPin = sinkPins.get(sinkPinIndex);
             String net = nets[sinkPinIndex];
@@ -341,33 +263,13 @@ public class NetParser {
 
         AbstractBlock sinkBlock = sinkPin.getOwner();
 
-        int separator = net.lastIndexOf("->");
-
-        if(separator != -1) {
-            int pinIndexEnd = separator - 1;
-            int pinIndexStart = net.lastIndexOf("[", pinIndexEnd) + 1;
-            int sourcePinIndex = Integer.parseInt(net.substring(pinIndexStart, pinIndexEnd));
-
-            int portEnd = pinIndexStart - 1;
-            int portStart = net.lastIndexOf(".", portEnd) + 1;
-            String sourcePortName = net.substring(portStart, portEnd);
-
+        LocalNet localNet = this.getLocalNet(net);
 
-            int blockIndexEnd = portStart - 2;
-            int blockIndexStart = portStart;
-            int sourceBlockIndex = -1;
-
-            if(net.charAt(blockIndexEnd) == ']') {
-                blockIndexStart = net.lastIndexOf("[", blockIndexEnd) + 1;
-                sourceBlockIndex = Integer.parseInt(net.substring(blockIndexStart, blockIndexEnd));
-            }
-
-            int typeEnd = blockIndexStart - 1;
-            int typeStart = 0;
-            String sourceBlockName = net.substring(typeStart, typeEnd);
-
-            //BlockType sourceBlockType = new BlockType(sourceBlockName);
-            //PortType sourcePortType = new PortType(sourceBlockType, sourcePortName);
+        if(localNet != null) {
+            int sourcePinIndex = localNet.sourcePinIndex;
+            String sourcePortName = localNet.sourcePortName;
+            int sourceBlockIndex = localNet.sourceBlockIndex;
+            String sourceBlockName = localNet.sourceBlockName;
 
             // Determine the source block
             AbstractBlock sourceBlock;
@@ -442,4 +344,61 @@ public class NetParser {
             netSink.setNetName(net);
         }
     }
+
+
+    /*
+     * A local net is formatted as block[blockIndex].port[pinIndex]->name
+     * or as block.port[pinIndex]->name for a port of the parent block.
+     * Returns null if the net has no source block in the name.
+     */
+    private LocalNet getLocalNet(String net) {
+        LocalNet localNet = this.localNets.get(net);
+        if(localNet != null) {
+            return localNet;
+        }
+
+        int separator = net.lastIndexOf("->");
+        if(separator == -1) {
+            return null;
+        }
+
+        int pinIndexEnd = separator - 1;
+        int pinIndexStart = net.lastIndexOf("[", pinIndexEnd) + 1;
+        int sourcePinIndex = Integer.parseInt(net.substring(pinIndexStart, pinIndexEnd));
+
+        int portEnd = pinIndexStart - 1;
+        int portStart = net.lastIndexOf(".", portEnd) + 1;
+        String sourcePortName = net.substring(portStart, portEnd);
+
+
+        int blockIndexEnd = portStart - 2;
+        int blockIndexStart = portStart;
+        int sourceBlockIndex = -1;
+
+        if(net.charAt(blockIndexEnd) == ']') {
+            blockIndexStart = net.lastIndexOf("[", blockIndexEnd) + 1;
+            sourceBlockIndex = Integer.parseInt(net.substring(blockIndexStart, blockIndexEnd));
+        }
+
+        int typeEnd = blockIndexStart - 1;
+        int typeStart = 0;
+        String sourceBlockName = net.substring(typeStart, typeEnd);
+
+        localNet = new LocalNet(sourceBlockName, sourceBlockIndex, sourcePortName, sourcePinIndex);
+        this.localNets.put(net, localNet);
+
+        return localNet;
+    }
+
+    private static class LocalNet {
+        final String sourceBlockName, sourcePortName;
+        final int sourceBlockIndex, sourcePinIndex;
+
+        LocalNet(String sourceBlockName, int sourceBlockIndex, String sourcePortName, int sourcePinIndex) {
+            this.sourceBlockName = sourceBlockName;
+            this.sourceBlockIndex = sourceBlockIndex;
+            this.sourcePortName = sourcePortName;
+            this.sourcePinIndex = sourcePinIndex;
+        }
+    }
 }
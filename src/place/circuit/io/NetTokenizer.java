@@ -0,0 +1,393 @@
+package place.circuit.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a packed net file in the tags that are used by the net parser.
+ * The characters are read in blocks from the reader and scanned in place:
+ * no strings are built for lines or for tags that are not used.
+ *
+ * The attribute values and the nets of the ports are interned. The names
+ * of block types, modes, ports and local nets repeat for every instance
+ * of a block, so each of them is only stored once.
+ */
+class NetTokenizer {
+
+    enum Tag {BLOCK, BLOCK_END, INPUTS, OUTPUTS, CLOCKS, PORT};
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0, limit = 0;
+
+    // The characters of the current name or value
+    private char[] token = new char[256];
+    private int tokenLength;
+
+    // Interned strings, open addressing with linear probing
+    private String[] strings = new String[1 << 12];
+    private int[] hashes = new int[1 << 12];
+    private int numStrings = 0;
+
+    // The attributes of the current tag
+    private String name, instanceType, mode;
+    private int instanceIndex;
+    private boolean selfClosing;
+    private final List<String> nets = new ArrayList<>();
+
+    NetTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    void close() throws IOException {
+        this.reader.close();
+    }
+
+
+    /**
+     * Returns the next used tag, or null at the end of the file
+     */
+    Tag next() throws IOException {
+        while(this.skipPast('<')) {
+            int c = this.read();
+
+            // End tag, only the end of a block is used
+            if(c == '/') {
+                c = this.readToken(this.read());
+                boolean isBlockEnd = this.tokenEquals("block");
+                if(c != '>') {
+                    this.skipPast('>');
+                }
+
+                if(isBlockEnd) {
+                    return Tag.BLOCK_END;
+                }
+                continue;
+            }
+
+            // Xml declaration or comment
+            if(c == '?' || c == '!') {
+                this.skipSpecialTag(c);
+                continue;
+            }
+
+            c = this.readToken(c);
+            this.name = null;
+            this.instanceType = null;
+            this.instanceIndex = -1;
+            this.mode = null;
+            this.selfClosing = false;
+
+            if(this.tokenEquals("block")) {
+                this.readAttributes(c);
+                return Tag.BLOCK;
+
+            } else if(this.tokenEquals("port")) {
+                this.readAttributes(c);
+                this.nets.clear();
+                if(!this.selfClosing) {
+                    this.readNets();
+                }
+                return Tag.PORT;
+
+            } else if(this.tokenEquals("inputs")) {
+                this.skipRestOfTag(c);
+                return Tag.INPUTS;
+
+            } else if(this.tokenEquals("outputs")) {
+                this.skipRestOfTag(c);
+                return Tag.OUTPUTS;
+
+            } else if(this.tokenEquals("clocks")) {
+                this.skipRestOfTag(c);
+                return Tag.CLOCKS;
+
+            } else {
+                // The contents of unused tags are skipped by skipPast('<')
+                this.readAttributes(c);
+            }
+        }
+
+        return null;
+    }
+
+    String getName() {
+        return this.name;
+    }
+    String getInstanceType() {
+        return this.instanceType;
+    }
+    int getInstanceIndex() {
+        return this.instanceIndex;
+    }
+    String getMode() {
+        return this.mode;
+    }
+    boolean isSelfClosing() {
+        return this.selfClosing;
+    }
+    String[] getNets() {
+        return this.nets.toArray(new String[this.nets.size()]);
+    }
+
+
+    private void readAttributes(int c) throws IOException {
+        while(true) {
+            c = this.skipWhitespace(c);
+
+            if(c == '>' || c == -1) {
+                return;
+
+            } else if(c == '/') {
+                this.selfClosing = true;
+                this.skipPast('>');
+                return;
+            }
+
+            // Attribute name
+            c = this.readToken(c);
+            boolean isName = this.tokenEquals("name");
+            boolean isInstance = this.tokenEquals("instance");
+            boolean isMode = this.tokenEquals("mode");
+
+            c = this.skipWhitespace(c);
+            if(c == '=') {
+                c = this.skipWhitespace(this.read());
+            }
+
+            // Attribute value
+            this.tokenLength = 0;
+            if(c == '"' || c == '\'') {
+                int quote = c;
+                while((c = this.read()) != quote && c != -1) {
+                    this.append(c);
+                }
+                c = this.read();
+            }
+
+            if(isName) {
+                this.name = this.intern(0, this.tokenLength);
+
+            } else if(isInstance) {
+                this.processInstance();
+
+            } else if(isMode) {
+                // An empty mode is the same as no mode
+                this.mode = this.tokenLength > 0 ? this.intern(0, this.tokenLength) : null;
+            }
+        }
+    }
+
+    // The instance is formatted as type[index]
+    private void processInstance() {
+        int typeEnd = 0;
+        while(typeEnd < this.tokenLength && this.token[typeEnd] != '[') {
+            typeEnd++;
+        }
+        this.instanceType = this.intern(0, typeEnd);
+
+        int index = 0;
+        for(int i = typeEnd + 1; i < this.tokenLength && this.token[i] != ']'; i++) {
+            index = 10 * index + (this.token[i] - '0');
+        }
+        this.instanceIndex = index;
+    }
+
+    // Reads the whitespace separated nets up to the end tag of the port
+    private void readNets() throws IOException {
+        int c = this.read();
+        while(true) {
+            c = this.skipWhitespace(c);
+            if(c == '<' || c == -1) {
+                break;
+            }
+
+            this.tokenLength = 0;
+            while(c != -1 && c != '<' && !isWhitespace(c)) {
+                this.append(c);
+                c = this.read();
+            }
+            this.nets.add(this.intern(0, this.tokenLength));
+        }
+
+        if(c == '<') {
+            this.skipPast('>');
+        }
+    }
+
+    private void skipRestOfTag(int c) throws IOException {
+        if(c != '>') {
+            this.skipPast('>');
+        }
+    }
+
+    private void skipSpecialTag(int c) throws IOException {
+        int next = this.read();
+        if(c == '!' && next == '-') {
+            // Comment: skip to -->
+            int dashes = 0;
+            while((c = this.read()) != -1) {
+                if(c == '>' && dashes >= 2) {
+                    return;
+                }
+                dashes = c == '-' ? dashes + 1 : 0;
+            }
+
+        } else if(next != '>') {
+            this.skipPast('>');
+        }
+    }
+
+
+    /**
+     * Reads a name that starts with the character c.
+     * Returns the first character after the name.
+     */
+    private int readToken(int c) throws IOException {
+        this.tokenLength = 0;
+        while(c != -1 && c != '>' && c != '/' && c != '=' && !isWhitespace(c)) {
+            this.append(c);
+            c = this.read();
+        }
+        return c;
+    }
+
+    private boolean tokenEquals(String string) {
+        if(string.length() != this.tokenLength) {
+            return false;
+        }
+
+        for(int i = 0; i < this.tokenLength; i++) {
+            if(string.charAt(i) != this.token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void append(int c) {
+        if(this.tokenLength == this.token.length) {
+            char[] newToken = new char[2 * this.token.length];
+            System.arraycopy(this.token, 0, newToken, 0, this.tokenLength);
+            this.token = newToken;
+        }
+        this.token[this.tokenLength++] = (char) c;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private int skipWhitespace(int c) throws IOException {
+        while(isWhitespace(c)) {
+            c = this.read();
+        }
+        return c;
+    }
+
+
+    /**
+     * Returns the string with the characters start to end of the token.
+     * The hash is the same as String.hashCode().
+     */
+    private String intern(int start, int end) {
+        int hash = 0;
+        for(int i = start; i < end; i++) {
+            hash = 31 * hash + this.token[i];
+        }
+
+        int mask = this.strings.length - 1;
+        int index = hash & mask;
+        while(this.strings[index] != null) {
+            if(this.hashes[index] == hash && this.stringEquals(this.strings[index], start, end)) {
+                return this.strings[index];
+            }
+            index = (index + 1) & mask;
+        }
+
+        String string = new String(this.token, start, end - start);
+        this.strings[index] = string;
+        this.hashes[index] = hash;
+        this.numStrings++;
+
+        if(2 * this.numStrings > this.strings.length) {
+            this.growStrings();
+        }
+
+        return string;
+    }
+    private boolean stringEquals(String string, int start, int end) {
+        if(string.length() != end - start) {
+            return false;
+        }
+
+        for(int i = start; i < end; i++) {
+            if(string.charAt(i - start) != this.token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    private void growStrings() {
+        String[] oldStrings = this.strings;
+        int[] oldHashes = this.hashes;
+
+        this.strings = new String[2 * oldStrings.length];
+        this.hashes = new int[2 * oldStrings.length];
+        int mask = this.strings.length - 1;
+
+        for(int i = 0; i < oldStrings.length; i++) {
+            if(oldStrings[i] != null) {
+                int index = oldHashes[i] & mask;
+                while(this.strings[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                this.strings[index] = oldStrings[i];
+                this.hashes[index] = oldHashes[i];
+            }
+        }
+    }
+
+
+    private int read() throws IOException {
+        if(this.position == this.limit && !this.fill()) {
+            return -1;
+        }
+        return this.buffer[this.position++];
+    }
+
+    /**
+     * Skips all characters up to and including the next target character.
+     * Returns false if the end of the file is reached first.
+     */
+    private boolean skipPast(char target) throws IOException {
+        do {
+            char[] buffer = this.buffer;
+            for(int i = this.position; i < this.limit; i++) {
+                if(buffer[i] == target) {
+                    this.position = i + 1;
+                    return true;
+                }
+            }
+            this.position = this.limit;
+        } while(this.fill());
+
+        return false;
+    }
+
+    private boolean fill() throws IOException {
+        int numRead = this.reader.read(this.buffer, 0, this.buffer.length);
+        if(numRead <= 0) {
+            this.position = this.limit = 0;
+            return false;
+        }
+
+        this.position = 0;
+        this.limit = numRead;
+        return true;
+    }
+}
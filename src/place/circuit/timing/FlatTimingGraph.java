@@ -0,0 +1,542 @@
+package place.circuit.timing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import place.circuit.architecture.BlockCategory;
+import place.circuit.architecture.DelayTables;
+import place.circuit.block.GlobalBlock;
+import place.circuit.timing.TimingNode.Position;
+
+/*
+ * The timing graph in primitive arrays. The nodes are numbered in topological
+ * order, the fan-in and fan-out edges of the nodes are stored in compressed
+ * sparse row format. The edges of the nodes, the arrival times, required
+ * times, wire delays and criticalities are only stored here: the timing nodes
+ * and edges keep their id and read and write these arrays, nothing is copied
+ * between the objects and the arrays. The full and the incremental timing analysis and the delta
+ * costs of simulated annealing run on the arrays.
+ *
+ * The structure of the graph doesn't change after it is built.
+ */
+class FlatTimingGraph {
+
+    private final TimingGraph timingGraph;
+    private final DelayTables delayTables;
+
+    private final int numNodes, numEdges;
+
+    // Nodes, in topological order
+    private final boolean[] isRoot, inArrivalTraversal, inRequiredTraversal;
+    private final double[] clockDelays;
+    final double[] arrivalTimes, requiredTimes;
+    private final int[] leafNodes;
+
+    // Edges, ordered by source node: the fan-out edges of node n are fanOutStarts[n] to fanOutStarts[n + 1].
+    // The placers visit the edges per source node, so the values of the sinks of a net are next to each other.
+    private final int[] fanOutStarts;
+    private final List<TimingEdge> edges;
+    private final int[] edgeSources, edgeSinks;
+    private final boolean[] isGlobalEdge; // Only these edges get a criticality, the global blocks have a different index
+    private final double[] fixedDelays;
+    final double[] wireDelays, criticalities;
+
+    // The fan-in edges of node n are fanInEdges[fanInStarts[n]] to fanInEdges[fanInStarts[n + 1] - 1]
+    private final int[] fanInStarts, fanInEdges;
+
+    // The global blocks of the edges, to calculate the wire delays
+    private final GlobalBlock[] blocks;
+    private final BlockCategory[] blockCategories;
+    private final int[] blockColumns, blockRows;
+    private final int[] edgeSourceBlocks, edgeSinkBlocks;
+
+    // Incremental timing analysis
+    private final BitSet dirtyArrivalNodes, dirtyRequiredNodes, changedEdges;
+
+    // Simulated annealing
+    private final double[] stagedWireDelays;
+
+    FlatTimingGraph(TimingGraph timingGraph, List<TimingNode> timingNodes, List<TimingNode> leafNodes, DelayTables delayTables) {
+        this.timingGraph = timingGraph;
+        this.delayTables = delayTables;
+
+        this.numNodes = timingNodes.size();
+        TimingNode[] nodes = this.topologicalOrder(timingNodes);
+
+        Map<TimingNode, Integer> nodeIds = new IdentityHashMap<>(this.numNodes);
+        for(int id = 0; id < this.numNodes; id++) {
+            nodeIds.put(nodes[id], id);
+        }
+
+        // Nodes
+        this.isRoot = new boolean[this.numNodes];
+        this.inArrivalTraversal = new boolean[this.numNodes];
+        this.inRequiredTraversal = new boolean[this.numNodes];
+        this.clockDelays = new double[this.numNodes];
+        this.arrivalTimes = new double[this.numNodes];
+        this.requiredTimes = new double[this.numNodes];
+
+        int numEdges = 0;
+        for(int id = 0; id < this.numNodes; id++) {
+            TimingNode node = nodes[id];
+
+            this.isRoot[id] = node.getPosition() == Position.ROOT;
+            this.inArrivalTraversal[id] = node.getArrivalOrder() >= 0;
+            this.inRequiredTraversal[id] = node.getRequiredOrder() >= 0;
+            this.clockDelays[id] = node.getClockDelay();
+
+            numEdges += node.getSinks().size();
+        }
+
+        this.leafNodes = new int[leafNodes.size()];
+        for(int i = 0; i < this.leafNodes.length; i++) {
+            this.leafNodes[i] = nodeIds.get(leafNodes.get(i));
+        }
+
+        // Blocks
+        Map<GlobalBlock, Integer> blockIds = new IdentityHashMap<>();
+        for(TimingNode node : nodes) {
+            if(!blockIds.containsKey(node.getGlobalBlock())) {
+                blockIds.put(node.getGlobalBlock(), blockIds.size());
+            }
+        }
+        this.blocks = new GlobalBlock[blockIds.size()];
+        this.blockCategories = new BlockCategory[blockIds.size()];
+        for(Map.Entry<GlobalBlock, Integer> entry : blockIds.entrySet()) {
+            this.blocks[entry.getValue()] = entry.getKey();
+            this.blockCategories[entry.getValue()] = entry.getKey().getCategory();
+        }
+        this.blockColumns = new int[this.blocks.length];
+        this.blockRows = new int[this.blocks.length];
+
+        // Fan-out edges, in the order of the sink lists of the nodes
+        this.numEdges = numEdges;
+        this.fanOutStarts = new int[this.numNodes + 1];
+        TimingEdge[] edges = new TimingEdge[numEdges];
+        this.edges = Arrays.asList(edges);
+        this.edgeSources = new int[numEdges];
+        this.edgeSinks = new int[numEdges];
+        this.isGlobalEdge = new boolean[numEdges];
+        this.fixedDelays = new double[numEdges];
+        this.wireDelays = new double[numEdges];
+        this.criticalities = new double[numEdges];
+        this.edgeSourceBlocks = new int[numEdges];
+        this.edgeSinkBlocks = new int[numEdges];
+
+        Map<TimingEdge, Integer> edgeIds = new IdentityHashMap<>(numEdges);
+        int edgeId = 0;
+        for(int id = 0; id < this.numNodes; id++) {
+            this.fanOutStarts[id] = edgeId;
+
+            for(TimingEdge edge : nodes[id].getSinks()) {
+                edges[edgeId] = edge;
+                this.edgeSources[edgeId] = id;
+                this.edgeSinks[edgeId] = nodeIds.get(edge.getSink());
+                this.isGlobalEdge[edgeId] = edge.getSource().getGlobalBlock().getIndex() != edge.getSink().getGlobalBlock().getIndex();
+                this.fixedDelays[edgeId] = edge.getFixedDelay();
+                this.edgeSourceBlocks[edgeId] = blockIds.get(edge.getSource().getGlobalBlock());
+                this.edgeSinkBlocks[edgeId] = blockIds.get(edge.getSink().getGlobalBlock());
+                edge.setFlatGraph(this, edgeId);
+
+                edgeIds.put(edge, edgeId);
+                edgeId++;
+            }
+        }
+        this.fanOutStarts[this.numNodes] = edgeId;
+
+        // Fan-in edges, in the order of the source lists of the nodes
+        this.fanInStarts = new int[this.numNodes + 1];
+        this.fanInEdges = new int[numEdges];
+        int fanInIndex = 0;
+        for(int id = 0; id < this.numNodes; id++) {
+            this.fanInStarts[id] = fanInIndex;
+
+            for(TimingEdge edge : nodes[id].getSources()) {
+                this.fanInEdges[fanInIndex] = edgeIds.get(edge);
+                fanInIndex++;
+            }
+        }
+        this.fanInStarts[this.numNodes] = fanInIndex;
+
+        // From here on the nodes get their edges from the flat graph
+        for(int id = 0; id < this.numNodes; id++) {
+            nodes[id].setFlatGraph(this, id);
+        }
+
+        this.dirtyArrivalNodes = new BitSet(this.numNodes);
+        this.dirtyRequiredNodes = new BitSet(this.numNodes);
+        this.changedEdges = new BitSet(numEdges);
+
+        this.stagedWireDelays = new double[numEdges];
+    }
+
+    /*
+     * Kahn's algorithm, the timing graph has no combinational loops
+     */
+    private TimingNode[] topologicalOrder(List<TimingNode> timingNodes) {
+        Map<TimingNode, Integer> numUnvisitedSources = new IdentityHashMap<>(timingNodes.size());
+        TimingNode[] order = new TimingNode[timingNodes.size()];
+
+        int numOrdered = 0;
+        for(TimingNode node : timingNodes) {
+            int numSources = node.getSources().size();
+            if(numSources == 0) {
+                order[numOrdered++] = node;
+            } else {
+                numUnvisitedSources.put(node, numSources);
+            }
+        }
+
+        for(int i = 0; i < numOrdered; i++) {
+            for(TimingEdge edge : order[i].getSinks()) {
+                TimingNode sink = edge.getSink();
+                int numSources = numUnvisitedSources.get(sink) - 1;
+                numUnvisitedSources.put(sink, numSources);
+
+                if(numSources == 0) {
+                    order[numOrdered++] = sink;
+                }
+            }
+        }
+
+        return order;
+    }
+
+
+    /*
+     * The edges of a node
+     */
+    int getNumSinks(int node) {
+        return this.fanOutStarts[node + 1] - this.fanOutStarts[node];
+    }
+    TimingEdge getSinkEdge(int node, int sinkIndex) {
+        return this.edges.get(this.fanOutStarts[node] + sinkIndex);
+    }
+    List<TimingEdge> getSinkEdges(int node) {
+        return this.edges.subList(this.fanOutStarts[node], this.fanOutStarts[node + 1]);
+    }
+
+    int getNumSources(int node) {
+        return this.fanInStarts[node + 1] - this.fanInStarts[node];
+    }
+    TimingEdge getSourceEdge(int node, int sourceIndex) {
+        return this.edges.get(this.fanInEdges[this.fanInStarts[node] + sourceIndex]);
+    }
+    List<TimingEdge> getSourceEdges(int node) {
+        List<TimingEdge> sourceEdges = new ArrayList<>(this.getNumSources(node));
+        for(int fanIn = this.fanInStarts[node]; fanIn < this.fanInStarts[node + 1]; fanIn++) {
+            sourceEdges.add(this.edges.get(this.fanInEdges[fanIn]));
+        }
+        return sourceEdges;
+    }
+
+
+    /*
+     * Calculates the wire delays of all edges from the positions of the blocks
+     */
+    void calculateWireDelays() {
+        for(int block = 0; block < this.blocks.length; block++) {
+            this.blockColumns[block] = this.blocks[block].getColumn();
+            this.blockRows[block] = this.blocks[block].getRow();
+        }
+
+        for(int edge = 0; edge < this.numEdges; edge++) {
+            int sourceBlock = this.edgeSourceBlocks[edge],
+                sinkBlock = this.edgeSinkBlocks[edge];
+
+            int deltaX = Math.abs(this.blockColumns[sourceBlock] - this.blockColumns[sinkBlock]);
+            int deltaY = Math.abs(this.blockRows[sourceBlock] - this.blockRows[sinkBlock]);
+
+            this.wireDelays[edge] = this.delayTables.getDelay(this.blockCategories[sourceBlock], this.blockCategories[sinkBlock], deltaX, deltaY);
+        }
+    }
+
+    /*
+     * The wire delay of one edge, from the current positions of the blocks
+     */
+    private double calculateWireDelay(int edge) {
+        GlobalBlock sourceBlock = this.blocks[this.edgeSourceBlocks[edge]],
+                    sinkBlock = this.blocks[this.edgeSinkBlocks[edge]];
+
+        int deltaX = Math.abs(sourceBlock.getColumn() - sinkBlock.getColumn());
+        int deltaY = Math.abs(sourceBlock.getRow() - sinkBlock.getRow());
+
+        return this.delayTables.getDelay(sourceBlock.getCategory(), sinkBlock.getCategory(), deltaX, deltaY);
+    }
+
+    /*
+     * Returns the max delay. The wire delays may have been set on the
+     * timing edges, e.g. by the placers, they are in the same array.
+     */
+    double calculateArrivalTimes() {
+        double[] arrivalTimes = this.arrivalTimes;
+        double[] fixedDelays = this.fixedDelays, wireDelays = this.wireDelays;
+        int[] edgeSources = this.edgeSources;
+
+        for(int node = 0; node < this.numNodes; node++) {
+            if(this.isRoot[node]) {
+                arrivalTimes[node] = 0;
+
+            } else if(this.inArrivalTraversal[node]) {
+                double arrivalTime = Double.MIN_VALUE;
+                for(int fanIn = this.fanInStarts[node]; fanIn < this.fanInStarts[node + 1]; fanIn++) {
+                    int edge = this.fanInEdges[fanIn];
+                    double localArrivalTime = arrivalTimes[edgeSources[edge]] + (fixedDelays[edge] + wireDelays[edge]);
+                    if(localArrivalTime > arrivalTime) {
+                        arrivalTime = localArrivalTime;
+                    }
+                }
+                arrivalTimes[node] = arrivalTime;
+            }
+        }
+
+        // A full analysis replaces the pending incremental changes
+        this.dirtyArrivalNodes.clear();
+        this.dirtyRequiredNodes.clear();
+        this.changedEdges.clear();
+
+        return this.calculateMaxDelay();
+    }
+    private double calculateMaxDelay() {
+        double maxDelay = 0;
+        for(int leafNode : this.leafNodes) {
+            maxDelay = Math.max(maxDelay, (this.arrivalTimes[leafNode] - this.clockDelays[leafNode]));
+        }
+        return maxDelay;
+    }
+
+    void calculateRequiredTimes(double maxDelay) {
+        double[] requiredTimes = this.requiredTimes;
+        double[] fixedDelays = this.fixedDelays, wireDelays = this.wireDelays;
+        int[] edgeSinks = this.edgeSinks;
+
+        for(int leafNode : this.leafNodes) {
+            requiredTimes[leafNode] = maxDelay + this.clockDelays[leafNode];
+        }
+
+        for(int node = this.numNodes - 1; node >= 0; node--) {
+            if(this.inRequiredTraversal[node]) {
+                double requiredTime = Double.MAX_VALUE;
+                for(int edge = this.fanOutStarts[node]; edge < this.fanOutStarts[node + 1]; edge++) {
+                    double localRequiredTime = requiredTimes[edgeSinks[edge]] - (fixedDelays[edge] + wireDelays[edge]);
+                    if(localRequiredTime < requiredTime) {
+                        requiredTime = localRequiredTime;
+                    }
+                }
+                requiredTimes[node] = requiredTime;
+            }
+        }
+
+        this.dirtyRequiredNodes.clear();
+    }
+
+    /*
+     * The criticalities of all edges between global blocks
+     */
+    void calculateCriticalities(double maxDelay) {
+        for(int edge = 0; edge < this.numEdges; edge++) {
+            this.updateCriticality(edge, maxDelay);
+        }
+
+        this.changedEdges.clear();
+    }
+    private void updateCriticality(int edge, double maxDelay) {
+        if(this.isGlobalEdge[edge]) {
+            double slack = this.requiredTimes[this.edgeSinks[edge]] - this.arrivalTimes[this.edgeSources[edge]] - (this.fixedDelays[edge] + this.wireDelays[edge]);
+            this.criticalities[edge] = this.timingGraph.calculateCriticality(slack, maxDelay);
+        }
+    }
+
+
+    /*****************************************************
+     * Incremental timing analysis: only the fan-out and *
+     * fan-in cones of the changed edges are propagated  *
+     *****************************************************/
+
+    /*
+     * Marks the fan-in and fan-out edges of the node as changed. If
+     * calculateWireDelays is true, their wire delays are recalculated.
+     */
+    void addMovedNode(int node, boolean calculateWireDelays) {
+        for(int edge = this.fanOutStarts[node]; edge < this.fanOutStarts[node + 1]; edge++) {
+            this.addChangedEdge(edge, calculateWireDelays);
+        }
+        for(int fanIn = this.fanInStarts[node]; fanIn < this.fanInStarts[node + 1]; fanIn++) {
+            this.addChangedEdge(this.fanInEdges[fanIn], calculateWireDelays);
+        }
+    }
+    private void addChangedEdge(int edge, boolean calculateWireDelay) {
+        if(calculateWireDelay) {
+            this.wireDelays[edge] = this.calculateWireDelay(edge);
+        }
+        this.changedEdges.set(edge);
+
+        int sink = this.edgeSinks[edge];
+        if(this.inArrivalTraversal[sink]) {
+            this.dirtyArrivalNodes.set(sink);
+        }
+        int source = this.edgeSources[edge];
+        if(this.inRequiredTraversal[source]) {
+            this.dirtyRequiredNodes.set(source);
+        }
+    }
+
+    /*
+     * Returns the max delay. The nodes are visited in topological order,
+     * so the sources of a node are up to date when it is updated.
+     */
+    double updateArrivalTimes() {
+        double[] arrivalTimes = this.arrivalTimes;
+        double[] fixedDelays = this.fixedDelays, wireDelays = this.wireDelays;
+        int[] edgeSources = this.edgeSources;
+
+        BitSet dirtyNodes = this.dirtyArrivalNodes;
+        for(int node = dirtyNodes.nextSetBit(0); node >= 0; node = dirtyNodes.nextSetBit(node + 1)) {
+            double arrivalTime = Double.MIN_VALUE;
+            for(int fanIn = this.fanInStarts[node]; fanIn < this.fanInStarts[node + 1]; fanIn++) {
+                int edge = this.fanInEdges[fanIn];
+                double localArrivalTime = arrivalTimes[edgeSources[edge]] + (fixedDelays[edge] + wireDelays[edge]);
+                if(localArrivalTime > arrivalTime) {
+                    arrivalTime = localArrivalTime;
+                }
+            }
+
+            if(arrivalTime != arrivalTimes[node]) {
+                arrivalTimes[node] = arrivalTime;
+
+                for(int edge = this.fanOutStarts[node]; edge < this.fanOutStarts[node + 1]; edge++) {
+                    this.changedEdges.set(edge);
+
+                    int sink = this.edgeSinks[edge];
+                    if(this.inArrivalTraversal[sink]) {
+                        dirtyNodes.set(sink);
+                    }
+                }
+            }
+        }
+        dirtyNodes.clear();
+
+        return this.calculateMaxDelay();
+    }
+
+    /*
+     * The nodes are visited in reverse topological order, so
+     * the sinks of a node are up to date when it is updated.
+     */
+    void updateRequiredTimes() {
+        double[] requiredTimes = this.requiredTimes;
+        double[] fixedDelays = this.fixedDelays, wireDelays = this.wireDelays;
+        int[] edgeSinks = this.edgeSinks;
+
+        BitSet dirtyNodes = this.dirtyRequiredNodes;
+        for(int node = dirtyNodes.previousSetBit(this.numNodes - 1); node >= 0; node = dirtyNodes.previousSetBit(node - 1)) {
+            double requiredTime = Double.MAX_VALUE;
+            for(int edge = this.fanOutStarts[node]; edge < this.fanOutStarts[node + 1]; edge++) {
+                double localRequiredTime = requiredTimes[edgeSinks[edge]] - (fixedDelays[edge] + wireDelays[edge]);
+                if(localRequiredTime < requiredTime) {
+                    requiredTime = localRequiredTime;
+                }
+            }
+
+            if(requiredTime != requiredTimes[node]) {
+                requiredTimes[node] = requiredTime;
+
+                for(int fanIn = this.fanInStarts[node]; fanIn < this.fanInStarts[node + 1]; fanIn++) {
+                    int edge = this.fanInEdges[fanIn];
+                    this.changedEdges.set(edge);
+
+                    int source = this.edgeSources[edge];
+                    if(this.inRequiredTraversal[source]) {
+                        dirtyNodes.set(source);
+                    }
+                }
+            }
+        }
+        dirtyNodes.clear();
+    }
+
+    /*
+     * The criticalities of the changed edges and of the edges
+     * that are incident to a node with a changed time
+     */
+    void updateCriticalities(double maxDelay) {
+        BitSet changedEdges = this.changedEdges;
+        for(int edge = changedEdges.nextSetBit(0); edge >= 0; edge = changedEdges.nextSetBit(edge + 1)) {
+            this.updateCriticality(edge, maxDelay);
+        }
+        changedEdges.clear();
+    }
+
+
+    /*
+     * Runs a full timing analysis on the current wire delays and compares
+     * it with the times and criticalities of the incremental analysis.
+     * Only meant for assertions, the full analysis replaces the values.
+     */
+    boolean matchesFullAnalysis(double maxDelay) {
+        double[] arrivalTimes = this.arrivalTimes.clone(),
+                 requiredTimes = this.requiredTimes.clone(),
+                 criticalities = this.criticalities.clone();
+
+        boolean sameMaxDelay = this.calculateArrivalTimes() == maxDelay;
+        this.calculateRequiredTimes(maxDelay);
+        this.calculateCriticalities(maxDelay);
+
+        return sameMaxDelay
+                && Arrays.equals(arrivalTimes, this.arrivalTimes)
+                && Arrays.equals(requiredTimes, this.requiredTimes)
+                && Arrays.equals(criticalities, this.criticalities);
+    }
+
+
+    /*************************************************
+     * Functions that facilitate simulated annealing *
+     *************************************************/
+
+    double calculateDeltaCost(int node, GlobalBlock block, GlobalBlock otherBlock) {
+        /*
+         * When this method is called, we assume that the block of this node
+         * and the block with which it will be swapped, already have their
+         * positions updated (temporarily).
+         */
+        double cost = 0;
+
+        for(int edge = this.fanOutStarts[node]; edge < this.fanOutStarts[node + 1]; edge++) {
+            cost += this.calculateDeltaCost(edge, this.blocks[this.edgeSinkBlocks[edge]] == block);
+        }
+
+        for(int fanIn = this.fanInStarts[node]; fanIn < this.fanInStarts[node + 1]; fanIn++) {
+            int edge = this.fanInEdges[fanIn];
+            GlobalBlock sourceBlock = this.blocks[this.edgeSourceBlocks[edge]];
+
+            if(sourceBlock != otherBlock) {
+                cost += this.calculateDeltaCost(edge, sourceBlock == block);
+            }
+        }
+
+        return cost;
+    }
+    private double calculateDeltaCost(int edge, boolean sameBlock) {
+        if(sameBlock) {
+            this.stagedWireDelays[edge] = 0.0;
+            return 0;
+        } else {
+            this.stagedWireDelays[edge] = this.calculateWireDelay(edge);
+            return this.criticalities[edge] * (this.stagedWireDelays[edge] - this.wireDelays[edge]);
+        }
+    }
+
+    void pushThrough(int node) {
+        for(int edge = this.fanOutStarts[node]; edge < this.fanOutStarts[node + 1]; edge++) {
+            this.wireDelays[edge] = this.stagedWireDelays[edge];
+        }
+        for(int fanIn = this.fanInStarts[node]; fanIn < this.fanInStarts[node + 1]; fanIn++) {
+            int edge = this.fanInEdges[fanIn];
+            this.wireDelays[edge] = this.stagedWireDelays[edge];
+        }
+    }
+}
@@ -4,13 +4,14 @@ import place.circuit.architecture.BlockCategory;
 import place.circuit.architecture.DelayTables;
 
 public class TimingEdge {
-	private double fixedDelay, wireDelay;
-	private double criticality;
-	
+	private double fixedDelay;
+
     private final DelayTables delayTables;
 	private final TimingNode source, sink;
 
-	private double stagedWireDelay;
+	// The wire delay and criticality are stored in the flat timing graph, at index id
+	private FlatTimingGraph flatGraph;
+	private int id;
 
     TimingEdge(double fixedDelay, TimingNode source, TimingNode sink, DelayTables delayTables){
         this.fixedDelay = fixedDelay;
@@ -21,6 +22,11 @@ public class TimingEdge {
         this.delayTables = delayTables;
     }
 
+    void setFlatGraph(FlatTimingGraph flatGraph, int id){
+        this.flatGraph = flatGraph;
+        this.id = id;
+    }
+
     public double getFixedDelay(){
         return this.fixedDelay;
     }
@@ -38,22 +44,22 @@ public class TimingEdge {
         return this.delayTables.getDelay(fromCategory, toCategory, deltaX, deltaY);
     }
     public void setWireDelay(double wireDelay){
-        this.wireDelay = wireDelay;
+        this.flatGraph.wireDelays[this.id] = wireDelay;
+    }
+    public double getWireDelay(){
+        return this.flatGraph.wireDelays[this.id];
     }
 
     public double getTotalDelay(){
-        return this.fixedDelay + this.wireDelay;
+        return this.fixedDelay + this.getWireDelay();
     }
 
     public double getCost() {
-        return this.criticality * this.wireDelay;
+        return this.getCriticality() * this.getWireDelay();
     }
 
-    void setCriticality(double criticality){
-        this.criticality = criticality;
-    }
     public double getCriticality(){
-        return this.criticality;
+        return this.flatGraph.criticalities[this.id];
     }
 
     public TimingNode getSource(){
@@ -64,27 +70,8 @@ public class TimingEdge {
     }
 
 
-    /*************************************************
-     * Functions that facilitate simulated annealing *
-     *************************************************/
-    void setStagedWireDelay(double stagedWireDelay){
-    	this.stagedWireDelay = stagedWireDelay;
-    }
-    void resetStagedDelay(){
-    	this.stagedWireDelay = 0.0;
-    }
-    
-    void pushThrough(){
-    	this.wireDelay = this.stagedWireDelay;
-    }
-    
-    double getDeltaCost(){
-    	return this.criticality * (this.stagedWireDelay - this.wireDelay);
-    }
-
-
     @Override
     public String toString() {
-        return String.format("%e+%e", this.fixedDelay, this.wireDelay);
+        return String.format("%e+%e", this.fixedDelay, this.getWireDelay());
     }
 }
\ No newline at end of file
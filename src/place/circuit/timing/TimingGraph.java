@@ -1,6 +1,7 @@
 package place.circuit.timing;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -37,18 +38,22 @@ public class TimingGraph {
 
     private List<TimingNode> timingNodes = new ArrayList<>();
     private List<TimingNode> rootNodes, leafNodes;
-    private List<TimingNode> arrivalTraversal, requiredTraversal;
     
     private List<TimingNode> affectedNodes = new ArrayList<>();
 
     private List<TimingEdge> timingEdges = new ArrayList<>();
-    private List<TimingEdge> globalTimingEdges;
     
     private List<List<TimingEdge>> timingNets = new ArrayList<>();
 
     private double maxDelay;
 
     private double[] criticalityLookupTable = new double[21];
+
+    // Incremental timing analysis
+    private boolean incrementalValid = false, lookupTableChanged = true;
+
+    // The timing values and the timing analysis, in arrays
+    private FlatTimingGraph flatGraph;
     
     //Tarjan's strongly connected components algorithm
     private int index;
@@ -80,8 +85,9 @@ public class TimingGraph {
         this.cutCombLoop();
         
         this.buildTraversals();
-        
-        this.setGlobalTimingEdges();
+
+        // The flat graph stores the timing values of the nodes and edges
+        this.flatGraph = new FlatTimingGraph(this, this.timingNodes, this.leafNodes, this.delayTables);
     }
 
     private void buildGraph() {
@@ -310,28 +316,27 @@ public class TimingGraph {
     
     private void buildTraversals() {
     	long start = System.nanoTime();
-    	this.arrivalTraversal = new ArrayList<>();
-    	this.requiredTraversal = new ArrayList<>();
+    	List<TimingNode> arrivalTraversal = new ArrayList<>();
+    	List<TimingNode> requiredTraversal = new ArrayList<>();
     	Set<Integer> added = new HashSet<>();
 
     	added.clear();
     	for(TimingNode leafNode : this.leafNodes) {
-    		leafNode.recursiveArrivalTraversal(this.arrivalTraversal, added);
+    		leafNode.recursiveArrivalTraversal(arrivalTraversal, added);
     	}
 
     	added.clear();
     	for(TimingNode rootNode : this.rootNodes) {
-    		rootNode.recursiveRequiredTraversal(this.requiredTraversal, added);
+    		rootNode.recursiveRequiredTraversal(requiredTraversal, added);
     	}
-    	System.out.printf("Build traversals took %.2fs\n\n", (System.nanoTime() - start) * 1e-9);
-    }
-    private void setGlobalTimingEdges() {
-    	this.globalTimingEdges = new ArrayList<>();
-    	for(TimingEdge edge : this.timingEdges) {
-    		if(edge.getSource().getGlobalBlock().getIndex() != edge.getSink().getGlobalBlock().getIndex()) {
-    			this.globalTimingEdges.add(edge);
-    		}
+
+    	for(int order = 0; order < arrivalTraversal.size(); order++) {
+    		arrivalTraversal.get(order).setArrivalOrder(order);
     	}
+    	for(int order = 0; order < requiredTraversal.size(); order++) {
+    		requiredTraversal.get(order).setRequiredOrder(order);
+    	}
+    	System.out.printf("Build traversals took %.2fs\n\n", (System.nanoTime() - start) * 1e-9);
     }
 
     /****************************************************
@@ -346,6 +351,7 @@ public class TimingGraph {
 
     	int iteration = 0;
     	boolean finalIteration = false;
+    	Set<TimingEdge> cutEdges = new HashSet<>();
     	
     	while(!finalIteration){
 
@@ -370,7 +376,9 @@ public class TimingGraph {
         	//Analyze SCC
         	for(SCC scc:this.scc){
         		if(scc.size > 1){
-        			this.timingEdges.remove(scc.cutLoop());
+        			TimingEdge cutEdge = scc.cutLoop();
+        			this.timingEdges.remove(cutEdge);
+        			cutEdges.add(cutEdge);
         			finalIteration = false;
         			cutLoops++;
         		}
@@ -379,6 +387,13 @@ public class TimingGraph {
         	System.out.println("\titeration " + iteration + " | " + cutLoops + " loops cut");
     	}
 
+    	// The cut edges have no criticality, they don't add to the cost of their net
+    	if(!cutEdges.isEmpty()) {
+    		for(List<TimingEdge> timingNet : this.timingNets) {
+    			timingNet.removeAll(cutEdges);
+    		}
+    	}
+
     	long end = System.nanoTime();
     	double time = (end - start) * 1e-9;
 
@@ -455,7 +470,11 @@ public class TimingGraph {
 
     public void setCriticalityExponent(double criticalityExponent) {
         for(int i = 0; i <= 20; i++) {
-            this.criticalityLookupTable[i] = Math.pow(i * 0.05, criticalityExponent);
+            double value = Math.pow(i * 0.05, criticalityExponent);
+            if(value != this.criticalityLookupTable[i]) {
+                this.criticalityLookupTable[i] = value;
+                this.lookupTableChanged = true;
+            }
         }
     }
 
@@ -478,49 +497,89 @@ public class TimingGraph {
         this.calculateArrivalTimesAndCriticalities(true);
     }
 
-    private void calculateArrivalTimesAndCriticalities(boolean calculateCriticalities) {
-        //GLOBAL MAX DELAY
-    	this.maxDelay = 0;
+    /**
+     * Updates the criticalities after the given blocks have moved. Only the
+     * fan-out cones of the timing edges of the blocks are re-propagated for
+     * the arrival times and only their fan-in cones for the required times.
+     * The result is identical to calculateCriticalities, as long as the
+     * blocks contain all the blocks that moved since the previous timing
+     * analysis and no wire delays were set in another way. When
+     * calculateWireDelays is false, the wire delays of the edges of the
+     * blocks must already be up to date, e.g. by pushThrough. With
+     * assertions enabled, the result is checked against a full analysis.
+     */
+    public void calculateCriticalities(boolean calculateWireDelays, Collection<GlobalBlock> movedBlocks) {
+        if(!this.incrementalValid) {
+            this.calculateCriticalities(calculateWireDelays);
+            return;
+        }
+
+        this.updateCriticalities(calculateWireDelays, movedBlocks);
 
-    	//ARRIVAL TIME
-        for(TimingNode rootNode: this.rootNodes){
-        	rootNode.setArrivalTime(0);
+        assert(this.flatGraph.matchesFullAnalysis(this.maxDelay));
+    }
+    private void updateCriticalities(boolean calculateWireDelays, Collection<GlobalBlock> movedBlocks) {
+        // Wire delays of the edges of the moved blocks
+        for(GlobalBlock block : movedBlocks) {
+            for(TimingNode node : block.getTimingNodes()) {
+                this.flatGraph.addMovedNode(node.getId(), calculateWireDelays);
+            }
         }
-        for(TimingNode node : this.arrivalTraversal) {
-        	node.updateArrivalTime();
+
+        double oldMaxDelay = this.maxDelay;
+        this.maxDelay = this.flatGraph.updateArrivalTimes();
+
+        // A different max delay changes the required time of all leaf nodes
+        if(this.maxDelay != oldMaxDelay) {
+            this.calculateRequiredTimesAndCriticalities();
+            return;
         }
-        for(TimingNode leafNode: this.leafNodes){
-        	this.maxDelay = Math.max(this.maxDelay, (leafNode.getArrivalTime() - leafNode.getClockDelay()));
+
+        this.flatGraph.updateRequiredTimes();
+
+        if(this.lookupTableChanged) {
+            this.calculateCriticalities();
+        } else {
+            this.flatGraph.updateCriticalities(this.maxDelay);
         }
+    }
+
+    private void calculateArrivalTimesAndCriticalities(boolean calculateCriticalities) {
+        this.maxDelay = this.flatGraph.calculateArrivalTimes();
 
         if(calculateCriticalities) {
-        	//REQUIRED TIME
-        	for(TimingNode leafNode: this.leafNodes) {
-        		leafNode.setRequiredTime(this.maxDelay + leafNode.getClockDelay());
-        	}
-            for(TimingNode node: this.requiredTraversal) {
-            	node.updateRequiredTime();
-            }
-            for(TimingEdge edge:this.globalTimingEdges){
-            	double slack = edge.getSink().getRequiredTime() - edge.getSource().getArrivalTime() - edge.getTotalDelay();
-            	slack = Math.min(slack,	this.maxDelay);
-            	slack = Math.max(slack,	0);
-            	
-                double val = (1 - slack/this.maxDelay) * 20;
-                int i = Math.min(19, (int) val);
-                double linearInterpolation = val - i;
-
-                edge.setCriticality(
-                        (1 - linearInterpolation) * this.criticalityLookupTable[i]
-                        + linearInterpolation * this.criticalityLookupTable[i+1]);
-            }
+        	this.calculateRequiredTimesAndCriticalities();
+        } else {
+        	// The required times and criticalities are outdated
+        	this.incrementalValid = false;
         }
     }
+    private void calculateRequiredTimesAndCriticalities() {
+        this.flatGraph.calculateRequiredTimes(this.maxDelay);
+        this.calculateCriticalities();
+    }
+    private void calculateCriticalities() {
+        this.flatGraph.calculateCriticalities(this.maxDelay);
+
+        this.lookupTableChanged = false;
+        this.incrementalValid = true;
+    }
+    double calculateCriticality(double slack, double maxDelay) {
+    	slack = Math.min(slack,	maxDelay);
+    	slack = Math.max(slack,	0);
+    	
+        double val = (1 - slack/maxDelay) * 20;
+        int i = Math.min(19, (int) val);
+        double linearInterpolation = val - i;
+
+        return (1 - linearInterpolation) * this.criticalityLookupTable[i]
+                + linearInterpolation * this.criticalityLookupTable[i+1];
+    }
 
     public void calculateWireDelays() {
-    	for(TimingEdge edge:this.timingEdges){
-    		edge.setWireDelay(edge.calculateWireDelay());
-    	}
+    	this.flatGraph.calculateWireDelays();
+
+    	this.incrementalValid = false;
     }
     
     public String criticalPathToString() {
@@ -656,7 +715,7 @@ public class TimingGraph {
 
     	double cost = 0;
     	for(TimingNode node : nodes1) {
-    		cost += node.calculateDeltaCost(block2);
+    		cost += this.flatGraph.calculateDeltaCost(node.getId(), block1, block2);
     	}
 
     	return cost;
@@ -664,7 +723,7 @@ public class TimingGraph {
 
     public void pushThrough() {
     	for(TimingNode node : this.affectedNodes) {
-    		node.pushThrough();
+    		this.flatGraph.pushThrough(node.getId());
     	}
     }
 
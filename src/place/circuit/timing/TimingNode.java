@@ -19,11 +19,16 @@ public class TimingNode {
 
     private Position position;
 
-    private final ArrayList<TimingEdge> sourceEdges = new ArrayList<>();
-    private final ArrayList<TimingEdge> sinkEdges = new ArrayList<>();
-    private int numSources = 0, numSinks = 0;
+    // The edges of the node while the timing graph is built. Once the flat timing
+    // graph is built it stores the edges, and the arrival and required time at index id.
+    private ArrayList<TimingEdge> sourceEdges = new ArrayList<>();
+    private ArrayList<TimingEdge> sinkEdges = new ArrayList<>();
 
-    private double arrivalTime, requiredTime;
+    private FlatTimingGraph flatGraph;
+    private int id;
+
+    // The position of the node in the arrival and required traversal, -1 if it isn't in the traversal
+    private int arrivalOrder = -1, requiredOrder = -1;
 
     //Tarjan's strongly connected components algorithm
     private int index;
@@ -46,6 +51,17 @@ public class TimingNode {
         this.clockDelay = clockDelay;
     }
     
+    void setFlatGraph(FlatTimingGraph flatGraph, int id) {
+        this.flatGraph = flatGraph;
+        this.id = id;
+
+        this.sourceEdges = null;
+        this.sinkEdges = null;
+    }
+    int getId() {
+        return this.id;
+    }
+
     void compact() {
     	this.sourceEdges.trimToSize();
         this.sinkEdges.trimToSize();
@@ -66,13 +82,11 @@ public class TimingNode {
 
     private void addSource(TimingNode source, TimingEdge edge) {
         this.sourceEdges.add(edge);
-        this.numSources++;
     }
     TimingEdge addSink(TimingNode sink, double delay, DelayTables delayTables) {
         TimingEdge edge = new TimingEdge(delay, this, sink, delayTables);
 
         this.sinkEdges.add(edge);
-        this.numSinks++;
 
         sink.addSource(this, edge);
 
@@ -82,7 +96,6 @@ public class TimingNode {
     void removeSource(TimingEdge source){
     	if(this.sourceEdges.contains(source)){
     		this.sourceEdges.remove(source);
-    		this.numSources--;
     	}else{
     		System.out.println("This node does not contain source edge");
     	}
@@ -90,49 +103,36 @@ public class TimingNode {
     void removeSink(TimingEdge sink){
     	if(this.sinkEdges.contains(sink)){
     		this.sinkEdges.remove(sink);
-    		this.numSinks--;
     	}else{
     		System.out.println("This sink does not contain sink edge");
     	}
     }
 
     public List<TimingEdge> getSources() {
-        return this.sourceEdges;
+        return this.flatGraph == null ? this.sourceEdges : this.flatGraph.getSourceEdges(this.id);
     }
     public List<TimingEdge> getSinks() {
-        return this.sinkEdges;
+        return this.flatGraph == null ? this.sinkEdges : this.flatGraph.getSinkEdges(this.id);
     }
 
     public int getNumSources() {
-        return this.numSources;
+        return this.flatGraph == null ? this.sourceEdges.size() : this.flatGraph.getNumSources(this.id);
     }
     public int getNumSinks() {
-        return this.numSinks;
+        return this.flatGraph == null ? this.sinkEdges.size() : this.flatGraph.getNumSinks(this.id);
     }
 
     public TimingEdge getSourceEdge(int sourceIndex) {
-        return this.sourceEdges.get(sourceIndex);
+        return this.flatGraph == null ? this.sourceEdges.get(sourceIndex) : this.flatGraph.getSourceEdge(this.id, sourceIndex);
     }
     public TimingEdge getSinkEdge(int sinkIndex) {
-        return this.sinkEdges.get(sinkIndex);
+        return this.flatGraph == null ? this.sinkEdges.get(sinkIndex) : this.flatGraph.getSinkEdge(this.id, sinkIndex);
     }
 
     //Arrival time	
-    void setArrivalTime(double value) {
-    	this.arrivalTime = value;
-    }
     double getArrivalTime() {
-    	return this.arrivalTime;
+    	return this.flatGraph.arrivalTimes[this.id];
     }
-    void updateArrivalTime() {
-		this.arrivalTime = Double.MIN_VALUE;
-		for(TimingEdge edge:this.sourceEdges) {
-			double localArrivalTime = edge.getSource().arrivalTime + edge.getTotalDelay();
-			if(localArrivalTime > this.arrivalTime) {
-				this.arrivalTime = localArrivalTime;
-			}
-		}
-	}
 	void recursiveArrivalTraversal(List<TimingNode> traversal, Set<Integer> added) {
 		if(this.position.equals(Position.ROOT)) return;
 		
@@ -145,21 +145,16 @@ public class TimingNode {
 		traversal.add(this);
 	}
 
-	//Required time
-    void setRequiredTime(double value) {
-    	this.requiredTime = value;
+    void setArrivalOrder(int arrivalOrder) {
+        this.arrivalOrder = arrivalOrder;
     }
-    double getRequiredTime() {
-    	return this.requiredTime;
+    int getArrivalOrder() {
+        return this.arrivalOrder;
     }
-    void updateRequiredTime() {
-		this.requiredTime = Double.MAX_VALUE;
-		for(TimingEdge edge:this.sinkEdges) {
-			double localRequiredTime = edge.getSink().requiredTime - edge.getTotalDelay();
-			if(localRequiredTime < this.requiredTime) {
-				this.requiredTime = localRequiredTime;
-			}
-		}
+
+	//Required time
+    double getRequiredTime() {
+    	return this.flatGraph.requiredTimes[this.id];
     }
 	void recursiveRequiredTraversal(List<TimingNode> traversal, Set<Integer> added) {
 		if(this.position.equals(Position.LEAF)) return;
@@ -173,6 +168,13 @@ public class TimingNode {
 		traversal.add(this);
 	}
     
+    void setRequiredOrder(int requiredOrder) {
+        this.requiredOrder = requiredOrder;
+    }
+    int getRequiredOrder() {
+        return this.requiredOrder;
+    }
+    
     public int getClockDomain() {
     	return this.clockDomain;
     }
@@ -214,56 +216,6 @@ public class TimingNode {
     }
 
 
-    /*************************************************
-     * Functions that facilitate simulated annealing *
-     *************************************************/
-
-    double calculateDeltaCost(GlobalBlock otherBlock) {
-    	/*
-    	 * When this method is called, we assume that this block and
-    	 * the block with which this block will be swapped, already
-    	 * have their positions updated (temporarily).
-    	 */
-    	double cost = 0;
-
-    	for(int sinkIndex = 0; sinkIndex < this.numSinks; sinkIndex++) {
-    		TimingEdge edge = this.sinkEdges.get(sinkIndex);
-    		TimingNode sink = edge.getSink();
-
-    		cost += this.calculateDeltaCost(sink, edge);
-    	}
-
-    	for(int sourceIndex = 0; sourceIndex < this.numSources; sourceIndex++) {
-    		TimingEdge edge = this.sourceEdges.get(sourceIndex);
-    		TimingNode source = edge.getSource();
-
-    		if(source.globalBlock != otherBlock) {
-    			cost += this.calculateDeltaCost(source, edge);
-    		}
-    	}
-
-    	return cost;
-    }
-    private double calculateDeltaCost(TimingNode otherNode, TimingEdge edge){
-    	if(otherNode.globalBlock == this.globalBlock){
-    		edge.resetStagedDelay();
-    		return 0;
-    	}else{
-    		edge.setStagedWireDelay(edge.calculateWireDelay());
-    		return edge.getDeltaCost();
-    	}
-    }
-
-    void pushThrough(){
-    	for(TimingEdge edge : this.sinkEdges){
-    		edge.pushThrough();
-    	}
-    	for(TimingEdge edge : this.sourceEdges){
-    		edge.pushThrough();
-    	}
-    }
-
-
     @Override
     public String toString() {
         return this.pin.toString();
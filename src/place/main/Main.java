@@ -2,9 +2,11 @@ package place.main;
 
 import place.circuit.Circuit;
 import place.circuit.architecture.Architecture;
+import place.circuit.architecture.ArchitectureCache;
 import place.circuit.architecture.BlockCategory;
 import place.circuit.architecture.BlockType;
 import place.circuit.architecture.ParseException;
+import place.circuit.block.AbstractSite;
 import place.circuit.block.GlobalBlock;
 import place.circuit.exceptions.InvalidFileFormatException;
 import place.circuit.exceptions.PlacementException;
@@ -31,6 +33,7 @@ import java.io.IOException;
 import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
@@ -50,8 +53,12 @@ public class Main {
     private boolean useVprTiming;
     private String vprCommand;
     private File lookupDumpFile;
+    private File architectureCacheFolder;
 
     private boolean visual;
+    private int visualKeepEvery, visualMaxPlacements;
+    private File visualSpillFile;
+    private int multiStart;
 
     private Logger logger;
     private OptionsManager options;
@@ -60,6 +67,7 @@ public class Main {
 
     private Map<String, Timer> timers = new HashMap<String, Timer>();
     private String mostRecentTimerName;
+    private Architecture architecture;
     private Circuit circuit;
 
 
@@ -74,8 +82,13 @@ public class Main {
         O_VPR_TIMING = "vpr timing",
         O_VPR_COMMAND = "vpr command",
         O_LOOKUP_DUMP_FILE = "lookup dump file",
+        O_ARCHITECTURE_CACHE = "architecture cache",
         O_VISUAL = "visual",
-        O_RANDOM_SEED = "random seed";
+        O_VISUAL_KEEP_EVERY = "visual keep every",
+        O_VISUAL_MAX_PLACEMENTS = "visual max placements",
+        O_VISUAL_SPILL_FILE = "visual spill file",
+        O_RANDOM_SEED = "random seed",
+        O_MULTI_START = "multi start";
 
 
     public static void initOptionList(Options options) {
@@ -91,9 +104,14 @@ public class Main {
         options.add(O_VPR_TIMING, "Use vpr timing information", Boolean.TRUE);
         options.add(O_VPR_COMMAND, "Path to vpr executable", "./vpr");
         options.add(O_LOOKUP_DUMP_FILE, "Path to a vpr lookup_dump.echo file", File.class, Required.FALSE);
+        options.add(O_ARCHITECTURE_CACHE, "folder to cache the parsed architecture and delay tables", File.class, Required.FALSE);
 
         options.add(O_VISUAL, "show the placed circuit in a GUI", Boolean.FALSE);
+        options.add(O_VISUAL_KEEP_EVERY, "only keep every n-th placement in the GUI", Integer.valueOf(1));
+        options.add(O_VISUAL_MAX_PLACEMENTS, "maximum number of placements in the GUI, the oldest are dropped (0 = no maximum)", Integer.valueOf(0));
+        options.add(O_VISUAL_SPILL_FILE, "store the placements of the GUI in this file instead of in memory", File.class, Required.FALSE);
         options.add(O_RANDOM_SEED, "seed for randomization", new Long(1));
+        options.add(O_MULTI_START, "number of placements with consecutive seeds, the best one is kept", Integer.valueOf(1));
     }
 
 
@@ -107,6 +125,7 @@ public class Main {
     private void parseOptions(Options options) {
 
         this.randomSeed = options.getLong(O_RANDOM_SEED);
+        this.multiStart = options.getInteger(O_MULTI_START);
 
         this.inputPlaceFile = options.getFile(O_INPUT_PLACE_FILE);
         this.inputHierarchyFile = options.getFile(O_INPUT_HIERARCHY_FILE);
@@ -131,8 +150,12 @@ public class Main {
         this.useVprTiming = options.getBoolean(O_VPR_TIMING);
         this.vprCommand = options.getString(O_VPR_COMMAND);
         this.lookupDumpFile = options.getFile(O_LOOKUP_DUMP_FILE);
+        this.architectureCacheFolder = options.getFile(O_ARCHITECTURE_CACHE);
 
         this.visual = options.getBoolean(O_VISUAL);
+        this.visualKeepEvery = options.getInteger(O_VISUAL_KEEP_EVERY);
+        this.visualMaxPlacements = options.getInteger(O_VISUAL_MAX_PLACEMENTS);
+        this.visualSpillFile = options.getFile(O_VISUAL_SPILL_FILE);
 
 
         // Check if all input files exist
@@ -172,41 +195,21 @@ public class Main {
 
         // Enable the visualizer
         this.visualizer = new PlacementVisualizer(this.logger);
+        this.visualizer.setRetention(this.visualKeepEvery, this.visualMaxPlacements, this.visualSpillFile);
         if(this.visual) {
             this.visualizer.setCircuit(this.circuit);
         }
 
 
         // Read the place file
-        if(this.partialPlaceFile != null) {
-            PlaceParser placeParser = new PlaceParser(this.circuit, this.partialPlaceFile);
-            try {
-                placeParser.iohbParse();
-            } catch(IOException | BlockNotFoundException | PlacementException | IllegalSizeException error) {
-                this.logger.raise("Something went wrong while parsing the partial place file", error);
-            }
-            this.options.insertRandomPlacer();
-        }else if(this.inputPlaceFile != null){
+        if(this.partialPlaceFile == null && this.inputPlaceFile != null) {
             this.startTimer("Placement parser");
-            PlaceParser placeParser = new PlaceParser(this.circuit, this.inputPlaceFile);
-            try {
-                placeParser.parse();
-            } catch(IOException | BlockNotFoundException | PlacementException | IllegalSizeException error) {
-                this.logger.raise("Something went wrong while parsing the place file", error);
-            }
+            this.readPlaceFiles(this.circuit);
             this.stopTimer();
             this.printStatistics("Placement parser", false);
-        }else{
-        	this.options.insertRandomPlacer();
-        }
-        
-        if(this.inputHierarchyFile != null){
-        	HierarchyParser hierarchyParser = new HierarchyParser(this.circuit, this.inputHierarchyFile);
-        	try {
-        		hierarchyParser.parse();
-        	} catch(IOException error) {
-                 this.logger.raise("Something went wrong while parsing the hierarchy file", error);
-			}
+        } else {
+            this.readPlaceFiles(this.circuit);
+            this.options.insertRandomPlacer();
         }
 
         //Garbage collection
@@ -214,8 +217,13 @@ public class Main {
 
         // Loop through the placers
         int numPlacers = this.options.getNumPlacers();
-        for(int placerIndex = 0; placerIndex < numPlacers; placerIndex++) {
-            this.timePlacement(placerIndex);
+        if(this.multiStart > 1 && numPlacers > 0) {
+            this.timeMultiStartPlacement();
+
+        } else {
+            for(int placerIndex = 0; placerIndex < numPlacers; placerIndex++) {
+                this.timePlacement(placerIndex);
+            }
         }
 
 
@@ -248,14 +256,79 @@ public class Main {
     private void loadCircuit() {
         // Parse the architecture file
         this.startTimer("Architecture parsing");
-        Architecture architecture = new Architecture(
+
+        ArchitectureCache architectureCache = null;
+        if(this.architectureCacheFolder != null) {
+            architectureCache = this.loadArchitectureCache();
+        }
+
+        if(this.architecture == null) {
+            this.parseArchitecture();
+
+            if(architectureCache != null) {
+                try {
+                    architectureCache.store(this.architecture);
+                } catch(IOException error) {
+                    this.logger.println(Logger.Stream.ERR, "Failed to write architecture cache " + architectureCache.getFile() + ": " + error.getMessage());
+                }
+            }
+        }
+
+        this.stopAndPrintTimer();
+
+        // Parse net file
+        this.startTimer("Net file parsing");
+        this.circuit = this.parseNetFile();
+        this.logger.println(this.circuit.stats());
+        this.stopAndPrintTimer();
+    }
+
+    /*
+     * The cache is keyed by the architecture and circuit files, and by the
+     * source of the delay tables. Returns null if the cache can't be read.
+     */
+    private ArchitectureCache loadArchitectureCache() {
+        String timingSource;
+        if(!this.useVprTiming) {
+            timingSource = "no vpr timing";
+        } else if(this.lookupDumpFile == null) {
+            timingSource = "vpr timing: " + this.vprCommand;
+        } else {
+            timingSource = "lookup dump file";
+        }
+
+        ArchitectureCache architectureCache = null;
+        try {
+            architectureCache = new ArchitectureCache(
+                    this.architectureCacheFolder,
+                    timingSource,
+                    this.architectureFile,
+                    this.blifFile,
+                    this.netFile,
+                    this.lookupDumpFile);
+
+        } catch(IOException error) {
+            this.logger.println(Logger.Stream.ERR, "Failed to hash the architecture cache key: " + error.getMessage());
+            return null;
+        }
+
+        this.architecture = architectureCache.load();
+        if(this.architecture != null) {
+            this.logger.println("Loaded architecture from " + architectureCache.getFile());
+        }
+
+        return architectureCache;
+    }
+
+    private void parseArchitecture() {
+        this.architecture = new Architecture(
                 this.circuitName,
                 this.architectureFile,
                 this.blifFile,
                 this.netFile);
 
         try {
-            architecture.parse();
+            this.architecture.parse();
         } catch(IOException | InvalidFileFormatException | InterruptedException | ParseException | ParserConfigurationException | SAXException error) {
             this.logger.raise("Failed to parse architecture file or delay tables", error);
         }
@@ -263,29 +336,56 @@ public class Main {
         if(this.useVprTiming) {
             try {
                 if(this.lookupDumpFile == null) {
-                    architecture.getVprTiming(this.vprCommand);
+                    this.architecture.getVprTiming(this.vprCommand);
                 } else {
-                    architecture.getVprTiming(this.lookupDumpFile);
+                    this.architecture.getVprTiming(this.lookupDumpFile);
                 }
 
             } catch(IOException | InterruptedException | InvalidFileFormatException error) {
                 this.logger.raise("Failed to get vpr delays", error);
             }
         }
+    }
 
-        this.stopAndPrintTimer();
-
-        // Parse net file
-        this.startTimer("Net file parsing");
+    private Circuit parseNetFile() {
+        Circuit circuit = null;
         try {
-            NetParser netParser = new NetParser(architecture, this.circuitName, this.netFile);
-            this.circuit = netParser.parse();
-            this.logger.println(this.circuit.stats());
+            NetParser netParser = new NetParser(this.architecture, this.circuitName, this.netFile);
+            circuit = netParser.parse();
 
         } catch(IOException error) {
             this.logger.raise("Failed to read net file", error);
         }
-        this.stopAndPrintTimer();
+
+        return circuit;
+    }
+
+    private void readPlaceFiles(Circuit circuit) {
+        if(this.partialPlaceFile != null) {
+            PlaceParser placeParser = new PlaceParser(circuit, this.partialPlaceFile);
+            try {
+                placeParser.iohbParse();
+            } catch(IOException | BlockNotFoundException | PlacementException | IllegalSizeException error) {
+                this.logger.raise("Something went wrong while parsing the partial place file", error);
+            }
+
+        } else if(this.inputPlaceFile != null) {
+            PlaceParser placeParser = new PlaceParser(circuit, this.inputPlaceFile);
+            try {
+                placeParser.parse();
+            } catch(IOException | BlockNotFoundException | PlacementException | IllegalSizeException error) {
+                this.logger.raise("Something went wrong while parsing the place file", error);
+            }
+        }
+
+        if(this.inputHierarchyFile != null){
+        	HierarchyParser hierarchyParser = new HierarchyParser(circuit, this.inputHierarchyFile);
+        	try {
+        		hierarchyParser.parse();
+        	} catch(IOException error) {
+                 this.logger.raise("Something went wrong while parsing the hierarchy file", error);
+			}
+        }
     }
 
 
@@ -370,6 +470,108 @@ public class Main {
     }
 
 
+    /*
+     * Runs all the placers for a number of consecutive seeds. The net and
+     * place files are parsed once, the starts run one after the other on
+     * that circuit, so their output doesn't interleave. The placers use
+     * multiple threads themselves. Each start begins from the placement
+     * that was read, only the placement of the best start so far is kept:
+     * the site of every global block. The start with the lowest product of
+     * bounding box cost and max delay is placed back at the end. The first
+     * start uses the same seed as a single run.
+     */
+    private void timeMultiStartPlacement() {
+        int numStarts = this.multiStart;
+        int numPlacers = this.options.getNumPlacers();
+        List<GlobalBlock> blocks = this.circuit.getGlobalBlocks();
+
+        String multiStartName = "Multi start";
+        this.startTimer(multiStartName);
+
+        AbstractSite[] initialPlacement = this.getPlacement(blocks);
+        AbstractSite[] bestPlacement = null;
+        int bestStart = 0;
+
+        double[] bbCosts = new double[numStarts];
+        double[] maxDelays = new double[numStarts];
+
+        for(int start = 0; start < numStarts; start++) {
+            long seed = this.randomSeed + start;
+            this.logger.println("Multi start " + (start + 1) + "/" + numStarts + ", seed " + seed + ":");
+
+            if(start > 0) {
+                this.setPlacement(blocks, initialPlacement);
+            }
+
+            PlacementVisualizer visualizer = new PlacementVisualizer(this.logger);
+            for(int placerIndex = 0; placerIndex < numPlacers; placerIndex++) {
+                Random random = new Random(seed);
+                Placer placer = this.options.getPlacer(placerIndex, this.circuit, random, visualizer);
+
+                placer.initializeData();
+                try {
+                    placer.place();
+                } catch(PlacementException error) {
+                    this.logger.raise(error);
+                }
+            }
+
+            bbCosts[start] = new EfficientBoundingBoxNetCC(this.circuit).calculateTotalCost();
+            this.circuit.recalculateTimingGraph();
+            maxDelays[start] = this.circuit.getMaxDelay();
+            this.logger.println();
+
+            if(bestPlacement == null || bbCosts[start] * maxDelays[start] < bbCosts[bestStart] * maxDelays[bestStart]) {
+                bestStart = start;
+                bestPlacement = this.getPlacement(blocks);
+            }
+        }
+
+        if(bestStart != numStarts - 1) {
+            this.setPlacement(blocks, bestPlacement);
+        }
+
+        this.stopTimer();
+
+        this.logger.println("Multi start results:");
+        for(int start = 0; start < numStarts; start++) {
+            this.logger.printf("   seed %d: BB cost %g, max delay %g ns\n", this.randomSeed + start, bbCosts[start], maxDelays[start]);
+        }
+        this.logger.println("   best seed: " + (this.randomSeed + bestStart));
+        this.logger.println();
+
+        if(this.visual) {
+            this.visualizer.addPlacement("Best of " + numStarts + " starts");
+        }
+
+        this.printStatistics(multiStartName, true);
+    }
+
+    private AbstractSite[] getPlacement(List<GlobalBlock> blocks) {
+        AbstractSite[] placement = new AbstractSite[blocks.size()];
+        for(int i = 0; i < placement.length; i++) {
+            placement[i] = blocks.get(i).getSite();
+        }
+        return placement;
+    }
+    private void setPlacement(List<GlobalBlock> blocks, AbstractSite[] placement) {
+        try {
+            for(GlobalBlock block : blocks) {
+                if(block.getSite() != null) {
+                    block.removeSite();
+                }
+            }
+            for(int i = 0; i < placement.length; i++) {
+                if(placement[i] != null) {
+                    blocks.get(i).setSite(placement[i]);
+                }
+            }
+        } catch(PlacementException error) {
+            this.logger.raise(error);
+        }
+    }
+
+
     private void startTimer(String name) {
         this.mostRecentTimerName = name;
 
@@ -1,26 +1,67 @@
 package place.mathtools;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /*
  * Solves a linear system using the conjugate gradient method
  * Uses a Jacobi preconditioner
+ *
+ * The work vectors are allocated once and reused for every solve
+ * with the same number of dimensions.
+ *
+ * When a pool is given, the sparse matrix vector product and the dot
+ * products are split in blocks of rows that are processed in the pool.
+ * The blocks only depend on the number of dimensions, so the sums are
+ * always reduced in the same order and the result does not depend on
+ * the number of threads.
  */
 public class CGSolver {
 
-    private final List<Double> val;
-    private final List<Integer> columnIndexes, rowPointers;
-    private final double[] vector;
+    private static final int MIN_ROWS_PER_TASK = 4096;
 
-    public CGSolver(Csr crs, double[] vector) {
-        this.val = crs.getVal();
-        this.columnIndexes = crs.getColumnIndexes();
-        this.rowPointers = crs.getRowPointers();
-        this.vector = vector;
+    private static final int
+        DOT_PRODUCT = 0,
+        MATRIX_VECTOR_PRODUCT = 1;
+
+    private final int dimensions;
+    private final double[] x, r, m, s, d, q;
+
+    private final ForkJoinPool pool;
+
+    // The matrix of the current solve, used by the row block tasks
+    private double[] val;
+    private int[] columnIndexes, rowPointers;
+
+    public CGSolver(int dimensions) {
+        this(dimensions, null);
     }
+    public CGSolver(int dimensions, ForkJoinPool pool) {
+        this.dimensions = dimensions;
+        this.pool = dimensions >= 2 * MIN_ROWS_PER_TASK ? pool : null;
+
+        this.x = new double[dimensions];
+        this.r = new double[dimensions];
+        this.m = new double[dimensions];
+        this.s = new double[dimensions];
+        this.d = new double[dimensions];
+        this.q = new double[dimensions];
+    }
+
+    /*
+     * The returned solution is overwritten by the next solve
+     */
+    public double[] solve(Csr matrix, double[] vector, double epsilon) {
+        int[] columnIndexes = matrix.getColumnIndexes();
+        int[] rowPointers = matrix.getRowPointers();
+        double[] val = matrix.getVal();
+
+        this.val = val;
+        this.columnIndexes = columnIndexes;
+        this.rowPointers = rowPointers;
 
-    public double[] solve(double epsilon) {
-        int dimensions = this.vector.length;
+        double[] x = this.x, r = this.r, m = this.m, s = this.s, d = this.d, q = this.q;
 
         double deltaNew;
         double deltaFirst;
@@ -30,30 +71,21 @@ public class CGSolver {
         double temp;
 
         // Initialize everything
-        double[] x = new double[dimensions];
-        double[] r = new double[dimensions];
-        for(int i = 0; i < dimensions; i++) {
-            x[i] = 0.0;
-            r[i] = this.vector[i];
-        }
+        Arrays.fill(x, 0.0);
+        System.arraycopy(vector, 0, r, 0, this.dimensions);
 
-        double[] m = constructJacobi();
+        constructJacobi(val, columnIndexes, rowPointers, m);
 
-        double[] s = new double[dimensions];
         elementWiseProduct(m, r, s);
 
-        double[] d = new double[dimensions];
-        for(int i = 0; i < dimensions; i++) {
-            d[i] = s[i];
-        }
+        System.arraycopy(s, 0, d, 0, this.dimensions);
 
         deltaNew = dotProduct(s, r);
         deltaFirst = deltaNew;
 
         // Main loop of the algorithm
-        double[] q = new double[dimensions];
         while(deltaNew > epsilon * epsilon * deltaFirst) {
-            sparseMatrixVectorProduct(d, q);
+            sparseMatrixVectorProduct(val, columnIndexes, rowPointers, d, q);
             temp = dotProduct(d, q);
             alpha = deltaNew / temp;
 
@@ -68,37 +100,38 @@ public class CGSolver {
             vectorUpdate(s, d, beta, d);
         }
 
+        this.val = null;
+        this.columnIndexes = null;
+        this.rowPointers = null;
+
         return x;
     }
 
-    private double[] constructJacobi() {
-        int dimension = this.vector.length;
-        double[] jacobi = new double[dimension];
-        int index;
-
-        for(int row = 0; row < dimension; row++) {
-            // TODO: binary search
-            index = this.rowPointers.get(row);
-            // We suppose the diagonal elements are always non-zero
-            while(this.columnIndexes.get(index) != row) {
-                index++;
-            }
-
-            jacobi[row] = 1.0 / this.val.get(index);
+    private void constructJacobi(double[] val, int[] columnIndexes, int[] rowPointers, double[] jacobi) {
+        for(int row = 0; row < this.dimensions; row++) {
+            // The columns of a row are sorted and the diagonal element is always present
+            int index = Arrays.binarySearch(columnIndexes, rowPointers[row], rowPointers[row + 1], row);
+            jacobi[row] = 1.0 / val[index];
         }
-        return jacobi;
     }
 
     private void elementWiseProduct(double[] a, double[] b, double[] result) {
-        for(int i = 0; i < a.length; i++) {
+        for(int i = 0; i < this.dimensions; i++) {
             result[i] = a[i] * b[i];
         }
     }
 
     private double dotProduct(double[] a, double[] b) {
+        if(this.pool != null) {
+            return this.pool.invoke(new RowBlockTask(DOT_PRODUCT, 0, this.dimensions, a, b));
+        }
+
+        return dotProduct(a, b, 0, this.dimensions);
+    }
+    private static double dotProduct(double[] a, double[] b, int start, int end) {
         double sum = 0.0;
 
-        for(int i = 0; i < a.length; i++) {
+        for(int i = start; i < end; i++) {
             sum += a[i] * b[i];
         }
 
@@ -106,24 +139,71 @@ public class CGSolver {
     }
 
     private void vectorUpdate(double[] a, double[] b, double constant, double[] result) {
-        for(int i = 0; i < a.length; i++) {
+        for(int i = 0; i < this.dimensions; i++) {
             result[i] = a[i] + constant * b[i];
         }
     }
 
-    private void sparseMatrixVectorProduct(double[] vector, double[] result) {
-        int index = 0;
-        for(int row = 0; row < this.vector.length; row++) {
-            // TODO: binary search
+    private void sparseMatrixVectorProduct(double[] val, int[] columnIndexes, int[] rowPointers, double[] vector, double[] result) {
+        if(this.pool != null) {
+            this.pool.invoke(new RowBlockTask(MATRIX_VECTOR_PRODUCT, 0, this.dimensions, vector, result));
+        } else {
+            sparseMatrixVectorProduct(val, columnIndexes, rowPointers, vector, result, 0, this.dimensions);
+        }
+    }
+    private static void sparseMatrixVectorProduct(double[] val, int[] columnIndexes, int[] rowPointers, double[] vector, double[] result, int start, int end) {
+        int index = rowPointers[start];
+        for(int row = start; row < end; row++) {
             double sum = 0.0;
-            int nextRow = row + 1;
-            int maxIndex = this.rowPointers.get(nextRow);
+            int maxIndex = rowPointers[row + 1];
             while(index < maxIndex) {
-                sum += this.val.get(index) * vector[this.columnIndexes.get(index)];
+                sum += val[index] * vector[columnIndexes[index]];
                 index++;
             }
             result[row] = sum;
         }
     }
 
+    /*
+     * Halves the rows until a block has less than 2 * MIN_ROWS_PER_TASK rows.
+     * A dot product returns the sum of the left and the right half.
+     */
+    private class RowBlockTask extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final int operation;
+        private final int start, end;
+        private final double[] a, b;
+
+        RowBlockTask(int operation, int start, int end, double[] a, double[] b) {
+            this.operation = operation;
+            this.start = start;
+            this.end = end;
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        protected Double compute() {
+            if(this.end - this.start < 2 * MIN_ROWS_PER_TASK) {
+                if(this.operation == DOT_PRODUCT) {
+                    return dotProduct(this.a, this.b, this.start, this.end);
+                } else {
+                    sparseMatrixVectorProduct(CGSolver.this.val, CGSolver.this.columnIndexes, CGSolver.this.rowPointers, this.a, this.b, this.start, this.end);
+                    return 0.0;
+                }
+            }
+
+            int middle = (this.start + this.end) >>> 1;
+            RowBlockTask left = new RowBlockTask(this.operation, this.start, middle, this.a, this.b);
+            RowBlockTask right = new RowBlockTask(this.operation, middle, this.end, this.a, this.b);
+
+            left.fork();
+            double rightSum = right.compute();
+            double leftSum = left.join();
+
+            return leftSum + rightSum;
+        }
+    }
+
 }
@@ -1,99 +1,158 @@
 package place.mathtools;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
+import java.util.Arrays;
+
+/*
+ * Sparse matrix in compressed sparse row format, stored in primitive arrays.
+ *
+ * The elements are added one by one and summed per position in prepareArrays.
+ * The sparsity pattern is reused: when the positions are added in the same
+ * order as before the previous prepareArrays, the elements are summed into
+ * the existing arrays without sorting. The diagonal is always present.
+ */
 public class Csr {
 
     private int numRows;
-    private List<Double> selfValues;
-    private List<List<CsrTuple>> values;
 
-    private ArrayList<Integer> indexArray, rowPointers;
-    private ArrayList<Double> valueArray;
+    // The elements added since the last clear, in the order they were added
+    private int numElements, numPatternElements;
+    private int[] elementRows, elementColumns;
+    private double[] elementValues;
+    private int[] elementValueIndexes;
+    private boolean patternMatches;
+
+    private int[] indexArray, rowPointers;
+    private double[] valueArray;
 
     public Csr(int numRows) {
         this.numRows = numRows;
 
-        this.selfValues = new ArrayList<>(numRows);
-        this.values = new ArrayList<>(numRows);
-        for(int i = 0; i < numRows; i++) {
-            this.selfValues.add(0.0);
-            this.values.add(new ArrayList<CsrTuple>());
-        }
+        int capacity = 10 * numRows + 1;
+        this.elementRows = new int[capacity];
+        this.elementColumns = new int[capacity];
+        this.elementValues = new double[capacity];
+        this.elementValueIndexes = new int[capacity];
+
+        this.numElements = 0;
+        this.numPatternElements = -1;
+        this.patternMatches = false;
+
+        this.rowPointers = new int[numRows + 1];
     }
 
+    public int getNumRows() {
+        return this.numRows;
+    }
 
+    /*
+     * Removes all the elements, the sparsity pattern is kept
+     */
+    public void clear() {
+        this.numElements = 0;
+        this.patternMatches = this.numPatternElements >= 0;
+    }
 
     public void addElement(int row, int column, double value) {
-        if(row == column) {
-            this.selfValues.set(row, value + this.selfValues.get(row));
+        int element = this.numElements;
+        if(element == this.elementRows.length) {
+            this.grow();
+        }
 
-        } else {
-            CsrTuple entry = new CsrTuple(column, value);
-            this.values.get(row).add(entry);
+        if(this.patternMatches) {
+            if(element >= this.numPatternElements || this.elementRows[element] != row || this.elementColumns[element] != column) {
+                this.patternMatches = false;
+            }
         }
+
+        this.elementRows[element] = row;
+        this.elementColumns[element] = column;
+        this.elementValues[element] = value;
+        this.numElements++;
+    }
+    private void grow() {
+        int capacity = 2 * this.elementRows.length;
+        this.elementRows = Arrays.copyOf(this.elementRows, capacity);
+        this.elementColumns = Arrays.copyOf(this.elementColumns, capacity);
+        this.elementValues = Arrays.copyOf(this.elementValues, capacity);
+        this.elementValueIndexes = Arrays.copyOf(this.elementValueIndexes, capacity);
     }
 
     public void prepareArrays() {
-        this.indexArray = new ArrayList<>(10 * this.numRows);
-        this.valueArray = new ArrayList<>(10 * this.numRows);
-        this.rowPointers = new ArrayList<>(this.numRows + 1);
+        if(!this.patternMatches || this.numElements != this.numPatternElements) {
+            this.buildPattern();
+        }
 
+        Arrays.fill(this.valueArray, 0.0);
+        for(int element = 0; element < this.numElements; element++) {
+            this.valueArray[this.elementValueIndexes[element]] += this.elementValues[element];
+        }
+    }
+
+    /*
+     * Sorts the elements on row and column and merges the elements
+     * at the same position. The diagonal element of each row is added
+     * as an extra element with index numElements + row.
+     */
+    private void buildPattern() {
+        int numKeys = this.numElements + this.numRows;
+
+        int[] rowStarts = new int[this.numRows + 1];
+        for(int element = 0; element < this.numElements; element++) {
+            rowStarts[this.elementRows[element] + 1]++;
+        }
+        for(int row = 0; row < this.numRows; row++) {
+            rowStarts[row + 1] += rowStarts[row] + 1;
+        }
+
+        // Key: column in the high bits, element index in the low bits
+        long[] keys = new long[numKeys];
+        int[] rowFill = Arrays.copyOf(rowStarts, this.numRows);
+        for(int row = 0; row < this.numRows; row++) {
+            keys[rowFill[row]++] = ((long) row << 32) | (this.numElements + row);
+        }
+        for(int element = 0; element < this.numElements; element++) {
+            keys[rowFill[this.elementRows[element]]++] = ((long) this.elementColumns[element] << 32) | element;
+        }
+
+        this.indexArray = new int[numKeys];
         int totalIndex = 0;
-        for(int rowIndex = 0; rowIndex < this.numRows; rowIndex++) {
-            this.rowPointers.add(totalIndex);
-
-            List<CsrTuple> row = this.values.get(rowIndex);
-            CsrTuple selfTuple = new CsrTuple(rowIndex, this.selfValues.get(rowIndex));
-            row.add(selfTuple);
-            Collections.sort(row);
-
-            CsrTuple initialEntry = row.get(0);
-            int previousColumnIndex = initialEntry.getIndex();
-            double summedValue = initialEntry.getValue();
-
-            int numValues = row.size();
-            int valueIndex = 1;
-            while(valueIndex < numValues) {
-                CsrTuple entry = row.get(valueIndex);
-                int columnIndex = entry.getIndex();
-                double value = entry.getValue();
-
-                if(columnIndex == previousColumnIndex) {
-                    summedValue += value;
-
-                } else {
-                    this.indexArray.add(previousColumnIndex);
-                    this.valueArray.add(summedValue);
+        for(int row = 0; row < this.numRows; row++) {
+            this.rowPointers[row] = totalIndex;
+
+            Arrays.sort(keys, rowStarts[row], rowStarts[row + 1]);
+
+            int previousColumnIndex = -1;
+            for(int key = rowStarts[row]; key < rowStarts[row + 1]; key++) {
+                int columnIndex = (int) (keys[key] >>> 32);
+                int element = (int) keys[key];
+
+                if(columnIndex != previousColumnIndex) {
+                    this.indexArray[totalIndex] = columnIndex;
                     totalIndex++;
-                    summedValue = value;
+                    previousColumnIndex = columnIndex;
                 }
 
-                previousColumnIndex = columnIndex;
-                valueIndex++;
+                if(element < this.numElements) {
+                    this.elementValueIndexes[element] = totalIndex - 1;
+                }
             }
-
-            this.indexArray.add(previousColumnIndex);
-            this.valueArray.add(summedValue);
-            totalIndex++;
         }
+        this.rowPointers[this.numRows] = totalIndex;
 
-        this.rowPointers.add(totalIndex);
-
+        this.indexArray = Arrays.copyOf(this.indexArray, totalIndex);
+        this.valueArray = new double[totalIndex];
 
-        this.indexArray.trimToSize();
-        this.valueArray.trimToSize();
+        this.numPatternElements = this.numElements;
+        this.patternMatches = true;
     }
 
-    public List<Integer> getColumnIndexes() {
+    public int[] getColumnIndexes() {
         return this.indexArray;
     }
-    public List<Double> getVal() {
+    public double[] getVal() {
         return this.valueArray;
     }
-    public List<Integer> getRowPointers() {
+    public int[] getRowPointers() {
         return this.rowPointers;
     }
 }
@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import pack.util.ErrorLog;
 
@@ -45,6 +46,9 @@ public abstract class AnalyticalAndGradientPlacer extends Placer {
 
     private double criticalityLearningRate;
 
+    // Solves the linear system in parallel, null if there is only one solve thread
+    protected final ForkJoinPool solvePool;
+
     protected double linearCost;
     protected double legalCost;
     protected double timingCost;
@@ -61,13 +65,19 @@ public abstract class AnalyticalAndGradientPlacer extends Placer {
     private final boolean hasHierarchyInformation;
 
     private static final String
-        O_CRIT_LEARNING_RATE = "crit learning rate";
+        O_CRIT_LEARNING_RATE = "crit learning rate",
+        O_SOLVE_THREADS = "solve threads";
 
     public static void initOptions(Options options) {
         options.add(
                 O_CRIT_LEARNING_RATE,
                 "criticality learning rate of the critical connections in sparce placement",
                 new Double(0.7));
+
+        options.add(
+                O_SOLVE_THREADS,
+                "number of threads that build and solve the linear system, the x and y dimension are solved in parallel",
+                Integer.valueOf(1));
     }
 
     protected final static String
@@ -83,6 +93,9 @@ public abstract class AnalyticalAndGradientPlacer extends Placer {
         super(circuit, options, random, logger, visualizer);
 
         this.criticalityLearningRate = options.getDouble(O_CRIT_LEARNING_RATE);
+
+        int solveThreads = options.getInteger(O_SOLVE_THREADS);
+        this.solvePool = solveThreads > 1 ? new ForkJoinPool(solveThreads) : null;
         
         //Check if a hierarchy input file is available.
         //If the file is available, then each node should have a hierarchy leaf node.
@@ -421,6 +434,10 @@ public abstract class AnalyticalAndGradientPlacer extends Placer {
             
             iteration++;
         }
+
+        if(this.solvePool != null) {
+            this.solvePool.shutdown();
+        }
         
         //////////// Final legalization of the LABs ////////////
 		for(int i = 0; i < this.linearX.length; i++){
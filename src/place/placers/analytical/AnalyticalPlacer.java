@@ -59,6 +59,7 @@ public abstract class AnalyticalPlacer extends AnalyticalAndGradientPlacer {
 
     protected Legalizer legalizer;
     protected LinearSolverAnalytical solver;
+    private List<LinearSolverAnalytical> solvers = new ArrayList<>();
 
     private Map<BlockType, boolean[]> netMap;
     private boolean[] allTrue;
@@ -203,12 +204,7 @@ public abstract class AnalyticalPlacer extends AnalyticalAndGradientPlacer {
     	int innerIterations = iteration == 0 ? 5 : 1;
         for(int i = 0; i < innerIterations; i++) {
 
-            this.solver = new LinearSolverAnalytical(
-                    this.coordinatesX,
-                    this.coordinatesY,
-                    this.anchorWeight,
-                    AnalyticalPlacer.EPSILON,
-                    this.fixed);
+            this.solver = this.getSolver();
             this.solveLinearIteration(processNets, iteration);
         }
 
@@ -219,6 +215,25 @@ public abstract class AnalyticalPlacer extends AnalyticalAndGradientPlacer {
 			}
 		}
     }
+    // There is one solver for each set of fixed blocks, the solvers are reused between iterations
+    private LinearSolverAnalytical getSolver() {
+        for(LinearSolverAnalytical solver : this.solvers) {
+            if(solver.hasFixed(this.fixed)) {
+                solver.reset(this.anchorWeight);
+                return solver;
+            }
+        }
+
+        LinearSolverAnalytical solver = new LinearSolverAnalytical(
+                this.coordinatesX,
+                this.coordinatesY,
+                this.anchorWeight,
+                AnalyticalPlacer.EPSILON,
+                this.fixed,
+                this.solvePool);
+        this.solvers.add(solver);
+        return solver;
+    }
     protected void solveLinearIteration(boolean[] processNets, int iteration) {
 
         this.startTimer(T_BUILD_LINEAR);
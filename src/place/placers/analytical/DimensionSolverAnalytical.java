@@ -1,7 +1,7 @@
 package place.placers.analytical;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import place.mathtools.CGSolver;
 import place.mathtools.Csr;
@@ -11,15 +11,16 @@ class DimensionSolverAnalytical {
     private final double[] coordinates;
     private final Csr matrix;
     private final double[] vector;
+    private final CGSolver cgSolver;
 
-    private final double pseudoWeight;
+    private double pseudoWeight;
     private final double epsilon;
 
     private boolean[] fixed;
-    private Map<Integer,Integer> forwardIndexMap;
-    private Map<Integer,Integer> backwardIndexMap;
+    private int[] forwardIndexMap;
+    private int[] backwardIndexMap;
 
-    DimensionSolverAnalytical(double[] coordinates, double pseudoWeight, double epsilon, boolean[] fixed) {
+    DimensionSolverAnalytical(double[] coordinates, double pseudoWeight, double epsilon, boolean[] fixed, ForkJoinPool pool) {
         this.coordinates = coordinates;
 
         this.pseudoWeight = pseudoWeight;
@@ -27,26 +28,41 @@ class DimensionSolverAnalytical {
 
         this.fixed = fixed;
 
-        this.forwardIndexMap = new HashMap<Integer,Integer>();
-        this.backwardIndexMap = new HashMap<Integer,Integer>();
+        this.forwardIndexMap = new int[this.fixed.length];
+        this.backwardIndexMap = new int[this.fixed.length];
 
         int numMovableBlocks = 0;
         for(int i = 0; i < this.fixed.length; i++){
         	if(!this.fixed[i]){
-        		this.forwardIndexMap.put(i, numMovableBlocks);
-        		this.backwardIndexMap.put(numMovableBlocks, i);
+        		this.forwardIndexMap[i] = numMovableBlocks;
+        		this.backwardIndexMap[numMovableBlocks] = i;
         		numMovableBlocks++;
+        	} else {
+        		this.forwardIndexMap[i] = -1;
         	}
         }
+        this.backwardIndexMap = Arrays.copyOf(this.backwardIndexMap, numMovableBlocks);
 
         this.matrix = new Csr(numMovableBlocks);
         this.vector = new double[numMovableBlocks];
+        this.cgSolver = new CGSolver(numMovableBlocks, pool);
+    }
+
+    /*
+     * Removes all connections, the matrix keeps its sparsity
+     * pattern and the solver its work vectors
+     */
+    void reset(double pseudoWeight) {
+        this.pseudoWeight = pseudoWeight;
+
+        this.matrix.clear();
+        Arrays.fill(this.vector, 0.0);
     }
 
 
     void addPseudoConnection(int blockIndex, double legalCoordinate) {
         double weight = this.pseudoWeight;
-        int relativeIndex = this.forwardIndexMap.get(blockIndex);
+        int relativeIndex = this.forwardIndexMap[blockIndex];
 
         this.matrix.addElement(relativeIndex, relativeIndex, weight);
         this.vector[relativeIndex] += weight * legalCoordinate;
@@ -62,21 +78,21 @@ class DimensionSolverAnalytical {
 
         if(fixed1) {
             if(!fixed2) {
-            	int relativeIndex2 = this.forwardIndexMap.get(index2);
+            	int relativeIndex2 = this.forwardIndexMap[index2];
             	
                 this.matrix.addElement(relativeIndex2, relativeIndex2, weight);
                 this.vector[relativeIndex2] += weight * (coordinate1 - offset2);
             }
 
         } else if(fixed2) {
-        	int relativeIndex1 = this.forwardIndexMap.get(index1);
+        	int relativeIndex1 = this.forwardIndexMap[index1];
 
             this.matrix.addElement(relativeIndex1, relativeIndex1, weight);
             this.vector[relativeIndex1] += weight * (coordinate2 - offset1);
 
         } else {
-        	int relativeIndex1 = this.forwardIndexMap.get(index1);
-        	int relativeIndex2 = this.forwardIndexMap.get(index2);
+        	int relativeIndex1 = this.forwardIndexMap[index1];
+        	int relativeIndex2 = this.forwardIndexMap[index2];
 
             this.matrix.addElement(relativeIndex1, relativeIndex1, weight);
             this.matrix.addElement(relativeIndex1, relativeIndex2, -weight);
@@ -87,11 +103,10 @@ class DimensionSolverAnalytical {
 
     void solve() {
         this.matrix.prepareArrays();
-        CGSolver solver = new CGSolver(this.matrix, this.vector);
-        double[] solution = solver.solve(this.epsilon);
+        double[] solution = this.cgSolver.solve(this.matrix, this.vector, this.epsilon);
 
-        for(int index:this.backwardIndexMap.keySet()){
-        	this.coordinates[this.backwardIndexMap.get(index)] = solution[index];
+        for(int index = 0; index < this.backwardIndexMap.length; index++){
+        	this.coordinates[this.backwardIndexMap[index]] = solution[index];
         }
     }
 }
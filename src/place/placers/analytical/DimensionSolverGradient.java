@@ -1,15 +1,26 @@
 package place.placers.analytical;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 class DimensionSolverGradient {
 
+    private static final int MIN_BLOCKS_PER_TASK = 4096;
+
     private final double[] coordinates;
 
-    private final double[] directions, totalPositiveNetSize, totalNegativeNetSize;
-    private final double[] numPositiveNets, numNegativeNets;
+    // The gradients of the nets, one buffer per net processing thread
+    // The buffers of the other threads are reduced into the buffer of thread 0
+    private final int numThreads;
+    private final double[][] directions, totalPositiveNetSize, totalNegativeNetSize;
+    private final double[][] numPositiveNets, numNegativeNets;
     private final double halfMaxConnectionLength;
 
+    private final ForkJoinPool pool;
+
     private double stepSize;
 
     private final double[] speeds;
@@ -24,7 +35,7 @@ class DimensionSolverGradient {
     
     private final boolean[] fixed;
 
-    DimensionSolverGradient(double[] coordinates, double maxConnectionLength, boolean[] fixed, double beta1, double beta2, double eps) {
+    DimensionSolverGradient(double[] coordinates, double maxConnectionLength, boolean[] fixed, double beta1, double beta2, double eps, ForkJoinPool pool) {
         this.coordinates = coordinates;
         this.halfMaxConnectionLength = maxConnectionLength / 2;
 
@@ -37,26 +48,34 @@ class DimensionSolverGradient {
         this.beta2 = beta2;
         this.eps = eps;
 
-        this.directions = new double[numBlocks];
-        this.numPositiveNets = new double[numBlocks];
-        this.numNegativeNets = new double[numBlocks];
-        this.totalPositiveNetSize = new double[numBlocks];
-        this.totalNegativeNetSize = new double[numBlocks];
+        this.pool = pool;
+        this.numThreads = pool == null ? 1 : pool.getParallelism();
+
+        this.directions = new double[this.numThreads][numBlocks];
+        this.numPositiveNets = new double[this.numThreads][numBlocks];
+        this.numNegativeNets = new double[this.numThreads][numBlocks];
+        this.totalPositiveNetSize = new double[this.numThreads][numBlocks];
+        this.totalNegativeNetSize = new double[this.numThreads][numBlocks];
 
         this.fixed = fixed;
     }
 
+    int getNumThreads() {
+        return this.numThreads;
+    }
+
     void initializeIteration(double pseudoWeight, double learningRate) {
         this.pseudoWeight = pseudoWeight;
         this.stepSize = learningRate;
 
-        Arrays.fill(this.directions, 0.0);
+        // The buffers of the other threads are cleared when they are reduced
+        Arrays.fill(this.directions[0], 0.0);
 
-        Arrays.fill(this.numPositiveNets, 0);
-        Arrays.fill(this.numNegativeNets, 0);
+        Arrays.fill(this.numPositiveNets[0], 0);
+        Arrays.fill(this.numNegativeNets[0], 0);
 
-        Arrays.fill(this.totalPositiveNetSize, 0.0);
-        Arrays.fill(this.totalNegativeNetSize, 0.0);
+        Arrays.fill(this.totalPositiveNetSize[0], 0.0);
+        Arrays.fill(this.totalNegativeNetSize[0], 0.0);
     }
 
     void setLegal(double[] legal) {
@@ -66,13 +85,16 @@ class DimensionSolverGradient {
 
 
     void processConnection(int firstIndex, int secondIndex, double coorDifference, double weight, boolean critical) {
+        this.processConnection(0, firstIndex, secondIndex, coorDifference, weight, critical);
+    }
+    void processConnection(int thread, int firstIndex, int secondIndex, double coorDifference, double weight, boolean critical) {
     	if(coorDifference > 0.0){
-    		this.addConnection(firstIndex, secondIndex, coorDifference, weight, critical);
+    		this.addConnection(thread, firstIndex, secondIndex, coorDifference, weight, critical);
     	}else if(coorDifference < 0.0){
-    		this.addConnection(secondIndex, firstIndex, -coorDifference, weight, critical);
+    		this.addConnection(thread, secondIndex, firstIndex, -coorDifference, weight, critical);
     	}
     }
-    private void addConnection(int minIndex, int maxIndex, double coorDifference, double weight, boolean critical) {
+    private void addConnection(int thread, int minIndex, int maxIndex, double coorDifference, double weight, boolean critical) {
     	double netSize;
     	if(critical){
             netSize = 2 * (5 * this.halfMaxConnectionLength) * coorDifference / ((5 * this.halfMaxConnectionLength) + coorDifference);
@@ -80,13 +102,65 @@ class DimensionSolverGradient {
             netSize = 2 * this.halfMaxConnectionLength * coorDifference / (this.halfMaxConnectionLength + coorDifference);
     	}
 
-        this.totalPositiveNetSize[minIndex] += weight * netSize;
-        this.numPositiveNets[minIndex] += weight;
-        this.directions[minIndex] += weight;
+        double[] totalPositiveNetSize = this.totalPositiveNetSize[thread],
+                 totalNegativeNetSize = this.totalNegativeNetSize[thread],
+                 numPositiveNets = this.numPositiveNets[thread],
+                 numNegativeNets = this.numNegativeNets[thread],
+                 directions = this.directions[thread];
+
+        totalPositiveNetSize[minIndex] += weight * netSize;
+        numPositiveNets[minIndex] += weight;
+        directions[minIndex] += weight;
 
-        this.totalNegativeNetSize[maxIndex] += weight * netSize;
-        this.numNegativeNets[maxIndex] += weight;
-        this.directions[maxIndex] -= weight;
+        totalNegativeNetSize[maxIndex] += weight * netSize;
+        numNegativeNets[maxIndex] += weight;
+        directions[maxIndex] -= weight;
+    }
+
+    /*
+     * Adds the gradients of the other threads to the buffer of thread 0 and
+     * clears them. The blocks are split in ranges that are reduced in the pool,
+     * the buffers are always added in thread order.
+     */
+    void reduceGradients() {
+        if(this.numThreads == 1) {
+            return;
+        }
+
+        int numBlocks = this.coordinates.length;
+        int numTasks = Math.max(1, Math.min(this.numThreads, numBlocks / MIN_BLOCKS_PER_TASK));
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(numTasks);
+        for(int task = 0; task < numTasks; task++) {
+            final int start = (int) ((long) numBlocks * task / numTasks);
+            final int end = (int) ((long) numBlocks * (task + 1) / numTasks);
+
+            tasks.add(this.pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    DimensionSolverGradient.this.reduceGradients(start, end);
+                }
+            }));
+        }
+
+        for(ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+    private void reduceGradients(int start, int end) {
+        for(int thread = 1; thread < this.numThreads; thread++) {
+            reduce(this.directions[0], this.directions[thread], start, end);
+            reduce(this.numPositiveNets[0], this.numPositiveNets[thread], start, end);
+            reduce(this.numNegativeNets[0], this.numNegativeNets[thread], start, end);
+            reduce(this.totalPositiveNetSize[0], this.totalPositiveNetSize[thread], start, end);
+            reduce(this.totalNegativeNetSize[0], this.totalNegativeNetSize[thread], start, end);
+        }
+    }
+    private static void reduce(double[] total, double[] buffer, int start, int end) {
+        for(int i = start; i < end; i++) {
+            total[i] += buffer[i];
+            buffer[i] = 0.0;
+        }
     }
 
     void solve() {
@@ -99,14 +173,14 @@ class DimensionSolverGradient {
         }
     }
     void doSolve(int i){
-    	double direction = this.directions[i];
+    	double direction = this.directions[0][i];
     	double currentCoordinate = this.coordinates[i];
 
     	double gradient;
     	if(direction > 0) {
-    		gradient = this.totalPositiveNetSize[i] / this.numPositiveNets[i];
+    		gradient = this.totalPositiveNetSize[0][i] / this.numPositiveNets[0][i];
     	} else if(direction < 0) {
-    		gradient = - this.totalNegativeNetSize[i] / this.numNegativeNets[i];
+    		gradient = - this.totalNegativeNetSize[0][i] / this.numNegativeNets[0][i];
     	} else {
     		return;
     	}
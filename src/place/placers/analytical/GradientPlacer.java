@@ -326,7 +326,8 @@ public abstract class GradientPlacer extends AnalyticalAndGradientPlacer {
                 this.fixed,
                 this.beta1, 
                 this.beta2, 
-                this.eps);
+                this.eps,
+                this.solvePool);
 
         this.costCalculator = new CostCalculator(this.nets);
 
@@ -426,12 +427,7 @@ public abstract class GradientPlacer extends AnalyticalAndGradientPlacer {
     }
 
     protected void processNets(boolean[] processNets) {
-    	int numNets = this.netEnds.length;
-    	for(int netIndex = 0; netIndex < numNets; netIndex++) {
-    		if(processNets[netIndex]){
-    			this.solver.processNet(this.netStarts[netIndex], this.netEnds[netIndex]);
-    		}
-    	}
+    	this.solver.processNets(this.netStarts, this.netEnds, processNets);
     }
 
     @Override
@@ -1,5 +1,9 @@
 package place.placers.analytical;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 import place.placers.analytical.AnalyticalAndGradientPlacer.CritConn;
 import place.placers.analytical.AnalyticalAndGradientPlacer.Net;
 import place.placers.analytical.AnalyticalAndGradientPlacer.NetBlock;
@@ -11,20 +15,37 @@ class LinearSolverAnalytical {
 
     private boolean[] fixed;
 
+    // The X and Y dimension are solved in parallel if there is a pool
+    private ForkJoinPool pool;
+
     LinearSolverAnalytical(
             double[] coordinatesX,
             double[] coordinatesY,
             double pseudoWeight,
             double epsilon,
-            boolean[] fixed) {
+            boolean[] fixed,
+            ForkJoinPool pool) {
 
         this.coordinatesX = coordinatesX;
         this.coordinatesY = coordinatesY;
 
-        this.fixed = fixed;
+        // The placer changes its fixed array, the solver keeps the blocks that were fixed when it was created
+        this.fixed = fixed.clone();
+
+        this.pool = pool;
+
+        this.solverX = new DimensionSolverAnalytical(coordinatesX, pseudoWeight, epsilon, this.fixed, pool);
+        this.solverY = new DimensionSolverAnalytical(coordinatesY, pseudoWeight, epsilon, this.fixed, pool);
+    }
+
 
-        this.solverX = new DimensionSolverAnalytical(coordinatesX, pseudoWeight, epsilon, fixed);
-        this.solverY = new DimensionSolverAnalytical(coordinatesY, pseudoWeight, epsilon, fixed);
+    boolean hasFixed(boolean[] fixed) {
+        return Arrays.equals(this.fixed, fixed);
+    }
+
+    void reset(double pseudoWeight) {
+        this.solverX.reset(pseudoWeight);
+        this.solverY.reset(pseudoWeight);
     }
 
 
@@ -171,7 +192,19 @@ class LinearSolverAnalytical {
     }
 
     void solve(){
-        this.solverX.solve();
+        if(this.pool == null) {
+            this.solverX.solve();
+            this.solverY.solve();
+            return;
+        }
+
+        ForkJoinTask<?> solveX = this.pool.submit(new Runnable() {
+            @Override
+            public void run() {
+                LinearSolverAnalytical.this.solverX.solve();
+            }
+        });
         this.solverY.solve();
+        solveX.join();
     }
 }
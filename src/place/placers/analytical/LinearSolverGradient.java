@@ -1,5 +1,10 @@
 package place.placers.analytical;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 class LinearSolverGradient {
 
     private double[] coordinatesX, coordinatesY;
@@ -8,6 +13,9 @@ class LinearSolverGradient {
 
     private DimensionSolverGradient solverX, solverY;
 
+    // The X and Y dimension are solved in parallel if there is a pool
+    private ForkJoinPool pool;
+
     LinearSolverGradient(
             double[] coordinatesX,
             double[] coordinatesY,
@@ -17,7 +25,8 @@ class LinearSolverGradient {
             boolean[] fixed,
             double beta1,
             double beta2,
-            double eps) {
+            double eps,
+            ForkJoinPool pool) {
 
         this.coordinatesX = coordinatesX;
         this.coordinatesY = coordinatesY;
@@ -25,8 +34,10 @@ class LinearSolverGradient {
         this.netBlockIndexes = netBlockIndexes;
         this.netBlockOffsets = netBlockOffsets;
 
-        this.solverX = new DimensionSolverGradient(coordinatesX, maxConnectionLength, fixed, beta1, beta2, eps);
-        this.solverY = new DimensionSolverGradient(coordinatesY, maxConnectionLength, fixed, beta1, beta2, eps);
+        this.pool = pool;
+
+        this.solverX = new DimensionSolverGradient(coordinatesX, maxConnectionLength, fixed, beta1, beta2, eps, pool);
+        this.solverY = new DimensionSolverGradient(coordinatesY, maxConnectionLength, fixed, beta1, beta2, eps, pool);
     }
 
     public void initializeIteration(double pseudoWeight, double learningRate) {
@@ -40,7 +51,50 @@ class LinearSolverGradient {
         this.solverY.setLegal(legalY);
     }
 
-    void processNet(int netStart, int netEnd) {
+    /*
+     * With a pool the nets are split in one range per thread. Each thread
+     * adds the gradients of its nets to its own buffers, which are reduced
+     * when all nets are processed.
+     */
+    void processNets(final int[] netStarts, final int[] netEnds, final boolean[] processNets) {
+        int numThreads = this.solverX.getNumThreads();
+        int numNets = netEnds.length;
+
+        if(numThreads == 1) {
+            this.processNets(0, netStarts, netEnds, processNets, 0, numNets);
+            return;
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(numThreads);
+        for(int thread = 0; thread < numThreads; thread++) {
+            final int threadIndex = thread;
+            final int start = (int) ((long) numNets * thread / numThreads);
+            final int end = (int) ((long) numNets * (thread + 1) / numThreads);
+
+            tasks.add(this.pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    LinearSolverGradient.this.processNets(threadIndex, netStarts, netEnds, processNets, start, end);
+                }
+            }));
+        }
+
+        for(ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        this.solverX.reduceGradients();
+        this.solverY.reduceGradients();
+    }
+    private void processNets(int thread, int[] netStarts, int[] netEnds, boolean[] processNets, int start, int end) {
+        for(int netIndex = start; netIndex < end; netIndex++) {
+            if(processNets[netIndex]) {
+                this.processNet(thread, netStarts[netIndex], netEnds[netIndex]);
+            }
+        }
+    }
+
+    private void processNet(int thread, int netStart, int netEnd) {
         int numNetBlocks = netEnd - netStart;
         double weight = AnalyticalAndGradientPlacer.getWeight(numNetBlocks);
 
@@ -53,11 +107,11 @@ class LinearSolverGradient {
             
             coordinate1 = this.coordinatesY[blockIndex1] + this.netBlockOffsets[netStart];
             coordinate2 = this.coordinatesY[blockIndex2] + this.netBlockOffsets[netStart + 1];
-            this.solverY.processConnection(blockIndex1, blockIndex2, coordinate2 - coordinate1, weight, false);
+            this.solverY.processConnection(thread, blockIndex1, blockIndex2, coordinate2 - coordinate1, weight, false);
 
             coordinate1 = this.coordinatesX[blockIndex1];
             coordinate2 = this.coordinatesX[blockIndex2];
-            this.solverX.processConnection(blockIndex1, blockIndex2, coordinate2 - coordinate1, weight, false);
+            this.solverX.processConnection(thread, blockIndex1, blockIndex2, coordinate2 - coordinate1, weight, false);
 
             return;
         }
@@ -97,8 +151,8 @@ class LinearSolverGradient {
         }
 
         // Add connections between the min and max block
-        this.solverX.processConnection(minXIndex, maxXIndex, maxX - minX, weight, false);
-        this.solverY.processConnection(minYIndex, maxYIndex, maxY - minY, weight, false);
+        this.solverX.processConnection(thread, minXIndex, maxXIndex, maxX - minX, weight, false);
+        this.solverY.processConnection(thread, minYIndex, maxYIndex, maxY - minY, weight, false);
     }
 
     void processConnection(int blockIndex1, int blockIndex2, float offset, double weight, boolean critical) {
@@ -112,8 +166,20 @@ class LinearSolverGradient {
     }
 
     void solve() {
-        this.solverX.solve();
+        if(this.pool == null) {
+            this.solverX.solve();
+            this.solverY.solve();
+            return;
+        }
+
+        ForkJoinTask<?> solveX = this.pool.submit(new Runnable() {
+            @Override
+            public void run() {
+                LinearSolverGradient.this.solverX.solve();
+            }
+        });
         this.solverY.solve();
+        solveX.join();
     }
     
     double[] getCoordinatesX(){
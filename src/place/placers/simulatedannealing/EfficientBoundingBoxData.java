@@ -9,6 +9,8 @@ import place.circuit.pin.GlobalPin;
 
 class EfficientBoundingBoxData {
 
+    private final int index;
+
     private double weight;
     private GlobalBlock[] blocks;
     private boolean alreadySaved;
@@ -34,7 +36,9 @@ class EfficientBoundingBoxData {
     private int boundingBox_old;
 
 
-    public EfficientBoundingBoxData(GlobalPin pin) {
+    public EfficientBoundingBoxData(GlobalPin pin, int index) {
+        this.index = index;
+
         Set<GlobalBlock> blockSet = new HashSet<GlobalBlock>();
         blockSet.add(pin.getOwner());
 
@@ -58,6 +62,37 @@ class EfficientBoundingBoxData {
         this.alreadySaved = false;
     }
 
+    // An empty bounding box, used as a copy of the bounding box of a net
+    EfficientBoundingBoxData() {
+        this.index = -1;
+    }
+
+    int getIndex() {
+        return this.index;
+    }
+
+    /*
+     * Copies the bounding box of a net, the array of blocks is shared
+     */
+    void copyFrom(EfficientBoundingBoxData data) {
+        this.weight = data.weight;
+        this.blocks = data.blocks;
+
+        this.min_x = data.min_x;
+        this.nb_min_x = data.nb_min_x;
+
+        this.max_x = data.max_x;
+        this.nb_max_x = data.nb_max_x;
+
+        this.min_y = data.min_y;
+        this.nb_min_y = data.nb_min_y;
+
+        this.max_y = data.max_y;
+        this.nb_max_y = data.nb_max_y;
+
+        this.boundingBox = data.boundingBox;
+    }
+
 
     public double calculateDeltaCost(GlobalBlock block, AbstractSite newSite) {
         double originalBB = this.boundingBox;
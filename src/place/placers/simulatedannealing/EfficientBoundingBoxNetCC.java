@@ -1,6 +1,7 @@
 package place.placers.simulatedannealing;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,7 +49,7 @@ public class EfficientBoundingBoxNetCC {
 
         this.numPins++;
 
-        EfficientBoundingBoxData bbData = new EfficientBoundingBoxData(pin);
+        EfficientBoundingBoxData bbData = new EfficientBoundingBoxData(pin, this.bbDataArray.size());
         this.bbDataArray.add(bbData);
 
         // Process source block
@@ -84,6 +85,10 @@ public class EfficientBoundingBoxNetCC {
     }
 
 
+    public int getNumNets() {
+        return this.numPins;
+    }
+
     public double calculateAverageNetCost() {
         return calculateTotalCost() / this.numPins;
     }
@@ -129,6 +134,103 @@ public class EfficientBoundingBoxNetCC {
         return deltaCost;
     }
 
+    /**
+     * Calculates the delta cost of a swap without changing the bounding boxes,
+     * so several threads can evaluate swaps at the same time. The bounding
+     * boxes of the nets of the swap are copied to the scratch data of the
+     * thread. The placement must not change during the evaluation.
+     */
+    public double calculateDeltaCost(Swap swap, Scratch scratch) {
+        scratch.clear();
+
+        double deltaCost = 0;
+
+        int numBlocks = swap.getNumBlocks();
+        for(int i = 0; i < numBlocks; i++) {
+            Site site1 = swap.getSite1(i);
+            GlobalBlock block1 = site1.getBlock();
+
+            Site site2 = swap.getSite2(i);
+            GlobalBlock block2 = site2.getBlock();
+
+            deltaCost += this.addToScratch(block1, site2, scratch);
+            if(block2 != null) {
+                deltaCost += this.addToScratch(block2, site1, scratch);
+            }
+        }
+
+        return deltaCost;
+    }
+
+    private double addToScratch(GlobalBlock block, Site site, Scratch scratch) {
+        double deltaCost = 0;
+
+        List<EfficientBoundingBoxData> bbDataList = this.bbDataMap.get(block);
+        if(bbDataList != null) {
+            for(EfficientBoundingBoxData bbData: bbDataList) {
+                deltaCost += scratch.getCopy(bbData).calculateDeltaCost(block, site);
+            }
+        }
+
+        return deltaCost;
+    }
+
+    public Scratch createScratch() {
+        return new Scratch(this.numPins);
+    }
+
+    /**
+     * The copies of the bounding boxes that are changed by the swap
+     * that is evaluated by one thread
+     */
+    public static class Scratch {
+        private final int[] copyIndexes;
+        private final List<EfficientBoundingBoxData> copies = new ArrayList<>();
+        private int[] nets = new int[16];
+        private int numNets = 0;
+
+        private Scratch(int numNets) {
+            this.copyIndexes = new int[numNets];
+            Arrays.fill(this.copyIndexes, -1);
+        }
+
+        private void clear() {
+            for(int i = 0; i < this.numNets; i++) {
+                this.copyIndexes[this.nets[i]] = -1;
+            }
+            this.numNets = 0;
+        }
+
+        private EfficientBoundingBoxData getCopy(EfficientBoundingBoxData bbData) {
+            int net = bbData.getIndex();
+            int copyIndex = this.copyIndexes[net];
+
+            if(copyIndex < 0) {
+                copyIndex = this.numNets;
+                if(copyIndex == this.copies.size()) {
+                    this.copies.add(new EfficientBoundingBoxData());
+                }
+                if(copyIndex == this.nets.length) {
+                    this.nets = Arrays.copyOf(this.nets, 2 * copyIndex);
+                }
+
+                this.copies.get(copyIndex).copyFrom(bbData);
+                this.nets[copyIndex] = net;
+                this.copyIndexes[net] = copyIndex;
+                this.numNets++;
+            }
+
+            return this.copies.get(copyIndex);
+        }
+
+        /**
+         * The indexes of the nets of the last evaluated swap
+         */
+        public int[] getNets() {
+            return Arrays.copyOf(this.nets, this.numNets);
+        }
+    }
+
     private double addToRevert(GlobalBlock block, Site site) {
         this.toRevert.add(block);
 
@@ -162,6 +264,8 @@ public class EfficientBoundingBoxNetCC {
                 }
             }
         }
+
+        this.toRevert.clear();
     }
 
 
@@ -174,5 +278,7 @@ public class EfficientBoundingBoxNetCC {
                 }
             }
         }
+
+        this.toRevert.clear();
     }
 }
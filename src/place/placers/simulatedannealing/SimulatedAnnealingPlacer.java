@@ -14,8 +14,12 @@ import place.visual.PlacementVisualizer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 abstract class SimulatedAnnealingPlacer extends Placer {
 
@@ -28,7 +32,8 @@ abstract class SimulatedAnnealingPlacer extends Placer {
         O_STOP_RATIO = "stop ratio",
         O_RLIM = "rlim",
         O_MAX_RLIM = "max rlim",
-        O_FIX_IO_PINS = "fix io pins";
+        O_FIX_IO_PINS = "fix io pins",
+        O_THREADS = "threads";
 
     public static void initOptions(Options options) {
         options.add(
@@ -78,6 +83,11 @@ abstract class SimulatedAnnealingPlacer extends Placer {
                 O_FIX_IO_PINS,
                 "fix the IO pins",
                 Boolean.TRUE);
+
+        options.add(
+                O_THREADS,
+                "number of threads that propose swaps in disjoint regions, swaps that share no nets and sites are applied",
+                Integer.valueOf(1));
     }
 
 
@@ -101,10 +111,22 @@ abstract class SimulatedAnnealingPlacer extends Placer {
     private double[] deltaCosts;
     private int numNets;
 
+    protected final EfficientBoundingBoxNetCC calculator;
+
+    // Parallel swaps, the pool is null if there is only one thread
+    private static final int MAX_PROPOSALS_PER_THREAD = 64;
+    private final int numThreads;
+    private final ForkJoinPool swapPool;
+    private SwapWorker[] swapWorkers;
+    private int[] netStamps;
+    private int netStamp = 0;
+
 
     protected SimulatedAnnealingPlacer(Circuit circuit, Options options, Random random, Logger logger, PlacementVisualizer visualizer) {
         super(circuit, options, random, logger, visualizer);
 
+        this.calculator = new EfficientBoundingBoxNetCC(circuit);
+
         this.greedy = this.options.getBoolean(O_GREEDY);
         this.detailed = this.options.getBoolean(O_DETAILED);
 
@@ -135,6 +157,9 @@ abstract class SimulatedAnnealingPlacer extends Placer {
 
         this.maxRlim = maxRlimOption;
         this.rlim = Math.min(RlimOption, this.maxRlim);
+
+        this.numThreads = this.options.getInteger(O_THREADS);
+        this.swapPool = this.numThreads > 1 ? new ForkJoinPool(this.numThreads) : null;
     }
 
 
@@ -145,6 +170,8 @@ abstract class SimulatedAnnealingPlacer extends Placer {
     protected abstract void initializeSwapIteration();
     protected abstract double getCost();
     protected abstract double getDeltaCost(Swap swap);
+    // The bounding box cost of the swap is calculated concurrently, the placement has not changed since
+    protected abstract double getDeltaCost(Swap swap, double deltaBBCost);
     protected abstract void pushThrough(int iteration);
     protected abstract void revert(int iteration);
 
@@ -229,6 +256,9 @@ abstract class SimulatedAnnealingPlacer extends Placer {
         double alpha = ((double) numSwaps) / this.movesPerTemperature;
         this.printStatistics(iteration, this.temperature, this.rlim, alpha, 0.0);
 
+        if(this.swapPool != null) {
+            this.swapPool.shutdown();
+        }
 
         this.logger.println();
     }
@@ -326,6 +356,10 @@ abstract class SimulatedAnnealingPlacer extends Placer {
 
 
     private int doSwapIteration() throws PlacementException {
+        if(this.swapPool != null) {
+            return this.doParallelSwapIteration(this.movesPerTemperature);
+        }
+
         return (int) this.doSwapIteration(this.movesPerTemperature, true);
     }
 
@@ -391,6 +425,218 @@ abstract class SimulatedAnnealingPlacer extends Placer {
 
 
 
+    /*
+     * The swap iteration is done in rounds. In each round the worker threads
+     * propose and evaluate swaps in disjoint stripes of the FPGA, while the
+     * placement doesn't change. The stripes are alternately columns and rows,
+     * at a random offset, so the blocks can move over the stripe boundaries.
+     * Afterwards the main thread accepts or rejects the proposals in a fixed
+     * order. A proposal that shares a net or a site with a swap that was
+     * already applied in this round is dropped: its delta cost is outdated.
+     */
+    private int doParallelSwapIteration(int moves) throws PlacementException {
+
+        this.initializeSwapIteration();
+
+        this.startTimer(T_DO_SWAPS);
+
+        if(this.swapWorkers == null) {
+            this.swapWorkers = new SwapWorker[this.numThreads];
+            for(int thread = 0; thread < this.numThreads; thread++) {
+                this.swapWorkers[thread] = new SwapWorker();
+            }
+            this.netStamps = new int[this.calculator.getNumNets()];
+        }
+
+        int numSwaps = 0;
+        int intRlim = (int) Math.round(this.rlim);
+
+        Set<Site> usedSites = new HashSet<>();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(this.numThreads);
+
+        int i = 0, emptyRounds = 0;
+        for(int round = 0; i < moves; round++) {
+            boolean columnStripes = round % 2 == 0;
+            int size = columnStripes ? this.circuit.getWidth() + 2 : this.circuit.getHeight() + 2;
+            int stripeSize = Math.max(1, size / this.numThreads);
+            int offset = this.random.nextInt(stripeSize);
+
+            int proposalsPerThread = Math.max(1, Math.min(MAX_PROPOSALS_PER_THREAD, (moves - i) / this.numThreads));
+
+            tasks.clear();
+            for(int thread = 0; thread < this.numThreads; thread++) {
+                SwapWorker worker = this.swapWorkers[thread];
+
+                int start = thread == 0 ? 0 : Math.min(size, offset + thread * stripeSize);
+                int end = thread == this.numThreads - 1 ? size : Math.min(size, offset + (thread + 1) * stripeSize);
+                if(columnStripes) {
+                    worker.setRegion(start, end - 1, 0, this.circuit.getHeight() + 1);
+                } else {
+                    worker.setRegion(0, this.circuit.getWidth() + 1, start, end - 1);
+                }
+
+                worker.prepare(this.random.nextLong(), intRlim, proposalsPerThread);
+                tasks.add(this.swapPool.submit(worker));
+            }
+
+            int numProposals = 0;
+            for(int thread = 0; thread < this.numThreads; thread++) {
+                tasks.get(thread).join();
+                numProposals += this.swapWorkers[thread].proposals.size();
+            }
+
+            // The stripes may be too small to find swaps, e.g. if there are more threads than columns
+            if(numProposals == 0) {
+                emptyRounds++;
+                if(emptyRounds > 2 * this.numThreads) {
+                    break;
+                }
+                continue;
+            }
+            emptyRounds = 0;
+
+            // Apply the proposals in a fixed order
+            this.netStamp++;
+            usedSites.clear();
+
+            for(int proposal = 0; proposal < proposalsPerThread && i < moves; proposal++) {
+                for(int thread = 0; thread < this.numThreads && i < moves; thread++) {
+                    List<ProposedSwap> proposals = this.swapWorkers[thread].proposals;
+                    if(proposal >= proposals.size()) {
+                        continue;
+                    }
+
+                    ProposedSwap proposedSwap = proposals.get(proposal);
+                    if(this.conflicts(proposedSwap, usedSites)) {
+                        continue;
+                    }
+
+                    Swap swap = proposedSwap.swap;
+                    double deltaCost = this.getDeltaCost(swap, proposedSwap.deltaBBCost);
+
+                    if(deltaCost <= 0 || (this.greedy == false && this.random.nextDouble() < Math.exp(-deltaCost / this.temperature))) {
+                        this.markUsed(proposedSwap, usedSites);
+
+                        this.calculator.calculateDeltaCost(swap);
+                        swap.apply();
+                        numSwaps++;
+
+                        this.pushThrough(i);
+                        this.circuitChanged = true;
+
+                    } else {
+                        this.revert(i);
+                    }
+
+                    i++;
+                }
+            }
+        }
+
+        this.stopTimer(T_DO_SWAPS);
+
+        return numSwaps;
+    }
+
+    private boolean conflicts(ProposedSwap proposedSwap, Set<Site> usedSites) {
+        for(int net : proposedSwap.nets) {
+            if(this.netStamps[net] == this.netStamp) {
+                return true;
+            }
+        }
+
+        Swap swap = proposedSwap.swap;
+        int numBlocks = swap.getNumBlocks();
+        for(int i = 0; i < numBlocks; i++) {
+            if(usedSites.contains(swap.getSite1(i)) || usedSites.contains(swap.getSite2(i))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+    private void markUsed(ProposedSwap proposedSwap, Set<Site> usedSites) {
+        for(int net : proposedSwap.nets) {
+            this.netStamps[net] = this.netStamp;
+        }
+
+        Swap swap = proposedSwap.swap;
+        int numBlocks = swap.getNumBlocks();
+        for(int i = 0; i < numBlocks; i++) {
+            usedSites.add(swap.getSite1(i));
+            usedSites.add(swap.getSite2(i));
+        }
+    }
+
+
+    private static class ProposedSwap {
+        final Swap swap;
+        final double deltaBBCost;
+        final int[] nets;
+
+        ProposedSwap(Swap swap, double deltaBBCost, int[] nets) {
+            this.swap = swap;
+            this.deltaBBCost = deltaBBCost;
+            this.nets = nets;
+        }
+    }
+
+    /*
+     * Proposes swaps of which both sites lie in the region of the worker
+     */
+    private class SwapWorker implements Runnable {
+        private final Random random = new Random();
+        private final EfficientBoundingBoxNetCC.Scratch scratch = SimulatedAnnealingPlacer.this.calculator.createScratch();
+        private final SwapRegion region = new SwapRegion();
+
+        private int rlim, numProposals;
+        final List<ProposedSwap> proposals = new ArrayList<>();
+
+        void setRegion(int minColumn, int maxColumn, int minRow, int maxRow) {
+            this.region.minColumn = minColumn;
+            this.region.maxColumn = maxColumn;
+            this.region.minRow = minRow;
+            this.region.maxRow = maxRow;
+        }
+
+        void prepare(long seed, int rlim, int numProposals) {
+            this.random.setSeed(seed);
+            this.rlim = rlim;
+            this.numProposals = numProposals;
+        }
+
+        @Override
+        public void run() {
+            SimulatedAnnealingPlacer placer = SimulatedAnnealingPlacer.this;
+            this.proposals.clear();
+
+            // The region may contain few movable blocks, so the number of tries is limited
+            int maxTries = 4 * placer.numThreads * this.numProposals;
+            for(int tries = 0; tries < maxTries && this.proposals.size() < this.numProposals; tries++) {
+                GlobalBlock fromBlock = placer.circuit.getRandomBlock(this.random);
+                if(placer.isFixed(fromBlock)) {
+                    continue;
+                }
+
+                Swap swap = placer.findSwap(fromBlock, this.rlim, this.random, this.region);
+                if(swap != null) {
+                    double deltaBBCost = placer.calculator.calculateDeltaCost(swap, this.scratch);
+                    this.proposals.add(new ProposedSwap(swap, deltaBBCost, this.scratch.getNets()));
+                }
+            }
+        }
+    }
+
+    private static class SwapRegion {
+        int minColumn, maxColumn, minRow, maxRow;
+
+        boolean contains(int column, int minRow, int maxRow) {
+            return column >= this.minColumn && column <= this.maxColumn
+                    && minRow >= this.minRow && maxRow <= this.maxRow;
+        }
+    }
+
+
     protected Swap findSwap(int Rlim) {
         while(true) {
             // Find a suitable from block
@@ -399,53 +645,73 @@ abstract class SimulatedAnnealingPlacer extends Placer {
                 fromBlock = this.circuit.getRandomBlock(this.random);
             } while(this.isFixed(fromBlock));
 
-            BlockType blockType = fromBlock.getType();
-
-            int freeAbove = 0;
-            if(fromBlock.isInMacro()) {
-                fromBlock = fromBlock.getMacro().getBlock(0);
-                freeAbove = fromBlock.getMacro().getHeight() - 1;
+            Swap swap = this.findSwap(fromBlock, Rlim, this.random, null);
+            if(swap != null) {
+                return swap;
             }
+        }
+    }
 
-            int column = fromBlock.getColumn();
-            int row = fromBlock.getRow();
-            int minRow = Math.max(1, row - Rlim);
-            int maxRow = Math.min(this.circuit.getHeight() - freeAbove, row + Rlim);
+    /*
+     * Returns null if no suitable site is found near the block. If a region
+     * is given, the block and the site have to lie in the region.
+     */
+    private Swap findSwap(GlobalBlock fromBlock, int Rlim, Random random, SwapRegion region) {
+        BlockType blockType = fromBlock.getType();
+
+        int freeAbove = 0;
+        if(fromBlock.isInMacro()) {
+            fromBlock = fromBlock.getMacro().getBlock(0);
+            freeAbove = fromBlock.getMacro().getHeight() - 1;
+        }
 
-            // Find a suitable site near this block
-            int maxTries = Math.min(4 * Rlim * Rlim / fromBlock.getType().getHeight(), 10);
-            for(int tries = 0; tries < maxTries; tries++) {
-                Site toSite = (Site) this.circuit.getRandomSite(blockType, column, Rlim, minRow, maxRow, this.random);
+        int column = fromBlock.getColumn();
+        int row = fromBlock.getRow();
+        int minRow = Math.max(1, row - Rlim);
+        int maxRow = Math.min(this.circuit.getHeight() - freeAbove, row + Rlim);
 
-                // If toSite is null, no swap is possible with this fromBlock
-                // Go find another fromBlock
-                if(toSite == null) {
-                    break;
+        if(region != null && !region.contains(column, row, row + freeAbove)) {
+            return null;
+        }
 
-                // Check if toSite contains fromBlock
-                } else if(!fromBlock.getSite().equals(toSite)) {
-
-                    // Make sure toSite doesn't contain a block that is in a macro
-                    // (This is also not supported in VPR)
-                    boolean toBlocksInMacro = false;
-                    int toColumn = toSite.getColumn();
-                    int toMinRow = toSite.getRow();
-                    int toMaxRow = toMinRow + freeAbove;
-                    for(int toRow = toMinRow; toRow <= toMaxRow; toRow++) {
-                        GlobalBlock toBlock = ((Site) this.circuit.getSite(toColumn, toRow)).getBlock();
-                        if(toBlock != null && toBlock.isInMacro()) {
-                            toBlocksInMacro = true;
-                            break;
-                        }
+        // Find a suitable site near this block
+        int maxTries = Math.min(4 * Rlim * Rlim / fromBlock.getType().getHeight(), 10);
+        for(int tries = 0; tries < maxTries; tries++) {
+            Site toSite = (Site) this.circuit.getRandomSite(blockType, column, Rlim, minRow, maxRow, random);
+
+            // If toSite is null, no swap is possible with this fromBlock
+            // Go find another fromBlock
+            if(toSite == null) {
+                return null;
+
+            } else if(region != null && !region.contains(toSite.getColumn(), toSite.getRow(), toSite.getRow() + freeAbove)) {
+                continue;
+
+            // Check if toSite contains fromBlock
+            } else if(!fromBlock.getSite().equals(toSite)) {
+
+                // Make sure toSite doesn't contain a block that is in a macro
+                // (This is also not supported in VPR)
+                boolean toBlocksInMacro = false;
+                int toColumn = toSite.getColumn();
+                int toMinRow = toSite.getRow();
+                int toMaxRow = toMinRow + freeAbove;
+                for(int toRow = toMinRow; toRow <= toMaxRow; toRow++) {
+                    GlobalBlock toBlock = ((Site) this.circuit.getSite(toColumn, toRow)).getBlock();
+                    if(toBlock != null && toBlock.isInMacro()) {
+                        toBlocksInMacro = true;
+                        break;
                     }
+                }
 
-                    if(!toBlocksInMacro) {
-                        Swap swap = new Swap(this.circuit, fromBlock, toSite);
-                        return swap;
-                    }
+                if(!toBlocksInMacro) {
+                    Swap swap = new Swap(this.circuit, fromBlock, toSite);
+                    return swap;
                 }
             }
         }
+
+        return null;
     }
 
     private boolean isFixed(GlobalBlock block) {
@@ -1,13 +1,16 @@
 package place.placers.simulatedannealing;
 
 import place.circuit.Circuit;
+import place.circuit.block.GlobalBlock;
 import place.circuit.timing.TimingGraph;
 import place.interfaces.Logger;
 import place.interfaces.Options;
 import place.visual.PlacementVisualizer;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 public class SimulatedAnnealingPlacerTD extends SimulatedAnnealingPlacer {
 
@@ -47,7 +50,6 @@ public class SimulatedAnnealingPlacerTD extends SimulatedAnnealingPlacer {
         T_CALCULATE_COST = "calculate global cost";
 
 
-    private EfficientBoundingBoxNetCC calculator;
     private final TimingGraph timingGraph;
     private final double criticalityExponentStart, criticalityExponentEnd;
     private double cachedBBCost, cachedTDCost, previousBBCost, previousTDCost;
@@ -55,10 +57,13 @@ public class SimulatedAnnealingPlacerTD extends SimulatedAnnealingPlacer {
     private final double tradeOffFactor;
     private final int iterationsBeforeRecalculate;
 
+    // The blocks that moved since the wire delays were calculated and since the last timing analysis
+    private Swap lastSwap;
+    private final Set<GlobalBlock> wireDelayMovedBlocks = new HashSet<>(), timingMovedBlocks = new HashSet<>();
+
     public SimulatedAnnealingPlacerTD(Circuit circuit, Options options, Random random, Logger logger, PlacementVisualizer visualizer) {
         super(circuit, options, random, logger, visualizer);
 
-        this.calculator = new EfficientBoundingBoxNetCC(circuit);
         this.timingGraph = circuit.getTimingGraph();
 
 
@@ -83,6 +88,9 @@ public class SimulatedAnnealingPlacerTD extends SimulatedAnnealingPlacer {
     @Override
     protected void initializePlace() {
         this.calculator.recalculateFromScratch();
+
+        // The incremental timing analysis starts from the current placement
+        this.timingGraph.calculateCriticalities(true);
     }
 
     @Override
@@ -101,7 +109,9 @@ public class SimulatedAnnealingPlacerTD extends SimulatedAnnealingPlacer {
         }
 
         this.timingGraph.setCriticalityExponent(criticalityExponent);
-        this.timingGraph.calculateCriticalities(true);
+        this.timingGraph.calculateCriticalities(true, this.wireDelayMovedBlocks);
+        this.wireDelayMovedBlocks.clear();
+        this.timingMovedBlocks.clear();
 
         this.stopTimer(T_UPDATE_CRITICALITIES);
 
@@ -150,12 +160,23 @@ public class SimulatedAnnealingPlacerTD extends SimulatedAnnealingPlacer {
 
     @Override
     protected double getDeltaCost(Swap swap) {
+        this.lastSwap = swap;
+
         double deltaBBCost = this.calculator.calculateDeltaCost(swap);
         double deltaTDCost = this.timingGraph.calculateDeltaCost(swap);
 
         return this.balancedCost(deltaBBCost, deltaTDCost);
     }
 
+    @Override
+    protected double getDeltaCost(Swap swap, double deltaBBCost) {
+        this.lastSwap = swap;
+
+        double deltaTDCost = this.timingGraph.calculateDeltaCost(swap);
+
+        return this.balancedCost(deltaBBCost, deltaTDCost);
+    }
+
     private double balancedCost(double BBCost, double TDCost) {
         return
                 this.tradeOffFactor         * TDCost / this.previousTDCost
@@ -168,11 +189,29 @@ public class SimulatedAnnealingPlacerTD extends SimulatedAnnealingPlacer {
         this.calculator.pushThrough();
         this.timingGraph.pushThrough();
 
+        int numBlocks = this.lastSwap.getNumBlocks();
+        for(int i = 0; i < numBlocks; i++) {
+            this.addMovedBlock(this.lastSwap.getBlock1(i));
+            this.addMovedBlock(this.lastSwap.getBlock2(i));
+        }
+
         if(iteration % this.iterationsBeforeRecalculate == 0 && iteration > 0) {
-            this.timingGraph.calculateCriticalities(false);
-            this.updatePreviousCosts();
+            this.recalculateCriticalities();
         }
     }
+    private void addMovedBlock(GlobalBlock block) {
+        if(block != null) {
+            this.wireDelayMovedBlocks.add(block);
+            this.timingMovedBlocks.add(block);
+        }
+    }
+    private void recalculateCriticalities() {
+        // The wire delays of the moved blocks are already updated by pushThrough
+        this.timingGraph.calculateCriticalities(false, this.timingMovedBlocks);
+        this.timingMovedBlocks.clear();
+
+        this.updatePreviousCosts();
+    }
 
     @Override
     protected void revert(int iteration) {
@@ -180,8 +219,7 @@ public class SimulatedAnnealingPlacerTD extends SimulatedAnnealingPlacer {
         this.timingGraph.revert();
 
         if(iteration % this.iterationsBeforeRecalculate == 0 && iteration > 0) {
-            this.timingGraph.calculateCriticalities(false);
-            this.updatePreviousCosts();
+            this.recalculateCriticalities();
         }
     }
 }
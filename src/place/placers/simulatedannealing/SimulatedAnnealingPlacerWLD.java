@@ -16,13 +16,10 @@ public class SimulatedAnnealingPlacerWLD extends SimulatedAnnealingPlacer {
         SimulatedAnnealingPlacer.initOptions(options);
     }
 
-    private EfficientBoundingBoxNetCC calculator;
     private double cachedCost;
 
     public SimulatedAnnealingPlacerWLD(Circuit circuit, Options options, Random random, Logger logger, PlacementVisualizer visualizer) {
         super(circuit, options, random, logger, visualizer);
-
-        this.calculator = new EfficientBoundingBoxNetCC(circuit);
     }
 
     @Override
@@ -65,6 +62,11 @@ public class SimulatedAnnealingPlacerWLD extends SimulatedAnnealingPlacer {
         return this.calculator.calculateDeltaCost(swap);
     }
 
+    @Override
+    protected double getDeltaCost(Swap swap, double deltaBBCost) {
+        return deltaBBCost;
+    }
+
     @Override
     protected void pushThrough(int iteration) {
         this.calculator.pushThrough();
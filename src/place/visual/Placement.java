@@ -1,71 +1,29 @@
 package place.visual;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-
 import place.circuit.Circuit;
 import place.circuit.block.GlobalBlock;
-import place.placers.analytical.AnalyticalAndGradientPlacer.NetBlock;
 
+/**
+ * One placement decoded from the placement store. The coordinates of the
+ * blocks that are not part of the placement are NaN.
+ */
 class Placement {
 
     private String name;
     private Circuit circuit;
-    private int numBlocks;
 
-    private Map<GlobalBlock, Coordinate> blocks;
+    private GlobalBlock[] blocks;
+    private float[] x, y;
     private double bbCost;
 
-    Placement(String name, Circuit circuit) {
-        this.initializeData(name, circuit);
-
-        for(GlobalBlock block : this.circuit.getGlobalBlocks()) {
-            this.blocks.put(block, new Coordinate(block.getColumn(), block.getRow()));
-        }
-
-        this.bbCost = -1.0;
-    }
-
-
-    Placement(String name, Circuit circuit, Map<GlobalBlock, NetBlock> blockIndexes, int[] x, int[] y, double bbCost) {
-        this.initializeData(name, circuit);
-
-        for(Map.Entry<GlobalBlock, NetBlock> blockIndexEntry : blockIndexes.entrySet()) {
-            GlobalBlock block = blockIndexEntry.getKey();
-            NetBlock netBlock = blockIndexEntry.getValue();
-
-            int index = netBlock.getBlockIndex();
-            float offset = netBlock.getOffset();
-
-            this.blocks.put(block, new Coordinate(x[index], y[index] + Math.ceil(offset)));
-        }
-
-        this.bbCost = bbCost;
-    }
-
-    Placement(String name, Circuit circuit, Map<GlobalBlock, NetBlock> blockIndexes, double[] x, double[] y, double bbCost) {
-        this.initializeData(name, circuit);
-
-        for(Map.Entry<GlobalBlock, NetBlock> blockIndexEntry : blockIndexes.entrySet()) {
-            GlobalBlock block = blockIndexEntry.getKey();
-            NetBlock netBlock = blockIndexEntry.getValue();
-
-            int index = netBlock.getBlockIndex();
-            float offset = netBlock.getOffset();
-
-            this.blocks.put(block, new Coordinate(x[index], y[index] + Math.ceil(offset)));
-        }
-
-        this.bbCost = bbCost;
-    }
-
-    private void initializeData(String name, Circuit circuit) {
-        this.name = circuit.getName() + " | " + name;
+    Placement(String name, Circuit circuit, GlobalBlock[] blocks, float[] x, float[] y, double bbCost) {
+        this.name = name;
         this.circuit = circuit;
-        this.numBlocks = circuit.getGlobalBlocks().size();
 
-        this.blocks = new HashMap<GlobalBlock, Coordinate>();
+        this.blocks = blocks;
+        this.x = x;
+        this.y = y;
+        this.bbCost = bbCost;
     }
 
 
@@ -74,7 +32,7 @@ class Placement {
         return this.name;
     }
     public int getNumBlocks() {
-        return this.numBlocks;
+        return this.blocks.length;
     }
     public int getWidth() {
         return this.circuit.getWidth();
@@ -83,9 +41,19 @@ class Placement {
         return this.circuit.getHeight();
     }
 
-    public Set<Map.Entry<GlobalBlock, Coordinate>> blocks() {
-        return this.blocks.entrySet();
+    public GlobalBlock getBlock(int index) {
+        return this.blocks[index];
+    }
+    public boolean isPlaced(int index) {
+        return !Float.isNaN(this.x[index]);
     }
+    public double getX(int index) {
+        return this.x[index];
+    }
+    public double getY(int index) {
+        return this.y[index];
+    }
+
     public boolean hasBBCost(){
     	return !(this.bbCost < 0.0);
     }
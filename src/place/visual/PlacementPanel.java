@@ -10,7 +10,6 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
-import java.util.Map;
 
 import javax.swing.JComponent;
 import javax.swing.JPanel;
@@ -217,14 +216,17 @@ public class PlacementPanel extends JPanel {
     }
 
     private void drawBlocks(Graphics g) {
-        for(Map.Entry<GlobalBlock, Coordinate> blockEntry : this.placement.blocks()) {
-            this.drawBlock(blockEntry.getKey(), blockEntry.getValue(), g);
+        int numBlocks = this.placement.getNumBlocks();
+        for(int i = 0; i < numBlocks; i++) {
+            if(this.placement.isPlaced(i)) {
+                this.drawBlock(this.placement.getBlock(i), this.placement.getX(i), this.placement.getY(i), g);
+            }
         }
     }
 
-    private void drawBlock(GlobalBlock block, Coordinate coordinate, Graphics g) {
-        int left = (int) (this.left + 1 + this.blockSize * coordinate.getX());
-        int top = (int) (this.top + 1 + this.blockSize * coordinate.getY());
+    private void drawBlock(GlobalBlock block, double x, double y, Graphics g) {
+        int left = (int) (this.left + 1 + this.blockSize * x);
+        int top = (int) (this.top + 1 + this.blockSize * y);
         int size = this.blockSize - 1;
 
         Color color;
@@ -266,7 +268,7 @@ public class PlacementPanel extends JPanel {
         g.setColor(color);
         if(block.getType().getHeight() > 1){
             for(int i=0;i<block.getType().getHeight();i++){
-            	top = (int) (this.top + 1 + this.blockSize * (coordinate.getY()+i));
+            	top = (int) (this.top + 1 + this.blockSize * (y+i));
             	g.fillRect(left, top, size, size);
             }
         }else{
@@ -318,11 +320,10 @@ public class PlacementPanel extends JPanel {
   	    	}
   	    }
   	  	public GlobalBlock getGlobalBlock(int x, int y){
-  	        for(Map.Entry<GlobalBlock, Coordinate> blockEntry : this.panel.placement.blocks()) {
-  	        	Coordinate blockCoor = blockEntry.getValue();
-  	        	
-  	        	if(Math.abs(blockCoor.getX() - x) < 0.25 && Math.abs(blockCoor.getY() - y) < 0.25){
-  	        		return blockEntry.getKey();
+  	        Placement placement = this.panel.placement;
+  	        for(int i = 0; i < placement.getNumBlocks(); i++) {
+  	        	if(placement.isPlaced(i) && Math.abs(placement.getX(i) - x) < 0.25 && Math.abs(placement.getY(i) - y) < 0.25){
+  	        		return placement.getBlock(i);
   	        	}
   	        }
   	        return null;      
@@ -0,0 +1,257 @@
+package place.visual;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import place.circuit.Circuit;
+import place.circuit.block.GlobalBlock;
+
+/**
+ * Stores the placements that are shown in the visualizer in a compact form.
+ * The coordinates are kept in float arrays, indexed by the position of the
+ * block in the global block list of the circuit. Every KEYFRAME_INTERVAL-th
+ * placement is stored in full, the other placements only store the blocks
+ * that moved since the previous placement.
+ *
+ * The number of placements can be bounded in two ways:
+ *  - keepEvery: only every keepEvery-th added placement is kept
+ *  - maxPlacements: when there are more placements, the oldest ones
+ *    are dropped (0 means there is no maximum)
+ * When a spill file is given, the encoded placements are written to that
+ * file instead of kept on the heap. They are memory mapped to read them.
+ * The file space of dropped placements is not reused.
+ */
+class PlacementStore {
+
+    private static final int KEYFRAME_INTERVAL = 32;
+
+    private final Circuit circuit;
+    private final GlobalBlock[] blocks;
+    private final Map<GlobalBlock, Integer> blockIndexes;
+
+    private final int keepEvery, maxPlacements;
+    private int numAdded = 0;
+
+    private final List<Snapshot> snapshots = new ArrayList<>();
+    private int numDeltas = 0;
+    private final float[] lastX, lastY;
+
+    private final RandomAccessFile spillFile;
+    private final FileChannel spillChannel;
+
+    PlacementStore(Circuit circuit, int keepEvery, int maxPlacements, File spillFile) throws IOException {
+        this.circuit = circuit;
+
+        List<GlobalBlock> globalBlocks = circuit.getGlobalBlocks();
+        this.blocks = globalBlocks.toArray(new GlobalBlock[globalBlocks.size()]);
+        this.blockIndexes = new IdentityHashMap<>(this.blocks.length);
+        for(int i = 0; i < this.blocks.length; i++) {
+            this.blockIndexes.put(this.blocks[i], i);
+        }
+
+        this.keepEvery = Math.max(keepEvery, 1);
+        this.maxPlacements = maxPlacements;
+
+        this.lastX = new float[this.blocks.length];
+        this.lastY = new float[this.blocks.length];
+
+        if(spillFile != null) {
+            this.spillFile = new RandomAccessFile(spillFile, "rw");
+            this.spillFile.setLength(0);
+            this.spillChannel = this.spillFile.getChannel();
+        } else {
+            this.spillFile = null;
+            this.spillChannel = null;
+        }
+    }
+
+    int getNumBlocks() {
+        return this.blocks.length;
+    }
+    int getBlockIndex(GlobalBlock block) {
+        return this.blockIndexes.get(block);
+    }
+
+
+    /**
+     * Adds a placement. The coordinates of blocks that are not
+     * part of the placement are NaN. Unless force is true, the
+     * placement is skipped if it is not a keepEvery-th placement.
+     */
+    void add(String name, float[] x, float[] y, double bbCost, boolean force) throws IOException {
+        int addIndex = this.numAdded++;
+        if(!force && addIndex % this.keepEvery != 0) {
+            return;
+        }
+
+        boolean keyframe = this.snapshots.isEmpty() || this.numDeltas == KEYFRAME_INTERVAL - 1;
+        this.numDeltas = keyframe ? 0 : this.numDeltas + 1;
+
+        ByteBuffer data = keyframe ? this.encodeKeyframe(x, y) : this.encodeDelta(x, y);
+
+        System.arraycopy(x, 0, this.lastX, 0, this.blocks.length);
+        System.arraycopy(y, 0, this.lastY, 0, this.blocks.length);
+
+        this.snapshots.add(new Snapshot(name, bbCost, keyframe, this.store(data), data.limit()));
+
+        if(this.maxPlacements > 0 && this.snapshots.size() > this.maxPlacements) {
+            this.dropOldest();
+        }
+    }
+
+    private void dropOldest() throws IOException {
+        // The new oldest placement becomes a keyframe, the next ones keep their delta
+        Snapshot next = this.snapshots.get(1);
+        if(!next.keyframe) {
+            float[] x = new float[this.blocks.length], y = new float[this.blocks.length];
+            this.decode(1, x, y);
+
+            ByteBuffer data = this.encodeKeyframe(x, y);
+            this.snapshots.set(1, new Snapshot(next.name, next.bbCost, true, this.store(data), data.limit()));
+        }
+
+        this.snapshots.remove(0);
+    }
+
+
+    int size() {
+        return this.snapshots.size();
+    }
+    String getName(int index) {
+        return this.snapshots.get(index).name;
+    }
+    double getBBCost(int index) {
+        return this.snapshots.get(index).bbCost;
+    }
+
+    Placement get(int index) throws IOException {
+        float[] x = new float[this.blocks.length], y = new float[this.blocks.length];
+        this.decode(index, x, y);
+
+        Snapshot snapshot = this.snapshots.get(index);
+        return new Placement(snapshot.name, this.circuit, this.blocks, x, y, snapshot.bbCost);
+    }
+
+
+    // Keyframe: x and y of all the blocks
+    private ByteBuffer encodeKeyframe(float[] x, float[] y) {
+        ByteBuffer data = ByteBuffer.allocate(8 * this.blocks.length);
+        for(int i = 0; i < this.blocks.length; i++) {
+            data.putFloat(x[i]);
+            data.putFloat(y[i]);
+        }
+        data.flip();
+
+        return data;
+    }
+
+    // Delta: the number of moved blocks, then index, x and y of every moved block
+    private ByteBuffer encodeDelta(float[] x, float[] y) {
+        int numMoved = 0;
+        for(int i = 0; i < this.blocks.length; i++) {
+            if(this.moved(i, x, y)) {
+                numMoved++;
+            }
+        }
+
+        ByteBuffer data = ByteBuffer.allocate(4 + 12 * numMoved);
+        data.putInt(numMoved);
+        for(int i = 0; i < this.blocks.length; i++) {
+            if(this.moved(i, x, y)) {
+                data.putInt(i);
+                data.putFloat(x[i]);
+                data.putFloat(y[i]);
+            }
+        }
+        data.flip();
+
+        return data;
+    }
+    private boolean moved(int i, float[] x, float[] y) {
+        return Float.floatToIntBits(x[i]) != Float.floatToIntBits(this.lastX[i])
+                || Float.floatToIntBits(y[i]) != Float.floatToIntBits(this.lastY[i]);
+    }
+
+    private void decode(int index, float[] x, float[] y) throws IOException {
+        int keyframe = index;
+        while(!this.snapshots.get(keyframe).keyframe) {
+            keyframe--;
+        }
+
+        ByteBuffer data = this.load(this.snapshots.get(keyframe));
+        for(int i = 0; i < this.blocks.length; i++) {
+            x[i] = data.getFloat();
+            y[i] = data.getFloat();
+        }
+
+        for(int delta = keyframe + 1; delta <= index; delta++) {
+            data = this.load(this.snapshots.get(delta));
+
+            int numMoved = data.getInt();
+            for(int j = 0; j < numMoved; j++) {
+                int i = data.getInt();
+                x[i] = data.getFloat();
+                y[i] = data.getFloat();
+            }
+        }
+    }
+
+
+    /*
+     * Returns the encoded data itself, or its offset in the spill file
+     */
+    private Object store(ByteBuffer data) throws IOException {
+        if(this.spillChannel == null) {
+            return data;
+        }
+
+        long offset = this.spillChannel.size();
+
+        ByteBuffer source = data.duplicate();
+        long position = offset;
+        while(source.hasRemaining()) {
+            position += this.spillChannel.write(source, position);
+        }
+
+        return offset;
+    }
+
+    private ByteBuffer load(Snapshot snapshot) throws IOException {
+        if(this.spillChannel == null) {
+            return ((ByteBuffer) snapshot.data).duplicate();
+        }
+
+        long offset = (Long) snapshot.data;
+        return this.spillChannel.map(FileChannel.MapMode.READ_ONLY, offset, snapshot.length);
+    }
+
+    void close() throws IOException {
+        if(this.spillFile != null) {
+            this.spillFile.close();
+        }
+    }
+
+
+    private static class Snapshot {
+        final String name;
+        final double bbCost;
+        final boolean keyframe;
+        final Object data;
+        final int length;
+
+        Snapshot(String name, double bbCost, boolean keyframe, Object data, int length) {
+            this.name = name;
+            this.bbCost = bbCost;
+            this.keyframe = keyframe;
+            this.data = data;
+            this.length = length;
+        }
+    }
+}
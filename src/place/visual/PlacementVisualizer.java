@@ -12,8 +12,9 @@ import java.awt.Frame;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 
 import javax.swing.BoxLayout;
@@ -33,32 +34,103 @@ public class PlacementVisualizer {
     private boolean enabled = false;
     private Circuit circuit;
 
+    private int keepEvery = 1, maxPlacements = 0;
+    private File spillFile;
+
     private int currentPlacement;
-    private List<Placement> placements = new ArrayList<Placement>();
+    private PlacementStore placements;
+    private float[] x, y;
     private double[] bbCost;
 
     public PlacementVisualizer(Logger logger) {
         this.logger = logger;
     }
 
+    /**
+     * Bounds the number of stored placements: only every keepEvery-th
+     * placement is kept, and at most maxPlacements (0 for no maximum).
+     * If spillFile is not null, the placements are stored in that file.
+     * Has to be called before setCircuit.
+     */
+    public void setRetention(int keepEvery, int maxPlacements, File spillFile) {
+        this.keepEvery = keepEvery;
+        this.maxPlacements = maxPlacements;
+        this.spillFile = spillFile;
+    }
+
     public void setCircuit(Circuit circuit) {
         this.enabled = true;
         this.circuit = circuit;
+
+        try {
+            if(this.placements != null) {
+                this.placements.close();
+            }
+            this.placements = new PlacementStore(circuit, this.keepEvery, this.maxPlacements, this.spillFile);
+
+        } catch(IOException error) {
+            this.logger.raise("Failed to open the placement spill file " + this.spillFile, error);
+        }
+
+        this.x = new float[this.placements.getNumBlocks()];
+        this.y = new float[this.placements.getNumBlocks()];
     }
 
     public void addPlacement(String name) {
         if(this.enabled) {
-            this.placements.add(new Placement(name, this.circuit));
+            this.addCircuitPlacement(name, false);
         }
     }
     public void addPlacement(String name, Map<GlobalBlock, NetBlock> blockIndexes, int[] x, int[] y, double bbCost) {
         if(this.enabled) {
-            this.placements.add(new Placement(name, this.circuit, blockIndexes, x, y, bbCost));
+            this.clearCoordinates();
+            for(Map.Entry<GlobalBlock, NetBlock> blockIndexEntry : blockIndexes.entrySet()) {
+                NetBlock netBlock = blockIndexEntry.getValue();
+                int index = netBlock.getBlockIndex();
+
+                this.setCoordinate(blockIndexEntry.getKey(), x[index], y[index] + Math.ceil(netBlock.getOffset()));
+            }
+
+            this.storePlacement(name, bbCost, false);
         }
     }
     public void addPlacement(String name, Map<GlobalBlock, NetBlock> blockIndexes, double[] x, double[] y, double bbCost) {
         if(this.enabled) {
-            this.placements.add(new Placement(name, this.circuit, blockIndexes, x, y, bbCost));
+            this.clearCoordinates();
+            for(Map.Entry<GlobalBlock, NetBlock> blockIndexEntry : blockIndexes.entrySet()) {
+                NetBlock netBlock = blockIndexEntry.getValue();
+                int index = netBlock.getBlockIndex();
+
+                this.setCoordinate(blockIndexEntry.getKey(), x[index], y[index] + Math.ceil(netBlock.getOffset()));
+            }
+
+            this.storePlacement(name, bbCost, false);
+        }
+    }
+
+    private void addCircuitPlacement(String name, boolean force) {
+        this.clearCoordinates();
+        for(GlobalBlock block : this.circuit.getGlobalBlocks()) {
+            this.setCoordinate(block, block.getColumn(), block.getRow());
+        }
+
+        this.storePlacement(name, -1.0, force);
+    }
+
+    private void clearCoordinates() {
+        Arrays.fill(this.x, Float.NaN);
+        Arrays.fill(this.y, Float.NaN);
+    }
+    private void setCoordinate(GlobalBlock block, double x, double y) {
+        int index = this.placements.getBlockIndex(block);
+        this.x[index] = (float) x;
+        this.y[index] = (float) y;
+    }
+    private void storePlacement(String name, double bbCost, boolean force) {
+        try {
+            this.placements.add(this.circuit.getName() + " | " + name, this.x, this.y, bbCost, force);
+        } catch(IOException error) {
+            this.logger.raise("Failed to write to the placement spill file " + this.spillFile, error);
         }
     }
 
@@ -68,7 +140,7 @@ public class PlacementVisualizer {
             return;
         }
 
-        this.addPlacement("Final placement");
+        this.addCircuitPlacement("Final placement", true);
 
 
         this.frame = new JFrame("Placement visualizer");
@@ -98,8 +170,8 @@ public class PlacementVisualizer {
         this.placementLabel = new JLabel("");
         titlePanel.add(this.placementLabel, BorderLayout.CENTER);
 
-        for(Placement placement:this.placements){
-        	if(placement.getName().contains("linear")){
+        for(int index = 0; index < this.placements.size(); index++){
+        	if(this.placements.getName(index).contains("linear")){
                 JButton previousFastButton = new JButton("<<<");
                 previousFastButton.addActionListener(new NavigateActionListener(this, -3));
                 buttonPanel.add(previousFastButton, BorderLayout.CENTER);
@@ -119,8 +191,8 @@ public class PlacementVisualizer {
         nextGradientButton.addActionListener(new NavigateActionListener(this, 1));
         buttonPanel.add(nextGradientButton, BorderLayout.CENTER);
 
-        for(Placement placement:this.placements){
-        	if(placement.getName().contains("linear")){
+        for(int index = 0; index < this.placements.size(); index++){
+        	if(this.placements.getName(index).contains("linear")){
                 JButton nextButton = new JButton(">>");
                 nextButton.addActionListener(new NavigateActionListener(this, 2));
                 buttonPanel.add(nextButton, BorderLayout.CENTER);
@@ -139,25 +211,27 @@ public class PlacementVisualizer {
 
         
         //BB Cost plot
-        for(Placement placement:this.placements){
-        	if(placement.getName().contains("linear")){
-        		if(placement.hasBBCost()){
+        for(int index = 0; index < this.placements.size(); index++){
+        	if(this.placements.getName(index).contains("linear")){
+        		if(!(this.placements.getBBCost(index) < 0.0)){
                     JButton enablePlot = new JButton("Plot");
                     enablePlot.addActionListener(new PlotActionListener(this));
                     buttonPanel.add(enablePlot, BorderLayout.CENTER);
                     
                     int bbPlacements = 0;
-                    for(Placement bbPlacement:this.placements){
-                    	if(bbPlacement.getName().contains("linear") || bbPlacement.getName().contains("legal")){
+                    for(int bbIndex = 0; bbIndex < this.placements.size(); bbIndex++){
+                    	String bbName = this.placements.getName(bbIndex);
+                    	if(bbName.contains("linear") || bbName.contains("legal")){
                     		bbPlacements += 1;
                     	}
                     }
                     this.bbCost = new double[bbPlacements];
                     
                     int i = 0;
-                    for(Placement bbPlacement:this.placements){
-                    	if(bbPlacement.getName().contains("linear") || bbPlacement.getName().contains("legal")){
-                    		this.bbCost[i] = bbPlacement.getBBCost();
+                    for(int bbIndex = 0; bbIndex < this.placements.size(); bbIndex++){
+                    	String bbName = this.placements.getName(bbIndex);
+                    	if(bbName.contains("linear") || bbName.contains("legal")){
+                    		this.bbCost[i] = this.placements.getBBCost(bbIndex);
                     		i += 1;
                     	}
                     }
@@ -175,10 +249,15 @@ public class PlacementVisualizer {
     private void drawPlacement(int index) {
         this.currentPlacement = index;
 
-        Placement placement = this.placements.get(index);
+        Placement placement = null;
+        try {
+            placement = this.placements.get(index);
+        } catch(IOException error) {
+            this.logger.raise("Failed to read from the placement spill file " + this.spillFile, error);
+        }
 
         this.placementLabel.setText(placement.getName());
-        this.placementPanel.setPlacement(this.placements.get(index));
+        this.placementPanel.setPlacement(placement);
     }
 
     void navigate(int type, int step) {
@@ -220,7 +299,7 @@ public class PlacementVisualizer {
     }
     
     PlacementType getPlacementType(int index){
-    	String name = this.placements.get(index).getName();
+    	String name = this.placements.getName(index);
     	if(name.contains("gradient descent")){
     		return PlacementType.GRADIENT_DESCENT;
     	}else if(name.contains("gradient_expand")){
@@ -0,0 +1,104 @@
+package route.circuit.resource;
+
+import java.util.List;
+
+/**
+ * Structure-of-arrays representation of the routing resource graph. The
+ * properties of a route node are stored in primitive columns that are
+ * indexed by the index of the route node. The children are stored in a
+ * CSR edge array: the children of node i are childIndex[childStart[i]]
+ * up to childIndex[childStart[i + 1] - 1], switchIndex holds the switch
+ * type of each edge. The edges are only stored here, the route node
+ * objects don't keep a reference to their children.
+ */
+public class CompactResourceGraph {
+	private static final RouteNodeType[] TYPES = RouteNodeType.values();
+
+	public final int numNodes, numEdges;
+
+	public final short[] xlow, xhigh;
+	public final short[] ylow, yhigh;
+	public final byte[] type;
+	public final short[] costIndex;
+
+	public final float[] baseCost;
+	public final float[] delay;
+
+	public final int[] childStart;
+	public final int[] childIndex;
+	public final short[] switchIndex;
+
+	CompactResourceGraph(List<RouteNode> routeNodes) {
+		this.numNodes = routeNodes.size();
+
+		this.xlow = new short[this.numNodes];
+		this.xhigh = new short[this.numNodes];
+		this.ylow = new short[this.numNodes];
+		this.yhigh = new short[this.numNodes];
+		this.type = new byte[this.numNodes];
+		this.costIndex = new short[this.numNodes];
+
+		this.baseCost = new float[this.numNodes];
+		this.delay = new float[this.numNodes];
+
+		this.childStart = new int[this.numNodes + 1];
+
+		int edge = 0;
+		for(RouteNode node : routeNodes) {
+			int i = node.index;
+
+			this.xlow[i] = node.xlow;
+			this.xhigh[i] = node.xhigh;
+			this.ylow[i] = node.ylow;
+			this.yhigh[i] = node.yhigh;
+			this.type[i] = (byte) node.type.ordinal();
+			this.costIndex[i] = (short) node.indexedData.getIndex();
+
+			this.baseCost[i] = node.base_cost;
+			this.delay[i] = node.delay;
+
+			this.childStart[i] = edge;
+			edge += node.numChildren;
+		}
+		this.childStart[this.numNodes] = edge;
+		this.numEdges = edge;
+
+		this.childIndex = new int[this.numEdges];
+		this.switchIndex = new short[this.numEdges];
+	}
+
+	void setChild(int parent, int index, int child) {
+		this.childIndex[this.childStart[parent] + index] = child;
+	}
+	void setSwitchType(int parent, int index, int switchType) {
+		this.switchIndex[this.childStart[parent] + index] = (short) switchType;
+	}
+	void setDelay(int node, float delay) {
+		this.delay[node] = delay;
+	}
+
+	public int firstChild(int node) {
+		return this.childStart[node];
+	}
+	public int lastChild(int node) {
+		return this.childStart[node + 1];
+	}
+
+	public RouteNodeType getType(int node) {
+		return TYPES[this.type[node]];
+	}
+	public boolean isWire(int node) {
+		RouteNodeType type = TYPES[this.type[node]];
+		return type == RouteNodeType.CHANX || type == RouteNodeType.CHANY;
+	}
+
+	/**
+	 * Heap footprint of the columns and the edge arrays in bytes,
+	 * array headers not included.
+	 */
+	public long sizeInBytes() {
+		long nodeBytes = 4 * 2 + 1 + 2 + 2 * 4 + 4;
+		long edgeBytes = 4 + 2;
+		return this.numNodes * nodeBytes + this.numEdges * edgeBytes + 4;
+	}
+}
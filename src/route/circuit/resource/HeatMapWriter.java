@@ -0,0 +1,179 @@
+package route.circuit.resource;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes the wire occupation of each routing iteration to a binary file on a
+ * background thread. The routing thread only copies the occupation of the
+ * wires that changed in the iteration into a buffer. There is a bounded number
+ * of buffers: when all of them wait to be written, the routing thread waits
+ * for the writer.
+ *
+ * File format, all numbers big endian:
+ *   int magic, int version, int number of route nodes
+ *   per iteration: int iteration, int number of changes,
+ *                  per change: varint index delta, varint occupation
+ * The changes are the wires whose occupation differs from the previous
+ * iteration, in increasing index order. The index delta is relative to the
+ * previous change of the iteration, an occupation of 0 means the wire is no
+ * longer used.
+ */
+public class HeatMapWriter {
+	private static final int MAGIC = 0x52484d50; // "RHMP"
+	private static final int VERSION = 1;
+
+	private static final int[] END = new int[0];
+
+	private final File file;
+	private final int numNodes;
+
+	private final BlockingQueue<int[]> fullBuffers;
+	private final Thread writer;
+	private volatile IOException error;
+
+	HeatMapWriter(File file, int numNodes, int numBuffers) throws IOException {
+		if(numBuffers <= 0) {
+			throw new IllegalArgumentException("Number of heat map buffers should be at least 1: " + numBuffers);
+		}
+
+		this.file = file;
+		this.numNodes = numNodes;
+
+		this.fullBuffers = new ArrayBlockingQueue<>(numBuffers);
+
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(numNodes);
+		} catch(IOException error) {
+			out.close();
+			throw error;
+		}
+
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				HeatMapWriter.this.write(out);
+			}
+		}, "heat-map-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Copies the occupation of the changed wires to a buffer and hands it to the writer.
+	 * The buffer holds the iteration, the number of wires, their indexes in increasing
+	 * order and their occupations. The changed wires may include wires whose occupation
+	 * ended up equal to the previous iteration, the writer leaves these out.
+	 */
+	void capture(int iteration, List<RouteNode> changedWires) {
+		int numWires = changedWires.size();
+		int[] buffer = new int[2 + 2 * numWires];
+		buffer[0] = iteration;
+		buffer[1] = numWires;
+
+		for(int i = 0; i < numWires; i++) {
+			buffer[2 + i] = changedWires.get(i).index;
+		}
+		Arrays.sort(buffer, 2, 2 + numWires);
+
+		int[] occupation = changedWires.isEmpty() ? null : changedWires.get(0).routeNodeData.occupation;
+		for(int i = 0; i < numWires; i++) {
+			buffer[2 + numWires + i] = occupation[buffer[2 + i]];
+		}
+
+		try {
+			this.fullBuffers.put(buffer);
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits until all captured iterations are written and closes the file
+	 */
+	void close() {
+		try {
+			this.fullBuffers.put(END);
+			this.writer.join();
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+
+		if(this.error != null) {
+			System.err.println("Problem in writing heat map " + this.file + ": " + this.error.getMessage());
+		}
+	}
+
+	private void write(DataOutputStream out) {
+		int[] previous = new int[this.numNodes];
+		boolean ended = false;
+
+		try {
+			try {
+				int[] buffer;
+				while((buffer = this.fullBuffers.take()) != END) {
+					int numWires = buffer[1];
+
+					int numChanges = 0;
+					for(int i = 0; i < numWires; i++) {
+						if(buffer[2 + numWires + i] != previous[buffer[2 + i]]) {
+							numChanges++;
+						}
+					}
+
+					out.writeInt(buffer[0]);
+					out.writeInt(numChanges);
+
+					int previousIndex = 0;
+					for(int i = 0; i < numWires; i++) {
+						int index = buffer[2 + i], occupation = buffer[2 + numWires + i];
+						if(occupation != previous[index]) {
+							writeVarInt(out, index - previousIndex);
+							writeVarInt(out, occupation);
+							previous[index] = occupation;
+							previousIndex = index;
+						}
+					}
+				}
+				ended = true;
+			} finally {
+				out.close();
+			}
+		} catch(IOException exception) {
+			this.error = exception;
+			if(!ended) {
+				this.drain();
+			}
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	// Keeps the routing thread going after a write error
+	private void drain() {
+		try {
+			while(this.fullBuffers.take() != END) {
+				// The buffer is dropped
+			}
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+}
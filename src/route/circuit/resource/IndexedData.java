@@ -40,6 +40,10 @@ public class IndexedData {
 		return this.ortho_data;
 	}
 	
+	public int getIndex() {
+		return this.index;
+	}
+	
 	public float getBaseCost() {
 		return this.base_cost;
 	}
@@ -17,11 +17,8 @@ public class Ipin extends RouteNode {
 		return this.portIndex;
 	}
 	
-	public void setSinkName() {
-		int numSinks = this.children.length;
-		assert numSinks == 1;
-		
-		RouteNode child = this.children[0];
+	public void setSinkName(RouteNode child) {
+		assert this.numChildren == 1;
 		assert child.type.equals(RouteNodeType.SINK);
 		
 		((Sink)child).setName(this.portName, this.portIndex);
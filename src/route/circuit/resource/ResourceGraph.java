@@ -1,13 +1,27 @@
 package route.circuit.resource;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.CRC32;
 
 import route.circuit.Circuit;
 import route.circuit.architecture.Architecture;
@@ -16,6 +30,7 @@ import route.circuit.architecture.BlockType;
 import route.main.Logger;
 import route.main.Logger.Location;
 import route.main.Logger.Stream;
+import route.route.RouteNodeData;
 import route.visual.RouteVisualiser;
 import route.visual.Wire;
 
@@ -31,6 +46,10 @@ public class ResourceGraph {
 	private final List<RouteNode> routeNodes;
 	private List<IndexedData> indexedDataList;
 	private List<RouteSwitch> switchTypesList;
+	private CompactResourceGraph compactGraph;
+	private RouteNodeData routeNodeData;
+	private File rrgFile;
+	private long[] cacheKey;
 	
 	private final Map<RouteNodeType, List<RouteNode>> routeNodeMap;
 	
@@ -39,8 +58,22 @@ public class ResourceGraph {
 	private static int OPIN_COST_INDEX = 2;
 	private static int IPIN_COST_INDEX = 3;
 	
+	private static final String[] RRG_FILE_TYPES = {"rr_indexed_data", "rr_switch_types", "rr_nodes", "rr_children", "rr_switches"};
+	private static final int CACHE_MAGIC = 0x52524743; // "RRGC"
+	private static final int CACHE_VERSION = 1;
+	private static final long CACHE_CHUNK_SIZE = 1L << 28;
+	
+	// Port of the previous IPIN or OPIN while the route nodes are created
+	private String currentPort;
+	private int portIndex;
+	
 	private static Logger statisticsLogger = new Logger();
 	
+	// Binary heat map written on a background thread, null to log the heat map as text
+	private HeatMapWriter heatMapWriter;
+	// The used wires of the text heat map, updated with the changed wires of each iteration
+	private final BitSet usedWires = new BitSet();
+	
 	static { // initialize logger only once
 		statisticsLogger.setLocation(Stream.OUT, Location.FILE);
 		statisticsLogger.setLocation(Stream.ERR, Location.FILE);
@@ -195,6 +228,52 @@ public class ResourceGraph {
 		System.out.println("| Process RRG |");
 		System.out.println("---------------");
 		
+		File[] sourceFiles = new File[RRG_FILE_TYPES.length];
+		for(int i = 0; i < RRG_FILE_TYPES.length; i++) {
+			sourceFiles[i] = new File(rrgFileName.replace("rr_graph", RRG_FILE_TYPES[i]));
+		}
+		File cacheFile = new File(rrgFileName + ".cache");
+		
+		long[] cacheKey = this.calculateCacheKey(sourceFiles);
+		this.rrgFile = new File(rrgFileName);
+		this.cacheKey = cacheKey;
+		
+		if(!this.readRRGCache(cacheFile, cacheKey)) {
+			List<String> indexedDataLines = new ArrayList<>();
+			List<String> switchTypeLines = new ArrayList<>();
+			
+			this.readRRGFiles(rrgFileName, indexedDataLines, switchTypeLines);
+			this.writeRRGCache(cacheFile, cacheKey, indexedDataLines, switchTypeLines);
+		}
+		
+		for(RouteNode node : this.routeNodes) {
+			for(int edge = this.compactGraph.firstChild(node.index); edge < this.compactGraph.lastChild(node.index); edge++) {
+				RouteNode child = this.routeNodes.get(this.compactGraph.childIndex[edge]);
+				RouteSwitch routeSwitch = this.switchTypesList.get(this.compactGraph.switchIndex[edge]);
+				
+				child.setDelay(routeSwitch);
+			}
+		}
+		for(RouteNode node : this.routeNodeMap.get(RouteNodeType.SOURCE)) {
+			Source source = (Source) node;
+			source.setDelay(null);
+		}
+		for(RouteNode node : this.routeNodes) {
+			this.compactGraph.setDelay(node.index, node.getDelay());
+		}
+		
+		// The routing state of all route nodes
+		this.routeNodeData = new RouteNodeData(this.routeNodes.size());
+		for(RouteNode node : this.routeNodes) {
+			node.routeNodeData = this.routeNodeData;
+		}
+		
+		System.out.printf("   Compact RRG: %d nodes, %d edges, %.1f MB\n", this.compactGraph.numNodes, this.compactGraph.numEdges, this.compactGraph.sizeInBytes() * 1e-6);
+		
+		System.out.println();
+	}
+	
+	private void readRRGFiles(String rrgFileName, List<String> indexedDataLines, List<String> switchTypeLines) throws IOException {
 		BufferedReader reader = null;
 		String line = null;
 		String[] words = null;
@@ -203,8 +282,6 @@ public class ResourceGraph {
 		 *        Indexed Data       *
 		 *****************************/
 		
-		this.indexedDataList = new ArrayList<>();
-		
 		reader = new BufferedReader(new FileReader(rrgFileName.replace("rr_graph", "rr_indexed_data")));
 		System.out.println("   Read " + rrgFileName.split("/")[rrgFileName.split("/").length - 1].replace("rr_graph", "rr_indexed_data"));
 		
@@ -213,27 +290,17 @@ public class ResourceGraph {
 			line = line.trim();
 			if (line.length() > 0) {
 				
-				this.indexedDataList.add(new IndexedData(line));
+				indexedDataLines.add(line);
 			}
 		}
         reader.close();
         
-        for (IndexedData data : this.indexedDataList) {
-        	if (data.orthoCostIndex != -1) {
-        		data.setOrthoData(this.indexedDataList.get(data.orthoCostIndex));
-        	}
-        }
-        
-        //for(IndexedData data : indexedDataList) {
-        //	System.out.println(data);
-        //}
+        this.setIndexedData(indexedDataLines);
         
 		/*****************************
 		 *        Switch Types       *
 		 *****************************/
 		
-		this.switchTypesList = new ArrayList<>();
-		
 		reader = new BufferedReader(new FileReader(rrgFileName.replace("rr_graph", "rr_switch_types")));
 		System.out.println("   Read " + rrgFileName.split("/")[rrgFileName.split("/").length - 1].replace("rr_graph", "rr_switch_types"));
 		
@@ -242,25 +309,18 @@ public class ResourceGraph {
 			line = line.trim();
 			if (line.length() > 0) {
 				
-				this.switchTypesList.add(new RouteSwitch(line));
+				switchTypeLines.add(line);
 			}
 		}
 		
         reader.close();
         
-		//for(SwitchType type : switchTypesList) {
-		//	System.out.println(type);
-		//}
+        this.setSwitchTypes(switchTypeLines);
 		
 		/*****************************
 		 *        Route Nodes        *
 		 *****************************/
 		
-		RouteNode routeNode = null;
-		String currentPort = null;
-		int portIndex = -1;
-		IndexedData data = null;
-		
 		reader = new BufferedReader(new FileReader(rrgFileName.replace("rr_graph", "rr_nodes")));
 		System.out.println("   Read " + rrgFileName.split("/")[rrgFileName.split("/").length - 1].replace("rr_graph", "rr_nodes"));
 		
@@ -279,104 +339,28 @@ public class ResourceGraph {
         		int ylow = Integer.parseInt(words[5]);
         		int yhigh = Integer.parseInt(words[6]);
         		int n = Integer.parseInt(words[7]);
-        		
-        		if(n == 0){//New global block, reset data
-        			currentPort = null;
-        			portIndex = -1;
-        		}
-        		
         		int cap = Integer.parseInt(words[8]);
         		float r = Float.parseFloat(words[9]);
         		float c = Float.parseFloat(words[10]);
-        		
         		int cost_index = Integer.parseInt(words[11]);
-        		data = this.indexedDataList.get(cost_index);
-        		
         		int numChildren = Integer.parseInt(words[12]);
         		
-        		switch (type) {
-        			case "SOURCE":        				
-        				//Assertions
-        				assert name.equals("-");
-        				assert r == 0;
-        				assert c == 0;
-        				
-        				routeNode = new Source(index, xlow, xhigh, ylow, yhigh, n, cap, data, numChildren);
-        				
-        				break;
-        			case "SINK":        				
-        				//Assertions
-        				assert name.equals("-");
-        				assert r == 0;
-        				assert c == 0;
-        				
-        				routeNode = new Sink(index, xlow, xhigh, ylow, yhigh, n, cap, data, numChildren);
-        				
-        				break;
-        			case "IPIN":
-        				//Assertions
-        				assert cap == 1;
-        				assert r == 0;
-        				assert c == 0;
-        				
-        				if(currentPort == null){
-        					currentPort = name;
-        					portIndex = 0;
-        				}else if(!currentPort.equals(name)){
-        					currentPort = name;
-        					portIndex = 0;
-        				}
-        				
-        				routeNode = new Ipin(index, xlow, xhigh, ylow, yhigh, n, name, portIndex, data, numChildren);
-        				
-        				portIndex += 1;
-        				
-        				break;
-        			case "OPIN":        				
-        				//Assertions
-        				assert cap == 1;
-        				assert r == 0;
-        				assert c == 0;
-        				
-        				if(currentPort == null){
-        					currentPort = name;
-        					portIndex = 0;
-        				}else if(!currentPort.equals(name)){
-        					currentPort = name;
-        					portIndex = 0;
-        				}
-        				
-        				routeNode = new Opin(index, xlow, xhigh, ylow, yhigh, n, name, portIndex, data, numChildren);
-        				
-        				portIndex += 1;
-        				
-        				break;
-        			case "CHANX":        				
-        				//Assertions
-        				assert name.equals("-");
-        				assert cap == 1;
-        				
-        				routeNode = new Chanx(index, xlow, xhigh, ylow, yhigh, n, r, c, data, numChildren);
-        				
-        				break;
-        			case "CHANY":        				
-        				//Assertions
-        				assert name.equals("-");
-        				assert cap == 1;
-        				
-        				routeNode = new Chany(index, xlow, xhigh, ylow, yhigh, n, r, c, data, numChildren);
-        				
-        				break;
-        			default:
-        				System.out.println("Unknown type: " + type);
-        				break;
+        		RouteNodeType routeNodeType;
+        		try {
+        			routeNodeType = RouteNodeType.valueOf(type);
+        		} catch(IllegalArgumentException error) {
+        			System.out.println("Unknown type: " + type);
+        			continue;
         		}
-        		this.addRouteNode(routeNode);
+        		
+        		this.addRouteNode(this.createRouteNode(index, routeNodeType, name, xlow, xhigh, ylow, yhigh, n, cap, r, c, cost_index, numChildren));
         	}
 		}
 		
 		reader.close();
 		
+		this.compactGraph = new CompactResourceGraph(this.routeNodes);
+		
 		/*****************************
 		 *         Children          *
 		 *****************************/
@@ -394,8 +378,7 @@ public class ResourceGraph {
         		
         		int numChildren = Integer.parseInt(words[1]);
         		for(int index = 0; index < numChildren; index++) {
-        			RouteNode child = this.routeNodes.get(Integer.parseInt(words[index+2]));
-        			parent.setChild(index, child);
+        			this.compactGraph.setChild(parent.index, index, Integer.parseInt(words[index+2]));
         		}
         	}
 		}
@@ -420,38 +403,333 @@ public class ResourceGraph {
 				int numChildren = parent.numChildren;
 				
 				for(int index = 0; index < numChildren; index++) {
-					RouteSwitch routeSwitch = this.switchTypesList.get(Integer.parseInt(words[index+1]));
-					parent.setSwitchType(index, routeSwitch);
+					this.compactGraph.setSwitchType(parent.index, index, Integer.parseInt(words[index+1]));
 				}
 			}
 		}
 		
 		reader.close();
+	}
+	
+	private void setIndexedData(List<String> indexedDataLines) {
+		this.indexedDataList = new ArrayList<>();
+		for(String line : indexedDataLines) {
+			this.indexedDataList.add(new IndexedData(line));
+		}
 		
-		for(RouteNode node : this.routeNodes) {
-			for(int i = 0; i < node.numChildren; i++) {
-				RouteNode child = node.children[i];
-				RouteSwitch routeSwitch = node.switches[i];
+        for (IndexedData data : this.indexedDataList) {
+        	if (data.orthoCostIndex != -1) {
+        		data.setOrthoData(this.indexedDataList.get(data.orthoCostIndex));
+        	}
+        }
+	}
+	private void setSwitchTypes(List<String> switchTypeLines) {
+		this.switchTypesList = new ArrayList<>();
+		for(String line : switchTypeLines) {
+			this.switchTypesList.add(new RouteSwitch(line));
+		}
+	}
+	
+	private RouteNode createRouteNode(int index, RouteNodeType type, String name, int xlow, int xhigh, int ylow, int yhigh, int n, int cap, float r, float c, int cost_index, int numChildren) {
+		if(n == 0){//New global block, reset data
+			this.currentPort = null;
+			this.portIndex = -1;
+		}
+		
+		IndexedData data = this.indexedDataList.get(cost_index);
+		
+		RouteNode routeNode = null;
+		switch (type) {
+			case SOURCE:
+				//Assertions
+				assert name.equals("-");
+				assert r == 0;
+				assert c == 0;
 				
-				child.setDelay(routeSwitch);
+				routeNode = new Source(index, xlow, xhigh, ylow, yhigh, n, cap, data, numChildren);
+				
+				break;
+			case SINK:
+				//Assertions
+				assert name.equals("-");
+				assert r == 0;
+				assert c == 0;
+				
+				routeNode = new Sink(index, xlow, xhigh, ylow, yhigh, n, cap, data, numChildren);
+				
+				break;
+			case IPIN:
+				//Assertions
+				assert cap == 1;
+				assert r == 0;
+				assert c == 0;
+				
+				if(this.currentPort == null){
+					this.currentPort = name;
+					this.portIndex = 0;
+				}else if(!this.currentPort.equals(name)){
+					this.currentPort = name;
+					this.portIndex = 0;
+				}
+				
+				routeNode = new Ipin(index, xlow, xhigh, ylow, yhigh, n, name, this.portIndex, data, numChildren);
+				
+				this.portIndex += 1;
+				
+				break;
+			case OPIN:
+				//Assertions
+				assert cap == 1;
+				assert r == 0;
+				assert c == 0;
+				
+				if(this.currentPort == null){
+					this.currentPort = name;
+					this.portIndex = 0;
+				}else if(!this.currentPort.equals(name)){
+					this.currentPort = name;
+					this.portIndex = 0;
+				}
+				
+				routeNode = new Opin(index, xlow, xhigh, ylow, yhigh, n, name, this.portIndex, data, numChildren);
+				
+				this.portIndex += 1;
+				
+				break;
+			case CHANX:
+				//Assertions
+				assert name.equals("-");
+				assert cap == 1;
+				
+				routeNode = new Chanx(index, xlow, xhigh, ylow, yhigh, n, r, c, data, numChildren);
+				
+				break;
+			case CHANY:
+				//Assertions
+				assert name.equals("-");
+				assert cap == 1;
+				
+				routeNode = new Chany(index, xlow, xhigh, ylow, yhigh, n, r, c, data, numChildren);
+				
+				break;
+		}
+		return routeNode;
+	}
+	
+    /******************************
+     * BINARY RRG CACHE, WRITTEN  *
+     * AFTER THE FIRST TEXT PARSE *
+     ******************************/
+	
+	/**
+	 * The cache key holds the length and the CRC32 checksum of each
+	 * text file of the RRG. The cache is only used if all files are
+	 * unchanged since the cache was written.
+	 */
+	private long[] calculateCacheKey(File[] sourceFiles) throws IOException {
+		long[] key = new long[2 * sourceFiles.length];
+		for(int i = 0; i < sourceFiles.length; i++) {
+			FileChannel channel = FileChannel.open(sourceFiles[i].toPath(), StandardOpenOption.READ);
+			try {
+				CRC32 crc = new CRC32();
+				long size = channel.size();
+				for(long position = 0; position < size; position += CACHE_CHUNK_SIZE) {
+					crc.update(channel.map(MapMode.READ_ONLY, position, Math.min(CACHE_CHUNK_SIZE, size - position)));
+				}
+				key[2 * i] = size;
+				key[2 * i + 1] = crc.getValue();
+			} finally {
+				channel.close();
 			}
 		}
-		for(RouteNode node : this.routeNodeMap.get(RouteNodeType.SOURCE)) {
-			Source source = (Source) node;
-			source.setDelay(null);
+		return key;
+	}
+	
+	private boolean readRRGCache(File cacheFile, long[] cacheKey) {
+		if(!cacheFile.exists()) {
+			return false;
+		}
+		if(cacheFile.length() > Integer.MAX_VALUE) {
+			// A single mapped buffer can't address more than 2 GB
+			System.out.println("   RRG cache " + cacheFile.getName() + " is larger than 2 GB, read text files");
+			return false;
 		}
 		
-		System.out.println();
+		try {
+			FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ);
+			MappedByteBuffer buffer;
+			try {
+				buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			} finally {
+				channel.close();
+			}
+			
+			if(buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_VERSION || buffer.getInt() != cacheKey.length) {
+				System.out.println("   RRG cache " + cacheFile.getName() + " has an other version, read text files");
+				return false;
+			}
+			for(long value : cacheKey) {
+				if(buffer.getLong() != value) {
+					System.out.println("   RRG cache " + cacheFile.getName() + " is stale, read text files");
+					return false;
+				}
+			}
+			
+			System.out.println("   Read " + cacheFile.getName());
+			
+			this.setIndexedData(readStrings(buffer));
+			this.setSwitchTypes(readStrings(buffer));
+			List<String> names = readStrings(buffer);
+			
+			int numNodes = buffer.getInt();
+			for(int index = 0; index < numNodes; index++) {
+				RouteNodeType type = RouteNodeType.values()[buffer.get()];
+				int nameIndex = buffer.getInt();
+				String name = nameIndex < 0 ? "-" : names.get(nameIndex);
+				int xlow = buffer.getShort();
+				int xhigh = buffer.getShort();
+				int ylow = buffer.getShort();
+				int yhigh = buffer.getShort();
+				int n = buffer.getShort();
+				int cap = buffer.getShort();
+				float r = buffer.getFloat();
+				float c = buffer.getFloat();
+				int cost_index = buffer.getShort();
+				int numChildren = buffer.getInt();
+				
+				this.addRouteNode(this.createRouteNode(index, type, name, xlow, xhigh, ylow, yhigh, n, cap, r, c, cost_index, numChildren));
+			}
+			
+			this.compactGraph = new CompactResourceGraph(this.routeNodes);
+			
+			buffer.asIntBuffer().get(this.compactGraph.childIndex);
+			buffer.position(buffer.position() + 4 * this.compactGraph.numEdges);
+			buffer.asShortBuffer().get(this.compactGraph.switchIndex);
+			
+			return true;
+			
+		} catch(IOException | RuntimeException error) {
+			System.err.println("Problem in reading RRG cache " + cacheFile + ": " + error.getMessage());
+			
+			this.routeNodes.clear();
+			for(List<RouteNode> nodes : this.routeNodeMap.values()) {
+				nodes.clear();
+			}
+			this.compactGraph = null;
+			
+			return false;
+		}
 	}
+	
+	private void writeRRGCache(File cacheFile, long[] cacheKey, List<String> indexedDataLines, List<String> switchTypeLines) {
+		Map<String, Integer> nameIndices = new HashMap<>();
+		List<String> names = new ArrayList<>();
+		for(RouteNode node : this.routeNodes) {
+			String name = this.getPortName(node);
+			if(name != null && !nameIndices.containsKey(name)) {
+				nameIndices.put(name, names.size());
+				names.add(name);
+			}
+		}
+		
+		// Write to a temporary file first, a crash never leaves a truncated cache behind
+		File tmpFile = null;
+		try {
+			tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getAbsoluteFile().getParentFile());
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+				out.writeInt(CACHE_MAGIC);
+				out.writeInt(CACHE_VERSION);
+				out.writeInt(cacheKey.length);
+				for(long value : cacheKey) {
+					out.writeLong(value);
+				}
+			
+				writeStrings(out, indexedDataLines);
+				writeStrings(out, switchTypeLines);
+				writeStrings(out, names);
+			
+				out.writeInt(this.routeNodes.size());
+				for(RouteNode node : this.routeNodes) {
+					String name = this.getPortName(node);
+				
+					out.writeByte(node.type.ordinal());
+					out.writeInt(name == null ? -1 : nameIndices.get(name));
+					out.writeShort(node.xlow);
+					out.writeShort(node.xhigh);
+					out.writeShort(node.ylow);
+					out.writeShort(node.yhigh);
+					out.writeShort(node.n);
+					out.writeShort(node.capacity);
+					out.writeFloat(node.r);
+					out.writeFloat(node.c);
+					out.writeShort(node.indexedData.getIndex());
+					out.writeInt(node.numChildren);
+				}
+			
+				for(int child : this.compactGraph.childIndex) {
+					out.writeInt(child);
+				}
+				for(short switchType : this.compactGraph.switchIndex) {
+					out.writeShort(switchType);
+				}
+			}
+			
+			if(tmpFile.length() > Integer.MAX_VALUE) {
+				System.out.println("   RRG cache " + cacheFile.getName() + " would be larger than 2 GB, the cache is not written");
+				return;
+			}
+			
+			Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			
+			System.out.println("   Write " + cacheFile.getName());
+			
+		} catch(IOException error) {
+			System.err.println("Problem in writing RRG cache " + cacheFile + ": " + error.getMessage());
+		} finally {
+			if(tmpFile != null) {
+				tmpFile.delete();
+			}
+		}
+	}
+	
+	private String getPortName(RouteNode node) {
+		if(node.type == RouteNodeType.IPIN) {
+			return ((Ipin) node).getPortName();
+		} else if(node.type == RouteNodeType.OPIN) {
+			return ((Opin) node).getPortName();
+		} else {
+			return null;
+		}
+	}
+	
+	private static List<String> readStrings(ByteBuffer buffer) {
+		int numStrings = buffer.getInt();
+		List<String> strings = new ArrayList<>(numStrings);
+		for(int i = 0; i < numStrings; i++) {
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			strings.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+		return strings;
+	}
+	private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+		out.writeInt(strings.size());
+		for(String string : strings) {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+	
 	private void assignNamesToSourceAndSink() {
 		for(RouteNode routeNode:this.routeNodeMap.get(RouteNodeType.SOURCE)){
 			Source source = (Source) routeNode;
-			source.setName();
+			source.setName(source.numChildren == 0 ? null : this.getChild(source, 0));
 		}
 		
 		for(RouteNode routeNode:this.routeNodeMap.get(RouteNodeType.IPIN)){
 			Ipin ipin = (Ipin) routeNode;
-			ipin.setSinkName();
+			ipin.setSinkName(this.getChild(ipin, 0));
 		}
 	}
     private void connectSourceAndSinkToSite() {
@@ -482,6 +760,42 @@ public class ResourceGraph {
 	public List<RouteNode> getRouteNodes() {
 		return this.routeNodes;
 	}
+	public RouteNode getRouteNode(int index) {
+		return this.routeNodes.get(index);
+	}
+	public RouteNode getChild(RouteNode parent, int index) {
+		return this.routeNodes.get(this.compactGraph.childIndex[this.compactGraph.firstChild(parent.index) + index]);
+	}
+	public CompactResourceGraph getCompactGraph() {
+		return this.compactGraph;
+	}
+	public RouteNodeData getRouteNodeData() {
+		return this.routeNodeData;
+	}
+	public List<RouteSwitch> getSwitchTypes() {
+		return this.switchTypesList;
+	}
+	
+	/**
+	 * Returns a file next to the RRG files with the given extension,
+	 * used to store data that is derived from the RRG.
+	 */
+	public File getDerivedFile(String extension) {
+		return new File(this.rrgFile.getPath() + "." + extension);
+	}
+	/**
+	 * Length and checksum of the RRG text files, files that are derived
+	 * from the RRG store this key to detect that they are stale.
+	 */
+	public long[] getCacheKey() {
+		return this.cacheKey;
+	}
+	public int getWidth() {
+		return this.width;
+	}
+	public int getHeight() {
+		return this.height;
+	}
 	public int numRouteNodes() {
 		return this.routeNodes.size();
 	}
@@ -524,22 +838,45 @@ public class ResourceGraph {
 		for(RouteNode routeNode : this.routeNodes) {
 			if(routeNode.isWire) {
 				if(routeNode.used()) {
-					totalWireLength += routeNode.wireLength() * routeNode.routeNodeData.occupation;
+					totalWireLength += routeNode.wireLength() * this.routeNodeData.occupation[routeNode.index];
 				}
 			}
 		}
 		return totalWireLength;
 	}
-	public void logCongestionHeatMap(int iteration) {
+	public void setHeatMapFile(File heatMapFile, int numBuffers) {
+		try {
+			this.heatMapWriter = new HeatMapWriter(heatMapFile, this.routeNodes.size(), numBuffers);
+		} catch(IOException error) {
+			System.err.println("Problem in opening heat map " + heatMapFile + ": " + error.getMessage());
+		}
+	}
+	public void closeHeatMap() {
+		if(this.heatMapWriter != null) {
+			this.heatMapWriter.close();
+			this.heatMapWriter = null;
+		}
+	}
+	/**
+	 * The changed wires are the wires whose occupation changed in the iteration,
+	 * the heat map doesn't look at the other route nodes
+	 */
+	public void logCongestionHeatMap(int iteration, List<RouteNode> changedWires) {
+		if(this.heatMapWriter != null) {
+			this.heatMapWriter.capture(iteration, changedWires);
+			return;
+		}
+		
+		for(RouteNode routeNode : changedWires) {
+			this.usedWires.set(routeNode.index, routeNode.used());
+		}
+		
 		statisticsLogger.println(""+iteration); // 1 number on the line means the iteration round 
 //		statisticsLogger.println("Heatmap of wires");
 //		statisticsLogger.println("index | occupation");
 //		statisticsLogger.println("-------------------------");
-		for(RouteNode routeNode : this.routeNodes) { 
-			//if(routeNode.isWire && routeNode.overUsed()) { // only output overused nodes, not the occupied ones
-			if(routeNode.isWire && routeNode.used()) { // output all used nodes
-				statisticsLogger.println(routeNode.index + "," + routeNode.routeNodeData.occupation);
-			}
+		for(int index = this.usedWires.nextSetBit(0); index >= 0; index = this.usedWires.nextSetBit(index + 1)) { // output all used nodes
+			statisticsLogger.println(index + "," + this.routeNodeData.occupation[index]);
 		}
 	}
 	
@@ -548,11 +885,11 @@ public class ResourceGraph {
 		int maxCongestion = 0;
 		for (RouteNode routeNode : this.routeNodes) {
 			if (routeNode.isWire && routeNode.used()) {
-				int occupation = routeNode.routeNodeData.occupation;
+				int occupation = this.routeNodeData.occupation[routeNode.index];
 				if (occupation > maxCongestion) {
 					maxCongestion = occupation;
 				}
-				Wire wire = new Wire(routeNode.xlow,routeNode.xhigh,routeNode.ylow,routeNode.yhigh,routeNode.routeNodeData.occupation);
+				Wire wire = new Wire(routeNode.xlow,routeNode.xhigh,routeNode.ylow,routeNode.yhigh,this.routeNodeData.occupation[routeNode.index]);
 				wires.add(wire);
 			}
 		}
@@ -580,8 +917,8 @@ public class ResourceGraph {
 	public void printRoutingGraph() {
 		for(RouteNode node : this.getRouteNodes()) {
 			System.out.println(node);
-			for (RouteNode child : node.children) {
-				System.out.println("\t" + child);
+			for (int index = 0; index < node.numChildren; index++) {
+				System.out.println("\t" + this.getChild(node, index));
 			}
 			System.out.println();
 		}
@@ -22,13 +22,10 @@ public abstract class RouteNode implements Comparable<RouteNode> {
 	public final boolean isWire;
 	public final short capacity;
 	
-	public final int numChildren;
-	public final RouteNode[] children;
-	//public final RouteNode[] parents;
-	public final RouteSwitch[] switches;
+	public final int numChildren; // the children are in the edge arrays of the compact graph
 
 	public final IndexedData indexedData;
-	public final RouteNodeData routeNodeData;
+	public RouteNodeData routeNodeData; // shared by all route nodes of the graph, indexed by the route node index
 	
 	public boolean target;
 	
@@ -46,7 +43,7 @@ public abstract class RouteNode implements Comparable<RouteNode> {
 		this.centery = 0.5f * (this.ylow + this.yhigh);
 		
 		this.indexedData = indexedData;
-		this.routeNodeData = new RouteNodeData(this.index);
+		this.routeNodeData = null;
 		
 		this.n = (short) n;
 		
@@ -71,17 +68,12 @@ public abstract class RouteNode implements Comparable<RouteNode> {
 		}
 		
 		this.numChildren = numChildren;
-		this.children = new RouteNode[this.numChildren];
-		this.switches = new RouteSwitch[this.numChildren];
 
 		this.target = false;
 	}
 	
-	public void setChild(int index, RouteNode child) {
-		this.children[index] = child;
-	}
-	public void setSwitchType(int index, RouteSwitch routeSwitch) {
-		this.switches[index] = routeSwitch;
+	public int getIndex() {
+		return this.index;
 	}
 	
 	public int wireLength() {
@@ -135,11 +127,11 @@ public abstract class RouteNode implements Comparable<RouteNode> {
 		s.append(", ");
 		s.append(String.format("capacity = %2d", this.capacity));
 		s.append(", ");
-		s.append(String.format("occupation = %2d ", this.routeNodeData.occupation));
+		s.append(String.format("occupation = %2d ", this.routeNodeData.occupation[this.index]));
 		s.append(", ");
-		s.append(String.format("num_unique_sources = %2d ", this.routeNodeData.numUniqueSources()));
+		s.append(String.format("num_unique_sources = %2d ", this.routeNodeData.numUniqueSources(this.index)));
 		s.append(", ");
-		s.append(String.format("num_unique_parents = %2d ", this.routeNodeData.numUniqueParents()));
+		s.append(String.format("num_unique_parents = %2d ", this.routeNodeData.numUniqueParents(this.index)));
 		s.append(", ");
 		s.append(String.format("type = %s", this.type));
 		
@@ -147,16 +139,16 @@ public abstract class RouteNode implements Comparable<RouteNode> {
 	}
 	
 	public boolean overUsed() {
-		return this.capacity < this.routeNodeData.occupation;
+		return this.capacity < this.routeNodeData.occupation[this.index];
 	}
 	public int overUse() {
-		return this.routeNodeData.occupation - this.capacity;
+		return this.routeNodeData.occupation[this.index] - this.capacity;
 	}
 	public boolean used() {
-		return this.routeNodeData.occupation > 0;
+		return this.routeNodeData.occupation[this.index] > 0;
 	}
 	public boolean illegal() {
-		return this.capacity < this.routeNodeData.numUniqueParents();
+		return this.capacity < this.routeNodeData.numUniqueParents(this.index);
 	}
 	
 	public float getDelay() {
@@ -166,16 +158,16 @@ public abstract class RouteNode implements Comparable<RouteNode> {
 	public void updatePresentCongestionPenalty(float pres_fac) {
 		RouteNodeData data = this.routeNodeData;
 		
-		int occ = data.numUniqueSources();
+		int occ = data.numUniqueSources(this.index);
 		int cap = this.capacity;
 		
 		if (occ < cap) {
-			data.pres_cost = 1;
+			data.pres_cost[this.index] = 1;
 		} else {
-			data.pres_cost = 1 + (occ - cap + 1) * pres_fac;
+			data.pres_cost[this.index] = 1 + (occ - cap + 1) * pres_fac;
 		}
 
-		data.occupation = occ;
+		data.occupation[this.index] = occ;
 	}
 	
 	public void setDelay(RouteSwitch drivingRouteSwitch) {
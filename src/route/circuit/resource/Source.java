@@ -9,15 +9,14 @@ public class Source extends RouteNode {
 		this.name = null;
 	}
 	
-	public void setName() {
-		int numChildren = this.children.length;
-		if(numChildren == 0){
+	public void setName(RouteNode firstChild) {
+		if(this.numChildren == 0){
 			System.err.println("Problem in source children\n\t=> " + this.index);
-		} else if(numChildren == 1) {
-			Opin outputPin = (Opin) this.children[0];
+		} else if(this.numChildren == 1) {
+			Opin outputPin = (Opin) firstChild;
 			this.name = outputPin.getPortName() + "[" + outputPin.getPortIndex() + "]";
 		} else {
-			Opin outputPin = (Opin) this.children[0];
+			Opin outputPin = (Opin) firstChild;
 			this.name = outputPin.getPortName();
 		}
 	}
@@ -47,6 +47,11 @@ public class TimingGraph {
     private float[][] maxDelay;
     private float globalMaxDelay;
     
+    //Incremental timing analysis
+    private static final float MAX_INCREMENTAL_FRACTION = 0.2f;
+    private int[][] clockDomainPairs;
+    private List<List<TimingNode>> levels;
+    
     //Tarjan's strongly connected components algorithm
     private int index;
     private Stack<TimingNode> stack;
@@ -603,6 +608,11 @@ public class TimingGraph {
     	//Initialization
         this.globalMaxDelay = 0;
         
+        if(this.clockDomainPairs == null) {
+        	this.initializeIncrementalTiming();
+        }
+        int clockDomainPair = 0;
+        
         for(Connection connection : this.circuit.getConnections()) {
         	connection.resetCriticality();
         }
@@ -642,6 +652,11 @@ public class TimingGraph {
         				rootNode.recursiveRequiredTime(sinkClockDomain);
         			}
         			
+        			for(TimingNode node : this.timingNodes) {
+        				node.saveArrivalAndRequiredTime(clockDomainPair);
+        			}
+        			clockDomainPair++;
+        			
         			//Criticality
         			for(Connection connection : this.circuit.getConnections()) {
         				connection.calculateCriticality(maxDelay, maxCriticality, criticalityExponent);
@@ -651,6 +666,194 @@ public class TimingGraph {
         }
     }
     
+    /**
+     * Incremental version of calculateActualWireDelay followed by
+     * calculateArrivalRequiredAndCriticality. Only the wire delay of the
+     * connections that were rerouted since the previous timing update is
+     * recalculated. The arrival times are propagated forward from the sinks
+     * of the changed timing edges, the required times backward from their
+     * sources, in topological order and only as long as the times change.
+     * Falls back to a full update when many timing edges changed.
+     */
+    public void updateArrivalRequiredAndCriticality(float maxCriticality, float criticalityExponent) {
+    	List<TimingEdge> changedEdges = new ArrayList<>();
+    	for(Connection connection : this.circuit.getConnections()) {
+    		if(connection.resetRouteChanged()) {
+    			float wireDelay = 0;
+    			for(RouteNode routeNode : connection.routeNodes) {
+    				wireDelay += routeNode.getDelay();
+    			}
+    			if(wireDelay != connection.getTimingEdge().getWireDelay()) {
+    				connection.setWireDelay(wireDelay);
+    				changedEdges.add(connection.getTimingEdge());
+    			}
+    		}
+    	}
+    	
+    	if(this.clockDomainPairs == null || changedEdges.size() > MAX_INCREMENTAL_FRACTION * this.circuit.getConnections().size()) {
+    		this.calculateArrivalRequiredAndCriticality(maxCriticality, criticalityExponent);
+    		return;
+    	} else if(changedEdges.isEmpty()) {
+    		return;
+    	}
+    	
+    	List<TimingNode> touchedNodes = new ArrayList<>();
+    	boolean maxDelayChanged = false;
+    	
+    	this.globalMaxDelay = 0;
+    	for(int clockDomainPair = 0; clockDomainPair < this.clockDomainPairs.length; clockDomainPair++) {
+    		int sourceClockDomain = this.clockDomainPairs[clockDomainPair][0];
+    		int sinkClockDomain = this.clockDomainPairs[clockDomainPair][1];
+    		
+    		//Arrival time
+    		for(TimingEdge edge : changedEdges) {
+    			if(edge.getSink().hasArrivalTime(clockDomainPair)) {
+    				this.queue(edge.getSink());
+    			}
+    		}
+    		for(int level = 0; level < this.levels.size(); level++) {
+    			for(TimingNode node : this.levels.get(level)) {
+    				node.setQueued(false);
+    				this.touch(node, touchedNodes);
+    				
+    				if(node.updateArrivalTime(clockDomainPair, sourceClockDomain)) {
+    					for(TimingEdge edge : node.getSinkEdges()) {
+    						if(edge.getSink().hasArrivalTime(clockDomainPair)) {
+    							this.queue(edge.getSink());
+    						}
+    					}
+    				}
+    			}
+    			this.levels.get(level).clear();
+    		}
+    		
+    		float maxDelay = 0;
+    		for(TimingNode leafNode : this.leafNodes.get(sinkClockDomain)) {
+    			maxDelay = Math.max((leafNode.getArrivalTime(clockDomainPair) - leafNode.clockDelay), maxDelay);
+    		}
+    		
+    		//A different max delay shifts all required times of the clock domain pair
+    		float oldMaxDelay = this.maxDelay[sourceClockDomain][sinkClockDomain];
+    		if(maxDelay != oldMaxDelay) {
+    			maxDelayChanged = true;
+    			for(TimingNode node : this.timingNodes) {
+    				if(node.hasRequiredTime(clockDomainPair)) {
+    					node.setRequiredTime(clockDomainPair, node.getRequiredTime(clockDomainPair) + maxDelay - oldMaxDelay);
+    				}
+    			}
+    			for(TimingNode leafNode : this.leafNodes.get(sinkClockDomain)) {
+    				leafNode.setRequiredTime(clockDomainPair, maxDelay + leafNode.clockDelay);
+    			}
+    		}
+    		this.maxDelay[sourceClockDomain][sinkClockDomain] = maxDelay;
+    		if(maxDelay > this.globalMaxDelay) {
+    			this.globalMaxDelay = maxDelay;
+    		}
+    		
+    		//Required time
+    		for(TimingEdge edge : changedEdges) {
+    			if(edge.getSource().hasRequiredTime(clockDomainPair)) {
+    				this.queue(edge.getSource());
+    			}
+    		}
+    		for(int level = this.levels.size() - 1; level >= 0; level--) {
+    			for(TimingNode node : this.levels.get(level)) {
+    				node.setQueued(false);
+    				this.touch(node, touchedNodes);
+    				
+    				if(node.updateRequiredTime(clockDomainPair, sinkClockDomain)) {
+    					for(TimingEdge edge : node.getSourceEdges()) {
+    						if(edge.getSource().hasRequiredTime(clockDomainPair)) {
+    							this.queue(edge.getSource());
+    						}
+    					}
+    				}
+    			}
+    			this.levels.get(level).clear();
+    		}
+    	}
+    	
+    	//Criticality of the connections with a touched source or sink, of all connections if a max delay changed
+    	for(Connection connection : this.circuit.getConnections()) {
+    		TimingEdge edge = connection.getTimingEdge();
+    		if(maxDelayChanged || edge.getSource().isTouched() || edge.getSink().isTouched()) {
+    			edge.resetCriticality();
+    			for(int clockDomainPair = 0; clockDomainPair < this.clockDomainPairs.length; clockDomainPair++) {
+    				float maxDelay = this.maxDelay[this.clockDomainPairs[clockDomainPair][0]][this.clockDomainPairs[clockDomainPair][1]];
+    				edge.calculateCriticality(clockDomainPair, maxDelay, maxCriticality, criticalityExponent);
+    			}
+    			connection.updateCriticality();
+    		}
+    	}
+    	
+    	for(TimingNode node : touchedNodes) {
+    		node.setTouched(false);
+    	}
+    }
+    private void queue(TimingNode node) {
+    	if(!node.isQueued()) {
+    		node.setQueued(true);
+    		this.levels.get(node.getLevel()).add(node);
+    	}
+    }
+    private void touch(TimingNode node, List<TimingNode> touchedNodes) {
+    	if(!node.isTouched()) {
+    		node.setTouched(true);
+    		touchedNodes.add(node);
+    	}
+    }
+    
+    private void initializeIncrementalTiming() {
+    	//Clock domain pairs in the order of calculateArrivalRequiredAndCriticality
+    	List<int[]> pairs = new ArrayList<>();
+    	for(int sourceClockDomain = 0; sourceClockDomain < this.numClockDomains; sourceClockDomain++) {
+    		for(int sinkClockDomain = 0; sinkClockDomain < this.numClockDomains; sinkClockDomain++) {
+    			if(this.includeClockDomain(sourceClockDomain, sinkClockDomain)) {
+    				pairs.add(new int[] {sourceClockDomain, sinkClockDomain});
+    			}
+    		}
+    	}
+    	this.clockDomainPairs = pairs.toArray(new int[pairs.size()][]);
+    	
+    	for(TimingNode node : this.timingNodes) {
+    		node.setNumClockDomainPairs(this.clockDomainPairs.length);
+    	}
+    	
+    	//Topological level of each node, the combinational loops are cut so the graph is acyclic
+    	Map<TimingNode, Integer> numUnvisitedSources = new HashMap<>();
+    	List<TimingNode> currentLevel = new ArrayList<>();
+    	for(TimingNode node : this.timingNodes) {
+    		if(node.getNumSources() == 0) {
+    			currentLevel.add(node);
+    		} else {
+    			numUnvisitedSources.put(node, node.getNumSources());
+    		}
+    	}
+    	
+    	int level = 0;
+    	while(!currentLevel.isEmpty()) {
+    		List<TimingNode> nextLevel = new ArrayList<>();
+    		for(TimingNode node : currentLevel) {
+    			node.setLevel(level);
+    			for(TimingEdge edge : node.getSinkEdges()) {
+    				TimingNode sink = edge.getSink();
+    				int numSources = numUnvisitedSources.get(sink) - 1;
+    				numUnvisitedSources.put(sink, numSources);
+    				if(numSources == 0) {
+    					nextLevel.add(sink);
+    				}
+    			}
+    		}
+    		currentLevel = nextLevel;
+    		level++;
+    	}
+    	
+    	this.levels = new ArrayList<>();
+    	for(int i = 0; i < level; i++) {
+    		this.levels.add(new ArrayList<TimingNode>());
+    	}
+    }
+    
     public float calculateTotalCost() {
     	float totalCost = 0;
 
@@ -39,6 +39,11 @@ public class TimingNode {
     private boolean hasSinkClockDomains = false;
     
     public final float clockDelay;
+    
+    //Incremental timing analysis
+    private int level;
+    private float[] arrivalTimes, requiredTimes;
+    private boolean queued, touched;
 
     TimingNode(GlobalBlock globalBlock, AbstractPin pin, Position position, int clockDomain, float clockDelay) {
         this.pin = pin;
@@ -190,6 +195,89 @@ public class TimingNode {
     	}
     }
    
+    /****************************************************
+     * Incremental timing analysis. The arrival and     *
+     * required time of each clock domain pair is kept, *
+     * NaN if the node has no time in that pair.        *
+     ****************************************************/
+    void setLevel(int level) {
+    	this.level = level;
+    }
+    int getLevel() {
+    	return this.level;
+    }
+    
+    void setNumClockDomainPairs(int numClockDomainPairs) {
+    	this.arrivalTimes = new float[numClockDomainPairs];
+    	this.requiredTimes = new float[numClockDomainPairs];
+    }
+    void saveArrivalAndRequiredTime(int clockDomainPair) {
+    	this.arrivalTimes[clockDomainPair] = this.hasArrivalTime ? this.arrivalTime : Float.NaN;
+    	this.requiredTimes[clockDomainPair] = this.hasRequiredTime ? this.requiredTime : Float.NaN;
+    }
+    
+    boolean hasArrivalTime(int clockDomainPair) {
+    	return !Float.isNaN(this.arrivalTimes[clockDomainPair]);
+    }
+    float getArrivalTime(int clockDomainPair) {
+    	return this.arrivalTimes[clockDomainPair];
+    }
+    boolean updateArrivalTime(int clockDomainPair, int sourceClockDomain) {
+    	float maxArrivalTime = 0;
+    	for(TimingEdge edge:this.sourceEdges) {
+    		if(edge.getSource().hasClockDomainAsSource[sourceClockDomain]) {
+    			float localArrivalTime = edge.getSource().arrivalTimes[clockDomainPair] + edge.getTotalDelay();
+    			if(localArrivalTime > maxArrivalTime) {
+    				maxArrivalTime = localArrivalTime;
+    			}
+    		}
+    	}
+    	if(maxArrivalTime != this.arrivalTimes[clockDomainPair]) {
+    		this.arrivalTimes[clockDomainPair] = maxArrivalTime;
+    		return true;
+    	}
+    	return false;
+    }
+    
+    boolean hasRequiredTime(int clockDomainPair) {
+    	return !Float.isNaN(this.requiredTimes[clockDomainPair]);
+    }
+    float getRequiredTime(int clockDomainPair) {
+    	return this.requiredTimes[clockDomainPair];
+    }
+    void setRequiredTime(int clockDomainPair, float requiredTime) {
+    	this.requiredTimes[clockDomainPair] = requiredTime;
+    }
+    boolean updateRequiredTime(int clockDomainPair, int sinkClockDomain) {
+    	float minRequiredTime = Integer.MAX_VALUE;
+    	for(TimingEdge edge:this.sinkEdges) {
+    		if(edge.getSink().hasClockDomainAsSink[sinkClockDomain]) {
+    			float localRequiredTime = edge.getSink().requiredTimes[clockDomainPair] - edge.getTotalDelay();
+    			if(localRequiredTime < minRequiredTime) {
+    				minRequiredTime = localRequiredTime;
+    			}
+    		}
+    	}
+    	if(minRequiredTime != this.requiredTimes[clockDomainPair]) {
+    		this.requiredTimes[clockDomainPair] = minRequiredTime;
+    		return true;
+    	}
+    	return false;
+    }
+    
+    boolean isQueued() {
+    	return this.queued;
+    }
+    void setQueued(boolean queued) {
+    	this.queued = queued;
+    }
+    boolean isTouched() {
+    	return this.touched;
+    }
+    void setTouched(boolean touched) {
+    	this.touched = touched;
+    }
+    
    /****************************************************
     * Tarjan's strongly connected components algorithm *
     ****************************************************/
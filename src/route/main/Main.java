@@ -6,6 +6,7 @@ import java.io.IOException;
 
 import route.circuit.Circuit;
 import route.circuit.architecture.Architecture;
+import route.circuit.architecture.ArchitectureCache;
 import route.circuit.architecture.BlockCategory;
 import route.circuit.architecture.BlockType;
 import route.circuit.exceptions.InvalidFileFormatException;
@@ -30,12 +31,20 @@ import route.visual.RouteVisualiser;
 public class Main {
 	
 	private boolean visualRoute = false;
+	private boolean routeLookaheadMap = false;
+	private boolean routeNetTree = false;
+	private File heatMapFile;
+	private File checkpointFile;
+	private int heatMapBuffers = 4;
+	private int numRouteThreads = 1;
+	private ConnectionRouter.QueueType routeQueueType = ConnectionRouter.QueueType.BINARY_HEAP;
 	
 	private Logger logger;
 	private RouteVisualiser visualiser;
 	
 	private String circuitName;
 	private File architectureFile, blifFile, netFile, placeFile, lookupDumpFile, sdcFile, rrgFile;
+	private File architectureCacheFolder;
 	private String outputFile;
 	
 	private Circuit circuit;
@@ -60,6 +69,22 @@ public class Main {
 				this.visualRoute = true;
 			} else if(arguments[i].contains("output_file")) {
 				this.outputFile = arguments[++i];
+			} else if(arguments[i].contains("num_route_threads")) {
+				this.numRouteThreads = Integer.parseInt(arguments[++i]);
+			} else if(arguments[i].contains("route_lookahead_map")) {
+				this.routeLookaheadMap = true;
+			} else if(arguments[i].contains("route_net_tree")) {
+				this.routeNetTree = true;
+			} else if(arguments[i].contains("heat_map_file")) {
+				this.heatMapFile = new File(arguments[++i]);
+			} else if(arguments[i].contains("heat_map_buffers")) {
+				this.heatMapBuffers = Integer.parseInt(arguments[++i]);
+			} else if(arguments[i].contains("route_checkpoint_file")) {
+				this.checkpointFile = new File(arguments[++i]);
+			} else if(arguments[i].contains("architecture_cache")) {
+				this.architectureCacheFolder = new File(arguments[++i]);
+			} else if(arguments[i].contains("route_queue")) {
+				this.routeQueueType = ConnectionRouter.QueueType.valueOf(arguments[++i].toUpperCase());
 			}
 		}
 		
@@ -76,6 +101,9 @@ public class Main {
 		this.checkFileExistence("Place file", this.placeFile);
 		this.checkFileExistence("Lookup dump file", this.lookupDumpFile);
 		this.checkFileExistence("SDC file", this.sdcFile);
+		if(this.heatMapBuffers <= 0) {
+			this.logger.raise(new IllegalArgumentException("Number of heat map buffers should be at least 1: " + this.heatMapBuffers));
+		}
 		
 		this.loadCircuit();
 		
@@ -93,8 +121,26 @@ public class Main {
 		
 		System.gc();
 		
-		ConnectionRouter connectionRouter = new ConnectionRouter(this.circuit.getResourceGraph(), this.circuit, this.visualiser);
-		int timeMilliseconds = connectionRouter.route();
+		ConnectionRouter connectionRouter = new ConnectionRouter(this.circuit.getResourceGraph(), this.circuit, this.visualiser, this.numRouteThreads);
+		connectionRouter.setQueueType(this.routeQueueType);
+		if(this.routeLookaheadMap) {
+			connectionRouter.useLookaheadMap();
+		}
+		if(this.routeNetTree) {
+			connectionRouter.routeFromNetTree();
+		}
+		if(this.checkpointFile != null) {
+			connectionRouter.setCheckpointFile(this.checkpointFile);
+		}
+		if(this.heatMapFile != null) {
+			this.circuit.getResourceGraph().setHeatMapFile(this.heatMapFile, this.heatMapBuffers);
+		}
+		int timeMilliseconds;
+		try {
+			timeMilliseconds = connectionRouter.route();
+		} finally {
+			this.circuit.getResourceGraph().closeHeatMap();
+		}
 		
 		System.out.printf("Routing took %.2fs\n", (timeMilliseconds * Math.pow(10, -3)));
 		System.out.println();
@@ -115,18 +161,52 @@ public class Main {
 	}
     private void loadCircuit() {
     	//Process the architecture file
-    	Architecture architecture = new Architecture(
-    			this.circuitName,
-    			this.architectureFile,
-    			this.blifFile,
-    			this.netFile,
-    			this.sdcFile,
-    			this.rrgFile);
-    	try {
-    		architecture.parse();
-    		architecture.getVprTiming(this.lookupDumpFile);
-    	} catch(IOException | InvalidFileFormatException | InterruptedException | ParserConfigurationException | SAXException error) {
-    		this.logger.raise("Failed to parse architecture file or delay tables", error);
+    	Architecture architecture = null;
+    	
+    	ArchitectureCache architectureCache = null;
+    	if(this.architectureCacheFolder != null) {
+    		// The sdc and rr graph files are stored by path in the architecture
+    		String description = "sdc file: " + this.sdcFile + ", rr graph file: " + this.rrgFile;
+    		try {
+    			architectureCache = new ArchitectureCache(
+    					this.architectureCacheFolder,
+    					description,
+    					this.architectureFile,
+    					this.blifFile,
+    					this.netFile,
+    					this.lookupDumpFile);
+    			
+    			architecture = architectureCache.load();
+    			if(architecture != null) {
+    				this.logger.println("Loaded architecture from " + architectureCache.getFile());
+    			}
+    		} catch(IOException error) {
+    			this.logger.println(Logger.Stream.ERR, "Failed to hash the architecture cache key: " + error.getMessage());
+    		}
+    	}
+    	
+    	if(architecture == null) {
+    		architecture = new Architecture(
+    				this.circuitName,
+    				this.architectureFile,
+    				this.blifFile,
+    				this.netFile,
+    				this.sdcFile,
+    				this.rrgFile);
+    		try {
+    			architecture.parse();
+    			architecture.getVprTiming(this.lookupDumpFile);
+    		} catch(IOException | InvalidFileFormatException | InterruptedException | ParserConfigurationException | SAXException error) {
+    			this.logger.raise("Failed to parse architecture file or delay tables", error);
+    		}
+    		
+    		if(architectureCache != null) {
+    			try {
+    				architectureCache.store(architecture);
+    			} catch(IOException error) {
+    				this.logger.println(Logger.Stream.ERR, "Failed to write architecture cache " + architectureCache.getFile() + ": " + error.getMessage());
+    			}
+    		}
     	}
 
     	// Parse net file
@@ -0,0 +1,104 @@
+package route.route;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of route node indices with a decrease-key operation.
+ * The heap position of each route node is kept in an array that is
+ * indexed by the route node index.
+ */
+class BinaryHeapQueue implements RouteNodeQueue {
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	private int[] nodes;
+	private float[] costs;
+	private int size;
+	
+	private final int[] position; // heap position of each route node, -1 if the node is not queued
+	
+	BinaryHeapQueue(int numNodes) {
+		this.nodes = new int[INITIAL_CAPACITY];
+		this.costs = new float[INITIAL_CAPACITY];
+		this.size = 0;
+		
+		this.position = new int[numNodes];
+		Arrays.fill(this.position, -1);
+	}
+	
+	@Override
+	public void push(int node, float cost) {
+		int i = this.position[node];
+		if(i < 0) {
+			if(this.size == this.nodes.length) {
+				this.nodes = Arrays.copyOf(this.nodes, 2 * this.size);
+				this.costs = Arrays.copyOf(this.costs, 2 * this.size);
+			}
+			i = this.size++;
+		} else if(cost >= this.costs[i]) {
+			return;
+		}
+		this.siftUp(i, node, cost);
+	}
+	
+	@Override
+	public int peek() {
+		return this.nodes[0];
+	}
+	
+	@Override
+	public int poll() {
+		int top = this.nodes[0];
+		this.position[top] = -1;
+		
+		this.size--;
+		if(this.size > 0) {
+			this.siftDown(0, this.nodes[this.size], this.costs[this.size]);
+		}
+		return top;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+	
+	@Override
+	public void clear() {
+		for(int i = 0; i < this.size; i++) {
+			this.position[this.nodes[i]] = -1;
+		}
+		this.size = 0;
+	}
+	
+	private void siftUp(int i, int node, float cost) {
+		while(i > 0) {
+			int parent = (i - 1) >>> 1;
+			if(this.costs[parent] <= cost) {
+				break;
+			}
+			this.place(i, this.nodes[parent], this.costs[parent]);
+			i = parent;
+		}
+		this.place(i, node, cost);
+	}
+	private void siftDown(int i, int node, float cost) {
+		int half = this.size >>> 1;
+		while(i < half) {
+			int child = 2 * i + 1;
+			if(child + 1 < this.size && this.costs[child + 1] < this.costs[child]) {
+				child++;
+			}
+			if(this.costs[child] >= cost) {
+				break;
+			}
+			this.place(i, this.nodes[child], this.costs[child]);
+			i = child;
+		}
+		this.place(i, node, cost);
+	}
+	private void place(int i, int node, float cost) {
+		this.nodes[i] = node;
+		this.costs[i] = cost;
+		this.position[node] = i;
+	}
+}
@@ -6,6 +6,7 @@ import java.util.LinkedList;
 import java.util.Queue;
 import java.util.SortedSet;
 
+import route.circuit.resource.ResourceGraph;
 import route.circuit.resource.RouteNode;
 
 // It's a class because Java has no structs
@@ -163,12 +164,12 @@ class CongestedZone extends BoundingBox {
 	    super(x_min, x_max, y_min, y_max);
 	}
 	
-	public static Collection<CongestedZone> findCongestedZones(Collection<CongestedZone> clusters, SortedSet<RouteNode> congestedRouteNodes) {
+	public static Collection<CongestedZone> findCongestedZones(ResourceGraph rrg, Collection<CongestedZone> clusters, SortedSet<RouteNode> congestedRouteNodes) {
 		// fill clusters, empty congestedRouteNodes
 		RouteNode congestionCenter = null;
 		while (! congestedRouteNodes.isEmpty()) {
 			congestionCenter = congestedRouteNodes.first();
-			CongestedZone z = CongestedZone.findCongestionZone(congestionCenter, congestedRouteNodes); // modify in place
+			CongestedZone z = CongestedZone.findCongestionZone(rrg, congestionCenter, congestedRouteNodes); // modify in place
 			// add zone to list if not null
 			if (z != null) {
 				clusters.add(z);
@@ -178,10 +179,10 @@ class CongestedZone extends BoundingBox {
 	}
 
 	// TODO: revise this function
-	public static CongestedZone findCongestionZone(RouteNode congestionCenter, SortedSet<RouteNode> congestedRouteNodes) {
+	public static CongestedZone findCongestionZone(ResourceGraph rrg, RouteNode congestionCenter, SortedSet<RouteNode> congestedRouteNodes) {
 		// TODO: check if this is the best way to access all neighbours (because of the difference between parents and children)
 		Queue<RouteNode> q = new LinkedList<>();
-		final Collection<RouteNodeData> nodesTouched = new ArrayList<>();
+		final Collection<RouteNode> nodesTouched = new ArrayList<>();
 
 		// initial node
 		addNodeToQueue(congestionCenter, nodesTouched, q);
@@ -201,9 +202,9 @@ class CongestedZone extends BoundingBox {
 			// process
 			zone.expand(node);
 			// continue search
-			for (RouteNode child : node.children) {
+			for (int index = 0; index < node.numChildren; index++) {
 				// if not yet used AND is congested
-				addNodeToQueue(child, nodesTouched, q);
+				addNodeToQueue(rrg.getChild(node, index), nodesTouched, q);
 			}
 			i++;
 		}
@@ -216,17 +217,17 @@ class CongestedZone extends BoundingBox {
 		}
 	}
 
-	private static void resetPathCost(Collection<RouteNodeData> nodesTouched) {
-		for (RouteNodeData node : nodesTouched) {
-			node.touched = false;
+	private static void resetPathCost(Collection<RouteNode> nodesTouched) {
+		for (RouteNode node : nodesTouched) {
+			node.routeNodeData.touched[node.getIndex()] = false;
 		}
 		nodesTouched.clear();
 	}
-	private static void addNodeToQueue(RouteNode node, Collection<RouteNodeData> nodesTouched, Queue<RouteNode> q) {
+	private static void addNodeToQueue(RouteNode node, Collection<RouteNode> nodesTouched, Queue<RouteNode> q) {
 		RouteNodeData data = node.routeNodeData;
-		if (!data.touched && node.overUsed()) {
-			nodesTouched.add(data);
-			data.touched = true;
+		if (!data.touched[node.getIndex()] && node.overUsed()) {
+			nodesTouched.add(node);
+			data.touched[node.getIndex()] = true;
 			q.add(node);
 		}
 	}
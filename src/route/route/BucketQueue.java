@@ -0,0 +1,166 @@
+package route.route;
+
+import java.util.Arrays;
+
+/**
+ * Bucket queue of route node indices. The buckets form a window of equal
+ * width, nodes with a cost beyond the window are kept in an overflow
+ * bucket. When the window runs empty, it restarts at the lowest cost in
+ * the overflow bucket and the bucket width is fitted to the cost range of
+ * the overflow bucket. The lowest bucket is scanned for its cheapest node.
+ * Nodes that are pushed below the current bucket are added to the current
+ * bucket, so the order is approximate when the costs are not monotone.
+ */
+class BucketQueue implements RouteNodeQueue {
+	private static final int NUM_BUCKETS = 1024;
+	private static final int OVERFLOW = NUM_BUCKETS;
+	
+	private final float[] cost;
+	private final int[] bucket; // bucket of each route node, -1 if the node is not queued
+	private final int[] next, prev;
+	private final int[] head;
+	
+	private float base, width;
+	private int current;
+	private int size;
+	private int top;
+	
+	BucketQueue(int numNodes) {
+		this.cost = new float[numNodes];
+		this.bucket = new int[numNodes];
+		this.next = new int[numNodes];
+		this.prev = new int[numNodes];
+		Arrays.fill(this.bucket, -1);
+		
+		this.head = new int[NUM_BUCKETS + 1];
+		Arrays.fill(this.head, -1);
+		
+		this.reset();
+	}
+	private void reset() {
+		this.base = 0;
+		this.width = 0;
+		this.current = OVERFLOW;
+		this.size = 0;
+		this.top = -1;
+	}
+	
+	@Override
+	public void push(int node, float cost) {
+		if(this.bucket[node] >= 0) {
+			if(cost >= this.cost[node]) {
+				return;
+			}
+			this.unlink(node);
+		} else {
+			this.size++;
+		}
+		
+		this.cost[node] = cost;
+		this.link(node, this.getBucket(cost));
+		this.top = -1;
+	}
+	
+	@Override
+	public int peek() {
+		if(this.top < 0) {
+			this.top = this.findTop();
+		}
+		return this.top;
+	}
+	
+	@Override
+	public int poll() {
+		int node = this.peek();
+		this.unlink(node);
+		this.bucket[node] = -1;
+		this.size--;
+		this.top = -1;
+		return node;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+	
+	@Override
+	public void clear() {
+		for(int b = 0; b <= OVERFLOW; b++) {
+			for(int node = this.head[b]; node >= 0; node = this.next[node]) {
+				this.bucket[node] = -1;
+			}
+			this.head[b] = -1;
+		}
+		this.reset();
+	}
+	
+	private int getBucket(float cost) {
+		if(this.width == 0) {
+			return cost <= this.base && this.current < OVERFLOW ? this.current : OVERFLOW;
+		}
+		float offset = (cost - this.base) / this.width;
+		if(offset >= OVERFLOW) {
+			return OVERFLOW;
+		}
+		return Math.max((int) offset, this.current);
+	}
+	
+	private int findTop() {
+		while(this.current < OVERFLOW && this.head[this.current] < 0) {
+			this.current++;
+		}
+		if(this.current == OVERFLOW) {
+			this.refill();
+		}
+		
+		int top = this.head[this.current];
+		for(int node = this.next[top]; node >= 0; node = this.next[node]) {
+			if(this.cost[node] < this.cost[top]) {
+				top = node;
+			}
+		}
+		return top;
+	}
+	
+	private void refill() {
+		float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+		for(int node = this.head[OVERFLOW]; node >= 0; node = this.next[node]) {
+			min = Math.min(min, this.cost[node]);
+			max = Math.max(max, this.cost[node]);
+		}
+		
+		this.base = min;
+		this.width = (max - min) / (NUM_BUCKETS - 1);
+		this.current = 0;
+		
+		int node = this.head[OVERFLOW];
+		this.head[OVERFLOW] = -1;
+		while(node >= 0) {
+			int nextNode = this.next[node];
+			this.link(node, Math.min(this.getBucket(this.cost[node]), NUM_BUCKETS - 1));
+			node = nextNode;
+		}
+	}
+	
+	private void link(int node, int b) {
+		this.bucket[node] = b;
+		this.prev[node] = -1;
+		this.next[node] = this.head[b];
+		if(this.head[b] >= 0) {
+			this.prev[this.head[b]] = node;
+		}
+		this.head[b] = node;
+	}
+	private void unlink(int node) {
+		int b = this.bucket[node];
+		if(this.prev[node] >= 0) {
+			this.next[this.prev[node]] = this.next[node];
+		} else {
+			this.head[b] = this.next[node];
+		}
+		if(this.next[node] >= 0) {
+			this.prev[this.next[node]] = this.prev[node];
+		}
+	}
+}
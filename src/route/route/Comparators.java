@@ -12,16 +12,6 @@ import route.circuit.resource.RouteNode;
  */
 
 public class Comparators {
-    public static Comparator<QueueElement> PRIORITY_COMPARATOR = new Comparator<QueueElement>() {
-        @Override
-        public int compare(QueueElement node1, QueueElement node2) {
-            if(node1.cost < node2.cost) {
-            	return -1;
-            } else {
-            	return 1;
-            }
-        }
-    };
     public static Comparator<RouteNode> CONGESTION_COMPARATOR = new Comparator<RouteNode>() {
         @Override
         public int compare(RouteNode node1, RouteNode node2) {
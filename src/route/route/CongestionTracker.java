@@ -0,0 +1,105 @@
+package route.route;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import route.circuit.resource.RouteNode;
+
+/**
+ * Keeps the occupied wire length of the routing up to date while connections
+ * are ripped up and added, and collects the route nodes that became full or
+ * illegal, and the wires whose occupation changed. Each routing thread owns a
+ * tracker, the totals of the trackers are summed and the collected nodes are
+ * merged into the congested node set of the router on the main thread.
+ */
+public class CongestionTracker {
+	private int occupiedWireLength;
+
+	private final List<RouteNode> newCongestedNodes;
+	private final List<RouteNode> changedWires;
+
+	CongestionTracker() {
+		this.occupiedWireLength = 0;
+
+		this.newCongestedNodes = new ArrayList<>();
+		this.changedWires = new ArrayList<>();
+	}
+
+	/**
+	 * Call before the occupation or the parents of the route node change
+	 */
+	void beforeUpdate(RouteNode node) {
+		if(node.isWire && node.used()) {
+			this.occupiedWireLength -= node.wireLength() * node.routeNodeData.occupation[node.getIndex()];
+			this.addChangedWire(node);
+		}
+	}
+
+	/**
+	 * Call after the occupation or the parents of the route node changed
+	 */
+	void afterUpdate(RouteNode node) {
+		if(node.isWire && node.used()) {
+			this.occupiedWireLength += node.wireLength() * node.routeNodeData.occupation[node.getIndex()];
+			this.addChangedWire(node);
+		}
+
+		RouteNodeData data = node.routeNodeData;
+		if(!data.congestionTracked[node.getIndex()] && isCongested(node)) {
+			data.congestionTracked[node.getIndex()] = true;
+			this.newCongestedNodes.add(node);
+		}
+	}
+
+	// A wire that is unused before and after the update keeps occupation 0
+	private void addChangedWire(RouteNode node) {
+		RouteNodeData data = node.routeNodeData;
+		if(!data.occupationChanged[node.getIndex()]) {
+			data.occupationChanged[node.getIndex()] = true;
+			this.changedWires.add(node);
+		}
+	}
+
+	int getOccupiedWireLength() {
+		return this.occupiedWireLength;
+	}
+
+	/**
+	 * Moves the route nodes that became congested since the previous call
+	 * to the congested node set
+	 */
+	void mergeCongestedNodes(List<RouteNode> congestedNodes) {
+		congestedNodes.addAll(this.newCongestedNodes);
+		this.newCongestedNodes.clear();
+	}
+	/**
+	 * Moves the wires whose occupation changed since the previous call to the list,
+	 * the wires can be marked as changed again afterwards
+	 */
+	void takeChangedWires(List<RouteNode> changedWires) {
+		for(RouteNode node : this.changedWires) {
+			node.routeNodeData.occupationChanged[node.getIndex()] = false;
+		}
+		changedWires.addAll(this.changedWires);
+		this.changedWires.clear();
+	}
+	/**
+	 * Removes the route nodes that are no longer congested from the set
+	 */
+	static void removeUncongestedNodes(List<RouteNode> congestedNodes) {
+		int size = 0;
+		for(RouteNode node : congestedNodes) {
+			if(isCongested(node)) {
+				congestedNodes.set(size++, node);
+			} else {
+				node.routeNodeData.congestionTracked[node.getIndex()] = false;
+			}
+		}
+		congestedNodes.subList(size, congestedNodes.size()).clear();
+	}
+
+	// Full nodes are included because updateCost also raises their present congestion cost
+	static boolean isCongested(RouteNode node) {
+		return node.overUse() >= 0 || node.illegal();
+	}
+}
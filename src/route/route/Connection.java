@@ -23,6 +23,7 @@ public class Connection implements Comparable<Connection>  {
 	private final TimingNode sinkTimingNode;
 	private final TimingEdge timingEdge;
 	private float criticality;
+	private boolean routeChanged;
 
     public Net net;
     
@@ -252,15 +253,27 @@ public class Connection implements Comparable<Connection>  {
 	}
 	
 	public boolean isInConBoundingBoxLimit(RouteNode node) {
+		return this.isInConBoundingBoxLimit(node.xlow, node.xhigh, node.ylow, node.yhigh);
+	}
+	public boolean isInConBoundingBoxLimit(short xlow, short xhigh, short ylow, short yhigh) {
 		BoundingBox bb = getBB();
-		return node.xlow < bb.x_max && node.xhigh > bb.x_min && node.ylow < bb.y_max && node.yhigh > bb.y_min;
+		return xlow < bb.x_max && xhigh > bb.x_min && ylow < bb.y_max && yhigh > bb.y_min;
 	}
 	
 	public void addRouteNode(RouteNode routeNode) {
 		this.routeNodes.add(routeNode);
+		this.routeChanged = true;
 	}
 	public void resetConnection() {
 		this.routeNodes.clear();
+		this.routeChanged = true;
+	}
+	
+	// Returns true if the route nodes changed since the previous call
+	public boolean resetRouteChanged() {
+		boolean routeChanged = this.routeChanged;
+		this.routeChanged = false;
+		return routeChanged;
 	}
 	
 	public void setWireDelay(float wireDelay) {
@@ -274,6 +287,13 @@ public class Connection implements Comparable<Connection>  {
 	public void resetCriticality() {
 		this.timingEdge.resetCriticality();
 	}
+	public void updateCriticality() {
+		this.criticality = this.timingEdge.getCriticality();
+	}
+	
+	public TimingEdge getTimingEdge() {
+		return this.timingEdge;
+	}
 	
 	public float getCriticality() {
 		return this.criticality;
@@ -1,16 +1,35 @@
 package route.route;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import route.circuit.Circuit;
+import route.circuit.resource.CompactResourceGraph;
 import route.circuit.resource.Opin;
 import route.circuit.resource.ResourceGraph;
 import route.circuit.resource.RouteNode;
@@ -19,6 +38,8 @@ import route.visual.RouteVisualiser;
 
 public class ConnectionRouter {
 	final ResourceGraph rrg;
+	private final CompactResourceGraph compactGraph;
+	private final RouteNodeData routeNodeData;
 	final Circuit circuit;
 	protected RouteVisualiser visualiser;
 	
@@ -34,21 +55,30 @@ public class ConnectionRouter {
 	
 	private int MAX_PERCENTAGE_CRITICAL_CONNECTIONS = 3;
 	
-	private final PriorityQueue<QueueElement> queue;
-	
-	private final Collection<RouteNodeData> nodesTouched;
+	private final ConnectionSearch search;
 	
 	private final float COST_PER_DISTANCE_HORIZONTAL, COST_PER_DISTANCE_VERTICAL, DELAY_PER_DISTANCE_HORIZONTAL, DELAY_PER_DISTANCE_VERTICAL;
-	private int distance_same_dir, distance_ortho_dir;
 	private final float IPIN_BASE_COST;
 	private static final float MAX_CRITICALITY = 0.99f;
 	private static final float CRITICALITY_EXPONENT = 3;
 	
-	private int connectionsRouted, nodesExpanded;
+	private int connectionsRouted;
 	private int connectionsRoutedIteration;
 	
+	// Parallel routing: connections with disjoint routing regions are routed concurrently
+	private final int numThreads;
+	private final ConnectionSearch[] searches;
+	private ExecutorService threadPool;
+	private final int maxWireSpan;				// longest wire, used to extend the routing region of a connection
+	private final int[][] regionStamp;			// grid cells claimed by the current wave
+	private int waveStamp;
+	private static final int WAVE_SIZE_PER_THREAD = 32;
+	private static final int MAX_BLOCKED_PER_WAVE = 4;	// times the wave size
+	
 	private int itry; // Current iteration of global routing
 	
+	private final List<RouteNode> congestedNodes;	// the full, overused and illegal route nodes
+	
 	private RouteTimers routeTimers;
 
 	// Congestion lookahead
@@ -75,16 +105,48 @@ public class ConnectionRouter {
 
 	public static final boolean DEBUG = true;
 	
+	// Priority queue of the directed search
+	public static enum QueueType {BINARY_HEAP, BUCKET};
+	private QueueType queueType = QueueType.BINARY_HEAP;
+	
+	// Precomputed expected cost and delay to the target, null to use the distance based estimate
+	private LookaheadMap lookahead = null;
+	
+	// Start the search of a connection from the route tree of its net instead of only from the source
+	private boolean routeFromNetTree = false;
+	
+	// Routing state written after each iteration and read when the routing starts, null to disable
+	private File checkpointFile = null;
+	private static final int CHECKPOINT_MAGIC = 0x5243484b; // "RCHK"
+	private static final int CHECKPOINT_VERSION = 1;
+	
 	public ConnectionRouter(ResourceGraph rrg, Circuit circuit, RouteVisualiser visualiser) {
+		this(rrg, circuit, visualiser, 1);
+	}
+	public ConnectionRouter(ResourceGraph rrg, Circuit circuit, RouteVisualiser visualiser, int numThreads) {
 		this.rrg = rrg;
+		this.compactGraph = rrg.getCompactGraph();
+		this.routeNodeData = rrg.getRouteNodeData();
 		this.circuit = circuit;
 		this.visualiser = visualiser;
-
-		this.nodesTouched = new ArrayList<>();
 		
-		this.queue = new PriorityQueue<>(Comparators.PRIORITY_COMPARATOR);
+		this.numThreads = Math.max(1, numThreads);
+		this.searches = new ConnectionSearch[this.numThreads];
+		for(int i = 0; i < this.numThreads; i++) {
+			this.searches[i] = new ConnectionSearch();
+		}
+		this.search = this.searches[0];
+		
+		int maxWireSpan = 0;
+		for(RouteNode node : this.rrg.getRouteNodes()) {
+			maxWireSpan = Math.max(maxWireSpan, Math.max(node.xhigh - node.xlow, node.yhigh - node.ylow));
+		}
+		this.maxWireSpan = maxWireSpan;
+		this.regionStamp = new int[this.circuit.getWidth() + 2][this.circuit.getHeight() + 2];
+		this.waveStamp = 0;
 		
 		this.criticalConnections = new ArrayList<>();
+		this.congestedNodes = new ArrayList<>();
 
 		COST_PER_DISTANCE_HORIZONTAL = this.getAverageCost(RouteNodeType.CHANX);
 		COST_PER_DISTANCE_VERTICAL = this.getAverageCost(RouteNodeType.CHANY);
@@ -95,7 +157,6 @@ public class ConnectionRouter {
 		IPIN_BASE_COST = this.rrg.get_ipin_indexed_data().getBaseCost();
 		
 		this.connectionsRouted = 0;
-		this.nodesExpanded = 0;
 		
 		this.routeTimers = new RouteTimers();
 		
@@ -137,6 +198,27 @@ public class ConnectionRouter {
 		return averageDelay / divider;
 	}
 	
+	public void setQueueType(QueueType queueType) {
+		this.queueType = queueType;
+	}
+	public void useLookaheadMap() {
+		this.lookahead = LookaheadMap.load(this.rrg);
+	}
+	public void routeFromNetTree() {
+		this.routeFromNetTree = true;
+	}
+	public void setCheckpointFile(File checkpointFile) {
+		this.checkpointFile = checkpointFile;
+	}
+	private RouteNodeQueue createQueue() {
+		switch(this.queueType) {
+		case BUCKET:
+			return new BucketQueue(this.rrg.numRouteNodes());
+		default:
+			return new BinaryHeapQueue(this.rrg.numRouteNodes());
+		}
+	}
+	
 	private void printManhattanDistance() {
 		int[] distanceArray = new int[this.circuit.getWidth() + this.circuit.getHeight() + 10];
 		for(int i = 0; i < distanceArray.length; i++) {
@@ -226,7 +308,17 @@ public class ConnectionRouter {
     private int doRuntimeRouting(int nrOfTrials, int fixOpins) {
     	System.out.printf("--------------------------------------------------------------------------------------------------------------\n");
     	long start = System.nanoTime();
-    	this.doRouting(nrOfTrials, fixOpins);
+    	if(this.numThreads > 1) {
+    		this.threadPool = Executors.newFixedThreadPool(this.numThreads);
+    	}
+    	try {
+    		this.doRouting(nrOfTrials, fixOpins);
+    	} finally {
+    		if(this.threadPool != null) {
+    			this.threadPool.shutdown();
+    			this.threadPool = null;
+    		}
+    	}
     	long end = System.nanoTime();
     	int timeMilliseconds = (int)Math.round((end-start) * Math.pow(10, -6));
     	System.out.printf("--------------------------------------------------------------------------------------------------------------\n");
@@ -234,25 +326,46 @@ public class ConnectionRouter {
     	System.out.println("Num iterations: " + this.itry);
 		System.out.println("Connections routed: " + this.connectionsRouted);
 		System.out.println("Connections rerouted: " + (this.connectionsRouted - this.circuit.getConnections().size()));
-		System.out.println("Nodes expanded: " + this.nodesExpanded);
+		System.out.println("Nodes expanded: " + this.getNodesExpanded());
 		System.out.printf("--------------------------------------------------------------------------------------------------------------\n");
+		for(ConnectionSearch search : this.searches) {
+			this.routeTimers.congestionCost.add(search.congestionCost);
+		}
 		System.out.print(this.routeTimers);
 		System.out.printf("--------------------------------------------------------------------------------------------------------------\n\n");
 		
     	return timeMilliseconds;
     }
+    private int getNodesExpanded() {
+    	int nodesExpanded = 0;
+    	for(ConnectionSearch search : this.searches) {
+    		nodesExpanded += search.nodesExpanded;
+    	}
+    	return nodesExpanded;
+    }
     @SuppressWarnings("unused")
 	private void doRouting(int nrOfTrials, int fixOpins) {
     	// fixOpins: number of iterations - 1 while the Opins are fixed
     	
-    	this.nodesTouched.clear();
-    	this.queue.clear();
+    	for(ConnectionSearch search : this.searches) {
+    		search.setQueue(this.createQueue());
+    	}
 		
 		float pres_fac_mult = this.pres_fac_mult;
 		this.pres_fac = this.initial_pres_fac;
 		
 		this.itry = 1;
 		
+		// The restored routes are added through the trackers, so they have to exist first
+		this.initializeCongestionTracking();
+		boolean resumed = false;
+		if(this.checkpointFile != null && this.checkpointFile.exists()) {
+			resumed = this.readCheckpoint();
+		}
+		if(resumed && DEBUG) {
+			this.checkCongestedNodes();
+		}
+		
 		List<Connection> sortedListOfConnections = new ArrayList<>();
 		// from large to small fanout, then small to large bounding box
 		sortedListOfConnections.addAll(this.circuit.getConnections());
@@ -263,7 +376,11 @@ public class ConnectionRouter {
         sortedListOfNets.addAll(this.circuit.getNets());
         Collections.sort(sortedListOfNets, Comparators.FanoutNet);
         
-		this.circuit.getTimingGraph().calculatePlacementEstimatedWireDelay();
+		if(resumed) {
+			this.circuit.getTimingGraph().calculateActualWireDelay();
+		} else {
+			this.circuit.getTimingGraph().calculatePlacementEstimatedWireDelay();
+		}
 		this.circuit.getTimingGraph().calculateArrivalRequiredAndCriticality(MAX_CRITICALITY, CRITICALITY_EXPONENT);
         
 		System.out.printf("%-22s | %.1f\n", "Criticality Exponent", CRITICALITY_EXPONENT);
@@ -310,7 +427,11 @@ public class ConnectionRouter {
         	this.routeTimers.setRerouteCriticality.finish();
     		
         	// Route Connections
-        	for(Connection con : sortedListOfConnections) {
+        	if(this.numThreads > 1) {
+        		this.routeTimers.parallelRouting.start();
+        		validRouting = this.routeConnectionsParallel(sortedListOfConnections);
+        		this.routeTimers.parallelRouting.finish();
+        	} else for(Connection con : sortedListOfConnections) {
 				if (this.itry == 1) {
 					this.routeTimers.firstIteration.start();
 					this.routeConnection(con);
@@ -343,8 +464,7 @@ public class ConnectionRouter {
 			String maxDelayString = String.format("%9s", "---");
 			this.routeTimers.updateTiming.start();
 
-			this.circuit.getTimingGraph().calculateActualWireDelay();
-			this.circuit.getTimingGraph().calculateArrivalRequiredAndCriticality(MAX_CRITICALITY, CRITICALITY_EXPONENT);
+			this.circuit.getTimingGraph().updateArrivalRequiredAndCriticality(MAX_CRITICALITY, CRITICALITY_EXPONENT);
 				
 			float maxDelay = this.circuit.getTimingGraph().getMaxDelay();
 				
@@ -372,12 +492,12 @@ public class ConnectionRouter {
 					SortedSet<RouteNode> congestedRouteNodes = new TreeSet<RouteNode>(Comparators.CONGESTION_COMPARATOR);
 					//SortedSet<RouteNode> congestedRouteNodes = new PriorityRouteNodeSet(Comparators.CONGESTION_COMPARATOR);
 					// insert overused nodes
-					for (RouteNode node: this.rrg.getRouteNodes()) {
+					for (RouteNode node: this.getCongestedNodes()) {
 						if (node.overUsed()) {
 							congestedRouteNodes.add(node);
 						}
 					}
-					CongestedZone.findCongestedZones(clusters, congestedRouteNodes);
+					CongestedZone.findCongestedZones(this.rrg, clusters, congestedRouteNodes);
 					break;
 				case GRID_DETECTION:
 					//clear zone congestion
@@ -460,9 +580,9 @@ public class ConnectionRouter {
 			int overUsed = this.getNumOverusedAndIllegalNodes(sortedListOfConnections);
 			double overUsePercentage = 100.0 * (double)overUsed / numRouteNodes;
 			
-			int wireLength = this.rrg.occupiedTotalWireLength();
+			int wireLength = this.getOccupiedWireLength();
 			
-			this.rrg.logCongestionHeatMap(itry);
+			this.rrg.logCongestionHeatMap(itry, this.takeChangedWires());
 			
 			if (this.visualiser.isOn()) {
 				this.rrg.addRoutingToVisualiser(itry, this.visualiser);
@@ -478,6 +598,9 @@ public class ConnectionRouter {
 
 			// Check if the routing is valid, if realizable return, the routing succeeded
 			if (validRouting) {
+				if(this.checkpointFile != null) {
+					this.checkpointFile.delete();
+				}
 				return;
 			}
 			
@@ -492,6 +615,10 @@ public class ConnectionRouter {
 			this.routeTimers.updateCost.finish();
 			
 			this.itry++;
+			
+			if(this.checkpointFile != null) {
+				this.writeCheckpoint();
+			}
 		}
         
 		if (this.itry == nrOfTrials + 1) {
@@ -526,27 +653,263 @@ public class ConnectionRouter {
 		return;
     }
     
+    /********************************
+     * Congestion tracking, updated *
+     * in ripup and add             *
+     ********************************/
+    
+    private void initializeCongestionTracking() {
+    	Arrays.fill(this.routeNodeData.congestionTracked, false);
+    	Arrays.fill(this.routeNodeData.occupationChanged, false);
+    	this.congestedNodes.clear();
+    	
+    	for(int i = 0; i < this.searches.length; i++) {
+    		this.searches[i].tracker = new CongestionTracker();
+    	}
+    	for(RouteNode node : this.rrg.getRouteNodes()) {
+    		this.search.tracker.afterUpdate(node);
+    	}
+    }
+    private List<RouteNode> getCongestedNodes() {
+    	for(ConnectionSearch search : this.searches) {
+    		search.tracker.mergeCongestedNodes(this.congestedNodes);
+    	}
+    	CongestionTracker.removeUncongestedNodes(this.congestedNodes);
+    	return this.congestedNodes;
+    }
+    /**
+     * The congested node set has to hold exactly the congested nodes of the routing
+     * graph, as it would after the same iterations without a checkpoint in between
+     */
+    private void checkCongestedNodes() {
+    	Set<RouteNode> tracked = new HashSet<>(this.getCongestedNodes());
+    	Set<RouteNode> congested = new HashSet<>();
+    	for(RouteNode node : this.rrg.getRouteNodes()) {
+    		if(CongestionTracker.isCongested(node)) {
+    			congested.add(node);
+    		}
+    	}
+    	if(tracked.size() != this.congestedNodes.size() || !tracked.equals(congested)) {
+    		throw new RuntimeException("Congested node set after resume has " + tracked.size() + " nodes, the routing graph has " + congested.size() + " congested nodes");
+    	}
+    }
+    // The wires whose occupation changed since the previous call
+    private List<RouteNode> takeChangedWires() {
+    	List<RouteNode> changedWires = new ArrayList<>();
+    	for(ConnectionSearch search : this.searches) {
+    		search.tracker.takeChangedWires(changedWires);
+    	}
+    	return changedWires;
+    }
+    private int getOccupiedWireLength() {
+    	int occupiedWireLength = 0;
+    	for(ConnectionSearch search : this.searches) {
+    		occupiedWireLength += search.tracker.getOccupiedWireLength();
+    	}
+    	return occupiedWireLength;
+    }
+    
+    /********************************
+     * Checkpoint of the routing    *
+     * state between iterations     *
+     ********************************/
+    
+    /**
+     * Writes the state at the start of the next iteration: the iteration, pres_fac,
+     * the route nodes of each connection, the fixed opin of each net and the costs
+     * of the route nodes that differ from the initial costs. The file is replaced
+     * at once, so a killed run leaves the checkpoint of the previous iteration.
+     */
+    private void writeCheckpoint() {
+    	File tempFile = new File(this.checkpointFile.getPath() + ".tmp");
+    	try {
+    		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+    		try {
+    			out.writeInt(CHECKPOINT_MAGIC);
+    			out.writeInt(CHECKPOINT_VERSION);
+    			out.writeInt(this.rrg.numRouteNodes());
+    			out.writeInt(this.circuit.getConnections().size());
+    			out.writeInt(this.circuit.getNets().size());
+    			
+    			out.writeInt(this.itry);
+    			out.writeFloat(this.pres_fac);
+    			
+    			for(Connection con : this.circuit.getConnections()) {
+    				out.writeInt(con.id);
+    				out.writeInt(con.routeNodes.size());
+    				for(RouteNode node : con.routeNodes) {
+    					out.writeInt(node.getIndex());
+    				}
+    			}
+    			for(Net net : this.circuit.getNets()) {
+    				out.writeInt(net.hasOpin() ? net.getOpin().getIndex() : -1);
+    			}
+    			
+    			float[] acc_cost = this.routeNodeData.acc_cost;
+    			float[] pres_cost = this.routeNodeData.pres_cost;
+    			
+    			int numCostNodes = 0;
+    			for(int index = 0; index < acc_cost.length; index++) {
+    				if(acc_cost[index] != 1 || pres_cost[index] != 1) {
+    					numCostNodes++;
+    				}
+    			}
+    			out.writeInt(numCostNodes);
+    			for(int index = 0; index < acc_cost.length; index++) {
+    				if(acc_cost[index] != 1 || pres_cost[index] != 1) {
+    					out.writeInt(index);
+    					out.writeFloat(acc_cost[index]);
+    					out.writeFloat(pres_cost[index]);
+    				}
+    			}
+    		} finally {
+    			out.close();
+    		}
+    		Files.move(tempFile.toPath(), this.checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    	} catch(IOException error) {
+    		System.err.println("Problem in writing checkpoint " + this.checkpointFile + ": " + error.getMessage());
+    		tempFile.delete();
+    	}
+    }
+    
+    /**
+     * Restores the state of writeCheckpoint. The whole file is read before the state
+     * changes, the routing starts from scratch if the file doesn't match the circuit:
+     * each route has to run from the sink of its connection back to the source along
+     * edges of the routing graph, and each index has to be a route node of the graph.
+     */
+    private boolean readCheckpoint() {
+    	List<Connection> connections = this.circuit.getConnections();
+    	List<Net> nets = this.circuit.getNets();
+    	
+    	int itry;
+    	float pres_fac;
+    	int[][] routes = new int[connections.size()][];
+    	int[] opins = new int[nets.size()];
+    	float[] acc_cost = new float[this.rrg.numRouteNodes()];
+    	float[] pres_cost = new float[this.rrg.numRouteNodes()];
+    	
+    	try {
+    		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.checkpointFile)));
+    		try {
+    			if(in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION
+    					|| in.readInt() != this.rrg.numRouteNodes() || in.readInt() != connections.size() || in.readInt() != nets.size()) {
+    				System.err.println("Checkpoint " + this.checkpointFile + " doesn't match the circuit");
+    				return false;
+    			}
+    			
+    			itry = in.readInt();
+    			pres_fac = in.readFloat();
+    			
+    			for(int i = 0; i < connections.size(); i++) {
+    				if(in.readInt() != connections.get(i).id) {
+    					System.err.println("Checkpoint " + this.checkpointFile + " doesn't match the circuit");
+    					return false;
+    				}
+    				int routeLength = in.readInt();
+    				if(routeLength < 0 || routeLength > this.rrg.numRouteNodes()) {
+    					System.err.println("Checkpoint " + this.checkpointFile + " doesn't match the circuit");
+    					return false;
+    				}
+    				routes[i] = new int[routeLength];
+    				for(int j = 0; j < routes[i].length; j++) {
+    					routes[i][j] = in.readInt();
+    				}
+    				if(!this.isValidRoute(connections.get(i), routes[i])) {
+    					System.err.println("Checkpoint " + this.checkpointFile + " doesn't match the circuit");
+    					return false;
+    				}
+    			}
+    			for(int i = 0; i < nets.size(); i++) {
+    				opins[i] = in.readInt();
+    				if(opins[i] != -1 && !(this.isRouteNodeIndex(opins[i]) && this.rrg.getRouteNode(opins[i]) instanceof Opin)) {
+    					System.err.println("Checkpoint " + this.checkpointFile + " doesn't match the circuit");
+    					return false;
+    				}
+    			}
+    			
+    			Arrays.fill(acc_cost, 1);
+    			Arrays.fill(pres_cost, 1);
+    			int numCostNodes = in.readInt();
+    			for(int i = 0; i < numCostNodes; i++) {
+    				int index = in.readInt();
+    				if(!this.isRouteNodeIndex(index)) {
+    					System.err.println("Checkpoint " + this.checkpointFile + " doesn't match the circuit");
+    					return false;
+    				}
+    				acc_cost[index] = in.readFloat();
+    				pres_cost[index] = in.readFloat();
+    			}
+    		} finally {
+    			in.close();
+    		}
+    	} catch(IOException error) {
+    		System.err.println("Problem in reading checkpoint " + this.checkpointFile + ": " + error.getMessage());
+    		return false;
+    	}
+    	
+    	this.itry = itry;
+    	this.pres_fac = pres_fac;
+    	
+    	for(int i = 0; i < connections.size(); i++) {
+    		Connection con = connections.get(i);
+    		con.resetConnection();
+    		for(int index : routes[i]) {
+    			con.addRouteNode(this.rrg.getRouteNode(index));
+    		}
+    		this.add(con, this.search.tracker);
+    	}
+    	for(int i = 0; i < nets.size(); i++) {
+    		if(opins[i] >= 0) {
+    			nets.get(i).setOpin((Opin) this.rrg.getRouteNode(opins[i]));
+    		}
+    	}
+    	System.arraycopy(acc_cost, 0, this.routeNodeData.acc_cost, 0, acc_cost.length);
+    	System.arraycopy(pres_cost, 0, this.routeNodeData.pres_cost, 0, pres_cost.length);
+    	
+    	System.out.println("Routing resumed at iteration " + this.itry + " from " + this.checkpointFile.getName());
+    	return true;
+    }
+    private boolean isRouteNodeIndex(int index) {
+    	return index >= 0 && index < this.rrg.numRouteNodes();
+    }
+    private boolean isValidRoute(Connection con, int[] route) {
+    	if(route.length == 0 || route[0] != con.sinkRouteNode.getIndex() || route[route.length - 1] != con.sourceRouteNode.getIndex()) {
+    		return false;
+    	}
+    	for(int j = 1; j < route.length; j++) {
+    		if(!this.isRouteNodeIndex(route[j]) || !this.isChild(route[j], route[j - 1])) {
+    			return false;
+    		}
+    	}
+    	return true;
+    }
+    private boolean isChild(int parent, int child) {
+    	for(int edge = this.compactGraph.firstChild(parent); edge < this.compactGraph.lastChild(parent); edge++) {
+    		if(this.compactGraph.childIndex[edge] == child) {
+    			return true;
+    		}
+    	}
+    	return false;
+    }
+    
     private int getNumOverusedAndIllegalNodes(List<Connection> connections) {
-        Set<Integer> overUsed = new HashSet<>();
-		for (Connection conn : connections) {
-			for (RouteNode node : conn.routeNodes) {
-				if (node.overUsed() || node.illegal()) {
-					overUsed.add(node.hashCode());
-				}
-			}
-		}
-		return overUsed.size();
+    	int overUsed = 0;
+    	for (RouteNode node : this.getCongestedNodes()) {
+    		if (node.overUsed() || node.illegal()) {
+    			overUsed++;
+    		}
+    	}
+    	return overUsed;
     }
     private int getNumIllegalNodes(List<Connection> connections) {
-        Set<Integer> illegal = new HashSet<>();
-		for (Connection con : connections) {
-			for (RouteNode node : con.routeNodes) {
-				if (node.illegal()) {
-					illegal.add(node.hashCode());
-				}
-			}
-		}
-		return illegal.size();
+    	int illegal = 0;
+    	for (RouteNode node : this.getCongestedNodes()) {
+    		if (node.illegal()) {
+    			illegal++;
+    		}
+    	}
+    	return illegal;
     }
     
     private void fixIllegalTrees(List<Connection> connections) {
@@ -612,7 +975,7 @@ public class ConnectionRouter {
 					
 					//Replace the path with the path from the connection with maximum criticality
 					for(Connection illegalConnection : illegalConnections) {
-						this.ripup(illegalConnection);
+						this.ripup(illegalConnection, this.search.tracker);
 						
 						//Remove illegal path from routing tree
 						while(!illegalConnection.routeNodes.remove(illegalConnection.routeNodes.size() - 1).equals(illegalNode));
@@ -622,7 +985,7 @@ public class ConnectionRouter {
 							illegalConnection.addRouteNode(newRouteNode);
 						}
 						
-						this.add(illegalConnection);
+						this.add(illegalConnection, this.search.tracker);
 					}
 					
 					//System.out.println();
@@ -653,322 +1016,610 @@ public class ConnectionRouter {
     }
     
     private void routeConnection(Connection con) {
-    	this.ripup(con);
-    	this.route(con);
-    	this.add(con);
+    	this.connectionsRouted++;
+    	this.connectionsRoutedIteration++;
+    	
+    	this.routeConnection(con, this.search);
+    }
+    private void routeConnection(Connection con, ConnectionSearch search) {
+    	this.ripup(con, search.tracker);
+    	search.route(con);
+    	this.add(con, search.tracker);
+    }
+    
+    /********************************
+     * Parallel routing of one      *
+     * iteration in waves           *
+     ********************************/
+    
+    /**
+     * Routes the connections of one iteration on the thread pool. The connections are
+     * handed out in waves, in the order of the sorted list. A connection only joins a
+     * wave if its routing region doesn't overlap with the region of an earlier connection
+     * that is still waiting or that is routed in the same wave. The connections of a
+     * wave never read or write the same route node, so the result is identical to the
+     * result of the serial routing loop.
+     */
+    private boolean routeConnectionsParallel(List<Connection> connections) {
+    	boolean validRouting = true;
+    	
+    	int maxWaveSize = this.numThreads * WAVE_SIZE_PER_THREAD;
+    	int maxBlocked = maxWaveSize * MAX_BLOCKED_PER_WAVE;
+    	
+    	List<Connection> waiting = new ArrayList<>();
+    	List<Connection> wave = new ArrayList<>();
+    	int next = 0;
+    	
+    	while(next < connections.size() || !waiting.isEmpty()) {
+    		this.waveStamp++;
+    		wave.clear();
+    		
+    		List<Connection> blocked = new ArrayList<>();
+    		int w = 0;
+    		while(wave.size() < maxWaveSize && blocked.size() < maxBlocked) {
+    			Connection con;
+    			if(w < waiting.size()) {
+    				con = waiting.get(w++);
+    			} else if(next < connections.size()) {
+    				con = connections.get(next++);
+    			} else {
+    				break;
+    			}
+    			
+    			BoundingBox region = this.getRoutingRegion(con);
+    			if(this.isRegionClaimed(region)) {
+    				blocked.add(con);
+    			} else if(this.needsRouting(con)) {
+    				wave.add(con);
+    			} else {
+    				if(con.congested()) validRouting = false;
+    				if(!con.net.hasOpin()) validRouting = false;
+    				continue;
+    			}
+    			this.claimRegion(region);
+    		}
+    		blocked.addAll(waiting.subList(w, waiting.size()));
+    		waiting = blocked;
+    		
+    		this.routeWave(wave);
+    		
+    		for(Connection con : wave) {
+    			if(con.congested()) validRouting = false;
+    			if(!con.net.hasOpin()) validRouting = false;
+    		}
+    	}
+    	
+    	return validRouting;
+    }
+    private boolean needsRouting(Connection con) {
+    	if(this.itry == 1) {
+    		return true;
+    	} else if(con.congested()) {
+    		return true;
+    	} else if(con.net.hasOpin() && !con.getOpin().equals(con.net.getOpin())) {
+    		return true;
+    	} else {
+    		return con.getCriticality() > REROUTE_CRITICALITY;
+    	}
+    }
+    private void routeWave(final List<Connection> wave) {
+    	this.connectionsRouted += wave.size();
+    	this.connectionsRoutedIteration += wave.size();
+    	
+    	if(wave.size() == 1) {
+    		this.routeConnection(wave.get(0), this.search);
+    		return;
+    	}
+    	
+    	final AtomicInteger nextConnection = new AtomicInteger(0);
+    	List<Callable<Void>> tasks = new ArrayList<>();
+    	for(int i = 0; i < Math.min(this.numThreads, wave.size()); i++) {
+    		final ConnectionSearch search = this.searches[i];
+    		tasks.add(new Callable<Void>() {
+    			@Override
+    			public Void call() {
+    				int index;
+    				while((index = nextConnection.getAndIncrement()) < wave.size()) {
+    					routeConnection(wave.get(index), search);
+    				}
+    				return null;
+    			}
+    		});
+    	}
+    	
+    	try {
+    		for(Future<Void> future : this.threadPool.invokeAll(tasks)) {
+    			future.get();
+    		}
+    	} catch(InterruptedException error) {
+    		Thread.currentThread().interrupt();
+    		throw new RuntimeException(error);
+    	} catch(ExecutionException error) {
+    		throw new RuntimeException(error.getCause());
+    	}
+    }
+    
+    /**
+     * The routing region of a connection contains every route node that can be touched
+     * while the connection is ripped up and rerouted: its current route nodes and all
+     * nodes that can be expanded inside its bounding box. Wires that cross the border
+     * of the bounding box and the pins next to them are covered by extending the region
+     * with the longest wire span.
+     */
+    private BoundingBox getRoutingRegion(Connection con) {
+    	BoundingBox region = con.getBB();
+    	
+    	// The search of a connection that starts from the net tree reads the routes of the whole net
+    	List<Connection> routedConnections = this.routeFromNetTree ? con.net.getConnections() : Collections.singletonList(con);
+    	for(Connection routedConnection : routedConnections) {
+    		for(RouteNode node : routedConnection.routeNodes) {
+    			if(node.xlow < region.x_min) region.x_min = node.xlow;
+    			if(node.xhigh > region.x_max) region.x_max = node.xhigh;
+    			if(node.ylow < region.y_min) region.y_min = node.ylow;
+    			if(node.yhigh > region.y_max) region.y_max = node.yhigh;
+    		}
+    	}
+    	return region.expand(new BoundingBoxRange((short) (this.maxWireSpan + 1)));
+    }
+    private boolean isRegionClaimed(BoundingBox region) {
+    	int xMax = Math.min(region.x_max, this.regionStamp.length - 1);
+    	int yMax = Math.min(region.y_max, this.regionStamp[0].length - 1);
+    	for(int x = Math.max(region.x_min, 0); x <= xMax; x++) {
+    		for(int y = Math.max(region.y_min, 0); y <= yMax; y++) {
+    			if(this.regionStamp[x][y] == this.waveStamp) {
+    				return true;
+    			}
+    		}
+    	}
+    	return false;
+    }
+    private void claimRegion(BoundingBox region) {
+    	int xMax = Math.min(region.x_max, this.regionStamp.length - 1);
+    	int yMax = Math.min(region.y_max, this.regionStamp[0].length - 1);
+    	for(int x = Math.max(region.x_min, 0); x <= xMax; x++) {
+    		for(int y = Math.max(region.y_min, 0); y <= yMax; y++) {
+    			this.regionStamp[x][y] = this.waveStamp;
+    		}
+    	}
     }
-	private void ripup(Connection con) {
+    
+	private void ripup(Connection con, CongestionTracker tracker) {
 		RouteNode parent = null;
 		for(int i = con.routeNodes.size() - 1; i >=0; i--) {
 			RouteNode node = con.routeNodes.get(i);
 			
-			RouteNodeData data = node.routeNodeData;
+			tracker.beforeUpdate(node);
 			
-			data.removeSource(con.source);
+			this.routeNodeData.removeSource(node.getIndex(), con.source);
 			
 			if (parent == null) {
 				parent = node;
 			} else {
-				data.removeParent(parent);
+				this.routeNodeData.removeParent(node.getIndex(), parent);
 				parent = node;
 			}
 			
 			// Calculation of present congestion penalty
 			node.updatePresentCongestionPenalty(this.pres_fac);
+			
+			tracker.afterUpdate(node);
 		}
 	}
-	private void add(Connection con) {
+	private void add(Connection con, CongestionTracker tracker) {
 		RouteNode parent = null;
 		for(int i = con.routeNodes.size() - 1; i >=0; i--) {
 			RouteNode node = con.routeNodes.get(i);
 			
-			RouteNodeData data = node.routeNodeData;
+			tracker.beforeUpdate(node);
 
-			data.addSource(con.source);
+			this.routeNodeData.addSource(node.getIndex(), con.source);
 
 			if (parent == null) {
 				parent = node;
 			} else {
-				data.addParent(parent);
+				this.routeNodeData.addParent(node.getIndex(), parent);
 				parent = node;
 			}
 			
 			// Calculation of present congestion penalty
 			node.updatePresentCongestionPenalty(this.pres_fac);
+			
+			tracker.afterUpdate(node);
 		}
 	}
-	private boolean route(Connection con) {
-		this.connectionsRouted++;
-		this.connectionsRoutedIteration++;
-		
-		// Clear Routing
-		con.resetConnection();
 
-		// Clear Queue
-		this.queue.clear();
+	// Only the full and overused nodes change, these are in the congested node set
+	private void updateCost(float pres_fac, float acc_fac){
+		RouteNodeData data = this.routeNodeData;
+		for (RouteNode node : this.getCongestedNodes()) {
+			int index = node.getIndex();
+			
+			int overuse = node.overUse(); //assign to var so it doesn't have to recalculate
+			
+			//Present congestion penalty
+			if(overuse == 0) {
+				data.pres_cost[index] = 1 + pres_fac;
+			} else if (overuse > 0) {
+				data.pres_cost[index] = 1 + (overuse + 1) * pres_fac;
+				data.acc_cost[index] = data.acc_cost[index] + overuse * acc_fac;
+			}
+		}
+	}
+	
+	/**
+	 * The state of one directed search: the priority queue, the touched route nodes and
+	 * the expected distance to the target. Each routing thread owns one search.
+	 */
+	private class ConnectionSearch {
+		private RouteNodeQueue queue;
+		private int[] nodesTouched;
+		private int numNodesTouched;
+		
+		private int distance_same_dir, distance_ortho_dir;
+		
+		private int nodesExpanded;
+		
+		private CongestionTracker tracker;
 		
-		// Set target flag sink
-		RouteNode sink = con.sinkRouteNode;
-		sink.target = true;
+		// Each search has its own timer, the timers are not thread safe
+		private final RouteTimers.Timer congestionCost;
 		
-		// Add source to queue
-		RouteNode source = con.sourceRouteNode;
-		this.addNodeToQueue(source, null, 0, 0);
+		ConnectionSearch() {
+			this.queue = null;
+			this.nodesTouched = new int[1024];
+			this.numNodesTouched = 0;
+			this.nodesExpanded = 0;
+			this.tracker = new CongestionTracker();
+			this.congestionCost = new RouteTimers.Timer("expected congestion cost");
+		}
 		
-		// Start Dijkstra / directed search
-		while (!targetReached()) {
-			this.expandFirstNode(con);
+		void setQueue(RouteNodeQueue queue) {
+			this.numNodesTouched = 0;
+			this.queue = queue;
 		}
 		
-		// Reset target flag sink
-		sink.target = false;
+		private boolean route(Connection con) {
+			// Clear Routing
+			con.resetConnection();
+
+			// Clear Queue
+			this.queue.clear();
 		
-		// Save routing in connection class
-		this.saveRouting(con);
+			// Set target flag sink
+			RouteNode sink = con.sinkRouteNode;
+			sink.target = true;
 		
-		// Reset path cost from Dijkstra Algorithm
-		this.resetPathCost();
+			// Add source to queue
+			RouteNode source = con.sourceRouteNode;
+			this.addNodeToQueue(source, null, 0, 0);
+			
+			// Add the route tree of the net to queue
+			if(routeFromNetTree) {
+				this.addNetTreeToQueue(con);
+			}
+		
+			// Start Dijkstra / directed search
+			while (!targetReached()) {
+				this.expandFirstNode(con);
+			}
+		
+			// Reset target flag sink
+			sink.target = false;
+		
+			// Save routing in connection class
+			this.saveRouting(con);
+		
+			// Reset path cost from Dijkstra Algorithm
+			this.resetPathCost();
 
-		return true;
-	}
+			return true;
+		}
 	
-	private void saveRouting(Connection con) {
-		RouteNode rn = con.sinkRouteNode;
-		while (rn != null) {
-			con.addRouteNode(rn);
-			rn = rn.routeNodeData.prev;
+		private void saveRouting(Connection con) {
+			int rn = con.sinkRouteNode.getIndex();
+			while (rn != -1) {
+				con.addRouteNode(rrg.getRouteNode(rn));
+				rn = routeNodeData.prev[rn];
+			}
 		}
-	}
 
-	private boolean targetReached() {
-		RouteNode queueHead = this.queue.peek().node;
-		if(queueHead == null){
-			System.out.println("queue is empty");			
-			return false;
-		} 
+		/**
+		 * Adds the route nodes that the other connections of the net use to the queue.
+		 * The wire length cost of the existing tree is zero, only the delay from the
+		 * source is counted in the partial path cost. The prev of each node is its
+		 * parent in the tree, so the saved route of the connection runs back to the source.
+		 * The IPIN and SINK at the end of each route are not part of the shared tree.
+		 * 
+		 * Each route is walked back from its sink until a node that is already in the tree,
+		 * the rest of the route up to the source is shared with a route that was added before.
+		 * Only the new branch is added, so every node of the tree is added once. A node that
+		 * the net uses with more than one parent keeps the parent of the first route.
+		 */
+		private void addNetTreeToQueue(Connection con) {
+			Map<RouteNode, Float> treeDelays = new HashMap<>();
+			List<RouteNode> branch = new ArrayList<>();
+			
+			for(Connection other : con.net.getConnections()) {
+				if(other == con || other.routeNodes.isEmpty()) {
+					continue;
+				}
+				if(con.net.hasOpin() && !con.net.getOpin().equals(other.getOpin())) {
+					continue;
+				}
+				
+				float delay = 0;
+				RouteNode parent = null;
+				branch.clear();
+				for(RouteNode node : other.routeNodes) {
+					if(node.type == RouteNodeType.IPIN || node.type == RouteNodeType.SINK) {
+						continue;
+					}
+					
+					Float treeDelay = treeDelays.get(node);
+					if(treeDelay != null) {
+						delay = treeDelay;
+						parent = node;
+						break;
+					}
+					branch.add(node);
+				}
+				
+				for(int i = branch.size() - 1; i >= 0; i--) {
+					RouteNode node = branch.get(i);
+					
+					delay += node.getDelay();
+					float new_partial_path_cost = con.getCriticality() * delay;
+					float new_lower_bound_total_path_cost = this.getLowerBoundTotalPathCost(node, node, con, routeNodeData.countSourceUses(node.getIndex(), con.source), new_partial_path_cost);
+					this.addNodeToQueue(node, parent, new_partial_path_cost, new_lower_bound_total_path_cost);
+					treeDelays.put(node, delay);
+					
+					parent = node;
+				}
+			}
+		}
+
+		private boolean targetReached() {
+			if(this.queue.isEmpty()){
+				System.out.println("queue is empty");			
+				return false;
+			} 
 		
-		else {
-			return queueHead.target;
+			else {
+				return rrg.getRouteNode(this.queue.peek()).target;
+			}
 		}
-	}
 	
-	private void resetPathCost() {
-		for (RouteNodeData node : this.nodesTouched) {
-			node.touched = false;
+		private void resetPathCost() {
+			for (int i = 0; i < this.numNodesTouched; i++) {
+				routeNodeData.touched[this.nodesTouched[i]] = false;
+			}
+			this.numNodesTouched = 0;
 		}
-		this.nodesTouched.clear();
-	}
 
-	private void expandFirstNode(Connection con) {
-		this.nodesExpanded++;
+		private void expandFirstNode(Connection con) {
+			this.nodesExpanded++;
 		
-		if (this.queue.isEmpty()) {
-			System.out.println(con.netName + " " + con.source.getPortName() + " " + con.sink.getPortName());
-			throw new RuntimeException("Queue is empty: target unreachable?");
-		}
+			if (this.queue.isEmpty()) {
+				System.out.println(con.netName + " " + con.source.getPortName() + " " + con.sink.getPortName());
+				throw new RuntimeException("Queue is empty: target unreachable?");
+			}
 
-		RouteNode node = this.queue.poll().node;
-		
-		for (RouteNode child : node.children) {
+			int nodeIndex = this.queue.poll();
+			RouteNode node = rrg.getRouteNode(nodeIndex);
 			
-			//CHANX OR CHANY
-			if (child.isWire) {
-				if (con.isInConBoundingBoxLimit(child)) {
-					this.addNodeToQueue(node, child, con);
-				}
+			// The children are filtered on the columns of the compact graph,
+			// only the route nodes that are added to the queue are dereferenced
+			for (int edge = compactGraph.firstChild(nodeIndex); edge < compactGraph.lastChild(nodeIndex); edge++) {
+				int childIndex = compactGraph.childIndex[edge];
+				RouteNodeType childType = compactGraph.getType(childIndex);
 			
-			//OPIN
-			} else if (child.type == RouteNodeType.OPIN) {
-				if(con.net.hasOpin()) {
-					if (child.equals(con.net.getOpin())) {
+				//CHANX OR CHANY
+				if (childType == RouteNodeType.CHANX || childType == RouteNodeType.CHANY) {
+					if (con.isInConBoundingBoxLimit(compactGraph.xlow[childIndex], compactGraph.xhigh[childIndex], compactGraph.ylow[childIndex], compactGraph.yhigh[childIndex])) {
+						this.addNodeToQueue(node, rrg.getRouteNode(childIndex), con);
+					}
+			
+				//OPIN
+				} else if (childType == RouteNodeType.OPIN) {
+					RouteNode child = rrg.getRouteNode(childIndex);
+					if(con.net.hasOpin()) {
+						if (child.equals(con.net.getOpin())) {
+							this.addNodeToQueue(node, child, con);
+						}
+					} else if (!child.isOpin) {
 						this.addNodeToQueue(node, child, con);
 					}
-				} else if (!child.isOpin) {
-					this.addNodeToQueue(node, child, con);
-				}
 			
-			//IPIN
-			} else if (child.type == RouteNodeType.IPIN) {
-				if(child.children[0].target) {
-					this.addNodeToQueue(node, child, con);
-				}
+				//IPIN
+				} else if (childType == RouteNodeType.IPIN) {
+					int sinkIndex = compactGraph.childIndex[compactGraph.firstChild(childIndex)];
+					if(rrg.getRouteNode(sinkIndex).target) {
+						this.addNodeToQueue(node, rrg.getRouteNode(childIndex), con);
+					}
 				
-			//SINK
-			} else if (child.type == RouteNodeType.SINK) {
-				this.addNodeToQueue(node, child, con);
+				//SINK
+				} else if (childType == RouteNodeType.SINK) {
+					this.addNodeToQueue(node, rrg.getRouteNode(childIndex), con);
+				}
 			}
 		}
-	}
 	
-	@SuppressWarnings("unused")
-	private void addNodeToQueue(RouteNode node, RouteNode child, Connection con) {
-		RouteNodeData data = child.routeNodeData;
-		int countSourceUses = data.countSourceUses(con.source);
+		private void addNodeToQueue(RouteNode node, RouteNode child, Connection con) {
+			int countSourceUses = routeNodeData.countSourceUses(child.getIndex(), con.source);
 		
-		float partial_path_cost = node.routeNodeData.getPartialPathCost();
+			float partial_path_cost = routeNodeData.getPartialPathCost(node.getIndex());
 		
-		// PARTIAL PATH COST
-		float new_partial_path_cost = partial_path_cost + (1 - con.getCriticality()) * this.getRouteNodeCost(child, con, countSourceUses) + con.getCriticality() * child.getDelay();
-		
-		// LOWER BOUND TOTAL PATH COST
-		// This is just an estimate and not an absolute lower bound.
-		// The routing algorithm is therefore not A* and optimal.
-		// It's directed search and heuristic.
-		float new_lower_bound_total_path_cost = new_partial_path_cost;
-		if(child.isWire) {
-			//Expected remaining cost
-			RouteNode target = con.sinkRouteNode;
-			
-			this.set_expected_distance_to_target(child, target);
+			// PARTIAL PATH COST
+			float new_partial_path_cost = partial_path_cost + (1 - con.getCriticality()) * this.getRouteNodeCost(child, con, countSourceUses) + con.getCriticality() * child.getDelay();
 			
-			float expected_distance_cost, expected_timing_cost;
-			
-			if(child.type.equals(RouteNodeType.CHANX)) {
-				expected_distance_cost = this.distance_same_dir * COST_PER_DISTANCE_HORIZONTAL + this.distance_ortho_dir * COST_PER_DISTANCE_VERTICAL;
-				expected_timing_cost = this.distance_same_dir * DELAY_PER_DISTANCE_HORIZONTAL + this.distance_ortho_dir * DELAY_PER_DISTANCE_VERTICAL;
-			} else {
-				expected_distance_cost = this.distance_same_dir * COST_PER_DISTANCE_VERTICAL + this.distance_ortho_dir * COST_PER_DISTANCE_HORIZONTAL;
-				expected_timing_cost = this.distance_same_dir * DELAY_PER_DISTANCE_VERTICAL + this.distance_ortho_dir * DELAY_PER_DISTANCE_HORIZONTAL;
-			}
+			float new_lower_bound_total_path_cost = this.getLowerBoundTotalPathCost(node, child, con, countSourceUses, new_partial_path_cost);
+		
+			this.addNodeToQueue(child, node, new_partial_path_cost, new_lower_bound_total_path_cost);
+		}
+		
+		@SuppressWarnings("unused")
+		private float getLowerBoundTotalPathCost(RouteNode node, RouteNode child, Connection con, int countSourceUses, float new_partial_path_cost) {
+			// LOWER BOUND TOTAL PATH COST
+			// This is just an estimate and not an absolute lower bound.
+			// The routing algorithm is therefore not A* and optimal.
+			// It's directed search and heuristic.
+			float new_lower_bound_total_path_cost = new_partial_path_cost;
+			if(child.isWire) {
+				//Expected remaining cost
+				RouteNode target = con.sinkRouteNode;
 			
-			float expected_wire_cost = expected_distance_cost / (1 + countSourceUses) + IPIN_BASE_COST;
+				float expected_wire_cost, expected_timing_cost;
+				
+				int costIndex = compactGraph.costIndex[child.getIndex()];
+				int dx = Math.abs(target.xlow - child.xlow);
+				int dy = Math.abs(target.ylow - child.ylow);
+				
+				if(lookahead != null && lookahead.isValid(costIndex, dx, dy)) {
+					// The lookahead cost already contains the cost of the IPIN and the SINK
+					expected_wire_cost = lookahead.getCost(costIndex, dx, dy) / (1 + countSourceUses);
+					expected_timing_cost = lookahead.getDelay(costIndex, dx, dy);
+				} else {
+					this.set_expected_distance_to_target(child, target);
+				
+					float expected_distance_cost;
+				
+					if(child.type.equals(RouteNodeType.CHANX)) {
+						expected_distance_cost = this.distance_same_dir * COST_PER_DISTANCE_HORIZONTAL + this.distance_ortho_dir * COST_PER_DISTANCE_VERTICAL;
+						expected_timing_cost = this.distance_same_dir * DELAY_PER_DISTANCE_HORIZONTAL + this.distance_ortho_dir * DELAY_PER_DISTANCE_VERTICAL;
+					} else {
+						expected_distance_cost = this.distance_same_dir * COST_PER_DISTANCE_VERTICAL + this.distance_ortho_dir * COST_PER_DISTANCE_HORIZONTAL;
+						expected_timing_cost = this.distance_same_dir * DELAY_PER_DISTANCE_VERTICAL + this.distance_ortho_dir * DELAY_PER_DISTANCE_HORIZONTAL;
+					}
+				
+					expected_wire_cost = expected_distance_cost / (1 + countSourceUses) + IPIN_BASE_COST;
+				}
 			
-			new_lower_bound_total_path_cost += this.alphaWLD * (1 - con.getCriticality()) * expected_wire_cost; //add wire length 	contribution to cost
-			new_lower_bound_total_path_cost += this.alphaTD * con.getCriticality() * expected_timing_cost;		//add timing 		contribution to cost
+				new_lower_bound_total_path_cost += alphaWLD * (1 - con.getCriticality()) * expected_wire_cost; //add wire length 	contribution to cost
+				new_lower_bound_total_path_cost += alphaTD * con.getCriticality() * expected_timing_cost;		//add timing 		contribution to cost
 
-			if (CONG_LA_W && CONG_LA_METHOD == CongLAMethod.GRID_DETECTION) { // if weight adjusment activated AND the CongLAMethod is supported
-			    this.routeTimers.congestionCost.start();
-			    float expected_congestion_cost = zoneManager.getZoneCongestion(node);
-			    new_lower_bound_total_path_cost *= 1 + this.alphaC * expected_congestion_cost;                           //add congestion    contribution to cost
-			    this.routeTimers.congestionCost.finish();
+				if (CONG_LA_W && CONG_LA_METHOD == CongLAMethod.GRID_DETECTION) { // if weight adjusment activated AND the CongLAMethod is supported
+				    this.congestionCost.start();
+				    float expected_congestion_cost = zoneManager.getZoneCongestion(node);
+				    new_lower_bound_total_path_cost *= 1 + alphaC * expected_congestion_cost;                           //add congestion    contribution to cost
+				    this.congestionCost.finish();
+				}
 			}
+			
+			return new_lower_bound_total_path_cost;
 		}
-		
-		this.addNodeToQueue(child, node, new_partial_path_cost, new_lower_bound_total_path_cost);
-	}
 	
-	public void set_expected_distance_to_target(RouteNode node, RouteNode target) {
-		/*************************************************
-		 * Function adapted and modified from VPR 7.0.7, *
-		 * get_expected_segs_to_target in route_timing.c *
-		 *************************************************/
-		RouteNodeType type = node.type;
-		short ylow, yhigh, xlow, xhigh;
-		int no_need_to_pass_by_clb;
-		
-		short target_x = target.xlow;
-		short target_y = target.ylow;
-		
-		if (type == RouteNodeType.CHANX) {
-			ylow = node.ylow;
-			xhigh = node.xhigh;
-			xlow = node.xlow;
-
-			if (ylow > target_y) { /* Coming from a row above target? */
-				this.distance_ortho_dir = ylow - target_y + 1;
-				no_need_to_pass_by_clb = 1;
-			} else if (ylow < target_y - 1) { /* Below the CLB bottom? */
-				this.distance_ortho_dir = target_y - ylow;
-				no_need_to_pass_by_clb = 1;
-			} else { /* In a row that passes by target CLB */
-				this.distance_ortho_dir = 0;
-				no_need_to_pass_by_clb = 0;
-			}
-
-			if (xlow > target_x + no_need_to_pass_by_clb) {
-				this.distance_same_dir = xlow - no_need_to_pass_by_clb - target_x;
-			} else if (xhigh < target_x - no_need_to_pass_by_clb) {
-				this.distance_same_dir = target_x - no_need_to_pass_by_clb - xhigh;
-			} else {
-				this.distance_same_dir = 0;
-			}
+		public void set_expected_distance_to_target(RouteNode node, RouteNode target) {
+			/*************************************************
+			 * Function adapted and modified from VPR 7.0.7, *
+			 * get_expected_segs_to_target in route_timing.c *
+			 *************************************************/
+			RouteNodeType type = node.type;
+			short ylow, yhigh, xlow, xhigh;
+			int no_need_to_pass_by_clb;
+		
+			short target_x = target.xlow;
+			short target_y = target.ylow;
+		
+			if (type == RouteNodeType.CHANX) {
+				ylow = node.ylow;
+				xhigh = node.xhigh;
+				xlow = node.xlow;
+
+				if (ylow > target_y) { /* Coming from a row above target? */
+					this.distance_ortho_dir = ylow - target_y + 1;
+					no_need_to_pass_by_clb = 1;
+				} else if (ylow < target_y - 1) { /* Below the CLB bottom? */
+					this.distance_ortho_dir = target_y - ylow;
+					no_need_to_pass_by_clb = 1;
+				} else { /* In a row that passes by target CLB */
+					this.distance_ortho_dir = 0;
+					no_need_to_pass_by_clb = 0;
+				}
+
+				if (xlow > target_x + no_need_to_pass_by_clb) {
+					this.distance_same_dir = xlow - no_need_to_pass_by_clb - target_x;
+				} else if (xhigh < target_x - no_need_to_pass_by_clb) {
+					this.distance_same_dir = target_x - no_need_to_pass_by_clb - xhigh;
+				} else {
+					this.distance_same_dir = 0;
+				}
 			
-			return;
+				return;
 			
-		} else { /* CHANY */
-			ylow = node.ylow;
-			yhigh = node.yhigh;
-			xlow = node.xlow;
+			} else { /* CHANY */
+				ylow = node.ylow;
+				yhigh = node.yhigh;
+				xlow = node.xlow;
 
-			if (xlow > target_x) { /* Coming from a column right of target? */
-				this.distance_ortho_dir = xlow - target_x + 1;
-				no_need_to_pass_by_clb = 1;
-			} else if (xlow < target_x - 1) { /* Left of and not adjacent to the CLB? */
-				this.distance_ortho_dir = target_x - xlow;
-				no_need_to_pass_by_clb = 1;
-			} else { /* In a column that passes by target CLB */
-				this.distance_ortho_dir = 0;
-				no_need_to_pass_by_clb = 0;
-			}
+				if (xlow > target_x) { /* Coming from a column right of target? */
+					this.distance_ortho_dir = xlow - target_x + 1;
+					no_need_to_pass_by_clb = 1;
+				} else if (xlow < target_x - 1) { /* Left of and not adjacent to the CLB? */
+					this.distance_ortho_dir = target_x - xlow;
+					no_need_to_pass_by_clb = 1;
+				} else { /* In a column that passes by target CLB */
+					this.distance_ortho_dir = 0;
+					no_need_to_pass_by_clb = 0;
+				}
 
-			if (ylow > target_y + no_need_to_pass_by_clb) {
-				this.distance_same_dir = ylow - no_need_to_pass_by_clb - target_y;
-			} else if (yhigh < target_y - no_need_to_pass_by_clb) {
-				this.distance_same_dir = target_y - no_need_to_pass_by_clb - yhigh;
-			} else {
-				this.distance_same_dir = 0;
-			}
+				if (ylow > target_y + no_need_to_pass_by_clb) {
+					this.distance_same_dir = ylow - no_need_to_pass_by_clb - target_y;
+				} else if (yhigh < target_y - no_need_to_pass_by_clb) {
+					this.distance_same_dir = target_y - no_need_to_pass_by_clb - yhigh;
+				} else {
+					this.distance_same_dir = 0;
+				}
 			
-			return;
+				return;
+			}
 		}
-	}
 	
-	private void addNodeToQueue(RouteNode node, RouteNode prev, float new_partial_path_cost, float new_lower_bound_total_path_cost) {
-		RouteNodeData data = node.routeNodeData;
+		private void addNodeToQueue(RouteNode node, RouteNode prev, float new_partial_path_cost, float new_lower_bound_total_path_cost) {
+			RouteNodeData data = routeNodeData;
+			int index = node.getIndex();
 		
-		if(!data.touched) {
-			this.nodesTouched.add(data);
-			data.setLowerBoundTotalPathCost(new_lower_bound_total_path_cost);
-			data.setPartialPathCost(new_partial_path_cost);
-			data.prev = prev;
-			this.queue.add(new QueueElement(node, new_lower_bound_total_path_cost));
+			if(!data.touched[index]) {
+				if(this.numNodesTouched == this.nodesTouched.length) {
+					this.nodesTouched = Arrays.copyOf(this.nodesTouched, 2 * this.numNodesTouched);
+				}
+				this.nodesTouched[this.numNodesTouched++] = index;
+				data.setLowerBoundTotalPathCost(index, new_lower_bound_total_path_cost);
+				data.setPartialPathCost(index, new_partial_path_cost);
+				data.prev[index] = prev == null ? -1 : prev.getIndex();
+				this.queue.push(index, new_lower_bound_total_path_cost);
 			
-		} else if (data.updateLowerBoundTotalPathCost(new_lower_bound_total_path_cost)) { //queue is sorted by lower bound total cost
-			data.setPartialPathCost(new_partial_path_cost);
-			data.prev = prev;
-			this.queue.add(new QueueElement(node, new_lower_bound_total_path_cost));
+			} else if (data.updateLowerBoundTotalPathCost(index, new_lower_bound_total_path_cost)) { //queue is sorted by lower bound total cost
+				data.setPartialPathCost(index, new_partial_path_cost);
+				data.prev[index] = prev == null ? -1 : prev.getIndex();
+				this.queue.push(index, new_lower_bound_total_path_cost);
+			}
 		}
-	}
 
-	private float getRouteNodeCost(RouteNode node, Connection con, int countSourceUses) {
-		RouteNodeData data = node.routeNodeData;
+		private float getRouteNodeCost(RouteNode node, Connection con, int countSourceUses) {
+			RouteNodeData data = routeNodeData;
+			int index = node.getIndex();
 		
-		boolean containsSource = countSourceUses != 0;
-		//Present congestion cost
-		float pres_cost;
-		if (containsSource) {
-			if (!node.overUsed()) {
-				pres_cost = 1;
+			boolean containsSource = countSourceUses != 0;
+			//Present congestion cost
+			float pres_cost;
+			if (containsSource) {
+				if (!node.overUsed()) {
+					pres_cost = 1;
+				} else {
+					pres_cost = 1 + node.overUse() * pres_fac;
+				}
 			} else {
-				pres_cost = 1 + node.overUse() * this.pres_fac;
+				pres_cost = data.pres_cost[index];
 			}
-		} else {
-			pres_cost = data.pres_cost;
-		}
 		
-		//Bias cost
-		float bias_cost = 0;
-		if(node.isWire) {
-			Net net = con.net;
-			bias_cost = 0.5f * node.base_cost / net.fanout * (Math.abs(node.centerx - net.x_geo) + Math.abs(node.centery - net.y_geo)) / net.hpwl;
-		}
-
-		return node.base_cost * data.acc_cost * pres_cost / (1 + countSourceUses) + bias_cost;
-	}
-	
-	private void updateCost(float pres_fac, float acc_fac){
-		for (RouteNode node : this.rrg.getRouteNodes()) {
-			RouteNodeData data = node.routeNodeData;
-			
-			int overuse = node.overUse(); //assign to var so it doesn't have to recalculate
-			
-			//Present congestion penalty
-			if(overuse == 0) {
-				data.pres_cost = 1 + pres_fac;
-			} else if (overuse > 0) {
-				data.pres_cost = 1 + (overuse + 1) * pres_fac;
-				data.acc_cost = data.acc_cost + overuse * acc_fac;
+			//Bias cost
+			float bias_cost = 0;
+			if(node.isWire) {
+				Net net = con.net;
+				bias_cost = 0.5f * node.base_cost / net.fanout * (Math.abs(node.centerx - net.x_geo) + Math.abs(node.centery - net.y_geo)) / net.hpwl;
 			}
+
+			return node.base_cost * data.acc_cost[index] * pres_cost / (1 + countSourceUses) + bias_cost;
 		}
 	}
 }
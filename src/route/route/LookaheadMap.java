@@ -0,0 +1,249 @@
+package route.route;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import route.circuit.resource.CompactResourceGraph;
+import route.circuit.resource.ResourceGraph;
+import route.circuit.resource.RouteNodeType;
+
+/**
+ * Router lookahead table with the expected cost and delay from a wire to
+ * a sink, indexed by the cost index of the wire and the distance (dx, dy)
+ * between the low corner of the wire and the sink.
+ *
+ * The table is filled with Dijkstra runs over the congestion free routing
+ * resource graph. The runs start from sample wires of each wire type in
+ * the center and in the lower left corner of the FPGA, so that both short
+ * and long distances are covered. Each reached sink stores the lowest base
+ * cost and the delay of that path. Entries that are not reached by any run
+ * are invalid, the router falls back to the distance based estimate for
+ * those.
+ *
+ * The table is stored next to the RRG files and is rebuilt when the RRG
+ * changes.
+ */
+public class LookaheadMap {
+	private static final int MAGIC = 0x524c414d; // "RLAM"
+	private static final int VERSION = 1;
+
+	private static final int SAMPLES_PER_REGION = 2;
+
+	private final int numTypes, width, height;
+	private final float[] cost, delay;
+
+	private LookaheadMap(int numTypes, int width, int height) {
+		this.numTypes = numTypes;
+		this.width = width;
+		this.height = height;
+
+		this.cost = new float[numTypes * width * height];
+		this.delay = new float[numTypes * width * height];
+		Arrays.fill(this.cost, Float.NaN);
+		Arrays.fill(this.delay, Float.NaN);
+	}
+
+	/**
+	 * Reads the lookahead map that belongs to the resource graph,
+	 * or builds and stores it if it doesn't exist or is stale.
+	 */
+	public static LookaheadMap load(ResourceGraph rrg) {
+		File file = rrg.getDerivedFile("lookahead");
+
+		LookaheadMap map = null;
+		if(file.exists()) {
+			try {
+				map = read(file, rrg.getCacheKey());
+			} catch(IOException error) {
+				System.err.println("Problem in reading lookahead map " + file + ": " + error.getMessage());
+			}
+		}
+
+		if(map == null) {
+			long start = System.nanoTime();
+			map = build(rrg);
+			System.out.printf("Lookahead map built in %.2f s\n", (System.nanoTime() - start) * 1e-9);
+
+			try {
+				map.write(file, rrg.getCacheKey());
+			} catch(IOException error) {
+				System.err.println("Problem in writing lookahead map " + file + ": " + error.getMessage());
+				file.delete();
+			}
+		} else {
+			System.out.println("Lookahead map read from " + file.getName());
+		}
+
+		return map;
+	}
+
+	public boolean isValid(int costIndex, int dx, int dy) {
+		return costIndex < this.numTypes && !Float.isNaN(this.cost[this.index(costIndex, dx, dy)]);
+	}
+	public float getCost(int costIndex, int dx, int dy) {
+		return this.cost[this.index(costIndex, dx, dy)];
+	}
+	public float getDelay(int costIndex, int dx, int dy) {
+		return this.delay[this.index(costIndex, dx, dy)];
+	}
+	private int index(int costIndex, int dx, int dy) {
+		return (costIndex * this.width + dx) * this.height + dy;
+	}
+
+	/********************************
+	 * Build the map with Dijkstra  *
+	 * runs from sample wires       *
+	 ********************************/
+
+	private static LookaheadMap build(ResourceGraph rrg) {
+		final CompactResourceGraph graph = rrg.getCompactGraph();
+
+		int numTypes = rrg.getIndexedDataList().size();
+		int width = rrg.getWidth() + 2;
+		int height = rrg.getHeight() + 2;
+
+		LookaheadMap map = new LookaheadMap(numTypes, width, height);
+
+		List<List<Integer>> wiresPerType = new ArrayList<>();
+		for(int type = 0; type < numTypes; type++) {
+			wiresPerType.add(new ArrayList<Integer>());
+		}
+		for(int node = 0; node < graph.numNodes; node++) {
+			if(graph.isWire(node)) {
+				wiresPerType.get(graph.costIndex[node]).add(node);
+			}
+		}
+
+		int[][] regions = {{width / 2, height / 2}, {1, 1}};
+
+		float[] pathCost = new float[graph.numNodes];
+		float[] pathDelay = new float[graph.numNodes];
+		Arrays.fill(pathCost, Float.MAX_VALUE);
+		List<Integer> reached = new ArrayList<>();
+		BinaryHeapQueue queue = new BinaryHeapQueue(graph.numNodes);
+
+		for(List<Integer> wires : wiresPerType) {
+			for(final int[] region : regions) {
+				List<Integer> samples = new ArrayList<>(wires);
+				Collections.sort(samples, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer a, Integer b) {
+						int distanceA = Math.abs(graph.xlow[a] - region[0]) + Math.abs(graph.ylow[a] - region[1]);
+						int distanceB = Math.abs(graph.xlow[b] - region[0]) + Math.abs(graph.ylow[b] - region[1]);
+						return distanceA != distanceB ? distanceA - distanceB : a - b;
+					}
+				});
+
+				for(int sample : samples.subList(0, Math.min(SAMPLES_PER_REGION, samples.size()))) {
+					map.addDijkstra(graph, sample, pathCost, pathDelay, reached, queue);
+				}
+			}
+		}
+
+		return map;
+	}
+
+	private void addDijkstra(CompactResourceGraph graph, int start, float[] pathCost, float[] pathDelay, List<Integer> reached, BinaryHeapQueue queue) {
+		int type = graph.costIndex[start];
+		int x = graph.xlow[start];
+		int y = graph.ylow[start];
+
+		pathCost[start] = 0;
+		pathDelay[start] = 0;
+		reached.add(start);
+		queue.push(start, 0);
+
+		while(!queue.isEmpty()) {
+			int node = queue.poll();
+
+			if(graph.getType(node) == RouteNodeType.SINK) {
+				int i = this.index(type, Math.abs(graph.xlow[node] - x), Math.abs(graph.ylow[node] - y));
+				if(Float.isNaN(this.cost[i]) || pathCost[node] < this.cost[i]) {
+					this.cost[i] = pathCost[node];
+					this.delay[i] = pathDelay[node];
+				}
+				continue;
+			}
+
+			for(int edge = graph.firstChild(node); edge < graph.lastChild(node); edge++) {
+				int child = graph.childIndex[edge];
+				float childCost = pathCost[node] + graph.baseCost[child];
+
+				if(childCost < pathCost[child]) {
+					if(pathCost[child] == Float.MAX_VALUE) {
+						reached.add(child);
+					}
+					pathCost[child] = childCost;
+					pathDelay[child] = pathDelay[node] + graph.delay[child];
+					queue.push(child, childCost);
+				}
+			}
+		}
+
+		for(int node : reached) {
+			pathCost[node] = Float.MAX_VALUE;
+		}
+		reached.clear();
+	}
+
+	/********************************
+	 * Store the map next to the    *
+	 * RRG files                    *
+	 ********************************/
+
+	private static LookaheadMap read(File file, long[] key) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != key.length) {
+				return null;
+			}
+			for(long value : key) {
+				if(in.readLong() != value) {
+					return null;
+				}
+			}
+
+			LookaheadMap map = new LookaheadMap(in.readInt(), in.readInt(), in.readInt());
+			for(int i = 0; i < map.cost.length; i++) {
+				map.cost[i] = in.readFloat();
+				map.delay[i] = in.readFloat();
+			}
+			return map;
+		} finally {
+			in.close();
+		}
+	}
+
+	private void write(File file, long[] key) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(key.length);
+			for(long value : key) {
+				out.writeLong(value);
+			}
+
+			out.writeInt(this.numTypes);
+			out.writeInt(this.width);
+			out.writeInt(this.height);
+			for(int i = 0; i < this.cost.length; i++) {
+				out.writeFloat(this.cost[i]);
+				out.writeFloat(this.delay[i]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
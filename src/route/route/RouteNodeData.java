@@ -4,112 +4,127 @@ import route.circuit.pin.GlobalPin;
 import route.circuit.resource.RouteNode;
 import route.util.CountingSet;
 
+/**
+ * The routing state of all route nodes of the resource graph. The state is
+ * stored in arrays that are indexed by the route node index, there is one
+ * instance per resource graph. The sets of sources and parents are only
+ * created for the route nodes that are in use.
+ */
 public class RouteNodeData {
-	public final int index;
-	
 	//present congestion penalty
-	public float pres_cost;
+	public final float[] pres_cost;
 	//accumulated or historical congestion penalty
-	public float acc_cost;
-	
-	public float partial_path_cost;
-	public float lower_bound_total_path_cost;
-	public boolean touched;
-	
-	public RouteNode prev;
-	
-	public int occupation; // The number of connections using this node at this moment - in the end: occupation <= RouteNode.capacity
-	
-	private CountingSet<GlobalPin> sourcesSet;
-	private CountingSet<RouteNode> parentsSet;
-	
-    public RouteNodeData(int index) {
-    	this.index = index;
-    	this.pres_cost = 1;
-    	this.acc_cost = 1;
-    	this.occupation = 0;
-    	this.touched = false;
-
-		this.sourcesSet = null;
-		this.parentsSet = null;
-		
-		this.prev = null;
+	public final float[] acc_cost;
+
+	public final float[] partial_path_cost;
+	public final float[] lower_bound_total_path_cost;
+	public final boolean[] touched;
+
+	public final int[] prev; // index of the previous route node on the path, -1 at the start of the path
+
+	public final int[] occupation; // The number of connections using this node at this moment - in the end: occupation <= RouteNode.capacity
+
+	final boolean[] congestionTracked; // The node is in the congested node set of the router
+	final boolean[] occupationChanged; // The wire is in the changed wires of a congestion tracker
+
+	private final CountingSet<GlobalPin>[] sourcesSet;
+	private final CountingSet<RouteNode>[] parentsSet;
+
+	public RouteNodeData(int numNodes) {
+		this.pres_cost = new float[numNodes];
+		this.acc_cost = new float[numNodes];
+		this.partial_path_cost = new float[numNodes];
+		this.lower_bound_total_path_cost = new float[numNodes];
+		this.touched = new boolean[numNodes];
+		this.prev = new int[numNodes];
+		this.occupation = new int[numNodes];
+		this.congestionTracked = new boolean[numNodes];
+		this.occupationChanged = new boolean[numNodes];
+
+		this.sourcesSet = newCountingSets(numNodes);
+		this.parentsSet = newCountingSets(numNodes);
+
+		for(int node = 0; node < numNodes; node++) {
+			this.pres_cost[node] = 1;
+			this.acc_cost[node] = 1;
+			this.prev[node] = -1;
+		}
 	}
 
-	public boolean updateLowerBoundTotalPathCost(float new_lower_bound_total_path_cost) {
-		if (new_lower_bound_total_path_cost < this.lower_bound_total_path_cost) {
-			this.lower_bound_total_path_cost = new_lower_bound_total_path_cost;
+	@SuppressWarnings("unchecked")
+	private static <T> CountingSet<T>[] newCountingSets(int size) {
+		return (CountingSet<T>[]) new CountingSet<?>[size];
+	}
+
+	public boolean updateLowerBoundTotalPathCost(int node, float new_lower_bound_total_path_cost) {
+		if (new_lower_bound_total_path_cost < this.lower_bound_total_path_cost[node]) {
+			this.lower_bound_total_path_cost[node] = new_lower_bound_total_path_cost;
 			return true;
 		}
 		return false;
 	}
-	
-	public void setLowerBoundTotalPathCost(float new_lower_bound_total_path_cost) {
-		this.lower_bound_total_path_cost = new_lower_bound_total_path_cost;
-		this.touched = true;
+
+	public void setLowerBoundTotalPathCost(int node, float new_lower_bound_total_path_cost) {
+		this.lower_bound_total_path_cost[node] = new_lower_bound_total_path_cost;
+		this.touched[node] = true;
 	}
-	public void setPartialPathCost(float new_partial_path_cost) {
-		this.partial_path_cost = new_partial_path_cost;
+	public void setPartialPathCost(int node, float new_partial_path_cost) {
+		this.partial_path_cost[node] = new_partial_path_cost;
 	}
-	
-	public float getLowerBoundTotalPathCost() {
-		return this.lower_bound_total_path_cost;
+
+	public float getLowerBoundTotalPathCost(int node) {
+		return this.lower_bound_total_path_cost[node];
 	}
-	public float getPartialPathCost() {
-		return this.partial_path_cost;
+	public float getPartialPathCost(int node) {
+		return this.partial_path_cost[node];
 	}
 
-	public void addSource(GlobalPin source) {
-		if(this.sourcesSet == null) {
-			this.sourcesSet = new CountingSet<GlobalPin>();
+	public void addSource(int node, GlobalPin source) {
+		if(this.sourcesSet[node] == null) {
+			this.sourcesSet[node] = new CountingSet<GlobalPin>();
 		}
-		this.sourcesSet.add(source);
+		this.sourcesSet[node].add(source);
 	}
-	
-	public int numUniqueSources() {
-		if(this.sourcesSet == null) {
+
+	public int numUniqueSources(int node) {
+		if(this.sourcesSet[node] == null) {
 			return 0;
 		}
-		return this.sourcesSet.uniqueSize();
+		return this.sourcesSet[node].uniqueSize();
 	}
-	
-	public void removeSource(GlobalPin source) {
-		this.sourcesSet.remove(source);
-		if(this.sourcesSet.isEmpty()) {
-			this.sourcesSet = null;
+
+	public void removeSource(int node, GlobalPin source) {
+		this.sourcesSet[node].remove(source);
+		if(this.sourcesSet[node].isEmpty()) {
+			this.sourcesSet[node] = null;
 		}
 	}
 
-	public int countSourceUses(GlobalPin source) {
-		if(this.sourcesSet == null) {
+	public int countSourceUses(int node, GlobalPin source) {
+		if(this.sourcesSet[node] == null) {
 			return 0;
 		}
-		return this.sourcesSet.count(source);
+		return this.sourcesSet[node].count(source);
 	}
-	
-	public int numUniqueParents() {
-		if(this.parentsSet == null) {
+
+	public int numUniqueParents(int node) {
+		if(this.parentsSet[node] == null) {
 			return 0;
 		}
-		return this.parentsSet.uniqueSize();
+		return this.parentsSet[node].uniqueSize();
 	}
-	
-	public void addParent(RouteNode parent) {
-		if(this.parentsSet == null) {
-			this.parentsSet = new CountingSet<RouteNode>();
+
+	public void addParent(int node, RouteNode parent) {
+		if(this.parentsSet[node] == null) {
+			this.parentsSet[node] = new CountingSet<RouteNode>();
 		}
-		this.parentsSet.add(parent);
+		this.parentsSet[node].add(parent);
 	}
-	
-	public void removeParent(RouteNode parent) {
-		this.parentsSet.remove(parent);
-		if(this.parentsSet.isEmpty()) {
-			this.parentsSet = null;
+
+	public void removeParent(int node, RouteNode parent) {
+		this.parentsSet[node].remove(parent);
+		if(this.parentsSet[node].isEmpty()) {
+			this.parentsSet[node] = null;
 		}
 	}
-	
-	@Override
-	public int hashCode() {
-		return this.index;
-	}
 }
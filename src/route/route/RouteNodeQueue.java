@@ -0,0 +1,15 @@
+package route.route;
+
+/**
+ * Priority queue of route node indices for the directed search. A route
+ * node is at most once in the queue: pushing a node that is already queued
+ * decreases its cost in place. The queues are allocated once per search
+ * and reused for every connection.
+ */
+interface RouteNodeQueue {
+	void push(int node, float cost);
+	int peek();
+	int poll();
+	boolean isEmpty();
+	void clear();
+}
@@ -1,5 +1,10 @@
 package route.route;
 
+/**
+ * The timers are not thread safe. They are only started and finished on the
+ * thread that coordinates the routing, a timer that is used while routing a
+ * connection belongs to one ConnectionSearch and is added when routing ends.
+ */
 public class RouteTimers {
 	public Timer firstIteration;
 	public Timer updateTiming;
@@ -7,6 +12,7 @@ public class RouteTimers {
 	public Timer rerouteCongestion;
 	public Timer rerouteIllegal;
 	public Timer rerouteOpin;
+	public Timer parallelRouting;
 	public Timer fixOpin;
 	public Timer setRerouteCriticality;
 	public Timer calculateStatistics;
@@ -22,6 +28,7 @@ public class RouteTimers {
 		this.rerouteCongestion     = new Timer("reroute congestion");
 		this.rerouteIllegal        = new Timer("reroute illegal");
 		this.rerouteOpin           = new Timer("reroute opin");
+		this.parallelRouting       = new Timer("parallel routing");
 		this.fixOpin               = new Timer("fix opin");
 		this.setRerouteCriticality = new Timer("set reroute crit");
 		this.calculateStatistics   = new Timer("calc stat");
@@ -39,6 +46,7 @@ public class RouteTimers {
 		result += this.rerouteCongestion;
 		result += this.rerouteIllegal;
 		result += this.rerouteOpin;
+		result += this.parallelRouting;
 		result += this.rerouteCritical;
 		result += this.fixOpin;
 		result += this.setRerouteCriticality;
@@ -51,26 +59,30 @@ public class RouteTimers {
 		
 		return result;
 	}
-}
 
-class Timer {
-	private String name;
-	private long time;
-	private long start;
+	static class Timer {
+		private String name;
+		private long time;
+		private long start;
 	
-	public Timer(String name) {
-		this.name = name;
-		this.time = 0;
-	}
+		public Timer(String name) {
+			this.name = name;
+			this.time = 0;
+		}
 	
-	public void start() {
-		this.start = System.nanoTime();
-	}
-	public void finish() {
-		this.time += System.nanoTime() - this.start;
-	}
+		public void start() {
+			this.start = System.nanoTime();
+		}
+		public void finish() {
+			this.time += System.nanoTime() - this.start;
+		}
+		public void add(Timer other) {
+			this.time += other.time;
+			other.time = 0;
+		}
 	
-	public String toString() {
-		return String.format("%-20s %7.2f s\n", this.name, this.time * 1e-9);
+		public String toString() {
+			return String.format("%-20s %7.2f s\n", this.name, this.time * 1e-9);
+		}
 	}
 }